@@ -11,9 +11,12 @@ package org.dita.dost.index;
 import static org.dita.dost.util.Constants.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.dita.dost.util.DITAOTCollator;
 
@@ -25,8 +28,8 @@ import org.dita.dost.util.DITAOTCollator;
  * @author Wu, Zhi Qiang
  */
 public final class IndexTerm implements Comparable<IndexTerm> {
-    /** The locale of  the indexterm, used for sorting. */
-    private static Locale termLocale = null;
+    /** The locale of  the indexterm, used for sorting. Inherited by threads started from the build thread. */
+    private static final InheritableThreadLocal<Locale> termLocale = new InheritableThreadLocal<Locale>();
 
     /** The name of the indexterm. */
     private String termName = null;
@@ -46,6 +49,9 @@ public final class IndexTerm implements Comparable<IndexTerm> {
     /** The sub indexterms contained by this indexterm. */
     private List<IndexTerm> subTerms = null;
 
+    /** Index of sub terms by merge key, {@code null} if not built. */
+    private Map<Object, IndexTerm> subTermIndex = null;
+
     /** The prefix added to the term name (such as IndexTerm_Prefix_See or IndexTerm_Prefix_See_Also). */
     private String termPrefix = null;
 
@@ -80,7 +86,7 @@ public final class IndexTerm implements Comparable<IndexTerm> {
      * @return Locale language
      */
     public static Locale getTermLocale() {
-        return termLocale;
+        return termLocale.get();
     }
 
     /**
@@ -89,7 +95,7 @@ public final class IndexTerm implements Comparable<IndexTerm> {
      * @param locale locale
      */
     public static void setTermLocale(final Locale locale) {
-        termLocale = locale;
+        termLocale.set(locale);
     }
 
     /**
@@ -173,33 +179,29 @@ public final class IndexTerm implements Comparable<IndexTerm> {
      * @param term index term to be added
      */
     public void addSubTerm(final IndexTerm term) {
-        int i = 0;
-        final int subTermNum = subTerms.size();
-
         if (!IndexTerm_Prefix_See.equals(term.getTermPrefix()) &&
                 !IndexTerm_Prefix_See_Also.equals(term.getTermPrefix())){
             //if the term is not "index-see" or "index-see-also"
             leaf = false;
         }
 
-        for (; i < subTermNum; i++) {
-            final IndexTerm subTerm = subTerms.get(i);
-
-            if (subTerm.equals(term)) {
-                return;
-            }
-
-            // Add targets when same term name and same term key
-            if (subTerm.getTermFullName().equals(term.getTermFullName())
-                    && subTerm.getTermKey().equals(term.getTermKey())) {
-                subTerm.addTargets(term.getTargetList());
-                subTerm.addSubTerms(term.getSubTerms());
-                return;
+        if (subTermIndex == null) {
+            subTermIndex = new HashMap<Object, IndexTerm>(INT_16);
+            for (final IndexTerm subTerm: subTerms) {
+                if (!subTermIndex.containsKey(subTerm.getMergeKey())) {
+                    subTermIndex.put(subTerm.getMergeKey(), subTerm);
+                }
             }
         }
-
-        if (i == subTermNum) {
+        final Object key = term.getMergeKey();
+        final IndexTerm subTerm = subTermIndex.get(key);
+        if (subTerm == null) {
             subTerms.add(term);
+            subTermIndex.put(key, term);
+        } else if (subTerm != term) {
+            // Add targets when same term name and same term key
+            subTerm.addTargets(term.getTargetList());
+            subTerm.addSubTerms(term.getSubTerms());
         }
     }
 
@@ -288,7 +290,29 @@ public final class IndexTerm implements Comparable<IndexTerm> {
      */
     @Override
     public int compareTo(final IndexTerm obj) {
-        return DITAOTCollator.getInstance(termLocale).compare(termKey, obj.getTermKey());
+        final DITAOTCollator collator = DITAOTCollator.getInstance(termLocale.get());
+        int res = collator.compare(termKey, obj.getTermKey());
+        if (res == 0) {
+            final String name = getTermFullName();
+            final String otherName = obj.getTermFullName();
+            if (name != null && otherName != null) {
+                res = collator.compare(name, otherName);
+                if (res == 0) {
+                    res = name.compareTo(otherName);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Get key used to merge terms. Terms with equal prefix, name and sort key are merged
+     * into a single term.
+     * 
+     * @return merge key
+     */
+    Object getMergeKey() {
+        return Arrays.asList(termPrefix, termName, termKey);
     }
 
     /**
@@ -381,15 +405,16 @@ public final class IndexTerm implements Comparable<IndexTerm> {
         if (termPrefix == null){
             return termName;
         }else{
-            if (termLocale == null){
+            final Locale locale = termLocale.get();
+            if (locale == null){
                 return termPrefix + STRING_BLANK + termName;
-            }else if (rtlLocaleList.contains(termLocale.toString())){
+            }else if (rtlLocaleList.contains(locale.toString())){
                 return termName + STRING_BLANK
                         + Messages.getString("IndexTerm." + termPrefix.toLowerCase().trim().replace(' ', '-'),
-                                termLocale);
+                                locale);
             }else {
                 return Messages.getString("IndexTerm." + termPrefix.toLowerCase().trim().replace(' ', '-'),
-                        termLocale)
+                        locale)
                         + STRING_BLANK + termName;
             }
         }
@@ -406,6 +431,7 @@ public final class IndexTerm implements Comparable<IndexTerm> {
                     IndexTerm_Prefix_See.equalsIgnoreCase(term.getTermPrefix().trim())){ 
                 //if the only subterm is index-see update it to index-see-also
                 term.setTermPrefix(IndexTerm_Prefix_See_Also); 
+                subTermIndex = null;
             }
         }
     }
@@ -13,8 +13,10 @@ import static org.dita.dost.util.Constants.*;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.DITAOTJavaLogger;
@@ -31,15 +33,18 @@ import org.dita.dost.writer.JavaHelpIndexWriter;
 /**
  * This class is a collection of index term.
  * 
+ * <p>Terms are indexed by prefix, name and sort key, so adding a term is a constant time operation.
+ * Terms can be added concurrently from multiple threads.</p>
+ * 
  * @version 1.0 2005-05-18
  * 
  * @author Wu, Zhi Qiang
  */
 public final class IndexTermCollection {
-    /** The collection of index terms. */
-    private static IndexTermCollection collection = null;
     /** The list of all index term. */
     private final List<IndexTerm> termList = new ArrayList<IndexTerm>(INT_16);
+    /** Index of terms in term list by merge key. */
+    private final Map<Object, IndexTerm> termIndex = new HashMap<Object, IndexTerm>(INT_16);
 
     /** The type of index term. */
     private String indexType = null;
@@ -57,28 +62,18 @@ public final class IndexTermCollection {
     private PipelineHashIO pipelineHashIO = null;
 
     /**
-     * Private constructor used to forbid instance.
+     * Constructor.
      */
-    private IndexTermCollection() {
+    public IndexTermCollection() {
         javaLogger = new DITAOTJavaLogger();
     }
 
-    /**
-     * The only interface to access IndexTermCollection instance.
-     * @return Singleton IndexTermCollection instance
-     */
-    public static synchronized IndexTermCollection getInstantce(){
-        if(collection == null){
-            collection = new IndexTermCollection();
-        }
-        return collection;
-    }
-
     /**
      * The interface to clear the result in IndexTermCollection instance.
      */
-    public void clear(){
+    public synchronized void clear(){
         termList.clear();
+        termIndex.clear();
     }
 
     /**
@@ -119,27 +114,34 @@ public final class IndexTermCollection {
      * 
      * @param term index term
      */
-    public void addTerm(final IndexTerm term) {
-        int i = 0;
-        final int termNum = termList.size();
-
-        for (; i < termNum; i++) {
-            final IndexTerm indexTerm = termList.get(i);
-            if (indexTerm.equals(term)) {
-                return;
-            }
-
+    public synchronized void addTerm(final IndexTerm term) {
+        final Object key = term.getMergeKey();
+        final IndexTerm indexTerm = termIndex.get(key);
+        if (indexTerm == null) {
+            termList.add(term);
+            termIndex.put(key, term);
+        } else if (indexTerm != term) {
             // Add targets when same term name and same term key
-            if (indexTerm.getTermFullName().equals(term.getTermFullName())
-                    && indexTerm.getTermKey().equals(term.getTermKey())) {
-                indexTerm.addTargets(term.getTargetList());
-                indexTerm.addSubTerms(term.getSubTerms());
-                break;
-            }
+            indexTerm.addTargets(term.getTargetList());
+            indexTerm.addSubTerms(term.getSubTerms());
         }
+    }
 
-        if (i == termNum) {
-            termList.add(term);
+    /**
+     * Add all terms of another collection into this collection.
+     * 
+     * @param terms index term collection
+     * @since 2.0
+     */
+    public void addTerms(final IndexTermCollection terms) {
+        final List<IndexTerm> src;
+        synchronized (terms) {
+            src = new ArrayList<IndexTerm>(terms.termList);
+        }
+        synchronized (this) {
+            for (final IndexTerm term: src) {
+                addTerm(term);
+            }
         }
     }
 
@@ -153,9 +155,10 @@ public final class IndexTermCollection {
     }
 
     /**
-     * Sort term list extracted from dita files base on Locale.
+     * Sort term list extracted from dita files base on Locale. Terms with equal sort keys are
+     * ordered by term name, so the order does not depend on the order terms were added in.
      */
-    public void sort() {
+    public synchronized void sort() {
         final int termListSize = termList.size();
         if (IndexTerm.getTermLocale() == null ||
                 IndexTerm.getTermLocale().getLanguage().trim().length()==0) {
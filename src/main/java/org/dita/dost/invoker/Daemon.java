@@ -0,0 +1,477 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.invoker;
+
+import static org.dita.dost.util.Constants.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Build daemon. The daemon keeps a JVM running so that loaded classes, compiled stylesheets, the
+ * grammar pool and the catalog resolver are reused between builds. Builds run concurrently in a bounded
+ * number of build threads, each with its own Ant project, build logger, file logger, message counters
+ * and temporary directory. Grammar pool, catalog and image metadata cache settings are process-wide, so
+ * concurrent builds should use the same cache settings.
+ *
+ * <p>Requests are accepted from the local host only and must start with a secret token line. The token
+ * is written on start to a token file that only the owner can read. A request token line is followed
+ * by a command line, {@code build} or {@code stop}, followed for builds by the client working directory
+ * and one {@link Main} argument per line, and ended with an empty line. Requests are read and checked
+ * with a short timeout before they are queued, and a stop request is handled immediately. For builds
+ * the daemon writes the build log and a final {@code exit <code>} line, and closes the connection.
+ * Builds that do not fit in the queue are rejected.</p>
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * Daemon start [-port &lt;port&gt;] [-token &lt;file&gt;] [-temp &lt;dir&gt;] [-threads &lt;count&gt;]
+ * Daemon build [-port &lt;port&gt;] [-token &lt;file&gt;] &lt;build arguments&gt;
+ * Daemon stop [-port &lt;port&gt;] [-token &lt;file&gt;]</pre>
+ *
+ * @since 2.0
+ */
+public final class Daemon {
+
+    /** Default daemon port. */
+    public static final int DEFAULT_PORT = 9009;
+    private static final String CMD_START = "start";
+    private static final String CMD_BUILD = "build";
+    private static final String CMD_STOP = "stop";
+    private static final String EXIT_PREFIX = "exit ";
+    /** Maximum number of queued requests. */
+    private static final int QUEUE_SIZE = 16;
+    /** Timeout in milliseconds for reading a request. */
+    private static final int READ_TIMEOUT = 2000;
+    private static final int TOKEN_LENGTH = 32;
+
+    private final int port;
+    private final File tokenFile;
+    private final File tempBase;
+    private final int threads;
+    private final AtomicInteger jobCount = new AtomicInteger();
+    private ServerSocket server;
+    private String token;
+
+    /**
+     * Create new daemon with one build thread per processor.
+     *
+     * @param port port to listen, {@code 0} to use any free port
+     * @param tokenFile file to write the request token to
+     * @param tempBase directory to create build temporary directories in
+     */
+    public Daemon(final int port, final File tokenFile, final File tempBase) {
+        this(port, tokenFile, tempBase, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create new daemon.
+     *
+     * @param port port to listen, {@code 0} to use any free port
+     * @param tokenFile file to write the request token to
+     * @param tempBase directory to create build temporary directories in
+     * @param threads maximum number of concurrent builds
+     */
+    public Daemon(final int port, final File tokenFile, final File tempBase, final int threads) {
+        this.port = port;
+        this.tokenFile = tokenFile.getAbsoluteFile();
+        this.tempBase = tempBase.getAbsoluteFile();
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Accept build requests until a stop request is received. Returns after queued builds have been
+     * processed.
+     *
+     * @throws IOException if the server socket could not be opened or the token file could not be written
+     */
+    public void run() throws IOException {
+        synchronized (this) {
+            server = new ServerSocket(port, 50, InetAddress.getByName(null));
+        }
+        token = createToken();
+        writeToken(tokenFile, token);
+        System.out.println("Listening on port " + server.getLocalPort() + ", token in " + tokenFile.getAbsolutePath());
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        return new Thread(r, "dita-build-" + threadCount.incrementAndGet());
+                    }
+                });
+        try {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (final SocketException e) {
+                    if (server.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                final List<String> request = readRequest(socket);
+                if (request == null) {
+                    continue;
+                }
+                final String cmd = request.get(0);
+                if (CMD_STOP.equals(cmd)) {
+                    respond(socket, null, 0);
+                    stop();
+                } else if (CMD_BUILD.equals(cmd) && request.size() > 1) {
+                    try {
+                        pool.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                handle(socket, request);
+                            }
+                        });
+                    } catch (final RejectedExecutionException e) {
+                        respond(socket, "Daemon is busy, try again later", 1);
+                    }
+                } else {
+                    respond(socket, "Unsupported command " + cmd, 1);
+                }
+            }
+        } finally {
+            stop();
+            pool.shutdown();
+            tokenFile.delete();
+        }
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get listening port.
+     *
+     * @return local port, {@code -1} if the daemon is not running
+     */
+    public synchronized int getPort() {
+        return server != null && !server.isClosed() ? server.getLocalPort() : -1;
+    }
+
+    /**
+     * Stop accepting requests.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            try {
+                server.close();
+            } catch (final IOException e) {
+                System.err.println("Failed to close server socket: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Read and check a request. An invalid request is answered and closed.
+     *
+     * @param socket client connection
+     * @return request lines after the token line, starting with the command, {@code null} if the request was invalid
+     */
+    private List<String> readRequest(final Socket socket) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT);
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+            final String requestToken = in.readLine();
+            if (requestToken == null || !MessageDigest.isEqual(token.getBytes(UTF8), requestToken.getBytes(UTF8))) {
+                respond(socket, "Invalid token", 1);
+                return null;
+            }
+            final List<String> request = new ArrayList<String>();
+            for (String line = in.readLine(); line != null && line.length() != 0; line = in.readLine()) {
+                request.add(line);
+            }
+            if (request.isEmpty()) {
+                respond(socket, "Missing command", 1);
+                return null;
+            }
+            socket.setSoTimeout(0);
+            return request;
+        } catch (final IOException e) {
+            System.err.println("Failed to read request: " + e.getMessage());
+            close(socket);
+            return null;
+        }
+    }
+
+    /**
+     * Write response without a build log and close the connection.
+     *
+     * @param socket client connection
+     * @param message message to write, may be {@code null}
+     * @param exitCode exit code
+     */
+    private static void respond(final Socket socket, final String message, final int exitCode) {
+        try {
+            final PrintStream log = new PrintStream(socket.getOutputStream(), true, UTF8);
+            if (message != null) {
+                log.println(message);
+            }
+            log.println(EXIT_PREFIX + exitCode);
+            log.flush();
+        } catch (final IOException e) {
+            System.err.println("Failed to write response: " + e.getMessage());
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Run a build request.
+     *
+     * @param socket client connection
+     * @param request request lines: command, client working directory and build arguments
+     */
+    private void handle(final Socket socket, final List<String> request) {
+        try {
+            final PrintStream log = new PrintStream(socket.getOutputStream(), true, UTF8);
+            final List<String> args = request.subList(2, request.size());
+            final int exitCode = build(args.toArray(new String[args.size()]), new File(request.get(1)), log);
+            log.println(EXIT_PREFIX + exitCode);
+            log.flush();
+        } catch (final IOException e) {
+            System.err.println("Failed to process request: " + e.getMessage());
+        } finally {
+            close(socket);
+        }
+    }
+
+    private static void close(final Socket socket) {
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Run build in current thread.
+     *
+     * @param args build arguments
+     * @param baseDir directory to resolve relative file arguments against
+     * @param log stream to write build log to
+     * @return build exit code
+     */
+    private int build(final String[] args, final File baseDir, final PrintStream log) {
+        final String timestamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
+        final File tempDir = new File(tempBase, "temp" + timestamp + "-" + jobCount.incrementAndGet());
+        return new Main().runShared(args, baseDir, tempDir, log);
+    }
+
+    /**
+     * Create random request token.
+     *
+     * @return token as a hexadecimal string
+     */
+    private static String createToken() {
+        final byte[] bytes = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (final byte b: bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Write request token to a file that only the owner can read or write.
+     *
+     * @param file token file
+     * @param token request token
+     * @throws IOException if writing the token file failed
+     */
+    private static void writeToken(final File file, final String token) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Failed to delete token file " + file.getAbsolutePath());
+        }
+        if (!file.createNewFile()) {
+            throw new IOException("Failed to create token file " + file.getAbsolutePath());
+        }
+        if (!(file.setReadable(false, false) && file.setReadable(true, true)
+                && file.setWritable(false, false) && file.setWritable(true, true))) {
+            file.delete();
+            throw new IOException("Failed to restrict access to token file " + file.getAbsolutePath());
+        }
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(token.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read request token.
+     *
+     * @param file token file
+     * @return request token
+     * @throws IOException if reading the token file failed
+     */
+    private static String readToken(final File file) throws IOException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            final String token = in.readLine();
+            if (token == null) {
+                throw new IOException("Token file " + file.getAbsolutePath() + " is empty");
+            }
+            return token.trim();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get default token file for a port.
+     *
+     * @param port daemon port
+     * @return token file in user home directory
+     */
+    static File getDefaultTokenFile(final int port) {
+        return new File(System.getProperty("user.home"), ".dita-ot-daemon-" + port);
+    }
+
+    /**
+     * Send request to a running daemon and copy the response to standard output.
+     *
+     * @param port daemon port
+     * @param tokenFile token file written by the daemon
+     * @param cmd request command
+     * @param args build arguments
+     * @return build exit code
+     * @throws IOException if communicating with the daemon failed
+     */
+    static int request(final int port, final File tokenFile, final String cmd, final List<String> args) throws IOException {
+        final String token = readToken(tokenFile);
+        final Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            final Writer out = new OutputStreamWriter(socket.getOutputStream(), UTF8);
+            out.write(token + "\n");
+            out.write(cmd + "\n");
+            if (CMD_BUILD.equals(cmd)) {
+                out.write(new File("").getAbsolutePath() + "\n");
+                for (final String arg: args) {
+                    out.write(arg + "\n");
+                }
+            }
+            out.write("\n");
+            out.flush();
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+            String last = null;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (last != null) {
+                    System.out.println(last);
+                }
+                last = line;
+            }
+            if (last == null || !last.startsWith(EXIT_PREFIX)) {
+                if (last != null) {
+                    System.out.println(last);
+                }
+                throw new IOException("Daemon closed connection without exit status");
+            }
+            return Integer.parseInt(last.substring(EXIT_PREFIX.length()));
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args command line arguments
+     */
+    public static void main(final String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            System.exit(1);
+        }
+        final String cmd = args[0];
+        int port = DEFAULT_PORT;
+        File tokenFile = null;
+        File temp = new File(System.getProperty("java.io.tmpdir"));
+        int threads = Runtime.getRuntime().availableProcessors();
+        final List<String> rest = new ArrayList<String>(Arrays.asList(args).subList(1, args.length));
+        try {
+            while (rest.size() > 1) {
+                final String arg = rest.get(0);
+                if (arg.equals("-port")) {
+                    port = Integer.parseInt(rest.get(1));
+                } else if (arg.equals("-token")) {
+                    tokenFile = new File(rest.get(1));
+                } else if (arg.equals("-temp") && CMD_START.equals(cmd)) {
+                    temp = new File(rest.get(1));
+                } else if (arg.equals("-threads") && CMD_START.equals(cmd)) {
+                    threads = Integer.parseInt(rest.get(1));
+                } else {
+                    break;
+                }
+                rest.subList(0, 2).clear();
+            }
+        } catch (final NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.exit(1);
+        }
+        if (tokenFile == null) {
+            tokenFile = getDefaultTokenFile(port);
+        }
+        try {
+            if (CMD_START.equals(cmd)) {
+                new Daemon(port, tokenFile, temp, threads).run();
+            } else if (CMD_BUILD.equals(cmd) || CMD_STOP.equals(cmd)) {
+                System.exit(request(port, tokenFile, cmd, rest));
+            } else {
+                printUsage();
+                System.exit(1);
+            }
+        } catch (final Exception e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage:");
+        System.out.println("  Daemon start [-port <port>] [-token <file>] [-temp <dir>] [-threads <count>]");
+        System.out.println("  Daemon build [-port <port>] [-token <file>] <build arguments>");
+        System.out.println("  Daemon stop [-port <port>] [-token <file>]");
+        System.out.println("Options:");
+        System.out.println("  -port <port>       daemon port, default is " + DEFAULT_PORT);
+        System.out.println("  -token <file>      request token file, default is .dita-ot-daemon-<port> in user home directory");
+        System.out.println("  -temp <dir>        directory for build temporary directories, default is system temporary directory");
+        System.out.println("  -threads <count>   maximum number of concurrent builds, default is number of processors");
+    }
+
+}
@@ -20,7 +20,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.apache.tools.ant.BuildEvent;
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.SubBuildListener;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Mapper;
 import org.apache.tools.ant.types.XMLCatalog;
@@ -30,6 +33,11 @@ import org.dita.dost.module.AbstractPipelineModule;
 import org.dita.dost.module.XsltModule;
 import org.dita.dost.pipeline.PipelineFacade;
 import org.dita.dost.pipeline.PipelineHashIO;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
+import org.dita.dost.util.ImageMetadata;
+import org.dita.dost.util.Job;
+import org.dita.dost.util.Metrics;
 
 /**
  * Ant task for executing pipeline modules.
@@ -38,6 +46,13 @@ import org.dita.dost.pipeline.PipelineHashIO;
  */
 public final class ExtensibleAntInvoker extends Task {
 
+    /** Ant property for pipeline metrics output file. */
+    private static final String METRICS_FILE_PROPERTY = "args.metrics.file";
+    /** Ant property for persistent image metadata cache directory. */
+    private static final String IMAGE_CACHE_DIR_PROPERTY = "args.image.cache.dir";
+    /** Project reference for {@link TempDirResources}. */
+    private static final String TEMP_DIR_RESOURCES_REFERENCE = "org.dita.dost.invoker.TempDirResources";
+
     /** Pipeline. */
     private final PipelineFacade pipeline;
     /** Pipeline attributes and parameters */
@@ -132,6 +147,12 @@ public final class ExtensibleAntInvoker extends Task {
         final DITAOTAntLogger logger = new DITAOTAntLogger(getProject());
         logger.setTask(this);
         pipeline.setLogger(logger);
+        initMetrics();
+        initImageMetadata();
+        final TempDirResources resources = getTempDirResources();
+        if (attrs.containsKey(ANT_INVOKER_PARAM_TEMPDIR)) {
+            resources.add(new File(attrs.get(ANT_INVOKER_PARAM_TEMPDIR)));
+        }
         try {
             for (final Module m: modules) {
                 final PipelineHashIO pipelineInput = new PipelineHashIO();
@@ -151,10 +172,12 @@ public final class ExtensibleAntInvoker extends Task {
 	                    x.setIncludes(inc);
 	                    x.setDestinationDir(xm.destDir != null ? xm.destDir : xm.baseDir);
 	                    x.setSorceDir(xm.baseDir);
+	                    x.setStore(resources.getStore(attrs.containsKey(ANT_INVOKER_PARAM_TEMPDIR) ? new File(attrs.get(ANT_INVOKER_PARAM_TEMPDIR)) : xm.baseDir, logger));
                     }
                     x.setFilenameParam(xm.filenameparameter);
                     x.setFiledirParam(xm.filedirparameter);
                     x.setReloadstylesheet(xm.reloadstylesheet);
+                    x.setThreads(xm.threads > 0 ? xm.threads : (xm.parallel ? Runtime.getRuntime().availableProcessors() : 1));
                     x.setXMLCatalog(xm.xmlcatalog);
                     if (xm.mapper != null) {
                     	x.setMapper(xm.mapper.getImplementation());
@@ -188,6 +211,50 @@ public final class ExtensibleAntInvoker extends Task {
         }
     }
     
+    /**
+     * Enable metrics collection if metrics output file has been set. Metrics are bound to the current
+     * thread and shared by sub-builds run in it. Collected metrics are written and unbound when the
+     * project that enabled them finishes.
+     */
+    private void initMetrics() {
+        final String file = getProject().getProperty(METRICS_FILE_PROPERTY);
+        if (file == null || Metrics.getInstance().isEnabled()) {
+            return;
+        }
+        final Metrics metrics = new Metrics();
+        final Metrics previous = Metrics.setInstance(metrics);
+        getProject().addBuildListener(new MetricsWriter(getProject(), getProject().resolveFile(file), metrics, previous));
+    }
+    
+    /**
+     * Set persistent image metadata cache directory if it has been set.
+     */
+    private void initImageMetadata() {
+        final String dir = getProject().getProperty(IMAGE_CACHE_DIR_PROPERTY);
+        if (dir != null) {
+            ImageMetadata.getInstance().setCacheDir(getProject().resolveFile(dir));
+        }
+    }
+    
+    /**
+     * Get temporary directory resources of the current project. The resources are created and registered
+     * as a build listener on first use.
+     * 
+     * @return temporary directory resources
+     */
+    private TempDirResources getTempDirResources() {
+        final Project project = getProject();
+        synchronized (project) {
+            TempDirResources resources = (TempDirResources) project.getReference(TEMP_DIR_RESOURCES_REFERENCE);
+            if (resources == null) {
+                resources = new TempDirResources(project);
+                project.addReference(TEMP_DIR_RESOURCES_REFERENCE, resources);
+                project.addBuildListener(resources);
+            }
+            return resources;
+        }
+    }
+    
     private Set<File> readListFile(final List<Xslt.IncludesFile> includes, final DITAOTAntLogger logger) {
     	final Set<File> inc = new HashSet<File>();
     	for (final Xslt.IncludesFile i: includes) {
@@ -218,6 +285,198 @@ public final class ExtensibleAntInvoker extends Task {
                 && (unlessProperty == null || !getProject().getProperties().containsKey(unlessProperty));
     }
     
+    /**
+     * Build listener that writes pipeline metrics of a build when the project it was registered to finishes.
+     * Sub-builds do not fire build finished events, so sub-build finished events are handled as well.
+     * Listeners are copied to sub-builds, so events of other projects are ignored.
+     */
+    private static final class MetricsWriter implements SubBuildListener {
+        
+        private final Project project;
+        private final File file;
+        private final Metrics metrics;
+        /** Metrics bound to the build thread before this build, {@code null} if none */
+        private final Metrics previous;
+        private boolean written;
+        
+        MetricsWriter(final Project project, final File file, final Metrics metrics, final Metrics previous) {
+            this.project = project;
+            this.file = file;
+            this.metrics = metrics;
+            this.previous = previous;
+        }
+        
+        @Override
+        public void buildFinished(final BuildEvent event) {
+            if (event.getProject() == project) {
+                write();
+            }
+        }
+        
+        @Override
+        public void subBuildFinished(final BuildEvent event) {
+            if (event.getProject() == project) {
+                write();
+            }
+        }
+        
+        private synchronized void write() {
+            if (written) {
+                return;
+            }
+            written = true;
+            Metrics.setInstance(previous);
+            try {
+                metrics.write(file);
+                project.log("Wrote pipeline metrics to " + file.getAbsolutePath(), Project.MSG_INFO);
+            } catch (final IOException e) {
+                project.log("Failed to write pipeline metrics to " + file.getAbsolutePath() + ": " + e.getMessage(), Project.MSG_WARN);
+            }
+        }
+        
+        @Override
+        public void buildStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void subBuildStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void targetStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void targetFinished(final BuildEvent event) {
+        }
+        
+        @Override
+        public void taskStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void taskFinished(final BuildEvent event) {
+        }
+        
+        @Override
+        public void messageLogged(final BuildEvent event) {
+        }
+        
+    }
+    
+    /**
+     * Temporary directories used by a project. Document stores of the temporary directories are released
+     * when the project finishes. The job store type is cached and only read again when the job configuration
+     * file changes.
+     */
+    private static final class TempDirResources implements SubBuildListener {
+        
+        private final Project project;
+        private final Set<File> tempDirs = new HashSet<File>();
+        /** Job configuration file modification times when store types were read */
+        private final Map<File, Long> jobModified = new HashMap<File, Long>();
+        /** Temporary directories whose job uses a document store */
+        private final Set<File> memoryStores = new HashSet<File>();
+        
+        TempDirResources(final Project project) {
+            this.project = project;
+        }
+        
+        /**
+         * Add temporary directory to release when the project finishes.
+         * 
+         * @param tempDir temporary directory
+         */
+        synchronized void add(final File tempDir) {
+            tempDirs.add(tempDir.getAbsoluteFile());
+        }
+        
+        /**
+         * Get document store of a job.
+         * 
+         * @param tempDir temporary directory, may be {@code null}
+         * @param logger logger
+         * @return document store, {@code null} if the job does not use a document store
+         */
+        synchronized DocumentStore getStore(final File tempDir, final DITAOTAntLogger logger) {
+            if (tempDir == null) {
+                return null;
+            }
+            final File dir = tempDir.getAbsoluteFile();
+            tempDirs.add(dir);
+            final long modified = Job.getJobFile(dir).lastModified();
+            final Long read = jobModified.get(dir);
+            if (read == null || read.longValue() != modified) {
+                boolean memory = false;
+                try {
+                    memory = new Job(dir).getStore() != null;
+                } catch (final IOException e) {
+                    logger.logWarn("Failed to read job configuration: " + e.getMessage());
+                }
+                jobModified.put(dir, modified);
+                if (memory) {
+                    memoryStores.add(dir);
+                } else {
+                    memoryStores.remove(dir);
+                }
+            }
+            return memoryStores.contains(dir) ? DocumentStore.getInstance(dir) : null;
+        }
+        
+        private synchronized void release() {
+            for (final File tempDir: tempDirs) {
+                DocumentStore.removeInstance(tempDir);
+                IdIndex.getInstance().clear(tempDir);
+            }
+            tempDirs.clear();
+            jobModified.clear();
+            memoryStores.clear();
+        }
+        
+        @Override
+        public void buildFinished(final BuildEvent event) {
+            if (event.getProject() == project) {
+                release();
+            }
+        }
+        
+        @Override
+        public void subBuildFinished(final BuildEvent event) {
+            if (event.getProject() == project) {
+                release();
+            }
+        }
+        
+        @Override
+        public void buildStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void subBuildStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void targetStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void targetFinished(final BuildEvent event) {
+        }
+        
+        @Override
+        public void taskStarted(final BuildEvent event) {
+        }
+        
+        @Override
+        public void taskFinished(final BuildEvent event) {
+        }
+        
+        @Override
+        public void messageLogged(final BuildEvent event) {
+        }
+        
+    }
+    
     /**
      * Nested pipeline module element configuration.
      * 
@@ -262,6 +521,8 @@ public final class ExtensibleAntInvoker extends Task {
         private String filedirparameter;
         private XMLCatalog xmlcatalog;
         private boolean reloadstylesheet;
+        private boolean parallel;
+        private int threads;
         
         // Ant setters
         
@@ -293,6 +554,14 @@ public final class ExtensibleAntInvoker extends Task {
         	this.reloadstylesheet = reloadstylesheet;
         }
         
+        public void setParallel(final boolean parallel) {
+            this.parallel = parallel;
+        }
+        
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+        
         public void setIn(final File in) {
         	this.in = in;
         }
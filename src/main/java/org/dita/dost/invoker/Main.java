@@ -33,6 +33,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -59,7 +60,12 @@ import org.apache.tools.ant.property.ResolvePropertyMap;
 import org.apache.tools.ant.util.ClasspathUtils;
 import org.apache.tools.ant.util.FileUtils;
 import org.apache.tools.ant.util.ProxySetup;
+import org.dita.dost.index.IndexTerm;
+import org.dita.dost.log.DITAOTFileLogger;
+import org.dita.dost.resolver.DitaURIResolverFactory;
 import org.dita.dost.util.Configuration;
+import org.dita.dost.util.LogUtils;
+import org.dita.dost.util.OutputUtils;
 
 /**
  * Command line entry point into DITA-OT. This class is entered via the canonical
@@ -75,7 +81,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
             this.property = property;
         }
 
-        abstract String getValue(final String value);
+        abstract String getValue(final File baseDir, final String value);
     }
 
     private static class StringArgument extends Argument {
@@ -84,7 +90,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         }
 
         @Override
-        String getValue(final String value) {
+        String getValue(final File baseDir, final String value) {
             return value;
         }
     }
@@ -95,8 +101,11 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         }
 
         @Override
-        String getValue(final String value) {
-            return new File(value).getAbsolutePath();
+        String getValue(final File baseDir, final String value) {
+            final File file = new File(value);
+            return baseDir != null && !file.isAbsolute()
+                   ? new File(baseDir, value).getAbsolutePath()
+                   : file.getAbsolutePath();
         }
     }
 
@@ -186,10 +195,10 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
     private File buildFile; /* null */
 
     /** Stream to use for logging. */
-    private static PrintStream out = System.out;
+    private PrintStream out = System.out;
 
     /** Stream that we are using for logging error messages. */
-    private static PrintStream err = System.err;
+    private PrintStream err = System.err;
 
     /** The build targets. */
     private final Vector<String> targets = new Vector<String>();
@@ -242,7 +251,19 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
      * Whether or not a logfile is being used. This is used to check if the
      * output streams must be closed.
      */
-    private static boolean isLogFileUsed = false;
+    private boolean isLogFileUsed = false;
+
+    /**
+     * Whether the build shares the JVM with other builds. Shared builds do
+     * not redirect system streams or read input.
+     */
+    private boolean shared = false;
+
+    /**
+     * Directory to resolve relative file arguments against, {@code null} to
+     * use the current working directory.
+     */
+    private File baseDir = null;
 
     /**
      * optional thread priority
@@ -321,8 +342,12 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         int exitCode = 1;
         try {
             try {
-                runBuild(coreLoader);
-                exitCode = 0;
+                if (readyToRun && MultiTranstypeBuild.isMultiTranstype(getProperty("transtype"))) {
+                    exitCode = new MultiTranstypeBuild(this, out).run();
+                } else {
+                    runBuild(coreLoader);
+                    exitCode = 0;
+                }
             } catch (final ExitStatusException ese) {
                 exitCode = ese.getStatus();
                 if (exitCode != 0) {
@@ -342,6 +367,162 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         exit(exitCode);
     }
 
+    /**
+     * Run a build in a shared JVM. System streams are not redirected and the
+     * JVM is not exited, so several builds may run concurrently in separate
+     * threads. Grammar pool, catalog and image metadata cache settings are
+     * process-wide, so concurrent builds should use the same cache settings.
+     * Build log is written to the given stream.
+     * 
+     * @param args command line arguments
+     * @param baseDir directory to resolve relative file arguments against
+     * @param tempDir temporary directory to use if not set in arguments
+     * @param log stream to write build log to
+     * @return build exit code
+     * @since 2.0
+     */
+    int runShared(final String[] args, final File baseDir, final File tempDir, final PrintStream log) {
+        shared = true;
+        this.baseDir = baseDir;
+        allowInput = false;
+        out = log;
+        err = log;
+        try {
+            processArgs(args);
+        } catch (final Throwable exc) {
+            handleLogfile();
+            log.println(exc.getMessage());
+            return 1;
+        }
+        if (!readyToRun) {
+            log.println("Invalid build arguments");
+            return 1;
+        }
+        if (!definedProps.containsKey("dita.temp.dir")) {
+            definedProps.put("dita.temp.dir", tempDir.getAbsolutePath());
+        }
+        return runSharedBuild();
+    }
+
+    /**
+     * Run a build with the current configuration in a shared JVM. A build
+     * with several transtypes is run as a {@link MultiTranstypeBuild}.
+     * 
+     * @return build exit code
+     */
+    int runSharedBuild() {
+        resetThreadState();
+        int exitCode = 1;
+        try {
+            try {
+                if (readyToRun && MultiTranstypeBuild.isMultiTranstype(getProperty("transtype"))) {
+                    exitCode = new MultiTranstypeBuild(this, out).run();
+                } else {
+                    runBuild(null);
+                    exitCode = 0;
+                }
+            } catch (final ExitStatusException ese) {
+                exitCode = ese.getStatus();
+                if (exitCode != 0) {
+                    throw ese;
+                }
+            }
+        } catch (final BuildException be) {
+            // already reported by build logger
+        } catch (final Throwable exc) {
+            exc.printStackTrace(err);
+        } finally {
+            handleLogfile();
+        }
+        return exitCode;
+    }
+
+    /**
+     * Reset per-build state kept in thread-locals, so that a build does not
+     * use values or the file logger left by a previous build run in the same
+     * thread, or by the build that started the thread.
+     */
+    private static void resetThreadState() {
+        DITAOTFileLogger.reset();
+        LogUtils.clear();
+        IndexTerm.setTermLocale(null);
+        OutputUtils.reset();
+        DitaURIResolverFactory.setPath(null);
+    }
+
+    /**
+     * Create a shared build that uses the configuration of this build.
+     * 
+     * @param props properties to add to or replace in defined properties
+     * @param forkTargets targets to run, empty to use the targets of this build
+     * @param log stream to write build log to
+     * @return new build, ready to run with {@link #runSharedBuild()}
+     * @since 2.0
+     */
+    Main fork(final Map<String, String> props, final List<String> forkTargets, final PrintStream log) {
+        final Main fork = new Main();
+        fork.shared = true;
+        fork.allowInput = false;
+        fork.out = log;
+        fork.err = log;
+        fork.msgOutputLevel = msgOutputLevel;
+        fork.buildFile = buildFile;
+        fork.baseDir = baseDir;
+        fork.listeners.addAll(listeners);
+        fork.loggerClassname = loggerClassname;
+        fork.inputHandlerClassname = inputHandlerClassname;
+        fork.emacsMode = emacsMode;
+        fork.keepGoingMode = keepGoingMode;
+        fork.definedProps.putAll(definedProps);
+        fork.definedProps.putAll(props);
+        fork.targets.addAll(forkTargets.isEmpty() ? targets : forkTargets);
+        fork.readyToRun = true;
+        return fork;
+    }
+
+    /**
+     * Create a project with the configuration of this build without running
+     * any targets. No build listeners are added to the project.
+     * 
+     * @return configured project
+     * @throws BuildException if reading build file failed
+     * @since 2.0
+     */
+    Project loadProject() throws BuildException {
+        final Project project = new Project();
+        configureProject(project);
+        return project;
+    }
+
+    /**
+     * Get user defined property.
+     * 
+     * @param name property name
+     * @return property value, {@code null} if not defined
+     */
+    String getProperty(final String name) {
+        final Object value = definedProps.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Get build file.
+     * 
+     * @return build file, {@code null} if build is not ready to run
+     */
+    File getBuildFile() {
+        return buildFile;
+    }
+
+    /**
+     * Get directory to resolve relative file arguments against.
+     * 
+     * @return base directory, {@code null} for the current working directory
+     */
+    File getBaseDir() {
+        return baseDir;
+    }
+
     /**
      * This operation is expected to call {@link System#exit(int)}, which is
      * what the base version does. However, it is possible to do something else.
@@ -358,7 +539,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
      * 
      * @since Ant 1.6
      */
-    private static void handleLogfile() {
+    private void handleLogfile() {
         if (isLogFileUsed) {
             FileUtils.close(out);
             FileUtils.close(err);
@@ -584,8 +765,10 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         if (logTo != null) {
             out = logTo;
             err = logTo;
-            System.setOut(out);
-            System.setErr(err);
+            if (!shared) {
+                System.setOut(out);
+                System.setErr(err);
+            }
         }
         readyToRun = true;
     }
@@ -661,7 +844,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
             throw new BuildException("Missing value for property " + name);
         }
         final Argument a = ARGUMENT_MAPPING.get(name);
-        definedProps.put(a.property, a.getValue(value));
+        definedProps.put(a.property, a.getValue(baseDir, value));
         return argPos;
     }
 
@@ -855,9 +1038,11 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
                 if (allowInput) {
                     project.setDefaultInputStream(System.in);
                 }
-                System.setIn(new DemuxInputStream(project));
-                System.setOut(new PrintStream(new DemuxOutputStream(project, false)));
-                System.setErr(new PrintStream(new DemuxOutputStream(project, true)));
+                if (!shared) {
+                    System.setIn(new DemuxInputStream(project));
+                    System.setOut(new PrintStream(new DemuxOutputStream(project, false)));
+                    System.setErr(new PrintStream(new DemuxOutputStream(project, true)));
+                }
 
                 if (!projectHelp) {
                     project.fireBuildStarted();
@@ -874,32 +1059,7 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
                     }
                 }
 
-                project.init();
-
-                // resolve properties
-                final PropertyHelper propertyHelper = PropertyHelper.getPropertyHelper(project);
-                final HashMap<String, Object> props = new HashMap<String, Object>(definedProps);
-                new ResolvePropertyMap(project, propertyHelper, propertyHelper.getExpanders()).resolveAllProperties(
-                        props, null, false);
-
-                // set user-define properties
-                for (final Map.Entry<String, Object> ent : props.entrySet()) {
-                    final String arg = ent.getKey();
-                    final Object value = ent.getValue();
-                    project.setUserProperty(arg, String.valueOf(value));
-                }
-
-                project.setUserProperty(MagicNames.ANT_FILE, buildFile.getAbsolutePath());
-                project.setUserProperty(MagicNames.ANT_FILE_TYPE, MagicNames.ANT_FILE_TYPE_FILE);
-
-                project.setKeepGoingMode(keepGoingMode);
-                if (proxy) {
-                    // proxy setup if enabled
-                    final ProxySetup proxySetup = new ProxySetup(project);
-                    proxySetup.enableProxies();
-                }
-
-                ProjectHelper.configureProject(project, buildFile);
+                configureProject(project);
 
                 if (projectHelp) {
                     printDescription(project);
@@ -922,9 +1082,11 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
                     System.setSecurityManager(oldsm);
                 }
 
-                System.setOut(savedOut);
-                System.setErr(savedErr);
-                System.setIn(savedIn);
+                if (!shared) {
+                    System.setOut(savedOut);
+                    System.setErr(savedErr);
+                    System.setIn(savedIn);
+                }
             }
         } catch (final RuntimeException exc) {
             error = exc;
@@ -953,6 +1115,41 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         }
     }
 
+    /**
+     * Initialize project, set user defined properties and read build file.
+     * 
+     * @param project project to configure
+     * @throws BuildException if reading build file failed
+     */
+    private void configureProject(final Project project) throws BuildException {
+        project.init();
+
+        // resolve properties
+        final PropertyHelper propertyHelper = PropertyHelper.getPropertyHelper(project);
+        final HashMap<String, Object> props = new HashMap<String, Object>(definedProps);
+        new ResolvePropertyMap(project, propertyHelper, propertyHelper.getExpanders()).resolveAllProperties(
+                props, null, false);
+
+        // set user-define properties
+        for (final Map.Entry<String, Object> ent : props.entrySet()) {
+            final String arg = ent.getKey();
+            final Object value = ent.getValue();
+            project.setUserProperty(arg, String.valueOf(value));
+        }
+
+        project.setUserProperty(MagicNames.ANT_FILE, buildFile.getAbsolutePath());
+        project.setUserProperty(MagicNames.ANT_FILE_TYPE, MagicNames.ANT_FILE_TYPE_FILE);
+
+        project.setKeepGoingMode(keepGoingMode);
+        if (proxy) {
+            // proxy setup if enabled
+            final ProxySetup proxySetup = new ProxySetup(project);
+            proxySetup.enableProxies();
+        }
+
+        ProjectHelper.configureProject(project, buildFile);
+    }
+
     /**
      * Adds the listeners specified in the command line arguments, along with
      * the default listener, to the specified project.
@@ -1038,7 +1235,8 @@ public class Main extends org.apache.tools.ant.Main implements AntMain {
         msg.append("Usage: dita [options]" + lSep);
         msg.append("Mandatory: " + lSep);
         msg.append("  -i, -input <file>      input file" + lSep);
-        msg.append("  -t, -transtype <name>  transformation type" + lSep);
+        msg.append("  -t, -transtype <name>  transformation type, or comma separated list of" + lSep);
+        msg.append("                         transformation types to build concurrently" + lSep);
         msg.append("Optional: " + lSep);
         msg.append("  -o, -output <dir>      output directory" + lSep);
         msg.append("  -help, -h              print this message" + lSep);
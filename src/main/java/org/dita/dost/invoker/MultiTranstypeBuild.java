@@ -0,0 +1,560 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.invoker;
+
+import static org.dita.dost.util.Constants.*;
+import static org.dita.dost.writer.DitaWriter.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.MagicNames;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.RuntimeConfigurable;
+import org.apache.tools.ant.Target;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.util.FileUtils;
+import org.dita.dost.util.Configuration;
+
+/**
+ * Build of several transtypes from the same input. Transtype is given as a comma separated list.
+ *
+ * <p>Preprocessing depends on the transtype through print filtering, see
+ * {@link org.dita.dost.util.FilterUtils#FilterUtils(boolean)}, Eclipse help specific chunking and
+ * conref resolution, and properties set by the transtype init targets that run before preprocessing,
+ * e.g. {@code args.rellinks} set by PDF. Init targets are run for each transtype in a project without
+ * listeners, and transtypes are grouped by preprocessing profile and the values of properties referenced
+ * by the {@code build-init} and {@code preprocess} targets. Preprocessing is run once for each group
+ * into a snapshot temporary directory, together with the init targets of the group. Each transtype is
+ * then built in a worker thread from a copy of the snapshot with preprocessing steps skipped using
+ * property {@value #PROPERTY_PREPROCESS_REUSE}. A transtype that is alone in its group is built
+ * normally.</p>
+ *
+ * <p>Each transtype writes output into a subdirectory of the output directory named after the transtype.
+ * Number of concurrent builds is limited by property {@code args.threads}, and defaults to the number of
+ * processors. Build logs are written in transtype order.</p>
+ *
+ * <p>Each transtype build is run with {@link Main#runSharedBuild()}, which gives the build its own file
+ * logger and message counters and resets the thread-local build state inherited from the worker thread.
+ * Collators used for index sorting are cached per thread. Grammar pool, catalog and image metadata cache
+ * settings are process-wide, but transtype builds are forked from the same configuration: the settings
+ * are derived from the same defined properties and DITA-OT directory, so every build applies the same
+ * values. Transtype init targets must not change {@code args.grammar.cache},
+ * {@code args.grammar.cache.dir} or {@code args.image.cache.dir}.</p>
+ *
+ * @since 2.0
+ */
+final class MultiTranstypeBuild {
+
+    /** Property to skip preprocessing steps in a preprocessed temporary directory. */
+    static final String PROPERTY_PREPROCESS_REUSE = "preprocess.reuse";
+    private static final String TRANSTYPE_SEPARATOR = ",";
+    private static final String PROFILE_PRINT = "print";
+    private static final String PROFILE_DEFAULT = "default";
+    private static final List<String> PREPROCESS_TARGETS = Arrays.asList("build-init", "preprocess");
+    private static final List<String> DEFAULT_TARGETS = Collections.emptyList();
+    /** Ant executor that runs each target in a target list only once. */
+    private static final String SINGLE_CHECK_EXECUTOR = "org.apache.tools.ant.helper.SingleCheckExecutor";
+    /** Properties set separately for each build and not compared between transtypes. */
+    private static final List<String> BUILD_PROPERTIES = Arrays.asList("transtype", "dita.temp.dir", "output.dir");
+    /** Attributes whose value is a property name. */
+    private static final List<String> PROPERTY_NAME_ATTRIBUTES = Arrays.asList("name", "property", "if", "unless");
+    private static final Pattern PROPERTY_REFERENCE_PATTERN = Pattern.compile("\\$\\{([^}]+)\\}");
+    /** Number of bytes at the start of a file to search for working directory processing instructions. */
+    private static final int HEAD_LENGTH = 1024;
+    private static final Pattern WORKDIR_PI_PATTERN = Pattern.compile("<\\?(" + Pattern.quote(PI_WORKDIR_TARGET_URI)
+            + "|" + Pattern.quote(PI_WORKDIR_TARGET) + ")\\s.*?\\?>", Pattern.DOTALL);
+
+    private final Main parent;
+    private final PrintStream log;
+    private final Set<String> transtypes = new LinkedHashSet<String>();
+    private final File tempBase;
+    private final File outputDir;
+    private final boolean cleanTemp;
+    private final int threads;
+
+    /**
+     * Create new multi-transtype build.
+     *
+     * @param parent build configuration with a comma separated transtype list
+     * @param log stream to write build logs to
+     */
+    MultiTranstypeBuild(final Main parent, final PrintStream log) {
+        this.parent = parent;
+        this.log = log;
+        for (final String transtype: parent.getProperty("transtype").split(TRANSTYPE_SEPARATOR)) {
+            if (transtype.trim().length() > 0) {
+                transtypes.add(transtype.trim());
+            }
+        }
+        final File baseDir = parent.getBuildFile().getParentFile();
+        final String temp = parent.getProperty("dita.temp.dir");
+        if (temp != null) {
+            tempBase = resolve(temp);
+        } else {
+            final String baseTemp = parent.getProperty("base.temp.dir");
+            final String timestamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
+            tempBase = new File(baseTemp != null ? resolve(baseTemp) : new File(baseDir, "temp"), "temp" + timestamp);
+        }
+        final String output = parent.getProperty("output.dir");
+        outputDir = output != null ? resolve(output) : new File(baseDir, "out");
+        final String clean = parent.getProperty("clean.temp");
+        cleanTemp = clean == null || Project.toBoolean(clean);
+        final String threadsValue = parent.getProperty("args.threads");
+        if (threadsValue != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsValue.trim()));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("args.threads must be an integer: " + threadsValue);
+            }
+        } else {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    /**
+     * Test if transtype value lists several transtypes.
+     *
+     * @param transtype transtype property value, may be {@code null}
+     * @return {@code true} if value is a list of transtypes, otherwise {@code false}
+     */
+    static boolean isMultiTranstype(final String transtype) {
+        return transtype != null && transtype.contains(TRANSTYPE_SEPARATOR);
+    }
+
+    /**
+     * Get preprocessing profile for transtype. Transtypes with the same profile and init target
+     * properties produce identical preprocessing output.
+     *
+     * @param transtype transtype
+     * @return preprocessing profile name
+     */
+    static String getPreprocessProfile(final String transtype) {
+        if (Configuration.printTranstype.contains(transtype)) {
+            return PROFILE_PRINT;
+        } else if (INDEX_TYPE_ECLIPSEHELP.equals(transtype)) {
+            return transtype;
+        }
+        return PROFILE_DEFAULT;
+    }
+
+    /**
+     * Run preprocessing and transtype builds.
+     *
+     * @return {@code 0} if all builds succeeded, otherwise exit code of the first failed build
+     */
+    int run() {
+        if (transtypes.isEmpty()) {
+            log.println("No transtype given");
+            return 1;
+        }
+        final Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+        final Map<String, List<String>> initTargets = new HashMap<String, List<String>>();
+        Set<String> referenced = null;
+        for (final String transtype: transtypes) {
+            String key;
+            try {
+                final Project project = parent.fork(getBuildProperties(transtype), DEFAULT_TARGETS, log).loadProject();
+                if (referenced == null) {
+                    referenced = getReferencedProperties(project);
+                }
+                final Vector<Target> init = getInitTargets(project, transtype);
+                project.executeSortedTargets(init);
+                final List<String> names = new ArrayList<String>();
+                for (final Target target: init) {
+                    names.add(target.getName());
+                }
+                initTargets.put(transtype, names);
+                key = getPreprocessProfile(transtype) + " " + getProperties(project, referenced);
+            } catch (final BuildException e) {
+                // build alone to report the failure in transtype build log
+                key = transtype;
+            }
+            List<String> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<String>();
+                groups.put(key, group);
+            }
+            group.add(transtype);
+        }
+        log.println("Building " + transtypes + " with " + Math.min(threads, transtypes.size()) + " threads");
+
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, transtypes.size()));
+        final Map<String, Build> snapshots = new LinkedHashMap<String, Build>();
+        final Map<String, Build> builds = new HashMap<String, Build>();
+        int exitCode = 0;
+        try {
+            for (final Map.Entry<String, List<String>> group: groups.entrySet()) {
+                if (group.getValue().size() > 1) {
+                    final String transtype = group.getValue().get(0);
+                    final Map<String, String> props = new HashMap<String, String>();
+                    props.put("transtype", transtype);
+                    props.put("dita.temp.dir", getSnapshotDir(transtype).getAbsolutePath());
+                    props.put("output.dir", new File(outputDir, transtype).getAbsolutePath());
+                    props.put("preprocess.copy-files.skip", "true");
+                    props.put(MagicNames.ANT_EXECUTOR_CLASSNAME, SINGLE_CHECK_EXECUTOR);
+                    final List<String> targets = new ArrayList<String>(initTargets.get(transtype));
+                    targets.addAll(PREPROCESS_TARGETS);
+                    snapshots.put(group.getKey(), submit(pool, "Preprocessing " + group.getValue(), null, null, props, targets));
+                } else {
+                    final String transtype = group.getValue().get(0);
+                    builds.put(transtype, submit(pool, "Building " + transtype, null, null, getBuildProperties(transtype), DEFAULT_TARGETS));
+                }
+            }
+            for (final Map.Entry<String, Build> snapshot: snapshots.entrySet()) {
+                final int code = snapshot.getValue().finish();
+                final File snapshotDir = getSnapshotDir(groups.get(snapshot.getKey()).get(0));
+                for (final String transtype: groups.get(snapshot.getKey())) {
+                    if (code != 0) {
+                        log.println("Skipping " + transtype + " because preprocessing failed");
+                        continue;
+                    }
+                    final Map<String, String> props = getBuildProperties(transtype);
+                    props.put(PROPERTY_PREPROCESS_REUSE, "true");
+                    builds.put(transtype, submit(pool, "Building " + transtype, snapshotDir, new File(props.get("dita.temp.dir")), props, DEFAULT_TARGETS));
+                }
+                if (code != 0 && exitCode == 0) {
+                    exitCode = code;
+                }
+            }
+            for (final String transtype: transtypes) {
+                final Build build = builds.get(transtype);
+                if (build != null) {
+                    final int code = build.finish();
+                    if (code != 0 && exitCode == 0) {
+                        exitCode = code;
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.println("Build interrupted");
+            return 1;
+        } finally {
+            pool.shutdownNow();
+        }
+        if (cleanTemp) {
+            delete(tempBase);
+        }
+        return exitCode;
+    }
+
+    /**
+     * Get build properties for a transtype.
+     *
+     * @param transtype transtype
+     * @return modifiable build properties
+     */
+    private Map<String, String> getBuildProperties(final String transtype) {
+        final Map<String, String> props = new HashMap<String, String>();
+        props.put("transtype", transtype);
+        props.put("dita.temp.dir", new File(tempBase, transtype).getAbsolutePath());
+        props.put("output.dir", new File(outputDir, transtype).getAbsolutePath());
+        return props;
+    }
+
+    private File getSnapshotDir(final String transtype) {
+        return new File(tempBase, "preprocess-" + transtype);
+    }
+
+    /**
+     * Get transtype init targets. Init targets are the targets that the transtype target depends on and
+     * that run before preprocessing, excluding {@code build-init} and {@code preprocess} dependencies.
+     *
+     * @param project configured project
+     * @param transtype transtype
+     * @return init targets in execution order
+     * @throws BuildException if transtype target does not exist
+     */
+    private static Vector<Target> getInitTargets(final Project project, final String transtype) throws BuildException {
+        // matches transtarget in build.xml
+        final String transtarget = "pdf".equalsIgnoreCase(transtype) ? "pdf2" : transtype;
+        final Vector<Target> targets = project.topoSort("dita2" + transtarget, project.getTargets(), false);
+        final Vector<Target> common = project.topoSort(PREPROCESS_TARGETS.toArray(new String[PREPROCESS_TARGETS.size()]),
+                                                       project.getTargets(), false);
+        final Vector<Target> init = new Vector<Target>();
+        for (final Target target: targets) {
+            if (target.getName().equals("preprocess")) {
+                break;
+            }
+            if (!common.contains(target)) {
+                init.add(target);
+            }
+        }
+        return init;
+    }
+
+    /**
+     * Get names of properties referenced by {@code build-init} and {@code preprocess} targets and their
+     * dependencies.
+     *
+     * @param project configured project
+     * @return property names
+     */
+    private static Set<String> getReferencedProperties(final Project project) {
+        final Set<String> names = new HashSet<String>();
+        final Vector<Target> targets = project.topoSort(PREPROCESS_TARGETS.toArray(new String[PREPROCESS_TARGETS.size()]),
+                                                        project.getTargets(), false);
+        for (final Target target: targets) {
+            if (target.getIf() != null) {
+                names.add(target.getIf());
+            }
+            if (target.getUnless() != null) {
+                names.add(target.getUnless());
+            }
+            for (final Task task: target.getTasks()) {
+                addPropertyReferences(task.getRuntimeConfigurableWrapper(), names);
+            }
+        }
+        names.removeAll(BUILD_PROPERTIES);
+        return names;
+    }
+
+    private static void addPropertyReferences(final RuntimeConfigurable element, final Set<String> names) {
+        for (final Map.Entry<?, ?> attr: element.getAttributeMap().entrySet()) {
+            final String value = String.valueOf(attr.getValue());
+            if (PROPERTY_NAME_ATTRIBUTES.contains(attr.getKey())) {
+                names.add(value);
+            }
+            addPropertyReferences(value, names);
+        }
+        addPropertyReferences(element.getText().toString(), names);
+        for (final Enumeration<?> children = element.getChildren(); children.hasMoreElements();) {
+            addPropertyReferences((RuntimeConfigurable) children.nextElement(), names);
+        }
+    }
+
+    private static void addPropertyReferences(final String value, final Set<String> names) {
+        final Matcher m = PROPERTY_REFERENCE_PATTERN.matcher(value);
+        while (m.find()) {
+            names.add(m.group(1));
+        }
+    }
+
+    /**
+     * Get values of properties.
+     *
+     * @param project project
+     * @param names property names
+     * @return property values sorted by name, unset properties are omitted
+     */
+    private static Map<String, String> getProperties(final Project project, final Set<String> names) {
+        final Map<String, String> props = new TreeMap<String, String>();
+        for (final String name: names) {
+            final String value = project.getProperty(name);
+            if (value != null) {
+                props.put(name, value);
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Submit build to worker pool.
+     *
+     * @param pool worker pool
+     * @param name build name used in log
+     * @param snapshotDir preprocessed temporary directory to copy before build, {@code null} to not copy
+     * @param tempDir build temporary directory
+     * @param props build properties
+     * @param targets build targets, empty for default targets
+     * @return submitted build
+     */
+    private Build submit(final ExecutorService pool, final String name, final File snapshotDir, final File tempDir,
+            final Map<String, String> props, final List<String> targets) {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out;
+        try {
+            out = new PrintStream(buf, true, UTF8);
+        } catch (final UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        final Future<Integer> result = pool.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                if (snapshotDir != null) {
+                    copySnapshot(snapshotDir, tempDir);
+                }
+                return parent.fork(props, targets, out).runSharedBuild();
+            }
+        });
+        return new Build(name, buf, result);
+    }
+
+    /**
+     * Resolve file property value.
+     *
+     * @param value file path
+     * @return absolute file
+     */
+    private File resolve(final String value) {
+        final File file = new File(value);
+        return parent.getBaseDir() != null && !file.isAbsolute()
+               ? new File(parent.getBaseDir(), value)
+               : file.getAbsoluteFile();
+    }
+
+    /**
+     * Copy preprocessed temporary directory. Working directory processing instructions are rewritten to
+     * point to the copy, other content is copied as is. File modification times are retained.
+     *
+     * @param snapshotDir preprocessed temporary directory
+     * @param tempDir destination temporary directory
+     * @throws IOException if copying failed
+     */
+    private static void copySnapshot(final File snapshotDir, final File tempDir) throws IOException {
+        if (!tempDir.exists() && !tempDir.mkdirs()) {
+            throw new IOException("Failed to create directory " + tempDir.getAbsolutePath());
+        }
+        final String[][] replacements = {
+                { snapshotDir.getAbsoluteFile().toURI().toString(), tempDir.getAbsoluteFile().toURI().toString() },
+                { snapshotDir.getAbsoluteFile().toURI().toASCIIString(), tempDir.getAbsoluteFile().toURI().toASCIIString() },
+                { snapshotDir.getAbsolutePath(), tempDir.getAbsolutePath() }
+        };
+        copy(snapshotDir, tempDir, replacements);
+    }
+
+    private static void copy(final File src, final File dst, final String[][] replacements) throws IOException {
+        if (src.isDirectory()) {
+            if (!dst.exists() && !dst.mkdirs()) {
+                throw new IOException("Failed to create directory " + dst.getAbsolutePath());
+            }
+            for (final File child: src.listFiles()) {
+                copy(child, new File(dst, child.getName()), replacements);
+            }
+            return;
+        }
+        final byte[] content = read(src);
+        final String head = new String(content, 0, Math.min(content.length, HEAD_LENGTH), "ISO-8859-1");
+        if (!head.contains("<?" + PI_WORKDIR_TARGET)) {
+            FileUtils.getFileUtils().copyFile(src, dst, null, true, true);
+            return;
+        }
+        final Matcher m = WORKDIR_PI_PATTERN.matcher(new String(content, UTF8));
+        final StringBuffer buf = new StringBuffer(content.length);
+        while (m.find()) {
+            String pi = m.group();
+            for (final String[] replacement: replacements) {
+                if (pi.contains(replacement[0])) {
+                    pi = pi.replace(replacement[0], replacement[1]);
+                    break;
+                }
+            }
+            m.appendReplacement(buf, Matcher.quoteReplacement(pi));
+        }
+        m.appendTail(buf);
+        final OutputStream out = new FileOutputStream(dst);
+        try {
+            out.write(buf.toString().getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        dst.setLastModified(src.lastModified());
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream((int) file.length());
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] b = new byte[8192];
+            for (int i = in.read(b); i != -1; i = in.read(b)) {
+                buf.write(b, 0, i);
+            }
+        } finally {
+            in.close();
+        }
+        return buf.toByteArray();
+    }
+
+    /**
+     * Delete file or directory recursively.
+     *
+     * @param file file or directory to delete
+     */
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child: children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Submitted build with buffered log.
+     */
+    private final class Build {
+
+        private final String name;
+        private final ByteArrayOutputStream buf;
+        private final Future<Integer> result;
+
+        Build(final String name, final ByteArrayOutputStream buf, final Future<Integer> result) {
+            this.name = name;
+            this.buf = buf;
+            this.result = result;
+        }
+
+        /**
+         * Wait for build to finish and write build log.
+         *
+         * @return build exit code
+         * @throws InterruptedException if interrupted while waiting
+         */
+        int finish() throws InterruptedException {
+            int exitCode = 1;
+            String error = null;
+            try {
+                exitCode = result.get();
+            } catch (final ExecutionException e) {
+                error = e.getCause().getMessage();
+            }
+            log.println(name + ":");
+            try {
+                log.print(buf.toString(UTF8));
+            } catch (final UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+            if (error != null) {
+                log.println(error);
+            }
+            log.flush();
+            return exitCode;
+        }
+
+    }
+
+}
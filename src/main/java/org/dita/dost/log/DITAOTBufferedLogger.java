@@ -0,0 +1,117 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logger that buffers messages in memory. Used by worker threads so that messages
+ * can be written to the build logger in a deterministic order.
+ *
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class DITAOTBufferedLogger implements DITAOTLogger {
+
+    private enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private final List<Message> messages = new ArrayList<Message>();
+
+    /**
+     * Log information.
+     *
+     * @param msg message
+     */
+    @Override
+    public void logInfo(final String msg) {
+        messages.add(new Message(Level.INFO, msg, null));
+    }
+
+    /**
+     * Log warning message.
+     *
+     * @param msg message
+     */
+    @Override
+    public void logWarn(final String msg) {
+        messages.add(new Message(Level.WARN, msg, null));
+    }
+
+    /**
+     * Log error message.
+     *
+     * @param msg message
+     */
+    @Override
+    public void logError(final String msg) {
+        messages.add(new Message(Level.ERROR, msg, null));
+    }
+
+    /**
+     * Log error message.
+     *
+     * @param msg message
+     * @param t exception
+     */
+    @Override
+    public void logError(final String msg, final Throwable t) {
+        messages.add(new Message(Level.ERROR, msg, t));
+    }
+
+    /**
+     * Log debug message.
+     *
+     * @param msg message
+     */
+    @Override
+    public void logDebug(final String msg) {
+        messages.add(new Message(Level.DEBUG, msg, null));
+    }
+
+    /**
+     * Write buffered messages to another logger and clear the buffer.
+     *
+     * @param logger logger to write messages to
+     */
+    public void flush(final DITAOTLogger logger) {
+        for (final Message m: messages) {
+            switch (m.level) {
+            case DEBUG:
+                logger.logDebug(m.msg);
+                break;
+            case INFO:
+                logger.logInfo(m.msg);
+                break;
+            case WARN:
+                logger.logWarn(m.msg);
+                break;
+            case ERROR:
+                if (m.t != null) {
+                    logger.logError(m.msg, m.t);
+                } else {
+                    logger.logError(m.msg);
+                }
+                break;
+            }
+        }
+        messages.clear();
+    }
+
+    private static final class Message {
+        final Level level;
+        final String msg;
+        final Throwable t;
+        Message(final Level level, final String msg, final Throwable t) {
+            this.level = level;
+            this.msg = msg;
+            this.t = t;
+        }
+    }
+
+}
@@ -18,11 +18,14 @@ import java.io.PrintWriter;
 /**
  * Logger to a log file. Intended to be used only with {@link org.dita.dost.log.DITAOTBuildLogger}, not as a stand-alone logger.
  * 
+ * <p>Each build has its own logger. The logger is bound to the build thread and inherited by threads
+ * the build starts, and a new logger is opened after the logger has been closed.</p>
+ * 
  * @author Wu, Zhi Qiang
  * @see org.dita.dost.log.DITAOTBuildLogger
  */
 public final class DITAOTFileLogger implements DITAOTLogger {
-    private static DITAOTFileLogger logger;
+    private static final InheritableThreadLocal<DITAOTFileLogger> logger = new InheritableThreadLocal<DITAOTFileLogger>();
 
     private final File tmpLogFile;
 
@@ -42,15 +45,27 @@ public final class DITAOTFileLogger implements DITAOTLogger {
     }
 
     /**
-     * Get the DITAOTFileLogger instance. Singleton.
+     * Get the DITAOTFileLogger instance of the current build.
      * @return DITAOTFileLogger logger
      */
-    public static synchronized DITAOTFileLogger getInstance() {
-        if (logger == null) {
-            logger = new DITAOTFileLogger();
+    public static DITAOTFileLogger getInstance() {
+        DITAOTFileLogger l = logger.get();
+        if (l == null) {
+            l = new DITAOTFileLogger();
+            logger.set(l);
         }
 
-        return logger;
+        return l;
+    }
+
+    /**
+     * Detach the logger of the current thread, so that a new build run in
+     * the same thread opens its own logger. The detached logger is not closed.
+     * 
+     * @since 2.0
+     */
+    public static void reset() {
+        logger.remove();
     }
 
     /**
@@ -60,8 +75,8 @@ public final class DITAOTFileLogger implements DITAOTLogger {
     public void closeLogger() {
         final DITAOTJavaLogger javaLogger = new DITAOTJavaLogger();
 
-        if (logger == null) {
-            return;
+        if (logger.get() == this) {
+            logger.remove();
         }
 
         printWriter.close();
@@ -10,38 +10,42 @@ package org.dita.dost.module;
 
 import static org.dita.dost.util.Constants.*;
 import static org.dita.dost.util.FileUtils.*;
+import static org.dita.dost.util.URLUtils.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.ChunkMapReader;
 import org.dita.dost.util.Configuration;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
 import org.dita.dost.util.StringUtils;
 import org.dita.dost.writer.TopicRefWriter;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * The chunking module class.
  * 
+ * <p>The job configuration is read once and shared with chunk writers. Only files that refer to
+ * chunked files are rewritten when references are updated.</p>
  */
 final public class ChunkModule implements AbstractPipelineModule {
 
@@ -95,16 +99,13 @@ final public class ChunkModule implements AbstractPipelineModule {
         } catch (final IOException ioe) {
             throw new DITAOTException(ioe);
         }
+        mapReader.setJob(job);
         try {
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
             final String mapFile = new File(tempDir, job.getProperty(INPUT_DITAMAP)).getAbsolutePath();
-            final Document doc = builder.parse(new File(mapFile));
-            final Element root = doc.getDocumentElement();
-            if (root.getAttribute(ATTRIBUTE_NAME_CLASS).contains(" eclipsemap/plugin ")
+            if (getRootClass(new File(mapFile)).contains(" eclipsemap/plugin ")
                     && transtype.equals(INDEX_TYPE_ECLIPSEHELP)) {
                 for (final FileInfo f : job.getFileInfo()) {
-                    if (f.isActive && ATTR_FORMAT_VALUE_DITAMAP.equals(f.format)) {
+                    if (f.isActive() && ATTR_FORMAT_VALUE_DITAMAP.equals(f.getFormat())) {
                         mapReader.read(new File(tempDir, f.file.getPath()).getAbsoluteFile());
                     }
                 }
@@ -118,83 +119,163 @@ final public class ChunkModule implements AbstractPipelineModule {
         final Map<String, String> changeTable = mapReader.getChangeTable();
         if (changeTable != null) {
             // update dita.list to include new generated files
-            updateList(changeTable, mapReader.getConflicTable(), input);
+            updateList(job, tempDir, changeTable, mapReader.getConflicTable());
             // update references in dita files
-            updateRefOfDita(changeTable, mapReader.getConflicTable(), input);
+            updateRefOfDita(job, tempDir, changeTable, mapReader.getConflicTable());
+        }
+
+        try {
+            job.write();
+        } catch (final IOException ex) {
+            logger.logError(ex.getMessage(), ex);
         }
 
         return null;
     }
 
+    /**
+     * Read class attribute of the document element. Parsing stops after the document element start tag.
+     * 
+     * @param file XML file
+     * @return class attribute value, empty string if not set
+     */
+    private String getRootClass(final File file) throws Exception {
+        final String[] clazz = { "" };
+        final XMLReader parser = StringUtils.getXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                    final Attributes atts) throws SAXException {
+                final String value = atts.getValue(ATTRIBUTE_NAME_CLASS);
+                if (value != null) {
+                    clazz[0] = value;
+                }
+                throw new StopParsingException();
+            }
+        });
+        try {
+            parser.parse(file.toURI().toString());
+        } catch (final StopParsingException e) {
+            // document element read
+        }
+        return clazz[0];
+    }
+
     // update the href in ditamap and topic files
-    private void updateRefOfDita(final Map<String, String> changeTable, final Hashtable<String, String> conflictTable,
-            final AbstractPipelineInput input) {
-        final File tempDir = new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR));
-        if (!tempDir.isAbsolute()) {
-            throw new IllegalArgumentException("Temporary directory " + tempDir + " must be absolute");
+    private void updateRefOfDita(final Job job, final File tempDir, final Map<String, String> changeTable,
+            final Hashtable<String, String> conflictTable) {
+        // files that references may point to
+        final Set<File> changed = new HashSet<File>(changeTable.size() * 2);
+        for (final String key : changeTable.keySet()) {
+            // keys are system paths with an optional fragment
+            final int i = key.indexOf(SHARP);
+            changed.add(new File(i != -1 ? key.substring(0, i) : key));
         }
-        Job job = null;
-        try {
-            job = new Job(tempDir);
-        } catch (final IOException io) {
-            logger.logError(io.getMessage());
+        if (changed.isEmpty()) {
+            return;
         }
         final TopicRefWriter topicRefWriter = new TopicRefWriter();
         topicRefWriter.setLogger(logger);
         topicRefWriter.setChangeTable(changeTable);
         topicRefWriter.setup(conflictTable);
+        final DocumentStore store = job.getStore();
         try {
+            final XMLReader parser = StringUtils.getXMLReader();
+            final XMLReader reader = store != null ? store.getXMLReader(parser) : parser;
             for (final FileInfo f : job.getFileInfo()) {
-                if (f.isActive
-                        && (ATTR_FORMAT_VALUE_DITA.equals(f.format) || ATTR_FORMAT_VALUE_DITAMAP.equals(f.format))) {
-                    topicRefWriter.write(tempDir.getAbsoluteFile(), new File(f.file.getPath()), relativePath2fix);
+                if (f.isActive()
+                        && (ATTR_FORMAT_VALUE_DITA.equals(f.getFormat()) || ATTR_FORMAT_VALUE_DITAMAP.equals(f.getFormat()))) {
+                    final File file = new File(tempDir, f.file.getPath()).getAbsoluteFile();
+                    if (refersTo(reader, file, changed)) {
+                        topicRefWriter.write(tempDir.getAbsoluteFile(), new File(f.file.getPath()), relativePath2fix);
+                    }
                 }
             }
+        } catch (final SAXException ex) {
+            logger.logError(ex.getMessage(), ex);
         } catch (final DITAOTException ex) {
             logger.logError(ex.getMessage(), ex);
         }
 
     }
 
-    private void updateList(final Map<String, String> changeTable, final Hashtable<String, String> conflictTable,
-            final AbstractPipelineInput input) {
-        final File tempDir = new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR));
-        if (!tempDir.isAbsolute()) {
-            throw new IllegalArgumentException("Temporary directory " + tempDir + " must be absolute");
+    /**
+     * Test if a file has a reference to any of the given files. Parsing stops at the first matching reference.
+     * 
+     * @param reader XML reader
+     * @param file absolute file to scan
+     * @param targets absolute target files
+     * @return {@code true} if file refers to a target file or cannot be read, otherwise {@code false}
+     */
+    private boolean refersTo(final XMLReader reader, final File file, final Set<File> targets) {
+        if (!file.exists()) {
+            // let writer report missing file
+            return true;
         }
-        final File xmlDitalist = new File(tempDir, "dummy.xml");
-        Job job = null;
+        final URI dir = file.getParentFile().toURI();
+        final boolean[] found = { false };
+        reader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                    final Attributes atts) throws SAXException {
+                final String href = atts.getValue(ATTRIBUTE_NAME_HREF);
+                if (href == null || href.contains(COLON_DOUBLE_SLASH)) {
+                    return;
+                }
+                URI ref;
+                try {
+                    ref = toURI(href);
+                } catch (final IllegalArgumentException e) {
+                    ref = null;
+                }
+                if (ref == null || ref.getPath() != null && targets.contains(toFile(dir.resolve(ref)))) {
+                    found[0] = true;
+                    throw new StopParsingException();
+                }
+            }
+        });
         try {
-            job = new Job(tempDir);
-        } catch (final IOException ex) {
-            logger.logError(ex.getMessage(), ex);
+            reader.parse(file.toURI().toString());
+        } catch (final StopParsingException e) {
+            // reference found
+        } catch (final SAXException e) {
+            logger.logDebug("Failed to scan " + file.getAbsolutePath() + " for references, rewriting it: " + e.getMessage());
+            return true;
+        } catch (final IOException e) {
+            logger.logDebug("Failed to read " + file.getAbsolutePath() + " for references, rewriting it: " + e.getMessage());
+            return true;
         }
+        return found[0];
+    }
 
-        final Set<String> hrefTopics = new HashSet<String>();
-        for (final FileInfo f : job.getFileInfo()) {
-            if (f.isNonConrefTarget) {
-                hrefTopics.add(f.file.getPath());
-            }
-        }
+    private void updateList(final Job job, final File tempDir, final Map<String, String> changeTable,
+            final Hashtable<String, String> conflictTable) {
+        final File xmlDitalist = new File(tempDir, "dummy.xml");
+
+        final Set<String> chunkedFiles = new HashSet<String>();
+        final Set<String> skipChunkTopics = new HashSet<String>();
         for (final FileInfo f : job.getFileInfo()) {
-            if (f.isSkipChunk) {
+            if (f.isSkipChunk()) {
                 final String s = f.file.getPath();
                 if (!StringUtils.isEmptyString(s) && getFragment(s) == null) {
                     // This entry does not have an anchor, we assume that this
                     // topic will
                     // be fully chunked. Thus it should not produce any output.
-                    final Iterator<String> hrefit = hrefTopics.iterator();
-                    while (hrefit.hasNext()) {
-                        final String ent = hrefit.next();
-                        if (resolveFile(tempDir.getAbsolutePath(), ent).getPath().equals(
-                                resolveFile(tempDir.getAbsolutePath(), s).getPath())) {
-                            // The entry in hrefTopics points to the same target
-                            // as entry in chunkTopics, it should be removed.
-                            hrefit.remove();
-                        }
-                    }
-                } else if (!StringUtils.isEmptyString(s) && hrefTopics.contains(s)) {
-                    hrefTopics.remove(s);
+                    chunkedFiles.add(normalizeDirectory(tempDir.getAbsoluteFile(), f.file).getPath());
+                } else if (!StringUtils.isEmptyString(s)) {
+                    skipChunkTopics.add(s);
+                }
+            }
+        }
+        final Set<String> hrefTopics = new HashSet<String>();
+        for (final FileInfo f : job.getFileInfo()) {
+            if (f.isNonConrefTarget()) {
+                final String ent = f.file.getPath();
+                // Entries in hrefTopics that point to the same target as
+                // entries in chunkTopics are not included.
+                if (!skipChunkTopics.contains(ent)
+                        && !chunkedFiles.contains(normalizeDirectory(tempDir.getAbsoluteFile(), f.file).getPath())) {
+                    hrefTopics.add(ent);
                 }
             }
         }
@@ -202,13 +283,12 @@ final public class ChunkModule implements AbstractPipelineModule {
         final Set<String> topicList = new LinkedHashSet<String>(INT_128);
         final Set<String> oldTopicList = new HashSet<String>();
         for (final FileInfo f : job.getFileInfo()) {
-            if (f.isActive && ATTR_FORMAT_VALUE_DITA.equals(f.format)) {
+            if (f.isActive() && ATTR_FORMAT_VALUE_DITA.equals(f.getFormat())) {
                 oldTopicList.add(f.file.getPath());
             }
         }
         for (String t : hrefTopics) {
-            t = stripFragment(t);
-            t = getRelativePath(xmlDitalist.getAbsolutePath(), resolveFile(tempDir.getAbsolutePath(), t).getPath(), File.separator);
+            t = getRelativePath(xmlDitalist.getAbsolutePath(), normalizeDirectory(tempDir.getAbsoluteFile(), new File(t)).getPath(), File.separator);
             topicList.add(t);
             if (oldTopicList.contains(t)) {
                 oldTopicList.remove(t);
@@ -219,7 +299,7 @@ final public class ChunkModule implements AbstractPipelineModule {
         final Set<String> chunkedDitamapSet = new LinkedHashSet<String>(INT_128);
         final Set<String> ditamapList = new HashSet<String>();
         for (final FileInfo f : job.getFileInfo()) {
-            if (f.isActive && ATTR_FORMAT_VALUE_DITAMAP.equals(f.format)) {
+            if (f.isActive() && ATTR_FORMAT_VALUE_DITAMAP.equals(f.getFormat())) {
                 ditamapList.add(f.file.getPath());
             }
         }
@@ -285,6 +365,8 @@ final public class ChunkModule implements AbstractPipelineModule {
                         target.delete();
                         // ensure the newly chunked file to the old one
                         from.renameTo(target);
+                        DocumentStore.invalidate(target);
+                        IdIndex.getInstance().remove(target);
                         if (topicList.contains(relativePath)) {
                             topicList.remove(relativePath);
                         }
@@ -302,39 +384,42 @@ final public class ChunkModule implements AbstractPipelineModule {
         }
 
         for (final FileInfo f : job.getFileInfo()) {
-            if (ATTR_FORMAT_VALUE_DITA.equals(f.format) || ATTR_FORMAT_VALUE_DITAMAP.equals(f.format)) {
-                f.isActive = false;
+            if (ATTR_FORMAT_VALUE_DITA.equals(f.getFormat()) || ATTR_FORMAT_VALUE_DITAMAP.equals(f.getFormat())) {
+                f.setActive(false);
             }
         }
         for (final String file : topicList) {
             final FileInfo ff = job.getOrCreateFileInfo(file);
-            ff.format = ATTR_FORMAT_VALUE_DITA;
-            ff.isActive = true;
+            ff.setFormat(ATTR_FORMAT_VALUE_DITA);
+            ff.setActive(true);
         }
         for (final String file : ditamapList) {
             final FileInfo ff = job.getOrCreateFileInfo(file);
-            ff.format = ATTR_FORMAT_VALUE_DITAMAP;
-            ff.isActive = true;
+            ff.setFormat(ATTR_FORMAT_VALUE_DITAMAP);
+            ff.setActive(true);
         }
 
         for (final String file : chunkedDitamapSet) {
             final FileInfo f = job.getOrCreateFileInfo(file);
-            f.format = ATTR_FORMAT_VALUE_DITAMAP;
-            f.isResourceOnly = false;
-            f.isActive = true;
+            f.setFormat(ATTR_FORMAT_VALUE_DITAMAP);
+            f.setResourceOnly(false);
+            f.setActive(true);
         }
         for (final String file : chunkedTopicSet) {
             final FileInfo f = job.getOrCreateFileInfo(file);
-            f.format = ATTR_FORMAT_VALUE_DITA;
-            f.isResourceOnly = false;
-            f.isActive = true;
+            f.setFormat(ATTR_FORMAT_VALUE_DITA);
+            f.setResourceOnly(false);
+            f.setActive(true);
         }
+    }
+
+    /**
+     * Exception to stop parsing when the required information has been read.
+     */
+    private static final class StopParsingException extends SAXException {
+
+        private static final long serialVersionUID = 1L;
 
-        try {
-            job.write();
-        } catch (final IOException ex) {
-            logger.logError(ex.getMessage(), ex);
-        }
     }
 
     /**
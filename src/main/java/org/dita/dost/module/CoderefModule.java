@@ -20,6 +20,8 @@ import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
 import org.dita.dost.writer.CoderefResolver;
 /**
  * Coderef Module class.
@@ -67,11 +69,9 @@ final class CoderefModule implements AbstractPipelineModule {
 
         final CoderefResolver writer = new CoderefResolver();
         writer.setLogger(logger);
-        for (final FileInfo f: job.getFileInfo()) {
-            if (f.hasCoderef) {
-                //FIXME:This writer deletes and renames files, have to
-                writer.write(new File(tempDir, f.file.getPath()).getAbsoluteFile());
-            }
+        for (final FileInfo f: job.getFileInfo(new Query().all(Flag.HAS_CODEREF).none(Flag.IS_UNCHANGED))) {
+            //FIXME:This writer deletes and renames files, have to
+            writer.write(new File(tempDir, f.file.getPath()).getAbsoluteFile());
         }
 
         return null;
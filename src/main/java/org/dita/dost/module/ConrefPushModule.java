@@ -10,28 +10,46 @@ package org.dita.dost.module;
 
 import static org.dita.dost.util.Constants.*;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.log.DITAOTBufferedLogger;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.ConrefPushReader;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
+import org.dita.dost.util.SAXEventBuffer;
 import org.dita.dost.writer.ConrefPushParser;
 /**
  * Conref push module.
- * 
  *
+ * <p>Pushed content is read serially from all conref push sources. Target files are independent and
+ * are written with worker threads if parameter {@code threads} is greater than one. The conref list is
+ * updated once after all targets have been written.</p>
  */
 final class ConrefPushModule implements AbstractPipelineModule {
 
     private DITAOTLogger logger;
+    /** Number of worker threads, {@code 1} for serial processing */
+    private int threads = 1;
 
     @Override
     public void setLogger(final DITAOTLogger logger) {
@@ -49,46 +67,166 @@ final class ConrefPushModule implements AbstractPipelineModule {
         if (logger == null) {
             throw new IllegalStateException("Logger not set");
         }
-        
+
         final File tempDir = new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR));
         if (!tempDir.isAbsolute()) {
             throw new IllegalArgumentException("Temporary directory " + tempDir + " must be absolute");
         }
-        
+        final String threadsValue = input.getAttribute(ANT_INVOKER_EXT_PARAM_THREADS);
+        if (threadsValue != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsValue.trim()));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(ANT_INVOKER_EXT_PARAM_THREADS + " must be an integer: " + threadsValue);
+            }
+        }
+
         Job job = null;
         try{
             job = new Job(tempDir);
         }catch(final IOException e){
-            logger.logError(e.getMessage(), e) ;
+            throw new DITAOTException(e);
         }
 
         final ConrefPushReader reader = new ConrefPushReader();
         reader.setLogger(logger);
-        for(final FileInfo f: job.getFileInfo()) {
-            if (f.isConrefPush) {
-                final File file = new File(tempDir, f.file.getPath());
-                logger.logInfo("Reading  " + file.getAbsolutePath());
-                //FIXME: this reader calculate parent directory
-                reader.read(file.getAbsoluteFile());
-            }
+        for(final FileInfo f: job.getFileInfo(new Query().all(Flag.IS_CONREF_PUSH))) {
+            final File file = new File(tempDir, f.file.getPath());
+            logger.logInfo("Reading  " + file.getAbsolutePath());
+            //FIXME: this reader calculate parent directory
+            reader.read(file.getAbsoluteFile());
         }
 
-        final Map<String, Hashtable<String, String>> pushSet = reader.getPushMap();
-        
-        for (final Map.Entry<String, Hashtable<String,String>> entry: pushSet.entrySet()) {
-            logger.logInfo("Processing " + new File(tempDir, entry.getKey()).getAbsolutePath());
-            final ConrefPushParser parser = new ConrefPushParser();
-            parser.setLogger(logger);
-            final Content content = new ContentImpl();
-            content.setValue(entry.getValue());
-            parser.setContent(content);
-            //pass the tempdir to ConrefPushParser
-            parser.setTempDir(tempDir.getAbsoluteFile());
-            //FIXME:This writer creates and renames files, have to
-            parser.write(new File(entry.getKey()));
+        final List<Map.Entry<String, Hashtable<String, SAXEventBuffer>>> targets = new ArrayList<Map.Entry<String, Hashtable<String, SAXEventBuffer>>>();
+        for (final Map.Entry<String, Hashtable<String, SAXEventBuffer>> entry: reader.getPushMap().entrySet()) {
+            if (!job.isUnchanged(new File(entry.getKey()))) {
+                targets.add(entry);
+            }
+        }
+        final List<File> conrefs = new ArrayList<File>();
+        if (threads > 1 && targets.size() > 1) {
+            pushParallel(targets, conrefs);
+        } else {
+            for (final Map.Entry<String, Hashtable<String, SAXEventBuffer>> entry: targets) {
+                final File file = push(entry.getKey(), entry.getValue(), logger);
+                if (file != null) {
+                    conrefs.add(file);
+                }
+            }
+        }
+        if (!conrefs.isEmpty()) {
+            updateList(job, tempDir, conrefs);
         }
 
         return null;
     }
 
+    /**
+     * Write pushed content to target files with worker threads. Log messages are written in target order.
+     *
+     * @param targets target files and pushed content
+     * @param conrefs list to add targets that need conref resolution to
+     */
+    private void pushParallel(final List<Map.Entry<String, Hashtable<String, SAXEventBuffer>>> targets,
+            final List<File> conrefs) throws DITAOTException {
+        logger.logInfo("Resolving conref push with " + threads + " threads");
+        final int workers = Math.min(threads, targets.size());
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        final List<Future<File>> results = new ArrayList<Future<File>>(targets.size());
+        final List<DITAOTBufferedLogger> logs = new ArrayList<DITAOTBufferedLogger>(targets.size());
+        try {
+            for (final Map.Entry<String, Hashtable<String, SAXEventBuffer>> entry: targets) {
+                final DITAOTBufferedLogger log = new DITAOTBufferedLogger();
+                logs.add(log);
+                results.add(pool.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws DITAOTException {
+                        return push(entry.getKey(), entry.getValue(), log);
+                    }
+                }));
+            }
+            DITAOTException failure = null;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    final File file = results.get(i).get();
+                    if (file != null) {
+                        conrefs.add(file);
+                    }
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof DITAOTException
+                                  ? (DITAOTException) e.getCause()
+                                  : new DITAOTException("Failed to resolve conref push: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+                logs.get(i).flush(logger);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DITAOTException("Conref push resolution interrupted: " + e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Write pushed content to a single target file.
+     *
+     * @param target absolute target file path
+     * @param content pushed content
+     * @param logger logger
+     * @return target file if pushed content contains conref attributes, otherwise {@code null}
+     */
+    private File push(final String target, final Hashtable<String, SAXEventBuffer> content,
+            final DITAOTLogger logger) throws DITAOTException {
+        final File file = new File(target);
+        logger.logInfo("Processing " + file.getAbsolutePath());
+        final ConrefPushParser parser = new ConrefPushParser();
+        parser.setLogger(logger);
+        final Content c = new ContentImpl();
+        c.setValue(content);
+        parser.setContent(c);
+        //FIXME:This writer creates and renames files, have to
+        parser.write(file);
+        return parser.hasConref() ? file : null;
+    }
+
+    /**
+     * Update conref list in job configuration and in conref list file.
+     *
+     * @param job job configuration
+     * @param tempDir temporary directory
+     * @param files files that contain pushed conref attributes
+     */
+    private void updateList(final Job job, final File tempDir, final List<File> files) throws DITAOTException {
+        final URI base = tempDir.getAbsoluteFile().toURI().normalize();
+        for (final File file: files) {
+            // get the relative path from tempDir
+            job.getOrCreateFileInfo(base.relativize(file.getAbsoluteFile().toURI().normalize())).setHasConref(true);
+        }
+        BufferedWriter bufferedWriter = null;
+        try {
+            job.write();
+            bufferedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(tempDir, Job.CONREF_LIST_FILE))));
+            for (final FileInfo f: job.getFileInfo()) {
+                if (f.hasConref()) {
+                    bufferedWriter.append(f.file.getPath()).append("\n");
+                }
+            }
+        } catch (final IOException e) {
+            throw new DITAOTException("Failed to update conref list: " + e.getMessage(), e);
+        } finally {
+            if (bufferedWriter != null) {
+                try {
+                    bufferedWriter.close();
+                } catch (final IOException e) {
+                    logger.logError(e.getMessage(), e) ;
+                }
+            }
+        }
+    }
+
 }
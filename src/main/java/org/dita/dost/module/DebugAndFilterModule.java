@@ -168,7 +168,9 @@ final class DebugAndFilterModule implements AbstractPipelineModule {
             if (filterUtils != null) {
             	fileWriter.setFilterUtils(filterUtils);
             }
-            fileWriter.setDelayConrefUtils(new DelayConrefUtils());
+            final DelayConrefUtils delayConrefUtils = new DelayConrefUtils();
+            delayConrefUtils.setLogger(logger);
+            fileWriter.setDelayConrefUtils(delayConrefUtils);
             fileWriter.setKeyDefinitions(KeyDef.readKeydef(new File(tempDir, KEYDEF_LIST_FILE)));
            
             outputUtils.setGeneratecopyouter(input.getAttribute(ANT_INVOKER_EXT_PARAM_GENERATECOPYOUTTER));
@@ -181,10 +183,14 @@ final class DebugAndFilterModule implements AbstractPipelineModule {
             final Map<String, Set<String>> dic = readMapFromXML(FILE_NAME_SUBJECT_DICTIONARY);
 
             for (final FileInfo f: job.getFileInfo()) {
-                if ((f.isActive && ("dita".equals(f.format) || "ditamap".equals(f.format)))
-                        || f.isConrefTarget || f.isCopyToSource) {
+                if ((f.isActive() && ("dita".equals(f.getFormat()) || "ditamap".equals(f.getFormat())))
+                        || f.isConrefTarget() || f.isCopyToSource()) {
                     final String filename = f.file.getPath();
                     final File currentFile = new File(inputDir, filename);
+                    if (f.isUnchanged()) {
+                        logger.logInfo("Skipping unchanged " + currentFile.getAbsolutePath());
+                        continue;
+                    }
                     logger.logInfo("Processing " + currentFile.getAbsolutePath());
     
                     final Set<String> schemaSet = dic.get(filename);
@@ -482,6 +488,10 @@ final class DebugAndFilterModule implements AbstractPipelineModule {
         for (final Map.Entry<File, File> entry: copytoMap.entrySet()) {
             final File copytoTarget = entry.getKey();
             final File copytoSource = entry.getValue();
+            final FileInfo fi = job.getFileInfo(copytoTarget);
+            if (fi != null && fi.isUnchanged()) {
+                continue;
+            }
             final File srcFile = new File(tempDir, copytoSource.getPath());
             final File targetFile = new File(tempDir, copytoTarget.getPath());
 
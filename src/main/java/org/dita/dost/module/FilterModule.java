@@ -59,7 +59,7 @@ final class FilterModule implements AbstractPipelineModule {
         writer.setFilterUtils(filterUtils);
         writer.setTranstype(input.getAttribute(ANT_INVOKER_EXT_PARAM_TRANSTYPE));
         for (final FileInfo f: files) {
-            if (ATTR_FORMAT_VALUE_DITA.equals(f.format) || ATTR_FORMAT_VALUE_DITAMAP.equals(f.format)) {
+            if (ATTR_FORMAT_VALUE_DITA.equals(f.getFormat()) || ATTR_FORMAT_VALUE_DITAMAP.equals(f.getFormat())) {
                 final File file = new File(tempDir, f.file.getPath());
                 logger.logInfo("Processing " + file.getAbsolutePath());
                 try {
@@ -32,7 +32,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -45,6 +50,7 @@ import javax.xml.transform.stream.StreamResult;
 import org.apache.xerces.xni.grammars.XMLGrammarPool;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.exception.DITAOTXMLErrorHandler;
+import org.dita.dost.log.DITAOTBufferedLogger;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.pipeline.AbstractPipelineInput;
@@ -53,8 +59,12 @@ import org.dita.dost.reader.DitaValReader;
 import org.dita.dost.reader.GrammarPoolManager;
 import org.dita.dost.util.CatalogUtils;
 import org.dita.dost.util.Configuration;
+import org.dita.dost.util.DocumentStore;
 import org.dita.dost.util.FileUtils;
 import org.dita.dost.util.FilterUtils;
+import org.dita.dost.util.FilterUtils.Action;
+import org.dita.dost.util.FilterUtils.FilterKey;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
 import org.dita.dost.util.Job.FileInfo.Builder;
@@ -120,6 +130,10 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
     private final Set<File> outDitaFilesSet = new HashSet<File>();
     /** Set of files with "@processing-role=resource-only" */
     private final Set<File> resourceOnlySet = new HashSet<File>();
+    /** Set of all "@processing-role=resource-only" references */
+    private final Set<File> resourceOnlyReferences = new HashSet<File>();
+    /** Set of all "@processing-role=normal" references */
+    private final Set<File> normalProcessingReferences = new HashSet<File>();
     /** Map of all key definitions */
     private final Map<String, KeyDef> keysDefMap = new HashMap<String, KeyDef>();
     /** Absolute basedir for processing */
@@ -146,12 +160,20 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
     private String transtype;
     /** use grammar pool cache */
     private boolean gramcache = true;
+    /** Persistent grammar cache directory, {@code null} if not used. */
+    private File gramcacheDir;
     /** Generate {@code xtrf} and {@code xtrc} attributes */
     private final boolean genDebugInfo = Boolean.parseBoolean(Configuration.configuration.get("generate-debug-attributes"));
     //private boolean setSystemid = true;
     private FilterUtils filterUtils = new FilterUtils();
-    /** XMLReader instance for parsing dita file */
-    private XMLReader reader;
+    /** Filter map read from ditaval */
+    private Map<FilterKey, Action> filterMap;
+    /** Number of worker threads, {@code 1} for serial processing */
+    private int threads = 1;
+    /** Document store for temporary files, {@code null} if not used */
+    private DocumentStore store;
+    /** Job configuration file format. */
+    private String jobFormat = JOB_FORMAT_XML;
     /** Result job configuration. */
     private Job prop = null;
 
@@ -228,7 +250,9 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
             if (filterUtils != null) {
                 fileWriter.setFilterUtils(filterUtils);
             }
-            fileWriter.setDelayConrefUtils(new DelayConrefUtils());
+            final DelayConrefUtils delayConrefUtils = new DelayConrefUtils();
+            delayConrefUtils.setLogger(logger);
+            fileWriter.setDelayConrefUtils(delayConrefUtils);
             fileWriter.setKeyDefinitions(GenMapAndTopicListModule.readKeydef(new File(tempDir, KEYDEF_LIST_FILE)));
 
             outputUtils.setGeneratecopyouter(input.getAttribute(ANT_INVOKER_EXT_PARAM_GENERATECOPYOUTTER));
@@ -286,33 +310,54 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
      * Initialize reusable filters.
      */
     private void initFilters() {
-        filterUtils = new FilterUtils(printTranstype.contains(transtype));
-        filterUtils.setLogger(logger);
         if (ditavalFile != null) {
             final DitaValReader ditaValReader = new DitaValReader();
             ditaValReader.setLogger(logger);
             ditaValReader.initXMLReader(true/*setSystemid*/);
             ditaValReader.read(ditavalFile.getAbsoluteFile());
             // Store filter map for later use
-            filterUtils.setFilterMap(ditaValReader.getFilterMap());
+            filterMap = ditaValReader.getFilterMap();
             // Store flagging image used for image copying
             flagImageSet.addAll(ditaValReader.getImageList());
             relFlagImagesSet.addAll(ditaValReader.getRelFlagImageList());
         } else {
-            filterUtils.setFilterMap(Collections.EMPTY_MAP);
+            filterMap = Collections.EMPTY_MAP;
         }
+        filterUtils = createFilterUtils();
         
-        listFilter = new GenListModuleFilter();
-        listFilter.setLogger(logger);
-        listFilter.setInputFile(rootFile);
-        listFilter.setInputDir(baseInputDir);//rootFile.getParentFile()
-        listFilter.setOutputUtils(outputUtils);
-        listFilter.setTempDir(tempDir);
-        listFilter.isStartDocument(true);
+        listFilter = createListFilter();
+    }
+
+    /**
+     * Create filter utilities for profiling. Filter utilities collect state during filtering, thus
+     * every parser needs its own instance.
+     * 
+     * @return new filter utilities
+     */
+    private FilterUtils createFilterUtils() {
+        final FilterUtils fu = new FilterUtils(printTranstype.contains(transtype));
+        fu.setLogger(logger);
+        fu.setFilterMap(filterMap);
+        return fu;
+    }
+    
+    /**
+     * Create list filter.
+     * 
+     * @return new list filter
+     */
+    private GenListModuleFilter createListFilter() {
+        final GenListModuleFilter f = new GenListModuleFilter();
+        f.setLogger(logger);
+        f.setInputFile(rootFile);
+        f.setInputDir(baseInputDir);//rootFile.getParentFile()
+        f.setOutputUtils(outputUtils);
+        f.setTempDir(tempDir);
+        return f;
     }
     
     /**
-     * Init xml reader used for pipeline parsing.
+     * Init xml reader configuration used for pipeline parsing.
      * 
      * @param ditaDir absolute path to DITA-OT directory
      * @param validate whether validate input file
@@ -321,35 +366,49 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
      * @throws IOException if getting canonical file path fails
      */
     private void initXMLReader(final File ditaDir, final boolean validate, final URI rootFile) throws SAXException, IOException {
-        reader = StringUtils.getXMLReader();
+        if (validate == false) {
+            final String msg = MessageUtils.getInstance().getMessage("DOTJ037W").toString();
+            logger.logWarn(msg);
+        }
+        if (gramcache) {
+            GrammarPoolManager.setGramCache(gramcache);
+            GrammarPoolManager.setCacheDir(gramcacheDir);
+            logger.logInfo("Using Xerces grammar pool for DTD and schema caching.");
+        }
+        CatalogUtils.setDitaDir(ditaDir);
+    }
+    
+    /**
+     * Create XML reader used for pipeline parsing. Grammar pool is thread local, thus the reader must be
+     * created in the thread that uses it.
+     * 
+     * @return new XML reader
+     * @throws SAXException parsing exception
+     */
+    private XMLReader createXMLReader() throws SAXException {
+        final XMLReader reader = StringUtils.getXMLReader();
         // to check whether the current parsing file's href value is out of inputmap.dir
         reader.setFeature(FEATURE_NAMESPACE_PREFIX, true);
-        if (validate == true) {
+        if (xmlValidate == true) {
             reader.setFeature(FEATURE_VALIDATION, true);
             try {
                 reader.setFeature(FEATURE_VALIDATION_SCHEMA, true);
             } catch (final SAXNotRecognizedException e) {
                 // Not Xerces, ignore exception
             }
-        } else {
-            final String msg = MessageUtils.getInstance().getMessage("DOTJ037W").toString();
-            logger.logWarn(msg);
         }
         // set grammar pool flag
         if (gramcache) {
-            GrammarPoolManager.setGramCache(gramcache);
             final XMLGrammarPool grammarPool = GrammarPoolManager.getGrammarPool();
             try {
                 reader.setProperty("http://apache.org/xml/properties/internal/grammar-pool", grammarPool);
-                logger.logInfo("Using Xerces grammar pool for DTD and schema caching.");
             } catch (final Exception e) {
                 logger.logWarn("Failed to set Xerces grammar pool for parser: " + e.getMessage());
             }
         }
-        CatalogUtils.setDitaDir(ditaDir);
         reader.setEntityResolver(CatalogUtils.getCatalogResolver());
+        return reader;
     }
-    
     private void parseInputParameters(final AbstractPipelineInput input) throws IOException, URISyntaxException {
         tempDir = new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR));
         if (!tempDir.isAbsolute()) {
@@ -374,6 +433,30 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
         transtype = input.getAttribute(ANT_INVOKER_EXT_PARAM_TRANSTYPE);
 
         gramcache = "yes".equalsIgnoreCase(input.getAttribute(ANT_INVOKER_EXT_PARAM_GRAMCACHE));
+        if (input.getAttribute(ANT_INVOKER_EXT_PARAM_GRAMCACHE_DIR) != null) {
+            gramcacheDir = new File(input.getAttribute(ANT_INVOKER_EXT_PARAM_GRAMCACHE_DIR));
+        }
+        final String threadsValue = input.getAttribute(ANT_INVOKER_EXT_PARAM_THREADS);
+        if (threadsValue != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsValue.trim()));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(ANT_INVOKER_EXT_PARAM_THREADS + " must be an integer: " + threadsValue);
+            }
+        }
+        if (input.getAttribute(ANT_INVOKER_EXT_PARAM_JOB_FORMAT) != null) {
+            jobFormat = input.getAttribute(ANT_INVOKER_EXT_PARAM_JOB_FORMAT);
+            if (!JOB_FORMAT_XML.equals(jobFormat) && !JOB_FORMAT_BINARY.equals(jobFormat)) {
+                throw new IllegalArgumentException("Unsupported " + ANT_INVOKER_EXT_PARAM_JOB_FORMAT + " " + jobFormat);
+            }
+        }
+        final String storeType = input.getAttribute(ANT_INVOKER_EXT_PARAM_STORE_TYPE);
+        if (STORE_TYPE_MEMORY.equals(storeType)) {
+            store = DocumentStore.getInstance(tempDir);
+            store.clear();
+        } else if (storeType != null && !STORE_TYPE_FILE.equals(storeType)) {
+            throw new IllegalArgumentException("Unsupported " + ANT_INVOKER_EXT_PARAM_STORE_TYPE + " " + storeType);
+        }
         //setSystemid = "yes".equalsIgnoreCase(input.getAttribute(ANT_INVOKER_EXT_PARAN_SETSYSTEMID));
 
         // For the output control
@@ -449,51 +532,97 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
      * @throws DITAOTException if processing file failed
      */
     private void processWaitList() throws DITAOTException {
+        if (threads > 1) {
+            processWaitListParallel();
+            return;
+        }
+        final Parser parser;
+        try {
+            parser = new Parser(filterUtils, listFilter);
+        } catch (final SAXException e) {
+            throw new DITAOTException("Failed to initialize XML parser: " + e.getMessage(), e);
+        }
         while ((currentFile = waitList.poll()) != null) {
-            processFile(currentFile);
+            processResult(parser.parse(currentFile, logger));
+        }
+    }
+    
+    /**
+     * Process input files in processing queue with a pool of worker threads. Files currently in the
+     * queue are parsed concurrently, each worker using its own parser and filter chain, and the parse
+     * results are merged in queue order. Merge order is the same as in serial processing, thus
+     * the result job is identical to the one generated by {@link #processWaitList()} with a single thread.
+     * Messages logged while parsing a file are buffered and written before its result is merged. 
+     * 
+     * @throws DITAOTException if processing file failed
+     */
+    private void processWaitListParallel() throws DITAOTException {
+        logger.logInfo("Processing files with " + threads + " threads");
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ThreadLocal<Parser> parsers = new ThreadLocal<Parser>();
+        try {
+            while (!waitList.isEmpty()) {
+                final List<Future<ParseResult>> results = new ArrayList<Future<ParseResult>>(waitList.size());
+                for (final URI file: waitList) {
+                    results.add(pool.submit(new Callable<ParseResult>() {
+                        @Override
+                        public ParseResult call() throws SAXException {
+                            Parser parser = parsers.get();
+                            if (parser == null) {
+                                parser = new Parser(createFilterUtils(), createListFilter());
+                                parsers.set(parser);
+                            }
+                            final DITAOTBufferedLogger log = new DITAOTBufferedLogger();
+                            final ParseResult result = parser.parse(file, log);
+                            result.log = log;
+                            return result;
+                        }
+                    }));
+                }
+                // files discovered during merge are appended after the current batch
+                for (final Future<ParseResult> f: results) {
+                    currentFile = waitList.poll();
+                    final ParseResult result;
+                    try {
+                        result = f.get();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DITAOTException("Processing interrupted: " + e.getMessage(), e);
+                    } catch (final ExecutionException e) {
+                        throw new DITAOTException("Failed to process " + currentFile + ": " + e.getCause().getMessage(), e.getCause());
+                    }
+                    result.log.flush(logger);
+                    processResult(result);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            currentFile = null;
         }
     }
 
     /**
-     * Read a file and process it for list information.
+     * Merge parse result of a single file.
      * 
-     * @param currentFile relative URI of the file to process
+     * @param result parse result of {@link #currentFile}
      * @throws DITAOTException if processing failed
      */
-    private void processFile(final URI currentFile) throws DITAOTException {
-        final URI fileToParse = baseInputDir.resolve(currentFile.getPath()).normalize();
-        logger.logInfo("Processing " + fileToParse);
-        final String[] params = { fileToParse.toString() };
+    private void processResult(final ParseResult result) throws DITAOTException {
+        final String[] params = { result.fileToParse.toString() };
 
-        if ("file".equals(fileToParse.getScheme()) &&  !new File(fileToParse).exists()) {
+        if (result.isMissing) {
             logger.logError(MessageUtils.getInstance().getMessage("DOTX008E", params).toString());
             return;
         }
+        resourceOnlyReferences.addAll(result.resourceOnlyReferences);
+        normalProcessingReferences.addAll(result.normalProcessingReferences);
         boolean isValidInput = false;
         try {
-            XMLReader xmlSource = reader;
-            for (final XMLFilter f: getProcessingPipe(fileToParse)) {
-                f.setParent(xmlSource);
-                xmlSource = f;
+            if (result.exception != null) {
+                throw result.exception;
             }
-            // ContentHandler must be reset so e.g. Saxon 9.1 will reassign ContentHandler
-            // when reusing filter with multiple Transformers.
-            xmlSource.setContentHandler(null);
-            xmlSource.setEntityResolver(CatalogUtils.getCatalogResolver());
-            
-            final Source source = new SAXSource(xmlSource, new InputSource(fileToParse.toString()));
-            final File outFile = new File(tempDir, toFile(currentFile).getPath());
-            if (!outFile.getParentFile().exists() && !outFile.getParentFile().mkdirs()) {
-                throw new IOException("Failed to create temporary directory " + outFile.getParentFile().getAbsolutePath());
-            }
-            logger.logDebug("Writing " + outFile.getAbsolutePath());
-            final Result result = new StreamResult(outFile);
-            final TransformerFactory tf = TransformerFactory.newInstance();
-            tf.setURIResolver(CatalogUtils.getCatalogResolver());
-            final Transformer serializer = tf.newTransformer();
-            serializer.transform(source, result);
 
-            processParseResult();
+            processParseResult(result);
 
             isValidInput = true;
         } catch (final TransformerException sax) {
@@ -527,60 +656,192 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
         }
 
         doneList.add(currentFile);
-        listFilter.reset();
     }
     
     /**
-     * Get pipe line filters
+     * Parser for input files. A parser is not thread-safe and owns its XML reader, grammar pool and list filter.
+     */
+    private final class Parser {
+        
+        private final XMLReader reader;
+        private final FilterUtils filterUtils;
+        private final GenListModuleFilter listFilter;
+        
+        /**
+         * Create new parser. Must be called in the thread that uses the parser.
+         * 
+         * @param filterUtils filter utilities for profiling
+         * @param listFilter list filter
+         * @throws SAXException if creating XML reader failed
+         */
+        Parser(final FilterUtils filterUtils, final GenListModuleFilter listFilter) throws SAXException {
+            this.reader = createXMLReader();
+            this.filterUtils = filterUtils;
+            this.listFilter = listFilter;
+        }
+
+        /**
+         * Read a file and process it for list information.
+         * 
+         * @param currentFile relative URI of the file to process
+         * @param logger logger for messages about the file
+         * @return parse result
+         */
+        ParseResult parse(final URI currentFile, final DITAOTLogger logger) {
+            final URI fileToParse = baseInputDir.resolve(currentFile.getPath()).normalize();
+            final ParseResult result = new ParseResult(currentFile, fileToParse);
+            logger.logInfo("Processing " + fileToParse);
+            listFilter.setLogger(logger);
+            if (filterUtils != null) {
+                filterUtils.setLogger(logger);
+            }
+    
+            if ("file".equals(fileToParse.getScheme()) &&  !new File(fileToParse).exists()) {
+                result.isMissing = true;
+                return result;
+            }
+            try {
+                listFilter.isStartDocument(currentFile.equals(inputFile));
+                XMLReader xmlSource = reader;
+                for (final XMLFilter f: getProcessingPipe(currentFile, fileToParse, logger)) {
+                    f.setParent(xmlSource);
+                    xmlSource = f;
+                }
+                // ContentHandler must be reset so e.g. Saxon 9.1 will reassign ContentHandler
+                // when reusing filter with multiple Transformers.
+                xmlSource.setContentHandler(null);
+                xmlSource.setEntityResolver(CatalogUtils.getCatalogResolver());
+                
+                final File outFile = new File(tempDir, toFile(currentFile).getPath());
+                if (!outFile.getParentFile().exists() && !outFile.getParentFile().mkdirs()) {
+                    throw new IOException("Failed to create temporary directory " + outFile.getParentFile().getAbsolutePath());
+                }
+                logger.logDebug("Writing " + outFile.getAbsolutePath());
+                if (store != null) {
+                    final DocumentStore.Output out = store.newOutput(outFile, null);
+                    try {
+                        xmlSource.setContentHandler(out.getResult().getHandler());
+                        xmlSource.setProperty(LEXICAL_HANDLER_PROPERTY, out.getResult().getLexicalHandler());
+                        xmlSource.parse(new InputSource(fileToParse.toString()));
+                    } finally {
+                        out.close();
+                    }
+                    store.put(outFile, out.getBuffer());
+                } else {
+                    final Source source = new SAXSource(xmlSource, new InputSource(fileToParse.toString()));
+                    final Result res = new StreamResult(outFile);
+                    final TransformerFactory tf = TransformerFactory.newInstance();
+                    tf.setURIResolver(CatalogUtils.getCatalogResolver());
+                    final Transformer serializer = tf.newTransformer();
+                    serializer.transform(source, res);
+                }
+                IdIndex.getInstance().put(outFile, listFilter.getIdCollector());
+    
+                result.fileInfos = listFilter.getFileInfo();
+                result.copytoMap = new HashMap<File, File>(listFilter.getCopytoMap());
+                result.keysDefMap = new HashMap<String, KeyDef>(listFilter.getKeysDMap());
+                result.nonCopytoResult = listFilter.getNonCopytoResult();
+                result.nonConrefCopytoTargets = listFilter.getNonConrefCopytoTargets();
+                result.ignoredCopytoSourceSet = new HashSet<File>(listFilter.getIgnoredCopytoSourceSet());
+                result.outDitaFilesSet = new HashSet<File>(listFilter.getOutFilesSet());
+            } catch (final Throwable e) {
+                result.exception = e;
+            }
+            result.resourceOnlyReferences = listFilter.getProcessingRoleResourceOnlySet();
+            result.normalProcessingReferences = listFilter.getProcessingRoleNormalSet();
+            listFilter.resetProcessingRole();
+            listFilter.reset();
+            return result;
+        }
+        
+        /**
+         * Get pipe line filters
+         * 
+         * @param currentFile relative URI of the file to process
+         * @param fileToParse absolute URI of the file to process
+         * @param logger logger for filters
+         */
+        private List<XMLFilter> getProcessingPipe(final URI currentFile, final URI fileToParse, final DITAOTLogger logger) {
+            final List<XMLFilter> pipe = new ArrayList<XMLFilter>();
+            if (genDebugInfo) {
+                final DebugFilter debugFilter = new DebugFilter();
+                debugFilter.setLogger(logger);
+                debugFilter.setInputFile(fileToParse);
+                pipe.add(debugFilter);
+            }
+            if (filterUtils != null) {
+                final ProfilingFilter profilingFilter = new ProfilingFilter();
+                profilingFilter.setLogger(logger);
+                profilingFilter.setFilterUtils(filterUtils);
+                profilingFilter.setTranstype(transtype);
+                pipe.add(profilingFilter);
+            }
+            {
+                final ValidationFilter validationFilter = new ValidationFilter();
+                validationFilter.setLogger(logger);
+                // SS not supported
+                //validationFilter.setValidateMap(validateMap);
+                pipe.add(validationFilter);
+            }
+            {
+                final NormalizeFilter normalizeFilter = new NormalizeFilter();
+                normalizeFilter.setLogger(logger);
+                pipe.add(normalizeFilter);
+            }
+            {
+//                listFilter.setTranstype(transtype);
+                listFilter.setCurrentDir(currentFile.resolve("."));
+                listFilter.setCurrentFile(fileToParse);
+                listFilter.setErrorHandler(new DITAOTXMLErrorHandler(fileToParse.toString(), logger));
+                pipe.add(listFilter);
+            }
+            return pipe;
+        }
+        
+    }
+    
+    /**
+     * List information collected from a single file.
      */
-    private List<XMLFilter> getProcessingPipe(final URI fileToParse) {
-        final List<XMLFilter> pipe = new ArrayList<XMLFilter>();
-        if (genDebugInfo) {
-            final DebugFilter debugFilter = new DebugFilter();
-            debugFilter.setLogger(logger);
-            debugFilter.setInputFile(fileToParse);
-            pipe.add(debugFilter);
-        }
-        if (filterUtils != null) {
-            final ProfilingFilter profilingFilter = new ProfilingFilter();
-            profilingFilter.setLogger(logger);
-            profilingFilter.setFilterUtils(filterUtils);
-            profilingFilter.setTranstype(transtype);
-            pipe.add(profilingFilter);
-        }
-        {
-            final ValidationFilter validationFilter = new ValidationFilter();
-            validationFilter.setLogger(logger);
-            // SS not supported
-            //validationFilter.setValidateMap(validateMap);
-            pipe.add(validationFilter);
-        }
-        {
-            final NormalizeFilter normalizeFilter = new NormalizeFilter();
-            normalizeFilter.setLogger(logger);
-            pipe.add(normalizeFilter);
-        }
-        {
-//            listFilter.setTranstype(transtype);
-            listFilter.setCurrentDir(currentFile.resolve("."));
-            listFilter.setCurrentFile(fileToParse);
-            listFilter.setErrorHandler(new DITAOTXMLErrorHandler(fileToParse.toString(), logger));
-            pipe.add(listFilter);
-        }
-        return pipe;
+    private static final class ParseResult {
+        
+        /** Relative URI of the parsed file */
+        final URI file;
+        /** Absolute URI of the parsed file */
+        final URI fileToParse;
+        /** Parsed file does not exist */
+        boolean isMissing;
+        /** Parsing failure, {@code null} if parsing succeeded */
+        Throwable exception;
+        /** Messages logged while parsing, {@code null} if parsed with the module logger */
+        DITAOTBufferedLogger log;
+        List<FileInfo> fileInfos;
+        Map<File, File> copytoMap;
+        Map<String, KeyDef> keysDefMap;
+        Set<Reference> nonCopytoResult;
+        Set<File> nonConrefCopytoTargets;
+        Set<File> ignoredCopytoSourceSet;
+        Set<File> outDitaFilesSet;
+        Set<File> resourceOnlyReferences = Collections.emptySet();
+        Set<File> normalProcessingReferences = Collections.emptySet();
+        
+        ParseResult(final URI file, final URI fileToParse) {
+            this.file = file;
+            this.fileToParse = fileToParse;
+        }
+        
     }
 
-    private void processParseResult() {
-        for (final FileInfo i: listFilter.getFileInfo()) {
+    private void processParseResult(final ParseResult result) {
+        for (final FileInfo i: result.fileInfos) {
             getOrCreateBuilder(i.file.getPath()).add(i);
         }
 
-        final Map<File, File> cpMap = listFilter.getCopytoMap();
-        final Map<String, KeyDef> kdMap = listFilter.getKeysDMap();
-        // the reader's reset method will clear the map.
+        final Map<File, File> cpMap = result.copytoMap;
+        final Map<String, KeyDef> kdMap = result.keysDefMap;
 
         // Category non-copyto result and update uplevels accordingly
-        for (final Reference file: listFilter.getNonCopytoResult()) {
+        for (final Reference file: result.nonCopytoResult) {
             if (isAccessible(new File(file.filename))) {
                 categorizeResultFile(file);
 //                updateUplevels(file.filename);
@@ -614,10 +875,12 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
             }
         }
 
-        nonConrefCopytoTargetSet.addAll(listFilter.getNonConrefCopytoTargets());
-        ignoredCopytoSourceSet.addAll(listFilter.getIgnoredCopytoSourceSet());
-        outDitaFilesSet.addAll(listFilter.getOutFilesSet());
-        resourceOnlySet.addAll(listFilter.getResourceOnlySet());
+        nonConrefCopytoTargetSet.addAll(result.nonConrefCopytoTargets);
+        ignoredCopytoSourceSet.addAll(result.ignoredCopytoSourceSet);
+        outDitaFilesSet.addAll(result.outDitaFilesSet);
+        final Set<File> resourceOnly = new HashSet<File>(resourceOnlyReferences);
+        resourceOnly.removeAll(normalProcessingReferences);
+        resourceOnlySet.addAll(resourceOnly);
         
         ditaSet.add(toFile(currentFile));
     }
@@ -908,6 +1171,8 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
 
         prop.setProperty(INPUT_DIR, toFile(baseInputDir).getAbsolutePath());
         prop.setProperty(INPUT_DITAMAP, prefix + inputFile);
+        prop.setProperty(STORE_TYPE, store != null ? STORE_TYPE_MEMORY : STORE_TYPE_FILE);
+        prop.setProperty(JOB_FORMAT, jobFormat);
 
         prop.setProperty(INPUT_DITAMAP_LIST_FILE_LIST, USER_INPUT_FILE_LIST_FILE);
         writeListToFile(new File(tempDir, USER_INPUT_FILE_LIST_FILE), asList(prefix + inputFile));
@@ -925,25 +1190,25 @@ public final class GenMapAndTopicListDebugAndFilterModule implements AbstractPip
         prop.setProperty("tempdirToinputmapdir.relative.value", formatRelativeValue(prefix));
         prop.setProperty("uplevels", getUpdateLevels());
         for (final File file: addFilePrefix(outDitaFilesSet)) {
-            prop.getOrCreateFileInfo(file).isOutDita = true;
+            prop.getOrCreateFileInfo(file).setOutDita(true);
         }
         for (final File file: addFilePrefix(imageSet)) {
-            prop.getOrCreateFileInfo(file).format = "image";
+            prop.getOrCreateFileInfo(file).setFormat("image");
         }
         for (final File file: addFilePrefix(flagImageSet)) {
-            prop.getOrCreateFileInfo(file).isFlagImage = true;
+            prop.getOrCreateFileInfo(file).setFlagImage(true);
         }
         for (final File file: addFilePrefix(htmlSet)) {
-            prop.getOrCreateFileInfo(file).format = "html";
+            prop.getOrCreateFileInfo(file).setFormat("html");
         }
         for (final File file: addFilePrefix(hrefWithIDSet)) {
-            prop.getOrCreateFileInfo(file).isNonConrefTarget = true;
+            prop.getOrCreateFileInfo(file).setNonConrefTarget(true);
         }
         for (final File file: addFilePrefix(copytoSourceSet)) {
-            prop.getOrCreateFileInfo(file).isCopyToSource = true;
+            prop.getOrCreateFileInfo(file).setCopyToSource(true);
         }
         for (final File file: addFilePrefix(resourceOnlySet)) {
-            prop.getOrCreateFileInfo(file).isResourceOnly = true;
+            prop.getOrCreateFileInfo(file).setResourceOnly(true);
         }
 
         addFlagImagesSetToProperties(prop, REL_FLAGIMAGE_LIST, relFlagImagesSet);
@@ -46,6 +46,7 @@ import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
+import org.dita.dost.platform.Integrator;
 import org.dita.dost.reader.DitaValReader;
 import org.dita.dost.reader.GenListModuleReader;
 import org.dita.dost.reader.GenListModuleReader.ExportAnchor;
@@ -78,6 +79,8 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
     private static final String ATTRIBUTE_HREF = "href";
     private static final String ATTRIBUTE_KEYS = "keys";
     private static final String ELEMENT_KEYDEF = "keydef";
+    /** Job property for build configuration used to validate incremental builds. */
+    private static final String PROPERTY_CONFIGURATION = "build.configuration";
 
     /** Set of all dita files */
     private final Set<File> ditaSet;
@@ -197,6 +200,16 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
     private String transtype;
 
     private final Map<String, URI> exKeyDefMap;
+    /** Map of source file digests. Key is relative file path, value is hex encoded digest. */
+    private final Map<File, String> digestMap;
+    /** Map of file dependencies. Key is relative file path, value is set of files the key file depends on. */
+    private final Map<File, Set<File>> dependencyMap;
+    /** Reuse unchanged temporary files from previous build. */
+    private boolean incremental;
+    /** Build configuration that affects the contents of temporary files. */
+    private String configuration;
+    /** Job configuration file format. */
+    private String jobFormat = JOB_FORMAT_XML;
 
     private static final String moduleStartMsg = "GenMapAndTopicListModule.execute(): Starting...";
 
@@ -204,6 +217,8 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
 
     /** use grammar pool cache */
     private boolean gramcache = true;
+    /** Persistent grammar cache directory, {@code null} if not used. */
+    private File gramcacheDir;
 
     private boolean setSystemid = true;
 
@@ -244,6 +259,8 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
         coderefSet = new HashSet<File>(INT_128);
 
         schemeDictionary = new HashMap<File, Set<File>>();
+        digestMap = new HashMap<File, String>();
+        dependencyMap = new HashMap<File, Set<File>>();
 
         // @processing-role
         resourceOnlySet = new HashSet<File>(INT_128);
@@ -267,6 +284,7 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
 
             // set grammar pool flag
             GrammarPoolManager.setGramCache(gramcache);
+            GrammarPoolManager.setCacheDir(gramcacheDir);
 
             reader = new GenListModuleReader();
             reader.setLogger(logger);
@@ -277,6 +295,7 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
 
             addToWaitList(inputFile);
             processWaitList();
+            addKeyrefDependencies();
             // Depreciated function
             // The base directory does not change according to the referenceing
             // topic files in the new resolution
@@ -310,7 +329,17 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
         transtype = input.getAttribute(ANT_INVOKER_EXT_PARAM_TRANSTYPE);
 
         gramcache = "yes".equalsIgnoreCase(input.getAttribute(ANT_INVOKER_EXT_PARAM_GRAMCACHE));
+        if (input.getAttribute(ANT_INVOKER_EXT_PARAM_GRAMCACHE_DIR) != null) {
+            gramcacheDir = new File(input.getAttribute(ANT_INVOKER_EXT_PARAM_GRAMCACHE_DIR));
+        }
         setSystemid = "yes".equalsIgnoreCase(input.getAttribute(ANT_INVOKER_EXT_PARAN_SETSYSTEMID));
+        incremental = Boolean.parseBoolean(input.getAttribute(ANT_INVOKER_EXT_PARAM_INCREMENTAL));
+        if (input.getAttribute(ANT_INVOKER_EXT_PARAM_JOB_FORMAT) != null) {
+            jobFormat = input.getAttribute(ANT_INVOKER_EXT_PARAM_JOB_FORMAT);
+            if (!JOB_FORMAT_XML.equals(jobFormat) && !JOB_FORMAT_BINARY.equals(jobFormat)) {
+                throw new IllegalArgumentException("Unsupported " + ANT_INVOKER_EXT_PARAM_JOB_FORMAT + " " + jobFormat);
+            }
+        }
 
         // For the output control
         outputUtils = new OutputUtils();
@@ -375,6 +404,20 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
 
         // Set the mapDir
         outputUtils.setInputMapPathName(inFile);
+
+        configuration = new StringBuilder()
+            .append("transtype=").append(transtype)
+            .append(";ditaval=").append(ditavalFile != null && ditavalFile.exists() ? FileUtils.getDigest(ditavalFile) : "")
+            .append(";validate=").append(xmlValidate)
+            .append(";generatecopyouter=").append(input.getAttribute(ANT_INVOKER_EXT_PARAM_GENERATECOPYOUTTER))
+            .append(";outercontrol=").append(input.getAttribute(ANT_INVOKER_EXT_PARAM_OUTTERCONTROL))
+            .append(";onlytopicinmap=").append(input.getAttribute(ANT_INVOKER_EXT_PARAM_ONLYTOPICINMAP))
+            .append(";outputdir=").append(path)
+            .append(";draft=").append(input.getAttribute(ANT_INVOKER_EXT_PARAM_DRAFT))
+            .append(";tablelink=").append(input.getAttribute(ANT_INVOKER_EXT_PARAM_TABLELINK))
+            .append(";figurelink=").append(input.getAttribute(ANT_INVOKER_EXT_PARAM_FIGURELINK))
+            .append(";plugins=").append(new File(ditaDir, "lib" + File.separator + Integrator.class.getPackage().getName() + File.separator + GEN_CONF_PROPERTIES).lastModified())
+            .toString();
     }
 
     private void processWaitList() throws DITAOTException {
@@ -432,6 +475,7 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
             if (reader.isValidInput()) {
                 processParseResult(file);
                 categorizeCurrentFile(file);
+                digestMap.put(file, FileUtils.getDigest(fileToParse));
             } else if (!file.equals(inputFile)) {
                 logger.logWarn(MessageUtils.getInstance().getMessage("DOTJ021W", params).toString());
             }
@@ -487,6 +531,14 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
         for (final Reference file: reader.getNonCopytoResult()) {
             categorizeResultFile(file);
             updateUplevels(new File(file.filename));
+            addDependency(currentFile, new File(file.filename));
+        }
+        for (final File target: reader.getConrefTargets()) {
+            addDependency(currentFile, target);
+            // conref push modifies the target
+            if (reader.hasConaction()) {
+                addDependency(target, currentFile);
+            }
         }
 
         // Update uplevels for copy-to targets, and store copy-to map.
@@ -508,6 +560,8 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
             } else {
                 updateUplevels(key);
                 copytoMap.put(key, value);
+                addDependency(currentFile, key);
+                addDependency(key, value);
             }
         }
         schemeSet.addAll(reader.getSchemeRefSet());
@@ -578,6 +632,41 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
         }
     }
 
+    /**
+     * Add file dependency.
+     * 
+     * @param file relative path of dependent file
+     * @param dependency relative path of file depended on
+     */
+    private void addDependency(final File file, final File dependency) {
+        if (file.equals(dependency)) {
+            return;
+        }
+        Set<File> deps = dependencyMap.get(file);
+        if (deps == null) {
+            deps = new HashSet<File>();
+            dependencyMap.put(file, deps);
+        }
+        deps.add(dependency);
+    }
+
+    /**
+     * Add dependencies from files with keyrefs to maps that define keys.
+     */
+    private void addKeyrefDependencies() {
+        final Set<File> keyMaps = new HashSet<File>();
+        for (final KeyDef k: keysDefMap.values()) {
+            if (k.source != null) {
+                keyMaps.add(toFile(k.source));
+            }
+        }
+        for (final File file: keyrefSet) {
+            for (final File map: keyMaps) {
+                addDependency(file, map);
+            }
+        }
+    }
+
     /**
      * Categorize current file type
      * 
@@ -890,15 +979,32 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
             dir.mkdirs();
         }
         
+        // temporary files are only reusable if the previous build completed preprocessing
+        final File complete = new File(dir, PREPROCESS_COMPLETE_FILE);
+        final boolean previousComplete = complete.exists();
+        if (previousComplete && !complete.delete()) {
+            throw new DITAOTException("Failed to delete " + complete.getAbsolutePath());
+        }
+        
         Job prop = null;
+        Job previous = null;
         try {
             prop = new Job(dir);
+            if (incremental && previousComplete) {
+                previous = new Job(dir);
+            }
         } catch (final IOException e) {
             throw new DITAOTException("Failed to create empty job: " + e.getMessage(), e);
         }
+        for (final FileInfo f: prop.getFileInfo()) {
+            f.setUnchanged(false);
+            f.setDigest(null);
+            f.setDependencies(Collections.<File>emptySet());
+        }
         
         prop.setProperty(INPUT_DIR, baseInputDir.getAbsolutePath());
         prop.setProperty(INPUT_DITAMAP, prefix + inputFile);
+        prop.setProperty(JOB_FORMAT, jobFormat);
 
         prop.setProperty(INPUT_DITAMAP_LIST_FILE_LIST, USER_INPUT_FILE_LIST_FILE);
         final File inputfile = new File(tempDir, USER_INPUT_FILE_LIST_FILE);
@@ -926,7 +1032,7 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
         prop.setProperty("tempdirToinputmapdir.relative.value", formatRelativeValue(prefix));
         prop.setProperty("uplevels", getUpdateLevels());
         for (final File file: addFilePrefix(outDitaFilesSet)) {
-            prop.getOrCreateFileInfo(file).isOutDita = true;
+            prop.getOrCreateFileInfo(file).setOutDita(true);
         }
 //        // XXX: This loop is probably redundant
 //        for (FileInfo f: prop.getFileInfo().values()) {
@@ -936,61 +1042,71 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
 //        }
         for (final File file: addFilePrefix(fullTopicSet)) {
             final FileInfo ff = prop.getOrCreateFileInfo(file);
-            ff.format = "dita";
-            ff.isActive = true;
+            ff.setFormat("dita");
+            ff.setActive(true);
         }
         for (final File file: addFilePrefix(fullMapSet)) {
             final FileInfo ff = prop.getOrCreateFileInfo(file);
-            ff.format = "ditamap";
-            ff.isActive = true;
+            ff.setFormat("ditamap");
+            ff.setActive(true);
         }        
         for (final File file: addFilePrefix(hrefTopicSet)) {
-            prop.getOrCreateFileInfo(file).hasLink = true;
+            prop.getOrCreateFileInfo(file).setHasLink(true);
         }
         for (final File file: addFilePrefix(conrefSet)) {
-            prop.getOrCreateFileInfo(file).hasConref = true;
+            prop.getOrCreateFileInfo(file).setHasConref(true);
         }
         for (final File file: addFilePrefix(imageSet)) {
-            prop.getOrCreateFileInfo(file).format = "image";
+            prop.getOrCreateFileInfo(file).setFormat("image");
         }
         for (final File file: addFilePrefix(flagImageSet)) {
-            prop.getOrCreateFileInfo(file).isFlagImage = true;
+            prop.getOrCreateFileInfo(file).setFlagImage(true);
         }
         for (final File file: addFilePrefix(htmlSet)) {
-            prop.getOrCreateFileInfo(file).format = "html";
+            prop.getOrCreateFileInfo(file).setFormat("html");
         }
         for (final File file: addFilePrefix(hrefTargetSet)) {
-            prop.getOrCreateFileInfo(file).isTarget = true;
+            prop.getOrCreateFileInfo(file).setTarget(true);
         }
         for (final File file: addFilePrefix(hrefWithIDSet)) {
-            prop.getOrCreateFileInfo(file).isNonConrefTarget = true;
+            prop.getOrCreateFileInfo(file).setNonConrefTarget(true);
         }
         for (final File file: addFilePrefix(chunkTopicSet)) {
-            prop.getOrCreateFileInfo(file).isSkipChunk = true;
+            prop.getOrCreateFileInfo(file).setSkipChunk(true);
         }
         for (final File file: addFilePrefix(schemeSet)) {
-            prop.getOrCreateFileInfo(file).isSubjectScheme = true;
+            prop.getOrCreateFileInfo(file).setSubjectScheme(true);
         }
         for (final File file: addFilePrefix(conrefTargetSet)) {
-            prop.getOrCreateFileInfo(file).isConrefTarget = true;
+            prop.getOrCreateFileInfo(file).setConrefTarget(true);
         }
         for (final File file: addFilePrefix(copytoSourceSet)) {
-            prop.getOrCreateFileInfo(file).isCopyToSource = true;
+            prop.getOrCreateFileInfo(file).setCopyToSource(true);
         }
         for (final File file: addFilePrefix(subsidiarySet)) {
-            prop.getOrCreateFileInfo(file).isSubtarget = true;
+            prop.getOrCreateFileInfo(file).setSubtarget(true);
         }
         for (final File file: addFilePrefix(conrefpushSet)) {
-            prop.getOrCreateFileInfo(file).isConrefPush = true;
+            prop.getOrCreateFileInfo(file).setConrefPush(true);
         }
         for (final File file: addFilePrefix(keyrefSet)) {
-            prop.getOrCreateFileInfo(file).hasKeyref = true;
+            prop.getOrCreateFileInfo(file).setHasKeyref(true);
         }
         for (final File file: addFilePrefix(coderefSet)) {
-            prop.getOrCreateFileInfo(file).hasCoderef = true;
+            prop.getOrCreateFileInfo(file).setHasCoderef(true);
         }
         for (final File file: addFilePrefix(resourceOnlySet)) {
-            prop.getOrCreateFileInfo(file).isResourceOnly = true;
+            prop.getOrCreateFileInfo(file).setResourceOnly(true);
+        }
+        
+        addDigestsToProperties(prop);
+        prop.setProperty(PROPERTY_CONFIGURATION, configuration);
+        if (incremental) {
+            if (previous != null) {
+                markUnchanged(prop, previous);
+            } else {
+                logger.logInfo("Previous build did not complete preprocessing, processing all files");
+            }
         }
         
         addFlagImagesSetToProperties(prop, REL_FLAGIMAGE_LIST, relFlagImagesSet);
@@ -1070,6 +1186,79 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
         KeyDef.writeKeydef(new File(tempDir, SUBJECT_SCHEME_KEYDEF_LIST_FILE), schemekeydefMap.values());
     }
     
+    /**
+     * Add source digests and file dependencies to job configuration.
+     * 
+     * @param prop job configuration
+     */
+    private void addDigestsToProperties(final Job prop) {
+        for (final Map.Entry<File, String> e: digestMap.entrySet()) {
+            final FileInfo f = prop.getFileInfo(addFilePrefix(e.getKey()));
+            if (f != null) {
+                f.setDigest(e.getValue());
+            }
+        }
+        // copy-to targets have the same content as their sources
+        for (final Map.Entry<File, File> e: copytoMap.entrySet()) {
+            final FileInfo f = prop.getFileInfo(addFilePrefix(e.getKey()));
+            if (f != null) {
+                f.setDigest(digestMap.get(e.getValue()));
+            }
+        }
+        for (final Map.Entry<File, Set<File>> e: dependencyMap.entrySet()) {
+            final FileInfo f = prop.getFileInfo(addFilePrefix(e.getKey()));
+            if (f != null) {
+                f.setDependencies(addFilePrefix(e.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Mark files whose temporary files can be reused from a previous build that completed
+     * preprocessing. Maps are always processed, and if the build configuration, any map, or
+     * chunking is changed, all files are processed.
+     * 
+     * @param prop job configuration
+     * @param previous job configuration of previous build
+     */
+    private void markUnchanged(final Job prop, final Job previous) {
+        if (!configuration.equals(previous.getProperty(PROPERTY_CONFIGURATION))) {
+            logger.logInfo("Build configuration changed, processing all files");
+            return;
+        }
+        if (!chunkTopicSet.isEmpty()) {
+            logger.logInfo("Input uses chunking, processing all files");
+            return;
+        }
+        for (final FileInfo f: prop.getFileInfo()) {
+            if ("ditamap".equals(f.getFormat())) {
+                final FileInfo p = previous.getFileInfo(f.file);
+                if (p == null || f.getDigest() == null || !f.getDigest().equals(p.getDigest())) {
+                    logger.logInfo("Map " + f.file.getPath() + " changed, processing all files");
+                    return;
+                }
+            }
+        }
+        final Set<File> changed = prop.getChangedFiles(previous);
+        int count = 0;
+        for (final FileInfo f: prop.getFileInfo()) {
+            if (f.getDigest() != null && !"ditamap".equals(f.getFormat()) && !changed.contains(f.file)
+                    && new File(tempDir, f.file.getPath()).exists()) {
+                f.setUnchanged(true);
+                count++;
+            }
+        }
+        // remove stale copy-to targets so that they will be generated again
+        for (final File target: addFilePrefix(copytoMap.keySet())) {
+            final FileInfo f = prop.getFileInfo(target);
+            final File file = new File(tempDir, target.getPath());
+            if ((f == null || !f.isUnchanged()) && file.exists() && !file.delete()) {
+                logger.logError("Failed to delete " + file.getAbsolutePath());
+            }
+        }
+        logger.logInfo("Reusing " + count + " unchanged files from previous build");
+    }
+
     /**
      * Write map of sets to a file.
      * 
@@ -1148,15 +1337,25 @@ public final class GenMapAndTopicListModule implements AbstractPipelineModule {
     private Set<File> addFilePrefix(final Set<File> set) {
         final Set<File> newSet = new HashSet<File>(set.size());
         for (final File file: set) {
-            if (file.isAbsolute()) {
-                newSet.add(FileUtils.normalize(file));
-            } else {
-                newSet.add(FileUtils.normalize(new StringBuffer(prefix).append(file).toString()));
-            }
+            newSet.add(addFilePrefix(file));
         }
         return newSet;
     }
     
+    /**
+     * Add file prefix. For absolute paths the prefix is not added.
+     * 
+     * @param file file path
+     * @return file path with prefix
+     */
+    private File addFilePrefix(final File file) {
+        if (file.isAbsolute()) {
+            return FileUtils.normalize(file);
+        } else {
+            return FileUtils.normalize(new StringBuffer(prefix).append(file).toString());
+        }
+    }
+    
     /**
      * Add file prefix. For absolute paths the prefix is not added.
      * 
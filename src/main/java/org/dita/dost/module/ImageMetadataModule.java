@@ -67,7 +67,7 @@ final class ImageMetadataModule implements AbstractPipelineModule {
                                                                        job.getProperty("uplevels"));
         writer.setLogger(logger);
         for (final FileInfo f: job.getFileInfo()) {
-            if (!f.isResourceOnly && ((f.isActive && "dita".equals(f.format)) || f.isChunked || f.isChunkedDitaMap)) {
+            if (!f.isResourceOnly() && ((f.isActive() && "dita".equals(f.getFormat())) || f.isChunked() || f.isChunkedDitaMap())) {
                 writer.write(new File(tempDir, f.file.getPath()).getAbsoluteFile());
             }
         }
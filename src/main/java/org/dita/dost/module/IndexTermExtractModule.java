@@ -15,12 +15,19 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.index.IndexTerm;
 import org.dita.dost.index.IndexTermCollection;
+import org.dita.dost.log.DITAOTBufferedLogger;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.pipeline.AbstractPipelineInput;
@@ -31,6 +38,8 @@ import org.dita.dost.reader.IndexTermReader;
 import org.dita.dost.util.FileUtils;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
 import org.dita.dost.util.StringUtils;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -62,6 +71,8 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
 
     private DITAOTLogger logger;
     private IndexTermCollection indexTermCollection;
+    /** Number of worker threads, {@code 1} for serial processing */
+    private int threads = 1;
 
     /**
      * Create a default instance.
@@ -80,9 +91,8 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
         if (logger == null) {
             throw new IllegalStateException("Logger not set");
         }
-        indexTermCollection = IndexTermCollection.getInstantce();
+        indexTermCollection = new IndexTermCollection();
         try {
-            indexTermCollection.clear();
             parseAndValidateInput(input);
             extractIndexTerm();
             indexTermCollection.sort();
@@ -108,6 +118,14 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
         final String encoding = input.getAttribute(ANT_INVOKER_EXT_PARAM_ENCODING);
         final String indextype = input.getAttribute(ANT_INVOKER_EXT_PARAM_INDEXTYPE);
         final String indexclass = input.getAttribute(ANT_INVOKER_EXT_PARAM_INDEXCLASS);
+        final String threadsValue = input.getAttribute(ANT_INVOKER_EXT_PARAM_THREADS);
+        if (threadsValue != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsValue.trim()));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(ANT_INVOKER_EXT_PARAM_THREADS + " must be an integer: " + threadsValue);
+            }
+        }
         inputMap = input.getAttribute(ANT_INVOKER_PARAM_INPUTMAP);
         targetExt = input.getAttribute(ANT_INVOKER_EXT_PARAM_TARGETEXT);
         baseInputDir = tempDir.getAbsolutePath();
@@ -122,16 +140,12 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
          * Parse topic list and ditamap list from the input dita.list file
          */
         topicList = new ArrayList<String>();
-        for (final FileInfo f: prop.getFileInfo()) {
-            if ("dita".equals(f.format) && f.isActive && !f.isResourceOnly) {
-                topicList.add(f.file.getPath());
-            }
+        for (final FileInfo f: prop.getFileInfo(new Query().all(Flag.IS_ACTIVE).none(Flag.IS_RESOURCE_ONLY).format("dita"))) {
+            topicList.add(f.file.getPath());
         }
         ditamapList = new ArrayList<String>();
-        for (final FileInfo f: prop.getFileInfo()) {
-            if ("ditamap".equals(f.format) && f.isActive && !f.isResourceOnly) {
-                ditamapList.add(f.file.getPath());
-            }
+        for (final FileInfo f: prop.getFileInfo(new Query().all(Flag.IS_ACTIVE).none(Flag.IS_RESOURCE_ONLY).format("ditamap"))) {
+            ditamapList.add(f.file.getPath());
         }
 
         final int lastIndexOfDot = output.lastIndexOf(".");
@@ -149,17 +163,96 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
         }
     }
 
-    private void extractIndexTerm() throws SAXException {
-        final int topicNum = topicList.size();
-        final int ditamapNum = ditamapList.size();
+    private void extractIndexTerm() throws SAXException, DITAOTException {
+        if (threads > 1 && topicList.size() > 1) {
+            extractTopicIndexTermsParallel();
+        } else {
+            extractTopicIndexTerms(topicList, indexTermCollection, logger);
+        }
+        extractMapIndexTerms();
+    }
+
+    /**
+     * Extract index terms from topics in parallel. If the index term locale has not been set, topics
+     * are first extracted serially until one of them sets the locale from {@code xml:lang}, because
+     * term keys and sorting depend on it. The remaining topics are split into consecutive chunks
+     * that are parsed into partial collections by worker threads. Partial collections are merged
+     * in topic list order, thus the result is identical to serial extraction.
+     * 
+     * @throws SAXException if creating XML reader failed
+     * @throws DITAOTException if extraction was interrupted
+     */
+    private void extractTopicIndexTermsParallel() throws SAXException, DITAOTException {
+        int start = 0;
+        while (IndexTerm.getTermLocale() == null && start < topicList.size()) {
+            extractTopicIndexTerms(topicList.subList(start, start + 1), indexTermCollection, logger);
+            start++;
+        }
+        final List<String> rest = topicList.subList(start, topicList.size());
+        if (rest.size() < 2) {
+            extractTopicIndexTerms(rest, indexTermCollection, logger);
+            return;
+        }
+        logger.logInfo("Extracting index terms with " + threads + " threads");
+        final Locale locale = IndexTerm.getTermLocale();
+        final int chunkCount = Math.min(rest.size(), threads * 4);
+        final int chunkSize = (rest.size() + chunkCount - 1) / chunkCount;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<List<String>> chunks = new ArrayList<List<String>>(chunkCount);
+        final List<Future<IndexTermCollection>> results = new ArrayList<Future<IndexTermCollection>>(chunkCount);
+        final List<DITAOTBufferedLogger> logs = new ArrayList<DITAOTBufferedLogger>(chunkCount);
+        try {
+            for (int i = 0; i < rest.size(); i += chunkSize) {
+                final List<String> topics = rest.subList(i, Math.min(i + chunkSize, rest.size()));
+                final DITAOTBufferedLogger log = new DITAOTBufferedLogger();
+                chunks.add(topics);
+                logs.add(log);
+                results.add(pool.submit(new Callable<IndexTermCollection>() {
+                    @Override
+                    public IndexTermCollection call() throws SAXException {
+                        IndexTerm.setTermLocale(locale);
+                        final IndexTermCollection partial = new IndexTermCollection();
+                        extractTopicIndexTerms(topics, partial, log);
+                        return partial;
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                IndexTermCollection partial;
+                try {
+                    partial = results.get(i).get();
+                } catch (final ExecutionException e) {
+                    logger.logDebug("Failed to extract index terms in worker thread, extracting serially: " + e.getCause().getMessage());
+                    partial = new IndexTermCollection();
+                    logs.set(i, new DITAOTBufferedLogger());
+                    extractTopicIndexTerms(chunks.get(i), partial, logs.get(i));
+                }
+                logs.get(i).flush(logger);
+                indexTermCollection.addTerms(partial);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DITAOTException("Index term extraction interrupted: " + e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Extract index terms from topics.
+     * 
+     * @param topics topic files relative to temporary directory
+     * @param result collection to add index terms to
+     * @param logger logger
+     * @throws SAXException if creating XML reader failed
+     */
+    private void extractTopicIndexTerms(final List<String> topics, final IndexTermCollection result,
+            final DITAOTLogger logger) throws SAXException {
+        final int topicNum = topics.size();
         FileInputStream inputStream = null;
-        XMLReader xmlReader = null;
-        final IndexTermReader handler = new IndexTermReader(indexTermCollection);
+        final IndexTermReader handler = new IndexTermReader(result);
         handler.setLogger(logger);
-        final DitamapIndexTermReader ditamapIndexTermReader = new DitamapIndexTermReader(indexTermCollection, true);
-        ditamapIndexTermReader.setLogger(logger);
-        
-        xmlReader = StringUtils.getXMLReader();
+        final XMLReader xmlReader = StringUtils.getXMLReader();
 
         try {
             xmlReader.setContentHandler(handler);
@@ -169,7 +262,7 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
                 String targetPathFromMap;
                 String targetPathFromMapWithoutExt;
                 handler.reset();
-                target = topicList.get(i);
+                target = topics.get(i);
                 targetPathFromMap = FileUtils.getRelativeUnixPath(
                         inputMap, target);
                 targetPathFromMapWithoutExt = targetPathFromMap
@@ -194,7 +287,26 @@ final class IndexTermExtractModule implements AbstractPipelineModule {
                     logger.logError(buff.append(msg).append(e.getMessage()).toString());
                 }
             }
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final IOException e) {
+                    logger.logError(e.getMessage(), e) ;
+                }
 
+            }
+        }
+    }
+
+    private void extractMapIndexTerms() throws SAXException {
+        final int ditamapNum = ditamapList.size();
+        FileInputStream inputStream = null;
+        final DitamapIndexTermReader ditamapIndexTermReader = new DitamapIndexTermReader(indexTermCollection, true);
+        ditamapIndexTermReader.setLogger(logger);
+        final XMLReader xmlReader = StringUtils.getXMLReader();
+
+        try {
             xmlReader.setContentHandler(ditamapIndexTermReader);
 
             for (int j = 0; j < ditamapNum; j++) {
@@ -15,25 +15,32 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.w3c.dom.Element;
 import org.xml.sax.XMLFilter;
 
 import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.log.DITAOTBufferedLogger;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.KeyrefReader;
+import org.dita.dost.util.DocumentStore;
 import org.dita.dost.util.Job;
-import org.dita.dost.util.Job.FileInfo.Filter;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
 import org.dita.dost.util.KeyDef;
+import org.dita.dost.util.KeyDefinition;
 import org.dita.dost.util.XMLUtils;
 import org.dita.dost.writer.ConkeyrefFilter;
 import org.dita.dost.writer.KeyrefPaser;
@@ -44,6 +51,13 @@ import org.dita.dost.writer.KeyrefPaser;
 final class KeyrefModule implements AbstractPipelineModule {
 
     private DITAOTLogger logger;
+    /** Number of worker threads, {@code 1} for serial processing */
+    private int threads = 1;
+    private File tempDir;
+    /** Key definitions by key name, shared by all files. */
+    private Map<String, KeyDef> keydefs;
+    private Map<String, URI> keymap;
+    private DocumentStore store;
 
     @Override
     public void setLogger(final DITAOTLogger logger) {
@@ -63,11 +77,19 @@ final class KeyrefModule implements AbstractPipelineModule {
         if (logger == null) {
             throw new IllegalStateException("Logger not set");
         }
-        final File tempDir = new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR));
+        tempDir = new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR));
 
         if (!tempDir.isAbsolute()){
             throw new IllegalArgumentException("Temporary directory " + tempDir + " must be absolute");
         }
+        final String threadsValue = input.getAttribute(ANT_INVOKER_EXT_PARAM_THREADS);
+        if (threadsValue != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsValue.trim()));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(ANT_INVOKER_EXT_PARAM_THREADS + " must be an integer: " + threadsValue);
+            }
+        }
 
         Job job = null;
         try{
@@ -77,12 +99,12 @@ final class KeyrefModule implements AbstractPipelineModule {
         }
 
         // maps of keyname and target
-        final Map<String, URI> keymap =new HashMap<String, URI>();
+        keymap =new HashMap<String, URI>();
         // store the key name defined in a map(keyed by ditamap file)
         final Hashtable<URI, Set<String>> maps = new Hashtable<URI, Set<String>>();
-        final Collection<KeyDef> keydefs = KeyDef.readKeydef(new File(tempDir, KEYDEF_LIST_FILE));
-
-        for (final KeyDef keyDef: keydefs) {
+        keydefs = new HashMap<String, KeyDef>();
+        for (final KeyDef keyDef: KeyDef.readKeydef(new File(tempDir, KEYDEF_LIST_FILE))) {
+            keydefs.put(keyDef.keys, keyDef);
             keymap.put(keyDef.keys, keyDef.href);
             // map file which define the keys
             final URI map = keyDef.source;
@@ -104,46 +126,24 @@ final class KeyrefModule implements AbstractPipelineModule {
             reader.setKeys(maps.get(mapFile));
             reader.read(mapFile);
         }
-        final Map<String, Element> keyDefinition = reader.getKeyDefinition();
+        final Map<String, KeyDefinition> keyDefinition = reader.getKeyDefinition();
         final Set<String> normalProcessingRole = new HashSet<String>();
-        for (final FileInfo f: job.getFileInfo(new Filter() {
-            public boolean accept(final FileInfo f) {
-                //Conref Module will change file's content, it is possible that tags with @keyref are copied in
-                //while keyreflist is hard update with xslt.
-                return f.hasKeyref || f.hasConref;
-            }
-        })) {
-            final File file = f.file;
-            logger.logInfo("Processing " + new File(tempDir, file.getPath()).getAbsolutePath());
-            
-            final List<XMLFilter> filters = new ArrayList<XMLFilter>();
-            
-            final ConkeyrefFilter conkeyrefFilter = new ConkeyrefFilter();
-            conkeyrefFilter.setLogger(logger);
-            conkeyrefFilter.setKeyDefinitions(keydefs);
-            conkeyrefFilter.setTempDir(tempDir);
-            conkeyrefFilter.setCurrentFile(file);
-            filters.add(conkeyrefFilter);
-            
-            final KeyrefPaser parser = new KeyrefPaser();
-            parser.setLogger(logger);
-            parser.setKeyDefinition(keyDefinition);
-            parser.setTempDir(tempDir);
-            parser.setCurrentFile(file);
-            parser.setKeyMap(keymap);
-            filters.add(parser);
-            
-            XMLUtils.transform(new File(tempDir, file.getPath()), filters);
-            
-            // validate resource-only list
-            for (final String t: parser.getNormalProcessingRoleTargets()) {
-                normalProcessingRole.add(t);
+        store = job.getStore();
+        //Conref Module will change file's content, it is possible that tags with @keyref are copied in
+        //while keyreflist is hard update with xslt.
+        final List<FileInfo> files = new ArrayList<FileInfo>(job.getFileInfo(new Query().any(Flag.HAS_KEYREF, Flag.HAS_CONREF).none(Flag.IS_UNCHANGED)));
+        if (threads > 1 && files.size() > 1) {
+            resolveParallel(files, keyDefinition, normalProcessingRole);
+        } else {
+            for (final FileInfo f: files) {
+                // validate resource-only list
+                normalProcessingRole.addAll(resolve(f.file, keyDefinition, logger));
             }
         }
         for (final String file: normalProcessingRole) {
             final FileInfo f = job.getFileInfo(file);
             if (f != null) {
-                f.isResourceOnly = false;
+                f.setResourceOnly(false);
                 job.add(f);
             }
         }
@@ -156,4 +156,88 @@ final class KeyrefModule implements AbstractPipelineModule {
         return null;
     }
 
+    /**
+     * Resolve keyrefs in files with worker threads. Key definitions are immutable and shared by
+     * all workers. Log messages are written in file order.
+     * 
+     * @param files files to resolve
+     * @param keyDefinition key definitions
+     * @param normalProcessingRole set to add normal processing role targets to
+     */
+    private void resolveParallel(final List<FileInfo> files, final Map<String, KeyDefinition> keyDefinition,
+            final Set<String> normalProcessingRole) throws DITAOTException {
+        logger.logInfo("Resolving keyrefs with " + threads + " threads");
+        final int workers = Math.min(threads, files.size());
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        final List<Future<Set<String>>> results = new ArrayList<Future<Set<String>>>(files.size());
+        final List<DITAOTBufferedLogger> logs = new ArrayList<DITAOTBufferedLogger>(files.size());
+        try {
+            for (final FileInfo f: files) {
+                final DITAOTBufferedLogger log = new DITAOTBufferedLogger();
+                logs.add(log);
+                results.add(pool.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws DITAOTException {
+                        return resolve(f.file, keyDefinition, log);
+                    }
+                }));
+            }
+            DITAOTException failure = null;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    normalProcessingRole.addAll(results.get(i).get());
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof DITAOTException
+                                  ? (DITAOTException) e.getCause()
+                                  : new DITAOTException("Failed to resolve keyrefs: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+                logs.get(i).flush(logger);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DITAOTException("Keyref resolution interrupted: " + e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolve keyrefs in a single file.
+     * 
+     * @param file file relative to temporary directory
+     * @param keyDefinition key definitions
+     * @param logger logger
+     * @return normal processing role targets
+     */
+    private Set<String> resolve(final File file, final Map<String, KeyDefinition> keyDefinition,
+            final DITAOTLogger logger) throws DITAOTException {
+        logger.logInfo("Processing " + new File(tempDir, file.getPath()).getAbsolutePath());
+        
+        final List<XMLFilter> filters = new ArrayList<XMLFilter>();
+        
+        final ConkeyrefFilter conkeyrefFilter = new ConkeyrefFilter();
+        conkeyrefFilter.setLogger(logger);
+        conkeyrefFilter.setKeyDefinitions(keydefs);
+        conkeyrefFilter.setTempDir(tempDir);
+        conkeyrefFilter.setCurrentFile(file);
+        filters.add(conkeyrefFilter);
+        
+        final KeyrefPaser parser = new KeyrefPaser();
+        parser.setLogger(logger);
+        parser.setKeyDefinition(keyDefinition);
+        parser.setTempDir(tempDir);
+        parser.setCurrentFile(file);
+        parser.setKeyMap(keymap);
+        filters.add(parser);
+        
+        XMLUtils.transform(new File(tempDir, file.getPath()), filters, store);
+        
+        return parser.getNormalProcessingRoleTargets();
+    }
+
 }
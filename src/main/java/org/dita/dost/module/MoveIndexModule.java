@@ -24,6 +24,8 @@ import org.dita.dost.reader.MapIndexReader;
 import org.dita.dost.util.FileUtils;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
 import org.dita.dost.writer.DitaIndexWriter;
 
 /**
@@ -73,11 +75,9 @@ final class MoveIndexModule implements AbstractPipelineModule {
                 .append(SLASH).append(MAP_TOPICMETA.localName)
                 .append(SLASH).append(TOPIC_KEYWORDS.localName).toString());
 
-        for(final FileInfo f: job.getFileInfo()){
-            if (f.isActive && "ditamap".equals(f.format)) {
-                //FIXME: this reader needs parent directory for further process
-                indexReader.read(new File(tempDir, f.file.getPath()).getAbsoluteFile());
-            }
+        for(final FileInfo f: job.getFileInfo(new Query().all(Flag.IS_ACTIVE).format("ditamap"))){
+            //FIXME: this reader needs parent directory for further process
+            indexReader.read(new File(tempDir, f.file.getPath()).getAbsoluteFile());
         }
 
         final Map<String, String> mapSet = indexReader.getMapping();
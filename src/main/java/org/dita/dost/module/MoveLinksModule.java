@@ -11,12 +11,14 @@ package org.dita.dost.module;
 import static org.dita.dost.util.Constants.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.MapLinksReader;
+import org.dita.dost.util.Job;
 import org.dita.dost.writer.DitaLinksWriter;
 
 /**
@@ -59,9 +61,19 @@ final class MoveLinksModule implements AbstractPipelineModule {
         indexReader.read(maplinksFile.getAbsoluteFile());
         final Map<String, Map<String, String>> mapSet = indexReader.getMapping();
         
+        Job job = null;
+        try {
+            job = new Job(new File(input.getAttribute(ANT_INVOKER_PARAM_TEMPDIR)));
+        } catch (final IOException e) {
+            throw new DITAOTException(e);
+        }
+        
         final DitaLinksWriter indexInserter = new DitaLinksWriter();
         indexInserter.setLogger(logger);
         for (final Map.Entry<String, Map<String, String>> entry: mapSet.entrySet()) {
+            if (job.isUnchanged(new File(entry.getKey()))) {
+                continue;
+            }
             logger.logInfo("Processing " + entry.getKey());
             indexInserter.setLinks(entry.getValue());
             indexInserter.write(new File(entry.getKey()));
@@ -13,23 +13,35 @@ import static org.dita.dost.util.FileUtils.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.w3c.dom.Element;
 
 import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.log.DITAOTBufferedLogger;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.MapMetaReader;
+import org.dita.dost.util.DocumentStore;
 import org.dita.dost.util.FileUtils;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.Job.FileInfo;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
 import org.dita.dost.writer.DitaMapMetaWriter;
 import org.dita.dost.writer.DitaMetaWriter;
 
@@ -37,6 +49,9 @@ import org.dita.dost.writer.DitaMetaWriter;
  * MoveMetaModule implement the move index step in preprocess. It reads the index
  * information from ditamap file and move these information to different
  * corresponding dita topic file.
+ *
+ * <p>Metadata for topics is compiled once before topics are written. Topic files are independent and
+ * are written with worker threads if parameter {@code threads} is greater than one.</p>
  * 
  * @author Zhang, Yuan Peng
  */
@@ -44,6 +59,8 @@ final class MoveMetaModule implements AbstractPipelineModule {
 
     private final ContentImpl content;
     private DITAOTLogger logger;
+    /** Number of worker threads, {@code 1} for serial processing */
+    private int threads = 1;
 
     /**
      * Default constructor of MoveMetaModule class.
@@ -75,6 +92,14 @@ final class MoveMetaModule implements AbstractPipelineModule {
         if (!tempDir.isAbsolute()) {
             throw new IllegalArgumentException("Temporary directory " + tempDir + " must be absolute");
         }
+        final String threadsValue = input.getAttribute(ANT_INVOKER_EXT_PARAM_THREADS);
+        if (threadsValue != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(threadsValue.trim()));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(ANT_INVOKER_EXT_PARAM_THREADS + " must be an integer: " + threadsValue);
+            }
+        }
         
         Job job = null;
         try{
@@ -85,21 +110,21 @@ final class MoveMetaModule implements AbstractPipelineModule {
 
         final MapMetaReader metaReader = new MapMetaReader();
         metaReader.setLogger(logger);
-        for (final FileInfo f: job.getFileInfo()) {
-            if (f.isActive && "ditamap".equals(f.format)) {
-                final File mapFile = new File(tempDir, f.file.getPath());
-                logger.logInfo("Reading " + mapFile);
-                //FIXME: this reader gets the parent path of input file
-                metaReader.read(mapFile);
-                final File newMap = new File(mapFile+".temp");
-                if (newMap.exists()) {
-                    if (!mapFile.delete()) {
-                        logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", mapFile.getPath(), newMap.getAbsolutePath()+".chunk").toString());
-                    }
-                    if (!newMap.renameTo(mapFile)) {
-                        logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", mapFile.getPath(), newMap.getAbsolutePath()+".chunk").toString());
-                    }
+        for (final FileInfo f: job.getFileInfo(new Query().all(Flag.IS_ACTIVE).format("ditamap"))) {
+            final File mapFile = new File(tempDir, f.file.getPath());
+            logger.logInfo("Reading " + mapFile);
+            //FIXME: this reader gets the parent path of input file
+            metaReader.read(mapFile);
+            final File newMap = new File(mapFile+".temp");
+            if (newMap.exists()) {
+                if (!mapFile.delete()) {
+                    logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", mapFile.getPath(), newMap.getAbsolutePath()+".chunk").toString());
                 }
+                if (!newMap.renameTo(mapFile)) {
+                    logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", mapFile.getPath(), newMap.getAbsolutePath()+".chunk").toString());
+                }
+                DocumentStore.invalidate(mapFile);
+                IdIndex.getInstance().remove(mapFile);
             }
         }
 
@@ -125,23 +150,99 @@ final class MoveMetaModule implements AbstractPipelineModule {
         }
 
         //process topic
-        final DitaMetaWriter topicInserter = new DitaMetaWriter();
-        topicInserter.setLogger(logger);
+        final Map<String, List<Entry<String, DitaMetaWriter.Metadata>>> topics = new LinkedHashMap<String, List<Entry<String, DitaMetaWriter.Metadata>>>();
         for (final Map.Entry<String, Hashtable<String, Element>> entry: mapSet.entrySet()) {
             String targetFileName = entry.getKey();
             targetFileName = stripFragment(targetFileName);
-            if (targetFileName.endsWith(FILE_EXTENSION_DITA) || targetFileName.endsWith(FILE_EXTENSION_XML)) {
-                content.setValue(entry.getValue());
-                topicInserter.setContent(content);
-                if (FileUtils.fileExists(entry.getKey())) {
-                    logger.logInfo("Processing " + entry.getKey());
-                    topicInserter.write(new File(entry.getKey()));
-                } else {
-                    logger.logError("File " + entry.getKey() + " does not exist");
+            if ((targetFileName.endsWith(FILE_EXTENSION_DITA) || targetFileName.endsWith(FILE_EXTENSION_XML))
+                    && !job.isUnchanged(new File(targetFileName))) {
+                // metadata DOM is not thread-safe, compile before writing
+                List<Entry<String, DitaMetaWriter.Metadata>> targets = topics.get(targetFileName);
+                if (targets == null) {
+                    targets = new ArrayList<Entry<String, DitaMetaWriter.Metadata>>();
+                    topics.put(targetFileName, targets);
                 }
-
+                targets.add(new SimpleImmutableEntry<String, DitaMetaWriter.Metadata>(entry.getKey(), new DitaMetaWriter.Metadata(entry.getValue())));
+            }
+        }
+        if (threads > 1 && topics.size() > 1) {
+            writeParallel(new ArrayList<List<Entry<String, DitaMetaWriter.Metadata>>>(topics.values()));
+        } else {
+            final DitaMetaWriter topicInserter = new DitaMetaWriter();
+            topicInserter.setLogger(logger);
+            for (final List<Entry<String, DitaMetaWriter.Metadata>> targets: topics.values()) {
+                write(topicInserter, targets, logger);
             }
         }
         return null;
     }
+
+    /**
+     * Insert metadata into topic files with worker threads. Log messages are written in file order.
+     *
+     * @param files metadata targets grouped by topic file
+     */
+    private void writeParallel(final List<List<Entry<String, DitaMetaWriter.Metadata>>> files) throws DITAOTException {
+        logger.logInfo("Moving metadata with " + threads + " threads");
+        final int workers = Math.min(threads, files.size());
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        final List<Future<?>> results = new ArrayList<Future<?>>(files.size());
+        final List<DITAOTBufferedLogger> logs = new ArrayList<DITAOTBufferedLogger>(files.size());
+        try {
+            for (final List<Entry<String, DitaMetaWriter.Metadata>> targets: files) {
+                final DITAOTBufferedLogger log = new DITAOTBufferedLogger();
+                logs.add(log);
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        final DitaMetaWriter topicInserter = new DitaMetaWriter();
+                        topicInserter.setLogger(log);
+                        write(topicInserter, targets, log);
+                        return null;
+                    }
+                }));
+            }
+            DITAOTException failure = null;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = new DITAOTException("Failed to move metadata: " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+                logs.get(i).flush(logger);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DITAOTException("Metadata move interrupted: " + e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Insert metadata into a single topic file. Targets are topics in the same file and are written in order.
+     *
+     * @param topicInserter metadata writer
+     * @param targets target topic paths and metadata
+     * @param logger logger
+     */
+    private void write(final DitaMetaWriter topicInserter, final List<Entry<String, DitaMetaWriter.Metadata>> targets,
+            final DITAOTLogger logger) {
+        final ContentImpl topicContent = new ContentImpl();
+        for (final Entry<String, DitaMetaWriter.Metadata> target: targets) {
+            topicContent.setValue(target.getValue());
+            topicInserter.setContent(topicContent);
+            if (FileUtils.fileExists(target.getKey())) {
+                logger.logInfo("Processing " + target.getKey());
+                topicInserter.write(new File(target.getKey()));
+            } else {
+                logger.logError("File " + target.getKey() + " does not exist");
+            }
+        }
+    }
 }
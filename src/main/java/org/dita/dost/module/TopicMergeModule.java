@@ -11,8 +11,6 @@ package org.dita.dost.module;
 import static org.dita.dost.util.Constants.*;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -30,6 +28,7 @@ import org.dita.dost.log.MessageUtils;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
 import org.dita.dost.reader.MergeMapParser;
+import org.dita.dost.util.TemplatesCache;
 
 /**
  * The module handles topic merge in issues as PDF.
@@ -81,57 +80,67 @@ final class TopicMergeModule implements AbstractPipelineModule {
             return null;
         }
 
-        ByteArrayOutputStream midBuffer = null;
+        final File outputDir = out.getAbsoluteFile().getParentFile();
+        if (!outputDir.exists()){
+            outputDir.mkdirs();
+        }
+        // without a stylesheet merge directly into output, otherwise into a temporary file
+        File merged = out;
         try {
-            midBuffer = new ByteArrayOutputStream();
-            midBuffer.write(XML_HEAD.getBytes(UTF8));
-            midBuffer.write("<dita-merge xmlns:ditaarch=\"http://dita.oasis-open.org/architecture/2005/\">".getBytes(UTF8));
-            mapParser.setOutputStream(midBuffer);
+            if (style != null) {
+                merged = File.createTempFile("merged", ".xml", tempdir);
+            }
+            merge(mapParser, ditaInput, tempdir, merged);
+            if (style != null) {
+                final TransformerFactory factory = TransformerFactory.newInstance();
+                final Transformer transformer = TemplatesCache.getInstance().getTemplates(factory, style, null).newTransformer();
+                transformer.transform(new StreamSource(merged), new StreamResult(out));
+            }
+        } catch (final DITAOTException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new DITAOTException("Failed to process merged topics: " + e.getMessage(), e);
+        } finally {
+            if (merged != out && !merged.delete()) {
+                logger.logError("Failed to delete " + merged.getAbsolutePath());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Write merged map and topics into a file.
+     * 
+     * @param mapParser merge map parser
+     * @param ditaInput input map
+     * @param tempdir temporary directory
+     * @param dst output file
+     * @throws DITAOTException if writing failed
+     */
+    private void merge(final MergeMapParser mapParser, final File ditaInput, final File tempdir, final File dst)
+            throws DITAOTException {
+        OutputStream output = null;
+        try {
+            output = new BufferedOutputStream(new FileOutputStream(dst));
+            output.write(XML_HEAD.getBytes(UTF8));
+            output.write("<dita-merge xmlns:ditaarch=\"http://dita.oasis-open.org/architecture/2005/\">".getBytes(UTF8));
+            mapParser.setOutputStream(output);
             mapParser.read(ditaInput, tempdir);
-            midBuffer.write("</dita-merge>".getBytes(UTF8));
+            output.write("</dita-merge>".getBytes(UTF8));
         } catch (final UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         } catch (final IOException e) {
             throw new DITAOTException("Failed to merge topics: " + e.getMessage(), e);
         } finally {
-            if (midBuffer != null) {
+            if (output != null) {
                 try {
-                    midBuffer.close();
+                    output.close();
                 } catch (final IOException e) {
                     logger.logError("Failed to close output buffer: " + e.getMessage(), e);
                 }
             }
         }
-
-        OutputStream output = null;
-        try{
-            final File outputDir = out.getParentFile();
-            if (!outputDir.exists()){
-                outputDir.mkdirs();
-            }
-            output = new BufferedOutputStream(new FileOutputStream(out));
-            if (style != null){
-                final TransformerFactory factory = TransformerFactory.newInstance();
-                final Transformer transformer = factory.newTransformer(new StreamSource(style.toURI().toString()));
-                transformer.transform(new StreamSource(new ByteArrayInputStream(midBuffer.toByteArray())),
-                                      new StreamResult(output));
-            }else{
-                output.write(midBuffer.toByteArray());
-                output.flush();
-            }
-        }catch (final Exception e){
-            throw new DITAOTException("Failed to process merged topics: " + e.getMessage(), e);
-        }finally{
-            try{
-                if (output !=null){
-                    output.close();
-                }
-            }catch (final Exception e){
-                logger.logError("Failed to close output buffer: " + e.getMessage(), e);
-            }
-        }
-
-        return null;
     }
 
 }
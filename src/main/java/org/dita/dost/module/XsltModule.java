@@ -2,28 +2,45 @@ package org.dita.dost.module;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
+import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.XMLCatalog;
 import org.apache.tools.ant.util.FileNameMapper;
 import org.apache.tools.ant.util.FileUtils;
 
 import org.dita.dost.exception.DITAOTException;
+import org.dita.dost.log.DITAOTBufferedLogger;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.pipeline.AbstractPipelineInput;
 import org.dita.dost.pipeline.AbstractPipelineOutput;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
+import org.dita.dost.util.Metrics;
+import org.dita.dost.util.SAXEventBuffer;
 import org.dita.dost.util.StringUtils;
+import org.dita.dost.util.TemplatesCache;
+import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -34,7 +51,9 @@ import org.xml.sax.XMLReader;
  * <p>The module matches Ant's XSLT task with the following exceptions:</p>
  * <ul>
  *   <li>If source and destination directories are same, transformation results are saved to a temporary file
- *   and the original source file is replaced after a successful transformation.</li>
+ *   and the original source file is replaced. In serial processing the file is replaced directly after it has
+ *   been transformed. In parallel processing all files are replaced after all files have been transformed, so
+ *   that stylesheets that read other source files see unmodified files regardless of scheduling order.</li>
  *   <li>If no {@code extension} attribute is set, the target file extension is the same as the source file extension.</li>
  * </ul>
  *  
@@ -54,41 +73,214 @@ public final class XsltModule implements AbstractPipelineModule {
     private String filedirparameter;
     private boolean reloadstylesheet;
     private XMLCatalog xmlcatalog;
+    /** Catalog resolver safe for use from multiple threads */
+    private CatalogResolver resolver;
 	private FileNameMapper mapper;
+	/** Number of worker threads, {@code 1} for serial processing */
+	private int threads = 1;
+	/** Document store to read and write through, {@code null} if not used */
+	private DocumentStore store;
     
     public AbstractPipelineOutput execute(AbstractPipelineInput input) throws DITAOTException {
     	logger.logInfo("Transforming into " + destDir.getAbsolutePath());
+        resolver = xmlcatalog != null ? new CatalogResolver(xmlcatalog) : null;
         final TransformerFactory tf = TransformerFactory.newInstance();
-        tf.setURIResolver(xmlcatalog);
+        tf.setURIResolver(resolver);
         try {
-            templates = tf.newTemplates(new StreamSource(style));
+            templates = TemplatesCache.getInstance().getTemplates(tf, style, resolver, getCatalogKey());
         } catch (TransformerConfigurationException e) {
             throw new RuntimeException("Failed to compile stylesheet '" + style.getAbsolutePath() + "': " + e.getMessage(), e);
         }
+        Metrics.getInstance().setLabel(style.getName());
+        if (threads > 1) {
+            executeParallel();
+        } else {
+            executeSerial();
+        }
+        return null;
+    }
+
+    /**
+     * Get key that identifies the XML catalog configuration for stylesheet caching.
+     * 
+     * @return catalog files, empty string if no catalog is used, {@code null} to key by resolver identity
+     *         if the catalog has no catalog files
+     */
+    private String getCatalogKey() {
+        if (xmlcatalog == null) {
+            return "";
+        }
+        final Path catalogPath = xmlcatalog.getCatalogPath();
+        return catalogPath != null ? "catalog:" + catalogPath.toString() : null;
+    }
+
+    /**
+     * Transform includes serially with a single transformer. In-place results replace the source file
+     * before the next file is transformed.
+     * 
+     * @throws DITAOTException if creating transformer failed
+     */
+    private void executeSerial() throws DITAOTException {
+        final XMLReader parser = createXMLReader();
+    	Transformer t = null;
+        final List<File> failures = new ArrayList<File>();
+        final List<Replacement> replacements = new ArrayList<Replacement>(1);
+        for (final File include: includes) {
+        	if (reloadstylesheet || t == null) {
+                logger.logInfo("Loading stylesheet " + style.getAbsolutePath());
+                t = createTransformer();
+        	}
+        	if (!transform(t, parser, include, logger, replacements)) {
+        	    failures.add(include);
+        	}
+        	replace(replacements);
+        	replacements.clear();
+        }
+        logFailures(failures);
+    }
+    
+    /**
+     * Transform includes in parallel. Each worker thread uses its own transformer created from the shared
+     * compiled stylesheet. Messages are buffered per file and logged in includes order.
+     * 
+     * @throws DITAOTException if creating transformer failed
+     */
+    private void executeParallel() throws DITAOTException {
+        logger.logInfo("Transforming with " + threads + " threads");
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>();
+        final ThreadLocal<XMLReader> parsers = new ThreadLocal<XMLReader>();
+        final List<DITAOTBufferedLogger> logs = new ArrayList<DITAOTBufferedLogger>(includes.size());
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(includes.size());
+        final List<List<Replacement>> replacements = new ArrayList<List<Replacement>>(includes.size());
+        try {
+            for (final File include: includes) {
+                final DITAOTBufferedLogger log = new DITAOTBufferedLogger();
+                logs.add(log);
+                final List<Replacement> replacement = new ArrayList<Replacement>(1);
+                replacements.add(replacement);
+                results.add(pool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws DITAOTException {
+                        Transformer t = transformers.get();
+                        if (reloadstylesheet || t == null) {
+                            log.logInfo("Loading stylesheet " + style.getAbsolutePath());
+                            t = createTransformer();
+                            transformers.set(t);
+                        }
+                        XMLReader parser = parsers.get();
+                        if (parser == null) {
+                            parser = createXMLReader();
+                            parsers.set(parser);
+                        }
+                        return transform(t, parser, include, log, replacement);
+                    }
+                }));
+            }
+            final List<File> failures = new ArrayList<File>();
+            final Iterator<File> include = includes.iterator();
+            for (int i = 0; i < results.size(); i++) {
+                final File f = include.next();
+                boolean success;
+                try {
+                    success = results.get(i).get();
+                } catch (final ExecutionException e) {
+                    logs.get(i).logError("Failed to transform document " + new File(baseDir, f.getPath()).getAbsolutePath()
+                                         + ": " + e.getCause().getMessage(), e.getCause());
+                    success = false;
+                }
+                logs.get(i).flush(logger);
+                if (!success) {
+                    failures.add(f);
+                }
+            }
+            for (final List<Replacement> r: replacements) {
+                replace(r);
+            }
+            logFailures(failures);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DITAOTException("Transformation interrupted: " + e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private XMLReader createXMLReader() {
         XMLReader parser;
 		try {
 			parser = StringUtils.getXMLReader();
 		} catch (final SAXException e) {
 			throw new RuntimeException("Failed to create XML reader: " + e.getMessage(), e);
 		}
-        parser.setEntityResolver(xmlcatalog);
-        
-    	Transformer t = null;
-        for (final File include: includes) {
-        	if (reloadstylesheet || t == null) {
-                logger.logInfo("Loading stylesheet " + style.getAbsolutePath());
-	            try {
-	                t = templates.newTransformer();
-	            } catch (final TransformerConfigurationException e) {
-	                throw new DITAOTException("Failed to create Transformer: " + e.getMessage(), e);
-	            }
-        	}
+        parser.setEntityResolver(resolver);
+        if (store != null) {
+            parser = store.getXMLReader(parser);
+        }
+        final Metrics.ParseTimer timer = Metrics.getInstance().newParseTimer(parser);
+        return timer != null ? timer : parser;
+    }
+    
+    private Transformer createTransformer() throws DITAOTException {
+        try {
+            final Transformer t = templates.newTransformer();
+            t.setURIResolver(resolver);
+            return t;
+        } catch (final TransformerConfigurationException e) {
+            throw new DITAOTException("Failed to create Transformer: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Log transformation failures.
+     * 
+     * @param failures source file paths relative to source directory
+     */
+    private void logFailures(final List<File> failures) {
+        if (!failures.isEmpty()) {
+            logger.logError("Failed to transform " + failures.size() + " documents: " + failures);
+        }
+    }
+    
+    /**
+     * Replace source files with transformation results.
+     * 
+     * @param replacements pending replacements
+     */
+    private void replace(final List<Replacement> replacements) {
+        for (final Replacement r: replacements) {
+            logger.logDebug("Moving " + r.tmp.getAbsolutePath() + " to " + r.out.getAbsolutePath());
+            // rename over existing file first so that concurrent readers never see a missing file
+            if (!r.tmp.renameTo(r.out) && !(r.out.delete() && r.tmp.renameTo(r.out))) {
+                logger.logError("Failed to replace input file " + r.out.getAbsolutePath());
+                FileUtils.delete(r.tmp);
+                continue;
+            }
+            IdIndex.getInstance().remove(r.out);
+            if (r.buffer != null) {
+                store.put(r.out, r.buffer);
+            }
+        }
+    }
+    
+    /**
+     * Transform a single file.
+     * 
+     * @param t transformer
+     * @param parser XML reader for the source file
+     * @param include source file path relative to source directory
+     * @param logger logger
+     * @param replacements list to add the pending replacement to if the source file is transformed in place
+     * @return {@code true} if transformation succeeded or file was skipped, {@code false} if transformation failed
+     */
+    private boolean transform(final Transformer t, final XMLReader parser, final File include, final DITAOTLogger logger,
+                              final List<Replacement> replacements) {
             final File in = new File(baseDir, include.getPath());
             File out = new File(destDir, include.getPath());
             if (mapper != null) {
             	final String[] outs = mapper.mapFileName(out.getAbsolutePath());
             	if (outs == null) {
-            		continue;
+            		return true;
             	}
             	if (outs.length > 1) {
             		throw new RuntimeException("XSLT module only support one to one output mapping");
@@ -117,27 +309,41 @@ public final class XsltModule implements AbstractPipelineModule {
             	logger.logInfo("Processing " + in.getAbsolutePath() + " to " + tmp.getAbsolutePath());
             }
             final Source source = new SAXSource(parser, new InputSource(in.toURI().toString()));
+            final long start = System.nanoTime();
             try {
             	if (!tmp.getParentFile().exists() && !tmp.getParentFile().mkdirs()) {
                 	throw new IOException("Failed to create directory " + tmp.getParent());
                 }
-                t.transform(source, new StreamResult(tmp));
-                if (same) {
-                    logger.logDebug("Moving " + tmp.getAbsolutePath() + " to " + out.getAbsolutePath());
-                    if (!out.delete()) {
-                        throw new IOException("Failed to to delete input file " + out.getAbsolutePath());
+                DocumentStore.Output storeOut = null;
+                if (store != null) {
+                    storeOut = store.newOutput(tmp, t.getOutputProperties());
+                    try {
+                        t.transform(source, storeOut.getResult());
+                    } finally {
+                        storeOut.close();
                     }
-                    if (!tmp.renameTo(out)) {
-                        throw new IOException("Failed to to replace input file " + out.getAbsolutePath());
+                } else {
+                    t.transform(source, new StreamResult(tmp));
+                }
+                if (same) {
+                    replacements.add(new Replacement(tmp, out, storeOut != null ? storeOut.getBuffer() : null));
+                } else {
+                    IdIndex.getInstance().remove(out);
+                    if (storeOut != null) {
+                        store.put(out, storeOut.getBuffer());
                     }
                 }
+                if (parser instanceof Metrics.ParseTimer) {
+                    Metrics.getInstance().addFile(in, in.length(), out.length(), System.nanoTime() - start,
+                                                  ((Metrics.ParseTimer) parser).getParseTime());
+                }
             } catch (final Exception e) {
-                logger.logError("Failed to transform document: " + e.getMessage(), e);
+                logger.logError("Failed to transform document " + in.getAbsolutePath() + ": " + e.getMessage(), e);
                 logger.logDebug("Remove " + tmp.getAbsolutePath());
                 FileUtils.delete(tmp);
+                return false;
             } 
-        }
-        return null;
+            return true;
     }
     
     public void setStyle(final File style) {
@@ -191,5 +397,56 @@ public final class XsltModule implements AbstractPipelineModule {
 	public void setMapper(final FileNameMapper mapper) {
 		this.mapper = mapper;
 	}
+
+	/**
+	 * Set document store to read and write files through. Results are still written to the destination
+	 * directory; the store only saves parsing in later steps.
+	 * 
+	 * @param store document store, {@code null} to read and write files directly
+	 */
+	public void setStore(final DocumentStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Set number of worker threads.
+	 * 
+	 * @param threads number of threads, values less than {@code 2} disable parallel processing
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+    /** Pending replacement of a source file with its transformation result. */
+    private static final class Replacement {
+        final File tmp;
+        final File out;
+        /** Result document events, {@code null} if document store is not used */
+        final SAXEventBuffer buffer;
+        Replacement(final File tmp, final File out, final SAXEventBuffer buffer) {
+            this.tmp = tmp;
+            this.out = out;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Catalog resolver that serializes access to an Ant XML catalog. Ant's {@link XMLCatalog} lazily initializes
+     * its resolver and is not safe for use from multiple threads.
+     */
+    private static final class CatalogResolver implements EntityResolver, URIResolver {
+        private final XMLCatalog catalog;
+        CatalogResolver(final XMLCatalog catalog) {
+            this.catalog = catalog;
+        }
+        @Override
+        public synchronized InputSource resolveEntity(final String publicId, final String systemId) throws SAXException, IOException {
+            return catalog.resolveEntity(publicId, systemId);
+        }
+        @Override
+        public synchronized Source resolve(final String href, final String base) throws TransformerException {
+            return catalog.resolve(href, base);
+        }
+    }
     
 }
@@ -12,6 +12,7 @@ import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.DITAOTLogger;
 import org.dita.dost.module.AbstractPipelineModule;
 import org.dita.dost.module.ModuleFactory;
+import org.dita.dost.util.Metrics;
 
 /**
  * PipelineFacade implement AbstractFacade and control the constructing and excuting
@@ -49,8 +50,7 @@ public final class PipelineFacade implements AbstractFacade {
          */
         final AbstractPipelineModule module = factory.createModule(pipelineModuleName);
         if (module != null) {
-            module.setLogger(logger);
-            return module.execute(input);
+            return execute(module, input);
         }
         return null;
     }
@@ -60,8 +60,7 @@ public final class PipelineFacade implements AbstractFacade {
             final AbstractPipelineInput input) throws DITAOTException {
         final AbstractPipelineModule module = factory.createModule(moduleClass);
         if (module != null) {
-            module.setLogger(logger);
-            return module.execute(input);
+            return execute(module, input);
         }
         return null;
     }
@@ -70,7 +69,12 @@ public final class PipelineFacade implements AbstractFacade {
     public AbstractPipelineOutput execute(final AbstractPipelineModule module,
             final AbstractPipelineInput input) throws DITAOTException {
         module.setLogger(logger);
-        return module.execute(input);
+        final Metrics.ModuleRecord record = Metrics.getInstance().startModule(module.getClass().getSimpleName());
+        try {
+            return module.execute(input);
+        } finally {
+            Metrics.getInstance().endModule(record);
+        }
     }
 
     @Override
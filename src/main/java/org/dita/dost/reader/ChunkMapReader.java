@@ -37,6 +37,9 @@ import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.ChunkModule.ChunkFilenameGeneratorFactory;
 import org.dita.dost.module.ChunkModule.ChunkFilenameGenerator;
 import org.dita.dost.module.Content;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
+import org.dita.dost.util.Job;
 import org.dita.dost.writer.ChunkTopicParser;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -80,6 +83,8 @@ public final class ChunkMapReader implements AbstractReader {
 
     private String processingRole = ATTR_PROCESSING_ROLE_VALUE_NORMAL;
     private ChunkFilenameGenerator chunkFilenameGenerator = ChunkFilenameGeneratorFactory.newInstance();
+    /** Shared job configuration, {@code null} if chunk writers read it from the map directory. */
+    private Job job;
 
     /**
      * Constructor.
@@ -238,6 +243,8 @@ public final class ChunkMapReader implements AbstractReader {
                         .getMessage("DOTJ009E", inputFile.getPath(), inputFile.getAbsolutePath() + FILE_EXTENSION_CHUNK)
                         .toString());
             }
+            DocumentStore.invalidate(inputFile);
+            IdIndex.getInstance().remove(inputFile);
 
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e);
@@ -475,6 +482,9 @@ public final class ChunkMapReader implements AbstractReader {
             chunkParser.setLogger(logger);
             chunkParser.setup(changeTable, conflictTable, refFileSet, elem, separate, chunkByTopic,
                     chunkFilenameGenerator);
+            if (job != null && filePath.getAbsoluteFile().equals(job.getTempDir().getAbsoluteFile())) {
+                chunkParser.setJob(job);
+            }
             chunkParser.write(filePath);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e);
@@ -551,4 +561,15 @@ public final class ChunkMapReader implements AbstractReader {
 
     }
 
+    /**
+     * Set shared job configuration. Chunk writers for maps in the temporary directory update the shared
+     * job configuration instead of reading and writing their own, and the caller is responsible for
+     * writing it.
+     * 
+     * @param job job configuration
+     */
+    public void setJob(final Job job) {
+        this.job = job;
+    }
+
 }
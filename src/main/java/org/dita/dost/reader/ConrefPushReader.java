@@ -14,18 +14,24 @@ import java.io.File;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.Properties;
 
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.util.FileUtils;
+import org.dita.dost.util.SAXEventBuffer;
 import org.dita.dost.util.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 /**
  * Class for reading conref push content.
- *
+ * 
+ * <p>Pushed content is stored as {@link SAXEventBuffer event buffers}. Relative {@code href} and
+ * {@code conref} values in pushed content are rewritten relative to the target file and entities that
+ * are not resolved are recorded as skipped entities. Completed buffers are not modified and can be
+ * replayed concurrently.</p>
  */
 public final class ConrefPushReader extends AbstractXMLReader {
     
@@ -39,7 +45,7 @@ public final class ConrefPushReader extends AbstractXMLReader {
     private static final String ATTR_CONACTION_VALUE_PUSHREPLACE = "pushreplace";
     
     /** push table.*/
-    private final Hashtable<String, Hashtable<String, String>> pushtable;
+    private final Hashtable<String, Hashtable<String, SAXEventBuffer>> pushtable;
     /** push table.*/
     private final XMLReader reader;
     /**whether an entity needs to be resolved or not flag. */
@@ -54,8 +60,9 @@ public final class ConrefPushReader extends AbstractXMLReader {
     /**pushcontent is used to store the content copied to target
 	 in pushcontent href will be resolved if it is relative path
 	 if @conref is in pushconref the target name should be recorded so that it
-	 could be added to conreflist for conref resolution.*/
-    private StringBuffer pushcontent = null;
+	 could be added to conreflist for conref resolution. {@code null} if
+	 no content has been recorded.*/
+    private SAXEventBuffer pushcontent = null;
 
     /**boolean start is used to control whether sax parser can start to
 	 record push content into String pushcontent.*/
@@ -79,7 +86,7 @@ public final class ConrefPushReader extends AbstractXMLReader {
      * 
      * @return unmodifiable push table
      */
-    public Map<String, Hashtable<String, String>> getPushMap() {
+    public Map<String, Hashtable<String, SAXEventBuffer>> getPushMap() {
     	return Collections.unmodifiableMap(pushtable);
     }
     
@@ -91,7 +98,7 @@ public final class ConrefPushReader extends AbstractXMLReader {
         filePath = filename.getParentFile().getAbsolutePath();
         parsefilename = filename.getName();
         start = false;
-        pushcontent = new StringBuffer(INT_256);
+        pushcontent = null;
         pushType = null;
         try{
             reader.parse(filename.toURI().toString());
@@ -103,7 +110,7 @@ public final class ConrefPushReader extends AbstractXMLReader {
      * Constructor.
      */
     public ConrefPushReader(){
-        pushtable = new Hashtable<String, Hashtable<String,String>>();
+        pushtable = new Hashtable<String, Hashtable<String, SAXEventBuffer>>();
         try{
             reader = StringUtils.getXMLReader();
             reader.setFeature(FEATURE_NAMESPACE_PREFIX, true);
@@ -127,22 +134,23 @@ public final class ConrefPushReader extends AbstractXMLReader {
             //also we need to add level to make sure start is turn off
             //at the corresponding end element
             level ++;
-            putElement(pushcontent, name, atts, false);
+            putElement(uri, localName, name, atts, false);
         }
 
         final String conactValue = atts.getValue(ATTRIBUTE_NAME_CONACTION);
         if (!start && conactValue != null){
             if (ATTR_CONACTION_VALUE_PUSHBEFORE.equalsIgnoreCase(conactValue)){
-                if(pushcontent.length() != 0){
+                if(pushcontent != null){
                     // there are redundant "pushbefore", create a new pushcontent and emit a warning message.
-                    pushcontent = new StringBuffer();
+                    pushcontent = null;
                     logger.logWarn(MessageUtils.getInstance().getMessage("DOTJ044W", atts.getValue(ATTRIBUTE_NAME_XTRF), atts.getValue(ATTRIBUTE_NAME_XTRC)).toString());
                 }
                 start = true;
                 level =0;
                 level ++;
-                putElement(pushcontent, name, atts, true);
+                // target is not known before mark, URLs are rewritten in replaceContent()
                 pushType = ATTR_CONACTION_VALUE_PUSHBEFORE;
+                putElement(uri, localName, name, atts, true);
             }else if (ATTR_CONACTION_VALUE_PUSHAFTER.equalsIgnoreCase(conactValue)){
                 start = true;
                 level = 0;
@@ -150,8 +158,8 @@ public final class ConrefPushReader extends AbstractXMLReader {
                 if (target == null){
                     logger.logError(MessageUtils.getInstance().getMessage("DOTJ039E", atts.getValue(ATTRIBUTE_NAME_XTRF), atts.getValue(ATTRIBUTE_NAME_XTRC)).toString());
                 }else{
-                    putElement(pushcontent, name, atts, true);
                     pushType = ATTR_CONACTION_VALUE_PUSHAFTER;
+                    putElement(uri, localName, name, atts, true);
                 }
             }else if (ATTR_CONACTION_VALUE_PUSHREPLACE.equalsIgnoreCase(conactValue)){
                 start = true;
@@ -162,19 +170,18 @@ public final class ConrefPushReader extends AbstractXMLReader {
                     logger.logError(MessageUtils.getInstance().getMessage("DOTJ040E", atts.getValue(ATTRIBUTE_NAME_XTRF), atts.getValue(ATTRIBUTE_NAME_XTRC)).toString());
                 }else{
                     pushType = ATTR_CONACTION_VALUE_PUSHREPLACE;
-                    putElement(pushcontent, name, atts, true);
+                    putElement(uri, localName, name, atts, true);
                 }
 
             }else if (ATTR_CONACTION_VALUE_MARK.equalsIgnoreCase(conactValue)){
                 target = atts.getValue(ATTRIBUTE_NAME_CONREF);
                 if (target != null &&
-                        pushcontent != null && pushcontent.length() > 0 &&
+                        pushcontent != null &&
                         ATTR_CONACTION_VALUE_PUSHBEFORE.equals(pushType)){
                     //pushcontent != null means it is pushbefore action
                     //we need to add target and content to pushtable
-                    replaceContent();
-                    addtoPushTable(target, pushcontent.toString(), pushType);
-                    pushcontent = new StringBuffer(INT_256);
+                    addtoPushTable(target, replaceContent(pushcontent), pushType);
+                    pushcontent = null;
                     target = null;
                     pushType = null;
                 }
@@ -186,79 +193,64 @@ public final class ConrefPushReader extends AbstractXMLReader {
         //}
     }
     /**
-     * replace content.
+     * Replace {@code href} and {@code conref} values in pushed content according to target.
+     * This is useful to "pushbefore" action because it doesn't know the target when
+     * processing the content.
+     * 
+     * @param content recorded push content
+     * @return push content with rewritten URLs
      */
-    private void replaceContent() {
-        // replace all conref and href value in pushcontent according to target
-        // this is useful to "pushbefore" action because it doesn't know the target
-        // when processing these content
-        int index = 0;
-        int nextindex = 0;
-        int hrefindex = pushcontent.indexOf("href=\"", index);
-        int conrefindex = pushcontent.indexOf("conref=\"", index);
-        final StringBuffer resultBuffer = new StringBuffer(INT_256);
-        if(hrefindex < 0 && conrefindex < 0){
-            return;
-        }
-
-        while (hrefindex >= 0 ||
-                conrefindex >= 0){
-
-            if (hrefindex > 0 && conrefindex > 0){
-                nextindex = hrefindex < conrefindex ? hrefindex : conrefindex;
-            }else if(hrefindex > 0){
-                nextindex = hrefindex;
-            }else if(conrefindex > 0){
-                nextindex = conrefindex;
-            }
-
-            final int valueindex = pushcontent.indexOf(QUOTATION,nextindex)+1;
-            resultBuffer.append(pushcontent.substring(index, valueindex));
-            resultBuffer.append(replaceURL(pushcontent.substring(valueindex, pushcontent.indexOf(QUOTATION, valueindex))));
-            index = pushcontent.indexOf(QUOTATION, valueindex);
-
-            if(hrefindex > 0){
-                hrefindex = pushcontent.indexOf("href=\"", index);
-            }
-            if(conrefindex > 0){
-                conrefindex = pushcontent.indexOf("conref=\"", index);
+    private SAXEventBuffer replaceContent(final SAXEventBuffer content) throws SAXException {
+        final SAXEventBuffer buf = new SAXEventBuffer();
+        final XMLFilterImpl filter = new XMLFilterImpl() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                    final Attributes atts) throws SAXException {
+                final AttributesImpl res = new AttributesImpl(atts);
+                for (int i = 0; i < res.getLength(); i++) {
+                    if (ATTRIBUTE_NAME_HREF.equals(res.getQName(i)) ||
+                            ATTRIBUTE_NAME_CONREF.equals(res.getQName(i))){
+                        res.setValue(i, replaceURL(res.getValue(i)));
+                    }
+                }
+                super.startElement(uri, localName, qName, res);
             }
-        }
-
-        resultBuffer.append(pushcontent.substring(index));
-        pushcontent = resultBuffer;
+        };
+        filter.setContentHandler(buf);
+        content.replay(filter, null);
+        buf.trim();
+        return buf;
     }
     /**
+     * Record start element into push content.
      * 
-     * @param buf buffer
+     * @param uri namespace URI
+     * @param localName local name
      * @param elemName element name
      * @param atts attribute
      * @param removeConref whether remeove conref info
      */
-    private void putElement(final StringBuffer buf, final String elemName,
-            final Attributes atts, final boolean removeConref) {
+    private void putElement(final String uri, final String localName, final String elemName,
+            final Attributes atts, final boolean removeConref) throws SAXException {
         //parameter boolean removeConref specifies whether to remove
         //conref information like @conref @conaction in current element
         //when copying it to pushcontent. True means remove and false means
         //not remove.
-        int index = 0;
-        buf.append(LESS_THAN).append(elemName);
-        for (index=0; index < atts.getLength(); index++){
+        final AttributesImpl res = new AttributesImpl();
+        for (int index = 0; index < atts.getLength(); index++){
             if (!removeConref ||
                     !ATTRIBUTE_NAME_CONREF.equals(atts.getQName(index))&&
                     !ATTRIBUTE_NAME_CONACTION.equals(atts.getQName(index))){
-                buf.append(STRING_BLANK);
-                buf.append(atts.getQName(index)).append(EQUAL).append(QUOTATION);
                 String value = atts.getValue(index);
-                value = StringUtils.escapeXML(value);
-                if (ATTRIBUTE_NAME_HREF.equals(atts.getQName(index)) ||
-                        ATTRIBUTE_NAME_CONREF.equals(atts.getQName(index))){
-                    // adjust href for pushbefore and replace
+                if ((ATTRIBUTE_NAME_HREF.equals(atts.getQName(index)) ||
+                        ATTRIBUTE_NAME_CONREF.equals(atts.getQName(index))) &&
+                        !ATTR_CONACTION_VALUE_PUSHBEFORE.equals(pushType)){
+                    // adjust href for pushafter and replace
                     value = replaceURL(value);
                 }
-                buf.append(value).append(QUOTATION);
+                res.addAttribute(atts.getURI(index), atts.getLocalName(index), atts.getQName(index),
+                                 atts.getType(index), value);
             }
-
         }
         //id attribute should only be added to the starting element
         //which dosen't have id attribute set
@@ -279,12 +271,13 @@ public final class ConrefPushReader extends AbstractXMLReader {
                     id = targetLoc;
                 }
                 //add id attribute
-                buf.append(STRING_BLANK);
-                buf.append(ATTRIBUTE_NAME_ID).append(EQUAL).append(QUOTATION);
-                buf.append(id).append(QUOTATION);
+                res.addAttribute("", ATTRIBUTE_NAME_ID, ATTRIBUTE_NAME_ID, "CDATA", id);
             }
         }
-        buf.append(GREATER_THAN);
+        if (pushcontent == null) {
+            pushcontent = new SAXEventBuffer();
+        }
+        pushcontent.startElement(uri, localName, elemName, res);
     }
     /**
      * 
@@ -314,7 +307,7 @@ public final class ConrefPushReader extends AbstractXMLReader {
      * @param pushcontent content
      * @param type push type
      */
-    private void addtoPushTable(String target, final String pushcontent, final String type) {
+    private void addtoPushTable(String target, final SAXEventBuffer pushcontent, final String type) throws SAXException {
         int sharpIndex = target.indexOf(SHARP);
         if (sharpIndex == -1){
             //if there is no '#' in target string, report error
@@ -328,13 +321,13 @@ public final class ConrefPushReader extends AbstractXMLReader {
             sharpIndex = target.indexOf(SHARP);
         }
         final String key = FileUtils.resolveFile(filePath, target).getPath();
-        Hashtable<String, String> table = null;
+        Hashtable<String, SAXEventBuffer> table = null;
         if (pushtable.containsKey(key)){
             //if there is something else push to the same file
             table = pushtable.get(key);
         }else{
             //if there is nothing else push to the same file
-            table = new Hashtable<String, String>();
+            table = new Hashtable<String, SAXEventBuffer>();
             pushtable.put(key, table);
         }
 
@@ -349,11 +342,17 @@ public final class ConrefPushReader extends AbstractXMLReader {
                 logger.logError(MessageUtils.getInstance().getMessage("DOTJ042E", target).toString());
                 return;
             }else{
-                table.put(targetLoc+addon, table.get(targetLoc+addon)+pushcontent);
+                // completed buffers are not modified, concatenate into a new buffer
+                final SAXEventBuffer buf = new SAXEventBuffer();
+                table.get(targetLoc+addon).replay(buf, buf);
+                pushcontent.replay(buf, buf);
+                buf.trim();
+                table.put(targetLoc+addon, buf);
             }
 
         }else{
             //if there is nothing else push to the same target
+            pushcontent.trim();
             table.put(targetLoc+addon, pushcontent);
         }
     }
@@ -361,8 +360,8 @@ public final class ConrefPushReader extends AbstractXMLReader {
     @Override
     public void characters(final char[] ch, final int start, final int length)
             throws SAXException {
-        if (this.start && needResolveEntity){
-            pushcontent.append(StringUtils.escapeXML(ch, start, length));
+        if (this.start && needResolveEntity && pushcontent != null){
+            pushcontent.characters(ch, start, length);
         }
     }
 
@@ -371,7 +370,9 @@ public final class ConrefPushReader extends AbstractXMLReader {
             throws SAXException {
         if (start){
             level --;
-            pushcontent.append(LESS_THAN).append(SLASH).append(name).append(GREATER_THAN);
+            if (pushcontent != null) {
+                pushcontent.endElement(uri, localName, name);
+            }
         }
         if (level == 0){
             //turn off start if we reach the end tag of staring element
@@ -381,8 +382,8 @@ public final class ConrefPushReader extends AbstractXMLReader {
                 //if it is pushafter or replace, we need to record content in pushtable
                 //if target == null we have already reported error in startElement;
                 if(target != null){
-                    addtoPushTable(target, pushcontent.toString(), pushType);
-                    pushcontent = new StringBuffer(INT_256);
+                    addtoPushTable(target, pushcontent, pushType);
+                    pushcontent = null;
                     target = null;
                     pushType = null;
                 }
@@ -394,8 +395,8 @@ public final class ConrefPushReader extends AbstractXMLReader {
     public void startEntity(final String name) throws SAXException {
         try {
             needResolveEntity = StringUtils.checkEntity(name);
-            if(!needResolveEntity){
-                pushcontent.append(StringUtils.getEntity(name));
+            if(!needResolveEntity && start && pushcontent != null){
+                pushcontent.skippedEntity(name);
             }
         } catch (final Exception e) {
             //logger.logError(e.getMessage(), e) ;
@@ -63,7 +63,7 @@ public final class DitamapIndexTermReader extends AbstractXMLReader {
 		topicrefSpecList = new ArrayList<String>(INT_16);
 		indexSeeSpecList = new ArrayList<String>(INT_16);
 		indexSeeAlsoSpecList = new ArrayList<String>(INT_16);
-		this.result = result != null ? result : IndexTermCollection.getInstantce();
+		this.result = result;
         this.indexMoved = indexMoved;
     }
 
@@ -151,7 +151,6 @@ public final class DitamapIndexTermReader extends AbstractXMLReader {
             if (obj instanceof TopicrefElement) {
                 if(((TopicrefElement)obj).getHref()!=null){
                     genTargets(indexTerm, (TopicrefElement)obj);
-                    //IndexTermCollection.getInstantce().addTerm(indexTerm);
                     result.addTerm(indexTerm);
                 }
             } else {
@@ -8,56 +8,69 @@
  */
 package org.dita.dost.reader;
 
+import java.io.File;
+
 import org.apache.xerces.xni.grammars.XMLGrammarPool;
 import org.dita.dost.util.XMLGrammarPoolImplUtils;
 
 /**
  * Manages creation and access to a master Xerces grammar pool.
- * The grammar pool is managed as a ThreadLocal variable so it can
- * be used across Ant task invocations.
+ * The grammar pool is shared by all threads so it can be used across
+ * Ant task invocations and by parallel parsers.
  */
 public final class GrammarPoolManager {
 
     //flag whether use grammar caching.
     private static boolean gramCache;
+    /** Persistent DTD grammar cache directory, {@code null} if not used. */
+    private static File cacheDir;
+    private static XMLGrammarPool grammarPool;
 
-    public static XMLGrammarPool initializeGrammarPool() {
+    public static synchronized XMLGrammarPool initializeGrammarPool() {
         XMLGrammarPool pool = null;
         try {
-            pool = new XMLGrammarPoolImplUtils(gramCache);
+            pool = new XMLGrammarPoolImplUtils(gramCache, cacheDir);
             //set grammar caching flag
 
         }
         catch (final Exception e) {
             System.out.println("Failed to create Xerces grammar pool for caching DTDs and schemas");
         }
-        grammarPool.set(pool);
+        grammarPool = pool;
         return pool;
     }
 
-    private static ThreadLocal<XMLGrammarPool> grammarPool = new ThreadLocal<XMLGrammarPool>() {
-
-
-    };
-
-
-
     /**
      * Get grammar pool
      * 
      * @return grammar pool instance
      */
-    public static XMLGrammarPool getGrammarPool() {
-        XMLGrammarPool pool = grammarPool.get();
+    public static synchronized XMLGrammarPool getGrammarPool() {
+        XMLGrammarPool pool = grammarPool;
         if (pool == null) {
             pool = initializeGrammarPool();
         }
         return pool;
     }
 
-    public static void setGramCache(final boolean gramCache) {
+    public static synchronized void setGramCache(final boolean gramCache) {
+        if (GrammarPoolManager.gramCache != gramCache) {
+            grammarPool = null;
+        }
         GrammarPoolManager.gramCache = gramCache;
     }
 
-}
+    /**
+     * Set persistent DTD grammar cache directory.
+     * 
+     * @param cacheDir cache directory, {@code null} to not use a persistent cache
+     * @since 2.0
+     */
+    public static synchronized void setCacheDir(final File cacheDir) {
+        if (cacheDir == null ? GrammarPoolManager.cacheDir != null : !cacheDir.equals(GrammarPoolManager.cacheDir)) {
+            grammarPool = null;
+        }
+        GrammarPoolManager.cacheDir = cacheDir;
+    }
 
+}
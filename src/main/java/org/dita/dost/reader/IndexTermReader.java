@@ -99,7 +99,7 @@ public final class IndexTermReader extends AbstractXMLReader {
 		titleMap = new HashMap<String, String>(INT_256);
 		processRoleStack = new Stack<String>();
 		processRoleLevel = 0;
-		this.result = result != null ? result : IndexTermCollection.getInstantce();
+		this.result = result;
     }
 
     /**
@@ -158,7 +158,6 @@ public final class IndexTermReader extends AbstractXMLReader {
         updateIndexTermTargetName();
         for(int i=0; i<size; i++){
             final IndexTerm indexterm = indexTermList.get(i);
-            //IndexTermCollection.getInstantce().addTerm(indexterm);
             result.addTerm(indexterm);
         }
     }
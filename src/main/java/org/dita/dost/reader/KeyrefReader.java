@@ -10,7 +10,6 @@ package org.dita.dost.reader;
 
 import static org.dita.dost.util.Constants.*;
 
-import java.io.StringReader;
 import java.net.URI;
 import java.util.Collections;
 import java.util.HashMap;
@@ -18,15 +17,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Element;
-import org.w3c.dom.Document;
-
 import org.dita.dost.module.Content;
 import org.dita.dost.resolver.DitaURIResolverFactory;
 import org.dita.dost.resolver.URIResolverAdapter;
+import org.dita.dost.util.KeyDefinition;
 import org.dita.dost.util.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -42,7 +36,6 @@ public final class KeyrefReader extends AbstractXMLReader {
     protected static final class KeyDef {
         
         protected final String key;
-        protected final StringBuffer keyDefContent;
         protected int keyDefLevel = 1;
         
         /**
@@ -52,16 +45,17 @@ public final class KeyrefReader extends AbstractXMLReader {
          */
         public KeyDef(final String key) {
             this.key = key;
-            keyDefContent = new StringBuffer();
         }
         
     }
 
     private final XMLReader reader;
     /** Key definition map, where map key is the key name and map value is XML definition */  
-    private final Map<String, Element> keyDefTable;
+    private final Map<String, KeyDefinition> keyDefTable;
 
     private Stack<KeyDef> keyDefs;
+    /** Builder for key definition elements, shared by nested key definitions. */
+    private KeyDefinition.Builder builder;
 
     private Set<String> keys;
 
@@ -69,7 +63,7 @@ public final class KeyrefReader extends AbstractXMLReader {
      * Constructor.
      */
     public KeyrefReader(){
-        keyDefTable = new HashMap<String, Element>();
+        keyDefTable = new HashMap<String, KeyDefinition>();
         try {
             reader = StringUtils.getXMLReader();
             reader.setFeature(FEATURE_NAMESPACE_PREFIX, true);
@@ -84,7 +78,7 @@ public final class KeyrefReader extends AbstractXMLReader {
     public void characters(final char[] ch, final int start, final int length)
             throws SAXException {
         if(!keyDefs.isEmpty()) {
-            keyDefAppend(StringUtils.escapeXML(ch, start, length));
+            builder.characters(ch, start, length);
         }
     }
 
@@ -94,17 +88,14 @@ public final class KeyrefReader extends AbstractXMLReader {
             throws SAXException {
         if(!keyDefs.isEmpty()){
             keyDefs.peek().keyDefLevel--;
-            keyDefAppend(LESS_THAN);
-            keyDefAppend(SLASH);
-            keyDefAppend(name);
-            keyDefAppend(GREATER_THAN);
+            final KeyDefinition elem = builder.endElement();
             if(keyDefs.peek().keyDefLevel == 0){
                 // to the end of the key definition, set the flag false
                 // and put the key definition to table.
                 final KeyDef keyDef = keyDefs.pop();
                 for(final String keyName: keyDef.key.split(" ")){
                     if(!keyName.equals("")) {
-                        keyDefTable.put(keyName, keyDefToDoc(keyDef.keyDefContent.toString()).getDocumentElement());
+                        keyDefTable.put(keyName, elem);
                     }
 
                 }
@@ -118,16 +109,17 @@ public final class KeyrefReader extends AbstractXMLReader {
     }
     
     /**
-     * Get key definitions. Each key definition Element has a distinct Document.
+     * Get key definitions. Key definitions are immutable and may be shared between key names and threads.
      * 
      * @return key definition map where map key is key name and map value is XML definition of the key 
      */
-    public Map<String, Element> getKeyDefinition() {
+    public Map<String, KeyDefinition> getKeyDefinition() {
         return Collections.unmodifiableMap(keyDefTable);
     }
 
     public void read(final URI filename) {
         keyDefs = new Stack<KeyDef>();
+        builder = new KeyDefinition.Builder();
         try {
             /* filename = tempDir + File.separator + filename; */
             final InputSource source = URIResolverAdapter.convertToInputSource(DitaURIResolverFactory.getURIResolver().resolve(filename.toString(), null));
@@ -136,6 +128,7 @@ public final class KeyrefReader extends AbstractXMLReader {
             logger.logError(ex.getMessage(), ex) ;
         } finally {
             keys = null;
+            builder = null;
         }
     }
     
@@ -165,31 +158,14 @@ public final class KeyrefReader extends AbstractXMLReader {
             }
             if(hasKnownKey){
                 keyDefs.push(new KeyDef(keyName));
-                putElement(name, atts);
+                builder.startElement(name, atts);
             }
         }else if(!keyDefs.isEmpty()){
             keyDefs.peek().keyDefLevel++;
-            putElement(name, atts);
+            builder.startElement(name, atts);
         }
     }
 
-    private void putElement(final String elemName,
-            final Attributes atts) {
-        keyDefAppend(LESS_THAN);
-        keyDefAppend(elemName);
-        for (int index=0; index < atts.getLength(); index++){
-            keyDefAppend(STRING_BLANK);
-            keyDefAppend(atts.getQName(index));
-            keyDefAppend(EQUAL);
-            keyDefAppend(QUOTATION);
-            String value = atts.getValue(index);
-            value = StringUtils.escapeXML(value);
-            keyDefAppend(value);
-            keyDefAppend(QUOTATION);
-        }
-        keyDefAppend(GREATER_THAN);
-    }
-    
     /**
      * Set temporary directory.
      * 
@@ -198,34 +174,4 @@ public final class KeyrefReader extends AbstractXMLReader {
     public void setTempDir(final String tempDir) {
     }
     
-    /**
-     * Append content to every key definition in the stack.
-     * 
-     * @param content XML content to add to key definitions
-     */
-    private void keyDefAppend(final String content) {
-        for (final KeyDef keyDef : keyDefs) {
-            keyDef.keyDefContent.append(content);
-        }
-    }
-    
-    /**
-     * Read key definition
-     * 
-     * @param key key definition XML string
-     * @return parsed key definition document
-     */
-    private Document keyDefToDoc(final String key) {
-        final InputSource inputSource = new InputSource(new StringReader(key));
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        Document document = null;
-        try {
-            final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-            document = documentBuilder.parse(inputSource);
-        } catch (final Exception e) {
-            logger.logError("Failed to parse key definition: " + e.getMessage(), e);
-        }
-        return document;
-    }
-    
 }
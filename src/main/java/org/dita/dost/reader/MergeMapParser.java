@@ -11,8 +11,12 @@ package org.dita.dost.reader;
 import static javax.xml.transform.OutputKeys.*;
 import static org.dita.dost.util.Constants.*;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
@@ -45,7 +49,9 @@ import org.xml.sax.XMLReader;
 /**
  * MergeMapParser reads the ditamap file after preprocessing and merges
  * different files into one intermediate result. It calls MergeTopicParser
- * to process the topic file. Instances are reusable but not thread-safe.
+ * to process the topic file. Merged topics are spooled into a temporary file
+ * and appended to the output after the map, so memory use does not grow with
+ * the size of the merged document. Instances are reusable but not thread-safe.
  */
 public final class MergeMapParser extends XMLFilterImpl {
     
@@ -61,7 +67,6 @@ public final class MergeMapParser extends XMLFilterImpl {
 
     private final Stack<String> processStack;
     private int processLevel;
-    private final ByteArrayOutputStream topicBuffer;
     private final SAXTransformerFactory stf;
     private OutputStream output;
     private DITAOTLogger logger;
@@ -74,7 +79,6 @@ public final class MergeMapParser extends XMLFilterImpl {
         processLevel = 0;
         util = new MergeUtils();
         topicParser = new MergeTopicParser(util);
-        topicBuffer = new ByteArrayOutputStream();
         try{
             reader = StringUtils.getXMLReader();
             reader.setContentHandler(this);
@@ -85,10 +89,6 @@ public final class MergeMapParser extends XMLFilterImpl {
                 throw new RuntimeException("SAX transformation factory not supported");
             }
             stf = (SAXTransformerFactory) tf;
-            final TransformerHandler s = stf.newTransformerHandler();
-            s.getTransformer().setOutputProperty(OMIT_XML_DECLARATION , "yes");
-            s.setResult(new StreamResult(topicBuffer));
-            topicParser.setContentHandler(s);
         }catch (final Exception e){
             throw new RuntimeException("Failed to initialize XML parser: " + e.getMessage(), e);
         }
@@ -116,19 +116,45 @@ public final class MergeMapParser extends XMLFilterImpl {
      */
     public void read(final File filename, final File tmpDir) {
         tempdir = tmpDir != null ? tmpDir : filename.getParentFile();
+        File topicSpool = null;
+        OutputStream topicOutput = null;
         try{
             final TransformerHandler s = stf.newTransformerHandler();
             s.getTransformer().setOutputProperty(OMIT_XML_DECLARATION, "yes");
             s.setResult(new StreamResult(output));
             setContentHandler(s);
+            topicSpool = File.createTempFile("merge", ".xml", tempdir);
+            topicOutput = new BufferedOutputStream(new FileOutputStream(topicSpool));
+            final TransformerHandler t = stf.newTransformerHandler();
+            t.getTransformer().setOutputProperty(OMIT_XML_DECLARATION, "yes");
+            t.setResult(new StreamResult(topicOutput));
+            topicParser.setContentHandler(t);
             dirPath = filename.getParentFile();
             reader.setErrorHandler(new DITAOTXMLErrorHandler(filename.getAbsolutePath(), logger));
             topicParser.getContentHandler().startDocument();
             reader.parse(filename.toURI().toString());
             topicParser.getContentHandler().endDocument();
-            output.write(topicBuffer.toByteArray());
+            topicOutput.close();
+            topicOutput = null;
+            final InputStream in = new FileInputStream(topicSpool);
+            try {
+                FileUtils.copy(in, output);
+            } finally {
+                in.close();
+            }
         }catch(final Exception e){
             logger.logError(e.getMessage(), e) ;
+        } finally {
+            if (topicOutput != null) {
+                try {
+                    topicOutput.close();
+                } catch (final IOException e) {
+                    logger.logError("Failed to close topic spool: " + e.getMessage(), e);
+                }
+            }
+            if (topicSpool != null && !topicSpool.delete()) {
+                logger.logError("Failed to delete topic spool " + topicSpool.getAbsolutePath());
+            }
         }
     }
 
@@ -234,7 +260,7 @@ public final class MergeMapParser extends XMLFilterImpl {
         try{
             final Job job = new Job(tempdir);
             for (final FileInfo f: job.getFileInfo()) {
-                if (f.isTarget) {
+                if (f.isTarget()) {
                     String element = f.file.getPath();
                     if (!dirPath.equals(tempdir)) {
                         element = FileUtils.getRelativeUnixPath(new File(dirPath,"a.ditamap").getAbsolutePath(),
@@ -242,7 +268,7 @@ public final class MergeMapParser extends XMLFilterImpl {
                     }
                     if (!util.isVisited(element)) {
                         util.visit(element);
-                        if (!f.isResourceOnly && (f.isChunked || !f.isSkipChunk)){
+                        if (!f.isResourceOnly() && (f.isChunked() || !f.isSkipChunk())){
                             //ensure the file exists
                             final File file = new File(dirPath, element);
                             if (file.exists()) {
@@ -147,7 +147,7 @@ public final class MergeTopicParser extends XMLFilterImpl {
             if (util.findId(pathFromMap)) {
                 retAttValue = SHARP + util.getIdValue(pathFromMap);
             } else {
-                final String fileId = MergeUtils.getFirstTopicId(pathFromMap, dirPath, false);
+                final String fileId = MergeUtils.getFirstTopicId(pathFromMap, dirPath);
                 final String key = pathFromMap + SHARP + fileId;
                 if (util.findId(key)) {
                     util.addId(pathFromMap, util.getIdValue(key));
@@ -30,7 +30,8 @@ import org.xml.sax.InputSource;
 public final class DitaURIResolverFactory {
         
     private static URIResolver resolver = null;
-    private static String path = null;
+    /** Base directory of the current build, inherited by threads started from the build thread. */
+    private static final InheritableThreadLocal<String> path = new InheritableThreadLocal<String>();
     static {
         // DITA-OT default URIResolver
         /**
@@ -48,7 +49,7 @@ public final class DitaURIResolverFactory {
                 if (!file.isAbsolute()) {
                     String parentDir=null;
                     if(base == null){
-                        parentDir=path;
+                        parentDir=path.get();
                     }
                     else{
                         parentDir=new File(base).getAbsolutePath();
@@ -89,6 +90,6 @@ public final class DitaURIResolverFactory {
      * @param path path
      */
     public static void setPath(final String path) {
-        DitaURIResolverFactory.path = path;
+        DitaURIResolverFactory.path.set(path);
     }
 }
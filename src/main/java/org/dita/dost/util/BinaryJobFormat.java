@@ -0,0 +1,308 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dita.dost.util.Job.FileInfo;
+
+/**
+ * Binary job configuration format. The file consists of an interned string table,
+ * typed property blocks, and a file table where the boolean file info fields are
+ * stored as a {@link FileInfo.Flag} bitset. The file is read into a heap buffer with a single channel read.
+ * 
+ * <p>The binary file records the length and modification time of the XML job
+ * file written with it, and is only valid as long as the XML file is not modified.</p>
+ * 
+ * @since 2.0
+ */
+final class BinaryJobFormat {
+
+    private static final int MAGIC = 0x444A4F42;
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /** String index for {@code null}. */
+    private static final int NULL = -1;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_SET = 1;
+    private static final byte TYPE_MAP = 2;
+
+    private BinaryJobFormat() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Read binary job configuration.
+     * 
+     * @param file binary job file
+     * @param xmlFile XML job file the binary file was written with
+     * @param prop properties to read into
+     * @param files file infos to read into
+     * @return {@code true} if binary file was read, {@code false} if it was missing or out of date
+     * @throws IOException if reading failed or the file is corrupt; the property and file info maps may
+     *         have been partially filled
+     */
+    static boolean read(final File file, final File xmlFile, final Map<String, Object> prop, final Map<File, FileInfo> files) throws IOException {
+        if (!file.exists() || !xmlFile.exists()) {
+            return false;
+        }
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Job file " + file.getAbsolutePath() + " is too large");
+            }
+            final ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf) == -1) {
+                    throw new IOException("Truncated job file " + file.getAbsolutePath());
+                }
+            }
+            buf.flip();
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION
+                    || buf.getLong() != xmlFile.length() || buf.getLong() != xmlFile.lastModified()) {
+                return false;
+            }
+            final String[] strings = new String[count(buf, 4)];
+            for (int i = 0; i < strings.length; i++) {
+                final byte[] b = new byte[count(buf, 1)];
+                buf.get(b);
+                strings[i] = new String(b, UTF8);
+            }
+            final int propCount = count(buf, 9);
+            for (int i = 0; i < propCount; i++) {
+                final String name = requiredString(strings, buf);
+                switch (buf.get()) {
+                case TYPE_STRING:
+                    prop.put(name, string(strings, buf));
+                    break;
+                case TYPE_SET: {
+                    final int n = count(buf, 4);
+                    final Set<String> set = new HashSet<String>(n * 2);
+                    for (int j = 0; j < n; j++) {
+                        set.add(string(strings, buf));
+                    }
+                    prop.put(name, set);
+                    break;
+                }
+                case TYPE_MAP: {
+                    final int n = count(buf, 8);
+                    final Map<String, String> map = new HashMap<String, String>(n * 2);
+                    for (int j = 0; j < n; j++) {
+                        map.put(string(strings, buf), string(strings, buf));
+                    }
+                    prop.put(name, map);
+                    break;
+                }
+                default:
+                    throw new IOException("Unsupported property type in " + file.getAbsolutePath());
+                }
+            }
+            final int fileCount = count(buf, 24);
+            for (int i = 0; i < fileCount; i++) {
+                final URI uri = URI.create(requiredString(strings, buf));
+                final File path = new File(requiredString(strings, buf));
+                final FileInfo f = new FileInfo(uri, path);
+                f.setFormat(string(strings, buf));
+                f.setDigest(string(strings, buf));
+                f.setFlags(buf.getInt());
+                final int n = count(buf, 4);
+                for (int j = 0; j < n; j++) {
+                    f.addDependency(new File(requiredString(strings, buf)));
+                }
+                files.put(f.file, f);
+            }
+            return true;
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated job file " + file.getAbsolutePath());
+        } catch (final RuntimeException e) {
+            // corrupt data that passed validation, e.g. an invalid URI, must fall back to the XML job file too
+            throw new IOException("Invalid job file " + file.getAbsolutePath() + ": " + e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read entry count. The count is validated against the remaining bytes so that a corrupt count is
+     * reported as an invalid file instead of failing on allocation.
+     * 
+     * @param buf buffer to read from
+     * @param entrySize minimum size of a single entry in bytes
+     * @return entry count
+     * @throws IllegalArgumentException if count is negative or larger than the remaining data allows
+     */
+    private static int count(final ByteBuffer buf, final int entrySize) {
+        final int n = buf.getInt();
+        if (n < 0 || n > buf.remaining() / entrySize) {
+            throw new IllegalArgumentException("invalid entry count " + n);
+        }
+        return n;
+    }
+
+    /**
+     * Read string table reference.
+     * 
+     * @param strings string table
+     * @param buf buffer to read from
+     * @return referenced string, {@code null} for null reference
+     * @throws IllegalArgumentException if index is outside the string table
+     */
+    private static String string(final String[] strings, final ByteBuffer buf) {
+        final int i = buf.getInt();
+        if (i == NULL) {
+            return null;
+        }
+        if (i < 0 || i >= strings.length) {
+            throw new IllegalArgumentException("invalid string table index " + i);
+        }
+        return strings[i];
+    }
+
+    private static String requiredString(final String[] strings, final ByteBuffer buf) {
+        final String s = string(strings, buf);
+        if (s == null) {
+            throw new IllegalArgumentException("missing required string");
+        }
+        return s;
+    }
+
+    /**
+     * Write binary job configuration.
+     * 
+     * @param file binary job file
+     * @param xmlFile XML job file written with the same contents
+     * @param prop properties to write
+     * @param files file infos to write
+     * @throws IOException if writing failed
+     */
+    static void write(final File file, final File xmlFile, final Map<String, Object> prop, final Collection<FileInfo> files) throws IOException {
+        final StringTable strings = new StringTable();
+        final List<Object> props = new ArrayList<Object>();
+        for (final Map.Entry<String, Object> e: prop.entrySet()) {
+            final Object v = e.getValue();
+            if (v instanceof String || v instanceof Set || v instanceof Map) {
+                strings.add(e.getKey());
+                props.add(e.getKey());
+                props.add(v);
+                if (v instanceof String) {
+                    strings.add(v.toString());
+                } else if (v instanceof Set) {
+                    for (final Object o: (Set<?>) v) {
+                        strings.add(o.toString());
+                    }
+                } else {
+                    for (final Map.Entry<?, ?> o: ((Map<?, ?>) v).entrySet()) {
+                        strings.add(o.getKey().toString());
+                        strings.add(o.getValue().toString());
+                    }
+                }
+            }
+        }
+        for (final FileInfo f: files) {
+            strings.add(f.uri.toString());
+            strings.add(f.file.getPath());
+            strings.add(f.getFormat());
+            strings.add(f.getDigest());
+            for (final File d: f.getDependencies()) {
+                strings.add(d.getPath());
+            }
+        }
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(xmlFile.length());
+            out.writeLong(xmlFile.lastModified());
+            out.writeInt(strings.list.size());
+            for (final String s: strings.list) {
+                final byte[] b = s.getBytes(UTF8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+            out.writeInt(props.size() / 2);
+            for (int i = 0; i < props.size(); i += 2) {
+                out.writeInt(strings.get((String) props.get(i)));
+                final Object v = props.get(i + 1);
+                if (v instanceof String) {
+                    out.writeByte(TYPE_STRING);
+                    out.writeInt(strings.get(v.toString()));
+                } else if (v instanceof Set) {
+                    final Set<?> s = (Set<?>) v;
+                    out.writeByte(TYPE_SET);
+                    out.writeInt(s.size());
+                    for (final Object o: s) {
+                        out.writeInt(strings.get(o.toString()));
+                    }
+                } else {
+                    final Map<?, ?> m = (Map<?, ?>) v;
+                    out.writeByte(TYPE_MAP);
+                    out.writeInt(m.size());
+                    for (final Map.Entry<?, ?> o: m.entrySet()) {
+                        out.writeInt(strings.get(o.getKey().toString()));
+                        out.writeInt(strings.get(o.getValue().toString()));
+                    }
+                }
+            }
+            out.writeInt(files.size());
+            for (final FileInfo f: files) {
+                out.writeInt(strings.get(f.uri.toString()));
+                out.writeInt(strings.get(f.file.getPath()));
+                out.writeInt(strings.get(f.getFormat()));
+                out.writeInt(strings.get(f.getDigest()));
+                out.writeInt(f.getFlags());
+                final Set<File> deps = f.getDependencies();
+                out.writeInt(deps.size());
+                for (final File d: deps) {
+                    out.writeInt(strings.get(d.getPath()));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Interned string table.
+     */
+    private static final class StringTable {
+
+        final List<String> list = new ArrayList<String>();
+        final Map<String, Integer> index = new HashMap<String, Integer>();
+
+        void add(final String s) {
+            if (s != null && !index.containsKey(s)) {
+                index.put(s, list.size());
+                list.add(s);
+            }
+        }
+
+        int get(final String s) {
+            return s == null ? NULL : index.get(s);
+        }
+
+    }
+
+}
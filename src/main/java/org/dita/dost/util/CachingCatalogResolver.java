@@ -0,0 +1,222 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXSource;
+
+import org.apache.xml.resolver.CatalogManager;
+import org.apache.xml.resolver.tools.CatalogResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * Catalog resolver that memoizes catalog lookups.
+ *
+ * <p>Resolved URIs are cached by public and system ID, and contents of resolved local
+ * entities, e.g. DTD modules, are cached in memory. Lookup caches are capped at
+ * {@value #MAX_CACHE_SIZE} entries each; lookups are not cached once a cache is full. Cache hits do not acquire locks, while
+ * catalog lookups on cache misses are serialized because the catalog is not thread-safe.
+ * The catalog must not be modified after the first lookup.</p>
+ *
+ * @since 2.0
+ */
+public final class CachingCatalogResolver extends CatalogResolver {
+
+    /** Maximum number of cached lookups per cache. */
+    private static final int MAX_CACHE_SIZE = 4096;
+    /** Maximum size of entity contents to cache. */
+    private static final long MAX_CONTENT_SIZE = 1024 * 1024;
+    /** Cache value for unresolved lookups. */
+    private static final String UNRESOLVED = new String();
+
+    private final ConcurrentMap<String, String> entities = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, String> uris = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<File, Content> contents = new ConcurrentHashMap<File, Content>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong contentHits = new AtomicLong();
+
+    /**
+     * Create new caching catalog resolver.
+     *
+     * @param manager catalog manager
+     */
+    public CachingCatalogResolver(final CatalogManager manager) {
+        super(manager);
+    }
+
+    @Override
+    public String getResolvedEntity(final String publicId, final String systemId) {
+        lookups.incrementAndGet();
+        final String key = (publicId != null ? publicId : "") + '\u0000' + (systemId != null ? systemId : "");
+        String resolved = entities.get(key);
+        if (resolved != null) {
+            hits.incrementAndGet();
+        } else {
+            synchronized (this) {
+                resolved = super.getResolvedEntity(publicId, systemId);
+            }
+            if (resolved == null) {
+                resolved = UNRESOLVED;
+            }
+            if (entities.size() < MAX_CACHE_SIZE) {
+                entities.put(key, resolved);
+            }
+        }
+        return resolved != UNRESOLVED ? resolved : null;
+    }
+
+    @Override
+    public InputSource resolveEntity(final String publicId, final String systemId) {
+        final String resolved = getResolvedEntity(publicId, systemId);
+        if (resolved == null) {
+            return null;
+        }
+        final InputSource source = new InputSource(resolved);
+        source.setPublicId(publicId);
+        try {
+            source.setByteStream(openStream(resolved));
+        } catch (final IOException e) {
+            return null;
+        }
+        return source;
+    }
+
+    @Override
+    public Source resolve(final String href, final String base) throws TransformerException {
+        lookups.incrementAndGet();
+        // absolute references resolve independently of base, so key them by reference only
+        final String key = base == null || isAbsolute(href) ? href : href + '\u0000' + base;
+        String resolved = uris.get(key);
+        if (resolved != null) {
+            hits.incrementAndGet();
+        } else {
+            final Source source;
+            synchronized (this) {
+                source = super.resolve(href, base);
+            }
+            resolved = source.getSystemId();
+            if (uris.size() < MAX_CACHE_SIZE) {
+                uris.put(key, resolved);
+            }
+        }
+        final SAXSource source = new SAXSource();
+        source.setInputSource(new InputSource(resolved));
+        return source;
+    }
+
+    private static boolean isAbsolute(final String href) {
+        try {
+            return new URI(href).isAbsolute();
+        } catch (final Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Open resolved entity. Local files are read from the content cache.
+     */
+    private InputStream openStream(final String resolved) throws IOException {
+        final File file;
+        try {
+            file = resolved.startsWith("file:") ? new File(new URI(resolved)) : null;
+        } catch (final Exception e) {
+            // not a valid URI, e.g. unescaped file path
+            return new URL(resolved).openStream();
+        }
+        if (file == null) {
+            return new URL(resolved).openStream();
+        }
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        Content content = contents.get(file);
+        if (content != null && content.lastModified == lastModified && content.data.length == length) {
+            contentHits.incrementAndGet();
+        } else if (length <= MAX_CONTENT_SIZE) {
+            content = new Content(lastModified, read(file));
+            contents.put(file, content);
+        } else {
+            return new FileInputStream(file);
+        }
+        return new ByteArrayInputStream(content.data);
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int off = 0;
+            int len;
+            while (off < data.length && (len = in.read(data, off, data.length - off)) != -1) {
+                off += len;
+            }
+            if (off != data.length) {
+                throw new IOException("Failed to read " + file.getAbsolutePath());
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * Get number of catalog lookups.
+     *
+     * @return number of lookups
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * Get number of catalog lookups served from cache.
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get ratio of catalog lookups served from cache.
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        final long l = lookups.get();
+        return l != 0 ? (double) hits.get() / l : 0;
+    }
+
+    /**
+     * Get number of resolved entities read from content cache.
+     *
+     * @return number of content cache hits
+     */
+    public long getContentHits() {
+        return contentHits.get();
+    }
+
+    private static final class Content {
+        final long lastModified;
+        final byte[] data;
+        Content(final long lastModified, final byte[] data) {
+            this.lastModified = lastModified;
+            this.data = data;
+        }
+    }
+
+}
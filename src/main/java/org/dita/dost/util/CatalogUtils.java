@@ -28,7 +28,7 @@ public final class CatalogUtils {
     /**logger to log informations.*/
     private static DITAOTJavaLogger logger = new DITAOTJavaLogger();
     /**apache catalogResolver.*/
-    private static CatalogResolver catalogResolver = null;
+    private static volatile CachingCatalogResolver catalogResolver = null;
     /** Absolute directory to find catalog-dita.xml.*/
     private static File ditaDir;
     /**
@@ -39,39 +39,57 @@ public final class CatalogUtils {
     }
 
     /**
-     * Set directory to find catalog-dita.xml.
+     * Set directory to find catalog-dita.xml. The cached resolver is kept if the directory does not change.
      * @param ditaDir ditaDir
      */
     public static synchronized void setDitaDir(final File ditaDir){
-        catalogResolver=null;
+        if (ditaDir == null ? CatalogUtils.ditaDir != null : !ditaDir.equals(CatalogUtils.ditaDir)) {
+            catalogResolver=null;
+        }
         CatalogUtils.ditaDir=ditaDir;
     }
 
     /**
-     * Get CatalogResolver.
+     * Get catalog file.
+     * 
+     * @return catalog file, {@code null} if DITA-OT directory has not been set
+     * @since 2.0
+     */
+    public static synchronized File getCatalogFile() {
+        return ditaDir != null ? new File(ditaDir, FILE_NAME_CATALOG) : null;
+    }
+
+    /**
+     * Get CatalogResolver. The returned resolver memoizes lookups and is safe for concurrent use.
      * @return CatalogResolver
      */
-    public static synchronized CatalogResolver getCatalogResolver() {
-        if (catalogResolver == null) {
-            final CatalogManager manager = new CatalogManager();
-            manager.setIgnoreMissingProperties(true);
-            manager.setUseStaticCatalog(false); // We'll use a private catalog.
-            manager.setPreferPublic(true);
+    public static CatalogResolver getCatalogResolver() {
+        CachingCatalogResolver resolver = catalogResolver;
+        if (resolver == null) {
+            synchronized (CatalogUtils.class) {
+                resolver = catalogResolver;
+                if (resolver == null) {
+                    final CatalogManager manager = new CatalogManager();
+                    manager.setIgnoreMissingProperties(true);
+                    manager.setUseStaticCatalog(false); // We'll use a private catalog.
+                    manager.setPreferPublic(true);
 
-            //manager.setVerbosity(10);
-            catalogResolver = new CatalogResolver(manager);
+                    //manager.setVerbosity(10);
+                    resolver = new CachingCatalogResolver(manager);
 
-            final File catalogFilePath = new File(ditaDir, FILE_NAME_CATALOG);
+                    final File catalogFilePath = new File(ditaDir, FILE_NAME_CATALOG);
 
-            final Catalog catalog = catalogResolver.getCatalog();
-            try {
-                catalog.parseCatalog(catalogFilePath.toURI().toURL());
-            } catch (final Exception e) {
-                logger.logError(e.getMessage(), e) ;
+                    final Catalog catalog = resolver.getCatalog();
+                    try {
+                        catalog.parseCatalog(catalogFilePath.toURI().toURL());
+                    } catch (final Exception e) {
+                        logger.logError(e.getMessage(), e) ;
+                    }
+                    catalogResolver = resolver;
+                }
             }
         }
-
-        return catalogResolver;
+        return resolver;
     }
 }
 
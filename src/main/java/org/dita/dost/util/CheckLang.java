@@ -88,7 +88,7 @@ public final class CheckLang extends Task {
             }else{
                 //parse topic files
                 for (final FileInfo f: job.getFileInfo()){
-                    if (f.isActive && ATTR_FORMAT_VALUE_DITA.equals(f.format)) {
+                    if (f.isActive() && ATTR_FORMAT_VALUE_DITA.equals(f.getFormat())) {
                         final File topicFile = new File(tempdir, f.file.getPath());
                         if(topicFile.exists()){
                             saxParser.parse(topicFile, parser);
@@ -780,6 +780,18 @@ public final class Constants {
     public static final String INPUT_DITAMAP_LIST_FILE_LIST = "user.input.file.listfile";
     /** Property name for input directory system path */
     public static final String INPUT_DIR = "user.input.dir";
+    /** Property name for document store type */
+    public static final String STORE_TYPE = "store-type";
+    /** Document store type for temporary files only */
+    public static final String STORE_TYPE_FILE = "file";
+    /** Document store type for in-memory document store */
+    public static final String STORE_TYPE_MEMORY = "memory";
+    /** Property name for job configuration file format */
+    public static final String JOB_FORMAT = "job-format";
+    /** Job configuration format with only XML file */
+    public static final String JOB_FORMAT_XML = "xml";
+    /** Job configuration format with binary file and XML export */
+    public static final String JOB_FORMAT_BINARY = "binary";
     /** Property name for full dita map and topic list file */
     public static final String FULL_DITAMAP_TOPIC_LIST = "fullditamapandtopiclist";
     /** Property name for conref targets list file */
@@ -853,6 +865,22 @@ public final class Constants {
     public static final String ANT_INVOKER_EXT_PARAM_OUTPUTDIR="outputdir";
     /**Constants for extensive params used in ant invoker(gramcache).*/
     public static final String ANT_INVOKER_EXT_PARAM_GRAMCACHE="gramcache";
+    /**Constants for extensive params used in ant invoker(gramcache-dir).*/
+    public static final String ANT_INVOKER_EXT_PARAM_GRAMCACHE_DIR="gramcache-dir";
+    /**Constants for extensive params used in ant invoker(threads).*/
+    public static final String ANT_INVOKER_EXT_PARAM_THREADS="threads";
+    /**Constants for extensive params used in ant invoker(store-type).*/
+    public static final String ANT_INVOKER_EXT_PARAM_STORE_TYPE="store-type";
+    /**Constants for extensive params used in ant invoker(incremental).*/
+    public static final String ANT_INVOKER_EXT_PARAM_INCREMENTAL="incremental";
+    /**Constants for extensive params used in ant invoker(job-format).*/
+    public static final String ANT_INVOKER_EXT_PARAM_JOB_FORMAT="job-format";
+    /**Constants for extensive params used in ant invoker(draft).*/
+    public static final String ANT_INVOKER_EXT_PARAM_DRAFT="draft";
+    /**Constants for extensive params used in ant invoker(tablelink).*/
+    public static final String ANT_INVOKER_EXT_PARAM_TABLELINK="tablelink";
+    /**Constants for extensive params used in ant invoker(figurelink).*/
+    public static final String ANT_INVOKER_EXT_PARAM_FIGURELINK="figurelink";
     public static final String ANT_INVOKER_EXT_PARAN_SETSYSTEMID="setsystemid";
     /**Constants for line separator.*/
     public static final String LINE_SEPARATOR = System.getProperty("line.separator");
@@ -1008,6 +1036,8 @@ public final class Constants {
     public static final String CONF_PROPERTIES = "configuration.properties";
     /** Generated configuration filename. */
     public static final String GEN_CONF_PROPERTIES = "plugin.properties";
+    /** File name of marker written to temporary directory when preprocessing has completed. */
+    public static final String PREPROCESS_COMPLETE_FILE = ".preprocess.complete";
     /** Configuration value separator. */
     public static final String CONF_LIST_SEPARATOR = ";";
     /** Property name for supported DITA topic extensions. */
@@ -13,14 +13,21 @@ import java.text.Collator;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
- * DITAOTCollator class.
+ * DITAOTCollator class. Collators are not thread-safe, so instances are cached
+ * separately for each thread.
  *
  * @author Wu, Zhi Qiang
  */
 public final class DITAOTCollator implements Comparator {
-    static HashMap<Locale, DITAOTCollator> cache = new HashMap<Locale, DITAOTCollator>();
+    private static final ThreadLocal<Map<Locale, DITAOTCollator>> cache = new ThreadLocal<Map<Locale, DITAOTCollator>>() {
+        @Override
+        protected Map<Locale, DITAOTCollator> initialValue() {
+            return new HashMap<Locale, DITAOTCollator>();
+        }
+    };
 
     /**
      * Return the DITAOTCollator instance, Locale.US is default.
@@ -39,11 +46,11 @@ public final class DITAOTCollator implements Comparator {
         if (locale == null) {
             throw new NullPointerException("Locale may not be null");
         }
-        DITAOTCollator instance = null;
-        instance = cache.get(locale);
+        final Map<Locale, DITAOTCollator> instances = cache.get();
+        DITAOTCollator instance = instances.get(locale);
         if (instance == null) {
             instance = new DITAOTCollator(locale);
-            cache.put(locale, instance);
+            instances.put(locale, instance);
         }
         return instance;
     }
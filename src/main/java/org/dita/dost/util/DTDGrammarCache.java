@@ -0,0 +1,678 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.xerces.impl.dtd.DTDGrammar;
+import org.apache.xerces.impl.dtd.XMLDTDLoader;
+import org.apache.xerces.util.EntityResolverWrapper;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLResourceIdentifierImpl;
+import org.apache.xerces.util.XMLStringBuffer;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.XMLDTDContentModelHandler;
+import org.apache.xerces.xni.XMLDTDHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XMLDTDDescription;
+import org.apache.xerces.xni.parser.XMLDTDContentModelSource;
+import org.apache.xerces.xni.parser.XMLDTDSource;
+import org.apache.xerces.xni.parser.XMLEntityResolver;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xml.resolver.tools.CatalogResolver;
+import org.dita.dost.log.DITAOTJavaLogger;
+
+/**
+ * Persistent DTD grammar cache.
+ *
+ * <p>Xerces grammars are not serializable, so the cache stores the DTD declaration events
+ * reported while the grammar was compiled and rebuilds the grammar by replaying them. A cache
+ * entry is keyed by the catalog resolved DTD location and is valid as long as the checksums of
+ * the catalog file and every DTD module read during compilation match.</p>
+ *
+ * <p>Compiled grammars are also shared in memory between all descriptions that resolve to
+ * the same DTD.</p>
+ *
+ * @since 2.0
+ */
+final class DTDGrammarCache {
+
+    private static final int MAGIC = 0x44544447;
+    private static final int VERSION = 1;
+
+    private static final int START_DTD = 1;
+    private static final int END_DTD = 2;
+    private static final int START_PARAMETER_ENTITY = 3;
+    private static final int END_PARAMETER_ENTITY = 4;
+    private static final int START_EXTERNAL_SUBSET = 5;
+    private static final int END_EXTERNAL_SUBSET = 6;
+    private static final int ELEMENT_DECL = 7;
+    private static final int START_ATTLIST = 8;
+    private static final int ATTRIBUTE_DECL = 9;
+    private static final int END_ATTLIST = 10;
+    private static final int INTERNAL_ENTITY_DECL = 11;
+    private static final int EXTERNAL_ENTITY_DECL = 12;
+    private static final int UNPARSED_ENTITY_DECL = 13;
+    private static final int NOTATION_DECL = 14;
+    private static final int START_CONDITIONAL = 15;
+    private static final int END_CONDITIONAL = 16;
+    private static final int START_CONTENT_MODEL = 17;
+    private static final int ANY = 18;
+    private static final int EMPTY = 19;
+    private static final int START_GROUP = 20;
+    private static final int PCDATA = 21;
+    private static final int ELEMENT = 22;
+    private static final int SEPARATOR = 23;
+    private static final int OCCURRENCE = 24;
+    private static final int END_GROUP = 25;
+    private static final int END_CONTENT_MODEL = 26;
+
+    private final DITAOTJavaLogger logger = new DITAOTJavaLogger();
+    private final File dir;
+    /** Compiled grammars by resolved DTD location. */
+    private final Map<String, DTDGrammar> grammars = new HashMap<String, DTDGrammar>();
+
+    /**
+     * Create new grammar cache.
+     *
+     * @param dir cache directory
+     */
+    DTDGrammarCache(final File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Get grammar for DTD description. The grammar is read from the cache directory
+     * or compiled and written to the cache directory.
+     *
+     * @param desc DTD description
+     * @return grammar, {@code null} if grammar could not be compiled
+     */
+    synchronized DTDGrammar getGrammar(final XMLDTDDescription desc) {
+        final CatalogResolver resolver = CatalogUtils.getCatalogResolver();
+        String systemId = resolver.getResolvedEntity(desc.getPublicId(), desc.getExpandedSystemId());
+        if (systemId == null) {
+            systemId = desc.getExpandedSystemId();
+        }
+        if (systemId == null) {
+            return null;
+        }
+        DTDGrammar grammar = grammars.get(systemId);
+        if (grammar == null) {
+            final XMLInputSource in = new XMLInputSource(desc.getPublicId(), systemId, null);
+            final File file = new File(dir, DigestUtils.shaHex(systemId) + ".grammar");
+            grammar = read(file, in);
+            if (grammar == null) {
+                grammar = compile(file, in, resolver);
+            }
+            if (grammar != null) {
+                XMLGrammarPoolImplUtils.initContentModels(grammar);
+                grammars.put(systemId, grammar);
+            }
+        }
+        return grammar;
+    }
+
+    /**
+     * Compile grammar and write declaration events to cache file.
+     *
+     * @return compiled grammar, {@code null} if compilation failed
+     */
+    private DTDGrammar compile(final File file, final XMLInputSource in, final CatalogResolver resolver) {
+        final Map<String, String> dependencies = new LinkedHashMap<String, String>();
+        dependencies.put(in.getSystemId(), null);
+        final XMLEntityResolver entityResolver = new EntityResolverWrapper(resolver) {
+            @Override
+            public XMLInputSource resolveEntity(final XMLResourceIdentifier id) throws XNIException, IOException {
+                final XMLInputSource res = super.resolveEntity(id);
+                final String systemId = res != null ? res.getSystemId() : id.getExpandedSystemId();
+                if (systemId != null) {
+                    dependencies.put(systemId, null);
+                }
+                return res;
+            }
+        };
+        final Recorder recorder = new Recorder();
+        final DTDGrammar grammar;
+        try {
+            final XMLDTDLoader loader = new XMLDTDLoader(new SymbolTable());
+            loader.setEntityResolver(entityResolver);
+            loader.setDTDHandler(recorder);
+            loader.setDTDContentModelHandler(recorder);
+            grammar = (DTDGrammar) loader.loadGrammar(in);
+        } catch (final Exception e) {
+            logger.logDebug("Failed to compile DTD " + in.getSystemId() + ": " + e.getMessage());
+            return null;
+        }
+        try {
+            final File catalog = CatalogUtils.getCatalogFile();
+            if (catalog != null && catalog.exists()) {
+                dependencies.put(catalog.toURI().toString(), null);
+            }
+            for (final Map.Entry<String, String> e: dependencies.entrySet()) {
+                e.setValue(FileUtils.getDigest(new File(new URI(e.getKey()))));
+            }
+            write(file, in.getSystemId(), dependencies, recorder.getEvents());
+        } catch (final Exception e) {
+            // dependency not a local file or cache directory not writable
+            logger.logDebug("Failed to cache DTD " + in.getSystemId() + ": " + e.getMessage());
+        }
+        return grammar;
+    }
+
+    private void write(final File file, final String systemId, final Map<String, String> dependencies, final byte[] events) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir.getAbsolutePath());
+        }
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, systemId);
+            out.writeInt(dependencies.size());
+            for (final Map.Entry<String, String> e: dependencies.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+            out.write(events);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Read grammar from cache file.
+     *
+     * @return grammar, {@code null} if cache file does not exist or is out of date
+     */
+    private DTDGrammar read(final File file, final XMLInputSource in) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final DataInputStream din = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (din.readInt() != MAGIC || din.readInt() != VERSION || !in.getSystemId().equals(readString(din))) {
+                    return null;
+                }
+                final int count = din.readInt();
+                for (int i = 0; i < count; i++) {
+                    final File dependency = new File(new URI(readString(din)));
+                    final String digest = readString(din);
+                    if (!dependency.exists() || !FileUtils.getDigest(dependency).equals(digest)) {
+                        return null;
+                    }
+                }
+                final org.apache.xerces.impl.dtd.XMLDTDDescription desc = new org.apache.xerces.impl.dtd.XMLDTDDescription(
+                        in.getPublicId(), in.getSystemId(), null, in.getSystemId(), null);
+                final DTDGrammar grammar = new DTDGrammar(new SymbolTable(), desc);
+                replay(din, grammar);
+                return grammar;
+            } finally {
+                din.close();
+            }
+        } catch (final Exception e) {
+            logger.logDebug("Failed to read cached DTD " + in.getSystemId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Replay
+
+    private static void replay(final DataInputStream in, final DTDGrammar grammar) throws IOException {
+        int op;
+        do {
+            op = in.readByte();
+            switch (op) {
+            case START_DTD:
+                grammar.startDTD(null, null);
+                break;
+            case END_DTD:
+                grammar.endDTD(null);
+                break;
+            case START_PARAMETER_ENTITY:
+                grammar.startParameterEntity(readString(in), readIdentifier(in), readString(in), null);
+                break;
+            case END_PARAMETER_ENTITY:
+                grammar.endParameterEntity(readString(in), null);
+                break;
+            case START_EXTERNAL_SUBSET:
+                grammar.startExternalSubset(readIdentifier(in), null);
+                break;
+            case END_EXTERNAL_SUBSET:
+                grammar.endExternalSubset(null);
+                break;
+            case ELEMENT_DECL:
+                grammar.elementDecl(readString(in), readString(in), null);
+                break;
+            case START_ATTLIST:
+                grammar.startAttlist(readString(in), null);
+                break;
+            case ATTRIBUTE_DECL: {
+                final String elementName = readString(in);
+                final String attributeName = readString(in);
+                final String type = readString(in);
+                final int len = in.readInt();
+                String[] enumeration = null;
+                if (len != -1) {
+                    enumeration = new String[len];
+                    for (int i = 0; i < len; i++) {
+                        enumeration[i] = readString(in);
+                    }
+                }
+                final String defaultType = readString(in);
+                grammar.attributeDecl(elementName, attributeName, type, enumeration, defaultType,
+                                      readXMLString(in), readXMLString(in), null);
+                break;
+            }
+            case END_ATTLIST:
+                grammar.endAttlist(null);
+                break;
+            case INTERNAL_ENTITY_DECL:
+                grammar.internalEntityDecl(readString(in), readXMLString(in), readXMLString(in), null);
+                break;
+            case EXTERNAL_ENTITY_DECL:
+                grammar.externalEntityDecl(readString(in), readIdentifier(in), null);
+                break;
+            case UNPARSED_ENTITY_DECL:
+                grammar.unparsedEntityDecl(readString(in), readIdentifier(in), readString(in), null);
+                break;
+            case NOTATION_DECL:
+                grammar.notationDecl(readString(in), readIdentifier(in), null);
+                break;
+            case START_CONDITIONAL:
+                grammar.startConditional(in.readShort(), null);
+                break;
+            case END_CONDITIONAL:
+                grammar.endConditional(null);
+                break;
+            case START_CONTENT_MODEL:
+                grammar.startContentModel(readString(in), null);
+                break;
+            case ANY:
+                grammar.any(null);
+                break;
+            case EMPTY:
+                grammar.empty(null);
+                break;
+            case START_GROUP:
+                grammar.startGroup(null);
+                break;
+            case PCDATA:
+                grammar.pcdata(null);
+                break;
+            case ELEMENT:
+                grammar.element(readString(in), null);
+                break;
+            case SEPARATOR:
+                grammar.separator(in.readShort(), null);
+                break;
+            case OCCURRENCE:
+                grammar.occurrence(in.readShort(), null);
+                break;
+            case END_GROUP:
+                grammar.endGroup(null);
+                break;
+            case END_CONTENT_MODEL:
+                grammar.endContentModel(null);
+                break;
+            default:
+                throw new IOException("Unsupported event " + op);
+            }
+        } while (op != END_DTD);
+    }
+
+    /**
+     * Read string. Strings are interned because grammars compare names by identity.
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        final int len = in.readInt();
+        if (len == -1) {
+            return null;
+        }
+        final byte[] buf = new byte[len];
+        in.readFully(buf);
+        return new String(buf, "UTF-8").intern();
+    }
+
+    private static XMLString readXMLString(final DataInputStream in) throws IOException {
+        final String s = readString(in);
+        return s != null ? new XMLStringBuffer(s) : null;
+    }
+
+    private static XMLResourceIdentifier readIdentifier(final DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new XMLResourceIdentifierImpl(readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] buf = s.getBytes("UTF-8");
+            out.writeInt(buf.length);
+            out.write(buf);
+        }
+    }
+
+    // Recording
+
+    /**
+     * DTD handler that records declaration events.
+     */
+    private static final class Recorder implements XMLDTDHandler, XMLDTDContentModelHandler {
+
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buf);
+        private XMLDTDSource dtdSource;
+        private XMLDTDContentModelSource dtdContentModelSource;
+
+        byte[] getEvents() {
+            return buf.toByteArray();
+        }
+
+        private void op(final int op) {
+            try {
+                out.writeByte(op);
+            } catch (final IOException e) {
+                throw new XNIException(e);
+            }
+        }
+
+        private void string(final String s) {
+            try {
+                writeString(out, s);
+            } catch (final IOException e) {
+                throw new XNIException(e);
+            }
+        }
+
+        private void string(final XMLString s) {
+            string(s != null ? s.toString() : null);
+        }
+
+        private void identifier(final XMLResourceIdentifier id) {
+            try {
+                out.writeBoolean(id != null);
+            } catch (final IOException e) {
+                throw new XNIException(e);
+            }
+            if (id != null) {
+                string(id.getPublicId());
+                string(id.getLiteralSystemId());
+                string(id.getBaseSystemId());
+                string(id.getExpandedSystemId());
+            }
+        }
+
+        private void number(final int i) {
+            try {
+                out.writeInt(i);
+            } catch (final IOException e) {
+                throw new XNIException(e);
+            }
+        }
+
+        private void type(final short s) {
+            try {
+                out.writeShort(s);
+            } catch (final IOException e) {
+                throw new XNIException(e);
+            }
+        }
+
+        // XMLDTDHandler
+
+        @Override
+        public void startDTD(final XMLLocator locator, final Augmentations augs) {
+            op(START_DTD);
+        }
+
+        @Override
+        public void startParameterEntity(final String name, final XMLResourceIdentifier identifier, final String encoding, final Augmentations augs) {
+            op(START_PARAMETER_ENTITY);
+            string(name);
+            identifier(identifier);
+            string(encoding);
+        }
+
+        @Override
+        public void textDecl(final String version, final String encoding, final Augmentations augs) {
+            // NOOP
+        }
+
+        @Override
+        public void endParameterEntity(final String name, final Augmentations augs) {
+            op(END_PARAMETER_ENTITY);
+            string(name);
+        }
+
+        @Override
+        public void startExternalSubset(final XMLResourceIdentifier identifier, final Augmentations augs) {
+            op(START_EXTERNAL_SUBSET);
+            identifier(identifier);
+        }
+
+        @Override
+        public void endExternalSubset(final Augmentations augs) {
+            op(END_EXTERNAL_SUBSET);
+        }
+
+        @Override
+        public void comment(final XMLString text, final Augmentations augs) {
+            // NOOP
+        }
+
+        @Override
+        public void processingInstruction(final String target, final XMLString data, final Augmentations augs) {
+            // NOOP
+        }
+
+        @Override
+        public void elementDecl(final String name, final String contentModel, final Augmentations augs) {
+            op(ELEMENT_DECL);
+            string(name);
+            // grammar only uses content model string to detect content type
+            if (contentModel.equals("EMPTY") || contentModel.equals("ANY")) {
+                string(contentModel);
+            } else if (contentModel.indexOf("#PCDATA") > 0) {
+                string("(#PCDATA)");
+            } else {
+                string("()");
+            }
+        }
+
+        @Override
+        public void startAttlist(final String elementName, final Augmentations augs) {
+            op(START_ATTLIST);
+            string(elementName);
+        }
+
+        @Override
+        public void attributeDecl(final String elementName, final String attributeName, final String type,
+                final String[] enumeration, final String defaultType, final XMLString defaultValue,
+                final XMLString nonNormalizedDefaultValue, final Augmentations augs) {
+            op(ATTRIBUTE_DECL);
+            string(elementName);
+            string(attributeName);
+            string(type);
+            if (enumeration == null) {
+                number(-1);
+            } else {
+                number(enumeration.length);
+                for (final String e: enumeration) {
+                    string(e);
+                }
+            }
+            string(defaultType);
+            string(defaultValue);
+            string(nonNormalizedDefaultValue);
+        }
+
+        @Override
+        public void endAttlist(final Augmentations augs) {
+            op(END_ATTLIST);
+        }
+
+        @Override
+        public void internalEntityDecl(final String name, final XMLString text, final XMLString nonNormalizedText, final Augmentations augs) {
+            // parameter entities are only used during compilation
+            if (name.startsWith("%")) {
+                return;
+            }
+            op(INTERNAL_ENTITY_DECL);
+            string(name);
+            string(text);
+            string(nonNormalizedText);
+        }
+
+        @Override
+        public void externalEntityDecl(final String name, final XMLResourceIdentifier identifier, final Augmentations augs) {
+            if (name.startsWith("%")) {
+                return;
+            }
+            op(EXTERNAL_ENTITY_DECL);
+            string(name);
+            identifier(identifier);
+        }
+
+        @Override
+        public void unparsedEntityDecl(final String name, final XMLResourceIdentifier identifier, final String notation, final Augmentations augs) {
+            op(UNPARSED_ENTITY_DECL);
+            string(name);
+            identifier(identifier);
+            string(notation);
+        }
+
+        @Override
+        public void notationDecl(final String name, final XMLResourceIdentifier identifier, final Augmentations augs) {
+            op(NOTATION_DECL);
+            string(name);
+            identifier(identifier);
+        }
+
+        @Override
+        public void startConditional(final short type, final Augmentations augs) {
+            op(START_CONDITIONAL);
+            type(type);
+        }
+
+        @Override
+        public void ignoredCharacters(final XMLString text, final Augmentations augs) {
+            // NOOP
+        }
+
+        @Override
+        public void endConditional(final Augmentations augs) {
+            op(END_CONDITIONAL);
+        }
+
+        @Override
+        public void endDTD(final Augmentations augs) {
+            op(END_DTD);
+        }
+
+        @Override
+        public void setDTDSource(final XMLDTDSource source) {
+            dtdSource = source;
+        }
+
+        @Override
+        public XMLDTDSource getDTDSource() {
+            return dtdSource;
+        }
+
+        // XMLDTDContentModelHandler
+
+        @Override
+        public void startContentModel(final String elementName, final Augmentations augs) {
+            op(START_CONTENT_MODEL);
+            string(elementName);
+        }
+
+        @Override
+        public void any(final Augmentations augs) {
+            op(ANY);
+        }
+
+        @Override
+        public void empty(final Augmentations augs) {
+            op(EMPTY);
+        }
+
+        @Override
+        public void startGroup(final Augmentations augs) {
+            op(START_GROUP);
+        }
+
+        @Override
+        public void pcdata(final Augmentations augs) {
+            op(PCDATA);
+        }
+
+        @Override
+        public void element(final String elementName, final Augmentations augs) {
+            op(ELEMENT);
+            string(elementName);
+        }
+
+        @Override
+        public void separator(final short separator, final Augmentations augs) {
+            op(SEPARATOR);
+            type(separator);
+        }
+
+        @Override
+        public void occurrence(final short occurrence, final Augmentations augs) {
+            op(OCCURRENCE);
+            type(occurrence);
+        }
+
+        @Override
+        public void endGroup(final Augmentations augs) {
+            op(END_GROUP);
+        }
+
+        @Override
+        public void endContentModel(final Augmentations augs) {
+            op(END_CONTENT_MODEL);
+        }
+
+        @Override
+        public void setDTDContentModelSource(final XMLDTDContentModelSource source) {
+            dtdContentModelSource = source;
+        }
+
+        @Override
+        public XMLDTDContentModelSource getDTDContentModelSource() {
+            return dtdContentModelSource;
+        }
+
+    }
+
+}
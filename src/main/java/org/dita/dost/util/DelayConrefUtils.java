@@ -11,17 +11,18 @@ package org.dita.dost.util;
 import static org.dita.dost.util.Constants.*;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -38,9 +39,9 @@ import org.dita.dost.log.DITAOTLogger;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * 
@@ -50,8 +51,8 @@ import org.xml.sax.InputSource;
  */
 public final class DelayConrefUtils {
 
-    /** Root element of export.xml Document */
-    private Document root = null;
+    /** Exported topic IDs, element IDs and keys by file name, {@code null} if export.xml has not been read. */
+    private Map<String, Export> exports = null;
 
     private DITAOTLogger logger;
 
@@ -60,7 +61,7 @@ public final class DelayConrefUtils {
      */
     public DelayConrefUtils() {
         super();
-        root = null;
+        exports = null;
     }
 
     public void setLogger(final DITAOTLogger logger) {
@@ -68,7 +69,8 @@ public final class DelayConrefUtils {
     }
 
     /**
-     * Find whether an id is refer to a topic in a dita file.
+     * Find whether an id is refer to a topic in a dita file. Topic IDs are read from
+     * the shared {@link IdIndex}.
      * @param absolutePathToFile the absolute path of dita file
      * @param id topic id
      * @return true if id find and false otherwise
@@ -79,42 +81,7 @@ public final class DelayConrefUtils {
             return false;
         }
         try {
-            //load the file
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            //factory.setFeature("http://xml.org/sax/features/validation", false);
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            try {
-                Class.forName(RESOLVER_CLASS);
-                builder.setEntityResolver(CatalogUtils.getCatalogResolver());
-            }catch (final ClassNotFoundException e){
-                builder.setEntityResolver(null);
-            }
-            final Document root = builder.parse(new InputSource(new FileInputStream(absolutePathToFile)));
-
-            //get root element
-            final Element doc = root.getDocumentElement();
-            //do BFS
-            final Queue<Element> queue = new LinkedList<Element>();
-            queue.offer(doc);
-            while (!queue.isEmpty()) {
-                final Element pe = queue.poll();
-                final NodeList pchildrenList = pe.getChildNodes();
-                for (int i = 0; i < pchildrenList.getLength(); i++) {
-                    final Node node = pchildrenList.item(i);
-                    if (node.getNodeType() == Node.ELEMENT_NODE) {
-                        queue.offer((Element)node);
-                    }
-                }
-                final String classValue = pe.getAttribute(ATTRIBUTE_NAME_CLASS);
-                if(classValue!=null && TOPIC_TOPIC.matches(classValue)){
-                    //topic id found
-                    if(pe.getAttribute(ATTRIBUTE_NAME_ID).equals(id)){
-                        return true;
-                    }
-                }
-            }
-            return false;
-
+            return IdIndex.getInstance().get(new File(absolutePathToFile)).hasTopicId(id);
         } catch (final Exception e) {
             logger.logError("Failed to read document: " + e.getMessage(), e);
         }
@@ -129,109 +96,107 @@ public final class DelayConrefUtils {
      * @return result list
      */
     public List<Boolean> checkExport(String href, final String id, final String key, final File tempDir) {
-        //parsed export .xml to get exported elements
-        final File exportFile = new File(tempDir, FILE_NAME_EXPORT_XML);
-
         boolean idExported = false;
         boolean keyrefExported = false;
-        try {
-            //load export.xml only once
-            if(root==null){
-                final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                //factory.setFeature("http://xml.org/sax/features/validation", false);
-                final DocumentBuilder builder = factory.newDocumentBuilder();
-                try {
-                    Class.forName(RESOLVER_CLASS);
-                    builder.setEntityResolver(CatalogUtils.getCatalogResolver());
-                }catch (final ClassNotFoundException e){
-                    builder.setEntityResolver(null);
-                }
-                root = builder.parse(new InputSource(new FileInputStream(exportFile)));
-            }
-            //if dita file's extension name is ".xml"
-            if(href.endsWith(FILE_EXTENSION_XML)){
-                //change the extension to ".dita"
-                href = href.replace(FILE_EXTENSION_XML, FILE_EXTENSION_DITA);
-            }
-            //get file node which contains the export node
-            final Element fileNode = searchForKey(root.getDocumentElement(), href, "file");
-            if(fileNode!=null){
-                //iterate the child nodes
-                final NodeList pList = fileNode.getChildNodes();
-                for (int j = 0; j < pList.getLength(); j++) {
-                    final Node node = pList.item(j);
-                    if(Node.ELEMENT_NODE == node.getNodeType()){
-                        final Element child = (Element)node;
-                        //compare keys
-                        if(child.getNodeName().equals("keyref")&&
-                                child.getAttribute(ATTRIBUTE_NAME_NAME)
-                                .equals(key)){
-                            keyrefExported = true;
-                            //compare topic id
-                        }else if(child.getNodeName().equals("topicid")&&
-                                child.getAttribute(ATTRIBUTE_NAME_NAME)
-                                .equals(id)){
-                            idExported = true;
-                            //compare element id
-                        }else if(child.getNodeName().equals("id")&&
-                                child.getAttribute(ATTRIBUTE_NAME_NAME)
-                                .equals(id)){
-                            idExported = true;
-                        }
-                    }
-                    if(idExported && keyrefExported){
-                        break;
-                    }
-                }
-            }
-        } catch (final Exception e) {
-            e.printStackTrace();
+        //if dita file's extension name is ".xml"
+        if(href.endsWith(FILE_EXTENSION_XML)){
+            //change the extension to ".dita"
+            href = href.replace(FILE_EXTENSION_XML, FILE_EXTENSION_DITA);
+        }
+        //get exports of the file
+        final Export export = getExports(tempDir).get(href);
+        if(export!=null){
+            keyrefExported = export.keys.contains(key);
+            idExported = export.ids.contains(id);
         }
         final List<Boolean> list = new ArrayList<Boolean>();
         list.add(Boolean.valueOf(idExported));
         list.add(Boolean.valueOf(keyrefExported));
         return list;
     }
+
+    /**
+     * Read export.xml into an index of exports by file name. The file is read only once.
+     * @param tempDir absolute path to temporary director
+     * @return exports by file name, empty if export.xml does not exist or cannot be read
+     */
+    private synchronized Map<String, Export> getExports(final File tempDir) {
+        if (exports == null) {
+            exports = new HashMap<String, Export>();
+            final File exportFile = new File(tempDir, FILE_NAME_EXPORT_XML);
+            if (exportFile.exists()) {
+                try {
+                    final XMLReader reader = StringUtils.getXMLReader();
+                    reader.setEntityResolver(CatalogUtils.getCatalogResolver());
+                    reader.setContentHandler(new ExportHandler(exports));
+                    reader.parse(exportFile.toURI().toString());
+                } catch (final Exception e) {
+                    logger.logError("Failed to read " + exportFile.getAbsolutePath() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return exports;
+    }
+
+    /** Exported IDs and keys of a single file element. */
+    private static final class Export {
+        /** Element depth of the file element */
+        final int depth;
+        final Set<String> ids = new HashSet<String>();
+        final Set<String> keys = new HashSet<String>();
+        Export(final int depth) {
+            this.depth = depth;
+        }
+    }
+
     /**
-     * Search specific element by key and tagName.
-     * @param root root element
-     * @param key search keyword
-     * @param tagName search tag name
-     * @return search result, null of either input is invalid or the looking result is not found.
+     * Content handler for export.xml. File elements are matched at any depth. If a file name is
+     * exported more than once, the shallowest file element is used, and among those the first in
+     * document order.
      */
-    public Element searchForKey(final Element root, final String key, final String tagName) {
-        if (root == null || StringUtils.isEmptyString(key)) {
-            return null;
+    private static final class ExportHandler extends DefaultHandler {
+
+        private final Map<String, Export> exports;
+        /** Open file elements, innermost first */
+        private final Deque<Export> files = new ArrayDeque<Export>();
+        private int depth;
+
+        ExportHandler(final Map<String, Export> exports) {
+            this.exports = exports;
         }
-        final Queue<Element> queue = new LinkedList<Element>();
-        queue.offer(root);
 
-        while (!queue.isEmpty()) {
-            final Element pe = queue.poll();
-            final NodeList pchildrenList = pe.getChildNodes();
-            for (int i = 0; i < pchildrenList.getLength(); i++) {
-                final Node node = pchildrenList.item(i);
-                if (node.getNodeType() == Node.ELEMENT_NODE) {
-                    queue.offer((Element)node);
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+            depth++;
+            final String name = atts.getValue(ATTRIBUTE_NAME_NAME);
+            if (qName.equals("file")) {
+                final Export export = new Export(depth);
+                if (!StringUtils.isEmptyString(name)) {
+                    final Export previous = exports.get(name);
+                    if (previous == null || previous.depth > depth) {
+                        exports.put(name, export);
+                    }
+                }
+                files.push(export);
+            } else if (name != null && !files.isEmpty() && files.peek().depth == depth - 1) {
+                if (qName.equals("keyref")) {
+                    files.peek().keys.add(name);
+                } else if (qName.equals("topicid") || qName.equals("id")) {
+                    files.peek().ids.add(name);
                 }
             }
-            String value = pe.getNodeName();
-            if(StringUtils.isEmptyString(value)||
-                    !value.equals(tagName)){
-                continue;
-            }
-
-            value = pe.getAttribute(ATTRIBUTE_NAME_NAME);
-            if (StringUtils.isEmptyString(value)) {
-                continue;
-            }
+        }
 
-            if (value.equals(key)) {
-                return pe;
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            if (!files.isEmpty() && files.peek().depth == depth) {
+                files.pop();
             }
+            depth--;
         }
-        return null;
+
     }
+
     /**
      * Write map into xml file.
      * @param m map
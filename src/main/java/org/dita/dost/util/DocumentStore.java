@@ -0,0 +1,741 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.dita.dost.util.Constants.FEATURE_NAMESPACE;
+import static org.dita.dost.util.Constants.FEATURE_NAMESPACE_PREFIX;
+import static org.dita.dost.util.Constants.LEXICAL_HANDLER_PROPERTY;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * In-memory store of parsed temporary files.
+ *
+ * <p>Documents are kept as {@link SAXEventBuffer SAX event buffers} so that a processing step can read a
+ * document written or read by an earlier step without parsing it again. The store is write-through: every
+ * document is also written to the temporary directory, because not all processing steps read through the
+ * store. Steps that rewrite a temporary file without the store must {@link #invalidate(File) invalidate} it;
+ * as a safety net, a stored document is also only used if the file in the temporary directory has not been
+ * modified after it was stored. Least recently used documents are dropped when the memory budget is exceeded. The budget
+ * is read from configuration property {@code store.memory-budget} in megabytes.</p>
+ *
+ * <p>The store does not defer or avoid file writes, it only avoids parsing. Stored documents are recorded as a
+ * namespace aware parser with default features reports them: {@code xmlns} attributes are not recorded and entity
+ * boundaries are not replayed, so lexical handlers never see {@code startEntity} or {@code endEntity} for stored
+ * documents. With the {@code namespace-prefixes} feature, namespace declaration attributes are added back from
+ * prefix mappings before other attributes. Readers returned by {@link #getXMLReader(XMLReader)} only use the store
+ * if the {@code namespaces} feature is on, external general entities are expanded and Xerces character reference
+ * notification is off; with other features files are always parsed.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class DocumentStore {
+
+    /** Default memory budget in megabytes. */
+    public static final long DEFAULT_BUDGET = 256;
+
+    private static final String FEATURE_EXTERNAL_GENERAL_ENTITIES = "http://xml.org/sax/features/external-general-entities";
+    /** Xerces feature to report character references, must be off to use stored documents. */
+    private static final String FEATURE_NOTIFY_CHAR_REFS = "http://apache.org/xml/features/scanner/notify-char-refs";
+
+    private static final Map<File, DocumentStore> instances = new HashMap<File, DocumentStore>();
+
+    private final File tempDir;
+    private final String tempDirPath;
+    private final long budget;
+    private final LinkedHashMap<File, Entry> documents = new LinkedHashMap<File, Entry>(16, 0.75f, true);
+    private long size;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Get document store for temporary directory.
+     *
+     * @param tempDir temporary directory
+     * @return document store shared by all jobs using the temporary directory until removed with
+     *         {@link #removeInstance(File)}
+     */
+    public static DocumentStore getInstance(final File tempDir) {
+        final File dir = tempDir.getAbsoluteFile();
+        synchronized (instances) {
+            DocumentStore store = instances.get(dir);
+            if (store == null) {
+                long budget = DEFAULT_BUDGET;
+                final String value = Configuration.configuration.get("store.memory-budget");
+                if (value != null) {
+                    try {
+                        budget = Long.parseLong(value.trim());
+                    } catch (final NumberFormatException e) {
+                        // ignore and use default
+                    }
+                }
+                store = new DocumentStore(dir, budget * 1024 * 1024);
+                instances.put(dir, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Remove and clear document store for temporary directory. Called when the build that uses the
+     * temporary directory finishes.
+     *
+     * @param tempDir temporary directory
+     */
+    public static void removeInstance(final File tempDir) {
+        final DocumentStore store;
+        synchronized (instances) {
+            store = instances.remove(tempDir.getAbsoluteFile());
+        }
+        if (store != null) {
+            store.clear();
+        }
+    }
+
+    /**
+     * Remove stored document from the document store of every temporary directory that contains the file.
+     * Must be called by processing steps that rewrite a temporary file without going through a store, because
+     * a rewrite within the file system timestamp resolution that keeps the file length is not detected by
+     * {@link #get(File)}.
+     *
+     * @param file rewritten file
+     */
+    public static void invalidate(final File file) {
+        final File f = file.getAbsoluteFile();
+        final String path = f.getPath();
+        final List<DocumentStore> stores = new ArrayList<DocumentStore>();
+        synchronized (instances) {
+            for (final DocumentStore store: instances.values()) {
+                if (path.startsWith(store.tempDirPath)) {
+                    stores.add(store);
+                }
+            }
+        }
+        for (final DocumentStore store: stores) {
+            store.remove(f);
+        }
+    }
+
+    /**
+     * Create new document store.
+     *
+     * @param tempDir temporary directory, only files inside the directory are stored
+     * @param budget memory budget in bytes
+     */
+    public DocumentStore(final File tempDir, final long budget) {
+        this.tempDir = tempDir.getAbsoluteFile();
+        this.tempDirPath = this.tempDir.getPath() + File.separator;
+        this.budget = budget;
+    }
+
+    /**
+     * Get temporary directory.
+     *
+     * @return absolute temporary directory
+     */
+    public File getTempDir() {
+        return tempDir;
+    }
+
+    /**
+     * Get stored document.
+     *
+     * @param file absolute file path
+     * @return stored document, {@code null} if not stored or the file has been modified after it was stored
+     */
+    public SAXEventBuffer get(final File file) {
+        final File f = file.getAbsoluteFile();
+        final Entry entry;
+        synchronized (documents) {
+            entry = documents.get(f);
+        }
+        if (entry != null) {
+            if (entry.lastModified == f.lastModified() && entry.length == f.length()) {
+                hits.incrementAndGet();
+                return entry.buffer;
+            }
+            remove(f);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store document. Must be called after the file has been written to the temporary directory. Files
+     * outside the temporary directory are ignored.
+     *
+     * @param file absolute file path
+     * @param buffer document events
+     */
+    public void put(final File file, final SAXEventBuffer buffer) {
+        final File f = file.getAbsoluteFile();
+        if (!f.getPath().startsWith(tempDirPath) || !f.exists()) {
+            return;
+        }
+        buffer.trim();
+        final Entry entry = new Entry(buffer, f.lastModified(), f.length());
+        synchronized (documents) {
+            final Entry old = documents.put(f, entry);
+            if (old != null) {
+                size -= old.size;
+            }
+            size += entry.size;
+            final Iterator<Entry> it = documents.values().iterator();
+            while (size > budget && it.hasNext()) {
+                size -= it.next().size;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove stored document.
+     *
+     * @param file absolute file path
+     */
+    public void remove(final File file) {
+        synchronized (documents) {
+            final Entry old = documents.remove(file.getAbsoluteFile());
+            if (old != null) {
+                size -= old.size;
+            }
+        }
+    }
+
+    /**
+     * Remove all stored documents and reset counters.
+     */
+    public void clear() {
+        synchronized (documents) {
+            documents.clear();
+            size = 0;
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Get approximate memory used by stored documents.
+     *
+     * @return approximate size in bytes
+     */
+    public long getSize() {
+        synchronized (documents) {
+            return size;
+        }
+    }
+
+    /**
+     * Get number of reads served from the store.
+     *
+     * @return number of store hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get number of reads that had to parse the file.
+     *
+     * @return number of store misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get XML reader that reads stored documents from the store. Documents not in the store are parsed with
+     * the given parser and stored. If the reader features differ from the defaults the store records with,
+     * documents are always parsed and not stored.
+     *
+     * @param parser XML reader used for files not in the store
+     * @return XML reader backed by the store
+     */
+    public XMLReader getXMLReader(final XMLReader parser) {
+        final StoreReader reader = new StoreReader();
+        reader.setParent(parser);
+        return reader;
+    }
+
+    /**
+     * Create new output that writes a document to a file and records it for the store.
+     *
+     * @param file output file
+     * @param outputProperties serialization properties, may be {@code null}
+     * @return new output
+     * @throws IOException if opening the output file failed
+     * @throws TransformerConfigurationException if creating serializer failed
+     */
+    public Output newOutput(final File file, final Properties outputProperties)
+            throws IOException, TransformerConfigurationException {
+        return new Output(file, outputProperties);
+    }
+
+    /**
+     * Document output that writes to a file and records written events.
+     */
+    public static final class Output {
+
+        private final OutputStream out;
+        private final SAXEventBuffer buffer = new SAXEventBuffer();
+        private final SAXResult result;
+
+        private Output(final File file, final Properties outputProperties)
+                throws IOException, TransformerConfigurationException {
+            final TransformerHandler serializer = ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler();
+            if (outputProperties != null) {
+                serializer.getTransformer().setOutputProperties(outputProperties);
+            }
+            out = new BufferedOutputStream(new FileOutputStream(file));
+            final StreamResult streamResult = new StreamResult(out);
+            streamResult.setSystemId(file.toURI().toString());
+            serializer.setResult(streamResult);
+            final TeeHandler tee = new TeeHandler(serializer, serializer, buffer);
+            result = new SAXResult(tee);
+            result.setLexicalHandler(tee);
+        }
+
+        /**
+         * Get result to write the document to. The handlers of the result can also be used directly as
+         * the content handler and lexical handler of an XML reader.
+         *
+         * @return result
+         */
+        public SAXResult getResult() {
+            return result;
+        }
+
+        /**
+         * Get recorded document.
+         *
+         * @return recorded document events
+         */
+        public SAXEventBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Close output file.
+         *
+         * @throws IOException if closing the file failed
+         */
+        public void close() throws IOException {
+            out.close();
+        }
+
+    }
+
+    /**
+     * XML reader that replays stored documents and records parsed documents.
+     */
+    private final class StoreReader extends XMLFilterImpl {
+
+        private LexicalHandler lexicalHandler;
+
+        @Override
+        public void setProperty(final String name, final Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+            if (LEXICAL_HANDLER_PROPERTY.equals(name)) {
+                lexicalHandler = (LexicalHandler) value;
+            } else {
+                super.setProperty(name, value);
+            }
+        }
+
+        @Override
+        public Object getProperty(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+            if (LEXICAL_HANDLER_PROPERTY.equals(name)) {
+                return lexicalHandler;
+            }
+            return super.getProperty(name);
+        }
+
+        @Override
+        public void parse(final InputSource input) throws SAXException, IOException {
+            final Boolean namespacePrefixes = getNamespacePrefixes();
+            final File file = namespacePrefixes != null ? toFile(input.getSystemId()) : null;
+            final SAXEventBuffer stored = file != null ? get(file) : null;
+            if (stored != null) {
+                final ContentHandler contentHandler = namespacePrefixes
+                        ? new NamespaceDeclarationHandler(getContentHandler())
+                        : getContentHandler();
+                stored.replay(contentHandler, lexicalHandler);
+                return;
+            }
+            final XMLReader parent = getParent();
+            final SAXEventBuffer buffer = file != null ? new SAXEventBuffer() : null;
+            final TeeHandler tee = new TeeHandler(getContentHandler(), lexicalHandler, buffer);
+            parent.setContentHandler(tee);
+            try {
+                parent.setProperty(LEXICAL_HANDLER_PROPERTY, tee);
+            } catch (final SAXException e) {
+                // lexical events are not recorded
+            }
+            if (getEntityResolver() != null) {
+                parent.setEntityResolver(getEntityResolver());
+            }
+            if (getErrorHandler() != null) {
+                parent.setErrorHandler(getErrorHandler());
+            }
+            if (getDTDHandler() != null) {
+                parent.setDTDHandler(getDTDHandler());
+            }
+            parent.parse(input);
+            if (buffer != null && tee.complete) {
+                put(file, buffer);
+            }
+        }
+
+        /**
+         * Test whether parser features allow using stored documents and get the {@code namespace-prefixes} feature.
+         *
+         * @return value of the {@code namespace-prefixes} feature, {@code null} if stored documents cannot be used
+         */
+        private Boolean getNamespacePrefixes() {
+            final boolean namespacePrefixes;
+            try {
+                if (!getFeature(FEATURE_NAMESPACE)) {
+                    return null;
+                }
+                namespacePrefixes = getFeature(FEATURE_NAMESPACE_PREFIX);
+            } catch (final SAXException e) {
+                return null;
+            }
+            try {
+                if (!getFeature(FEATURE_EXTERNAL_GENERAL_ENTITIES) || getFeature(FEATURE_NOTIFY_CHAR_REFS)) {
+                    return null;
+                }
+            } catch (final SAXException e) {
+                // not supported by parser
+            }
+            return namespacePrefixes;
+        }
+
+        private File toFile(final String systemId) {
+            if (systemId == null) {
+                return null;
+            }
+            try {
+                final URI uri = new URI(systemId);
+                if (!"file".equals(uri.getScheme())) {
+                    return null;
+                }
+                return new File(uri);
+            } catch (final URISyntaxException e) {
+                return null;
+            } catch (final IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+    }
+
+    /**
+     * Handler that forwards events to a content handler and a lexical handler and records them to a buffer.
+     * Namespace declaration attributes are forwarded but not recorded.
+     */
+    private static final class TeeHandler implements ContentHandler, LexicalHandler {
+
+        private final ContentHandler contentHandler;
+        private final LexicalHandler lexicalHandler;
+        private final SAXEventBuffer buffer;
+        /** Flag whether document end was seen, i.e. buffer is complete. */
+        private boolean complete;
+
+        TeeHandler(final ContentHandler contentHandler, final LexicalHandler lexicalHandler, final SAXEventBuffer buffer) {
+            this.contentHandler = contentHandler;
+            this.lexicalHandler = lexicalHandler;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void setDocumentLocator(final Locator locator) {
+            if (contentHandler != null) {
+                contentHandler.setDocumentLocator(locator);
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            if (buffer != null) {
+                buffer.startDocument();
+            }
+            if (contentHandler != null) {
+                contentHandler.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            if (buffer != null) {
+                buffer.endDocument();
+            }
+            if (contentHandler != null) {
+                contentHandler.endDocument();
+            }
+            complete = true;
+        }
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+            if (buffer != null) {
+                buffer.startPrefixMapping(prefix, uri);
+            }
+            if (contentHandler != null) {
+                contentHandler.startPrefixMapping(prefix, uri);
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(final String prefix) throws SAXException {
+            if (buffer != null) {
+                buffer.endPrefixMapping(prefix);
+            }
+            if (contentHandler != null) {
+                contentHandler.endPrefixMapping(prefix);
+            }
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+            if (buffer != null) {
+                buffer.startElement(uri, localName, qName, removeNamespaceDeclarations(atts));
+            }
+            if (contentHandler != null) {
+                contentHandler.startElement(uri, localName, qName, atts);
+            }
+        }
+
+        /**
+         * Remove namespace declaration attributes reported with the {@code namespace-prefixes} feature.
+         *
+         * @param atts attributes
+         * @return attributes without namespace declarations, the argument itself if it has none
+         */
+        private Attributes removeNamespaceDeclarations(final Attributes atts) {
+            AttributesImpl res = null;
+            for (int i = atts.getLength() - 1; i >= 0; i--) {
+                final String name = atts.getQName(i);
+                if (name.equals("xmlns") || name.startsWith("xmlns:")) {
+                    if (res == null) {
+                        res = new AttributesImpl(atts);
+                    }
+                    res.removeAttribute(i);
+                }
+            }
+            return res != null ? res : atts;
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if (buffer != null) {
+                buffer.endElement(uri, localName, qName);
+            }
+            if (contentHandler != null) {
+                contentHandler.endElement(uri, localName, qName);
+            }
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            if (buffer != null) {
+                buffer.characters(ch, start, length);
+            }
+            if (contentHandler != null) {
+                contentHandler.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+            if (buffer != null) {
+                buffer.ignorableWhitespace(ch, start, length);
+            }
+            if (contentHandler != null) {
+                contentHandler.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        @Override
+        public void processingInstruction(final String target, final String data) throws SAXException {
+            if (buffer != null) {
+                buffer.processingInstruction(target, data);
+            }
+            if (contentHandler != null) {
+                contentHandler.processingInstruction(target, data);
+            }
+        }
+
+        @Override
+        public void skippedEntity(final String name) throws SAXException {
+            if (buffer != null) {
+                buffer.skippedEntity(name);
+            }
+            if (contentHandler != null) {
+                contentHandler.skippedEntity(name);
+            }
+        }
+
+        @Override
+        public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+            if (buffer != null) {
+                buffer.startDTD(name, publicId, systemId);
+            }
+            if (lexicalHandler != null) {
+                lexicalHandler.startDTD(name, publicId, systemId);
+            }
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            if (buffer != null) {
+                buffer.endDTD();
+            }
+            if (lexicalHandler != null) {
+                lexicalHandler.endDTD();
+            }
+        }
+
+        @Override
+        public void startEntity(final String name) throws SAXException {
+            if (lexicalHandler != null) {
+                lexicalHandler.startEntity(name);
+            }
+        }
+
+        @Override
+        public void endEntity(final String name) throws SAXException {
+            if (lexicalHandler != null) {
+                lexicalHandler.endEntity(name);
+            }
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            if (buffer != null) {
+                buffer.startCDATA();
+            }
+            if (lexicalHandler != null) {
+                lexicalHandler.startCDATA();
+            }
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            if (buffer != null) {
+                buffer.endCDATA();
+            }
+            if (lexicalHandler != null) {
+                lexicalHandler.endCDATA();
+            }
+        }
+
+        @Override
+        public void comment(final char[] ch, final int start, final int length) throws SAXException {
+            if (buffer != null) {
+                buffer.comment(ch, start, length);
+            }
+            if (lexicalHandler != null) {
+                lexicalHandler.comment(ch, start, length);
+            }
+        }
+
+    }
+
+    /**
+     * Content handler that adds namespace declaration attributes for the {@code namespace-prefixes} feature
+     * when replaying stored documents. Declarations are added before other attributes.
+     */
+    private static final class NamespaceDeclarationHandler extends XMLFilterImpl {
+
+        private final List<String> prefixes = new ArrayList<String>();
+        private final List<String> uris = new ArrayList<String>();
+
+        NamespaceDeclarationHandler(final ContentHandler contentHandler) {
+            setContentHandler(contentHandler);
+        }
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+            prefixes.add(prefix);
+            uris.add(uri);
+            super.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+            if (prefixes.isEmpty()) {
+                super.startElement(uri, localName, qName, atts);
+                return;
+            }
+            final AttributesImpl res = new AttributesImpl();
+            for (int i = 0; i < prefixes.size(); i++) {
+                final String prefix = prefixes.get(i);
+                res.addAttribute("", "", prefix.length() == 0 ? "xmlns" : "xmlns:" + prefix, "CDATA", uris.get(i));
+            }
+            for (int i = 0; i < atts.getLength(); i++) {
+                res.addAttribute(atts.getURI(i), atts.getLocalName(i), atts.getQName(i), atts.getType(i), atts.getValue(i));
+            }
+            prefixes.clear();
+            uris.clear();
+            super.startElement(uri, localName, qName, res);
+        }
+
+    }
+
+    /**
+     * Stored document and the state of the file when it was stored.
+     */
+    private static final class Entry {
+
+        final SAXEventBuffer buffer;
+        final long lastModified;
+        final long length;
+        final long size;
+
+        Entry(final SAXEventBuffer buffer, final long lastModified, final long length) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+            this.length = length;
+            size = buffer.getSize();
+        }
+
+    }
+
+}
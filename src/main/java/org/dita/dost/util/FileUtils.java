@@ -17,6 +17,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -760,6 +762,38 @@ public final class FileUtils {
         fos.flush();
     }
 
+    /**
+     * Calculate SHA-1 digest of file contents.
+     * 
+     * @param file file to read
+     * @return hex encoded digest
+     * @throws IOException if reading file failed
+     * @since 2.0
+     */
+    public static String getDigest(final File file) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[1024 * 4];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                md.update(buffer, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (final byte b: md.digest()) {
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return buf.toString();
+    }
+
     /**
      * Replace the file extension.
      * @param attValue value to be replaced
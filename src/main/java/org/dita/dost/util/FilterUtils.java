@@ -10,6 +10,7 @@ package org.dita.dost.util;
 
 import static org.dita.dost.util.Constants.*;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,6 +26,10 @@ import org.xml.sax.Attributes;
 /**
  * Utility class used for flagging and filtering.
  * 
+ * <p>The filter map is compiled into per attribute rule tables and exclusion results are cached
+ * per attribute value, so repeated values are checked without tokenizing or allocating.
+ * Instances are not thread-safe.</p>
+ * 
  * @author Wu, Zhi Qiang
  */
 public final class FilterUtils {
@@ -40,11 +45,24 @@ public final class FilterUtils {
     private final Map<FilterKey, Action> defaultFilterMap;
     private Map<FilterKey, Action> filterMap = null;
     private final Set<FilterKey> notMappingRules = new HashSet<FilterKey>();
+    /** Maximum number of cached results per attribute. */
+    private static final int MAX_CACHE_SIZE = 4096;
+    /** Compiled filter map, where key is attribute name and value maps attribute values to actions. */
+    private Map<String, Map<String, Action>> rules;
+    /** Exclusion results by attribute name and attribute value. */
+    private final Map<String, Map<String, Boolean>> excludeCache = new HashMap<String, Map<String, Boolean>>();
+    /** Compiled {@code props} attribute specializations by specialization path. */
+    private final Map<String, ExtProp> extPropCache = new HashMap<String, ExtProp>();
+    /** Last {@code props} attribute specializations argument. */
+    private String[][] lastExtProps;
+    /** Compiled {@code props} attribute specializations for {@link #lastExtProps}. */
+    private ExtProp[] lastCompiledExtProps;
     
     @Deprecated
     public FilterUtils() {
         defaultFilterMap = Collections.emptyMap();
         filterMap = defaultFilterMap;
+        compile();
     }
     
     /**
@@ -65,6 +83,7 @@ public final class FilterUtils {
         dfm.put(new FilterKey(ATTRIBUTE_NAME_PRINT, null), Action.INCLUDE);
         defaultFilterMap = Collections.unmodifiableMap(dfm);
         filterMap = defaultFilterMap;
+        compile();
     }
     
     public void setLogger(final DITAOTLogger logger) {
@@ -74,16 +93,54 @@ public final class FilterUtils {
     /**
      * Set the filter map.
      * 
-     * @param filtermap The filterMap to set.
+     * @param filtermap The filterMap to set, {@code null} to disable filtering
      */
     public void setFilterMap(final Map<FilterKey, Action> filtermap) {
-        if (!filtermap.isEmpty()) {
+        if (filtermap == null) {
+            filterMap = null;
+        } else if (!filtermap.isEmpty()) {
             final Map<FilterKey, Action> fm = new HashMap<FilterKey, Action>(defaultFilterMap);
             fm.putAll(filtermap);
             filterMap = Collections.unmodifiableMap(fm);
         } else {
             filterMap = defaultFilterMap;
         }
+        compile();
+    }
+
+    /**
+     * Compile filter map into rule tables and discard cached results.
+     */
+    private void compile() {
+        excludeCache.clear();
+        extPropCache.clear();
+        lastExtProps = null;
+        lastCompiledExtProps = null;
+        if (filterMap == null) {
+            rules = null;
+            return;
+        }
+        rules = new HashMap<String, Map<String, Action>>();
+        for (final Map.Entry<FilterKey, Action> e: filterMap.entrySet()) {
+            Map<String, Action> values = rules.get(e.getKey().attribute);
+            if (values == null) {
+                values = new HashMap<String, Action>();
+                rules.put(e.getKey().attribute, values);
+            }
+            values.put(e.getKey().value, e.getValue());
+        }
+    }
+
+    /**
+     * Get filter action.
+     * 
+     * @param attName attribute name
+     * @param attValue attribute value, {@code null} for attribute default action
+     * @return filter action, {@code null} if no action has been defined
+     */
+    private Action getAction(final String attName, final String attValue) {
+        final Map<String, Action> values = rules.get(attName);
+        return values != null ? values.get(attValue) : null;
     }
 
     /**
@@ -111,10 +168,6 @@ public final class FilterUtils {
         boolean ret = false;
         boolean extRet = false;
 
-        if (filterMap == null) {
-            return false;
-        }
-
         ret = checkExclude(ATTRIBUTE_NAME_AUDIENCE, atts.getValue(ATTRIBUTE_NAME_AUDIENCE))
                 || checkExclude(ATTRIBUTE_NAME_PLATFORM, atts.getValue(ATTRIBUTE_NAME_PLATFORM))
                 || checkExclude(ATTRIBUTE_NAME_PRODUCT, atts.getValue(ATTRIBUTE_NAME_PRODUCT))
@@ -126,33 +179,72 @@ public final class FilterUtils {
             return ret;
         }
 
-        for (final String[] propList : extProps) {
+        for (final ExtProp extProp : getExtProps(extProps)) {
+            final String[] propList = extProp.propList;
             int propListIndex = propList.length - 1;
-            final String propName = propList[propListIndex];
-            String propValue = atts.getValue(propName);
+            String propValue = atts.getValue(extProp.propName);
 
             while (propValue == null && propListIndex > 0) {
                 propListIndex--;
                 final String attrPropsValue = atts.getValue(propList[propListIndex]);
                 if (attrPropsValue != null) {
-                    int propStart = -1;
-                    if (attrPropsValue.startsWith(propName + "(") || attrPropsValue.indexOf(STRING_BLANK + propName + "(", 0) != -1) {
-                        propStart = attrPropsValue.indexOf(propName + "(");
-                    }
-                    if (propStart != -1) {
-                        propStart = propStart + propName.length() + 1;
-                    }
-                    final int propEnd = attrPropsValue.indexOf(")", propStart);
-                    if (propStart != -1 && propEnd != -1) {
-                        propValue = attrPropsValue.substring(propStart, propEnd).trim();
-                    }
+                    propValue = extProp.getGeneralizedValue(attrPropsValue);
                 }
             }
-            extRet = extRet || extCheckExclude(propList, propValue);
+            extRet = extRet || extCheckExclude(extProp, propValue);
         }
         return ret || extRet;
     }
 
+    /**
+     * Get compiled {@code props} attribute specializations. The previous result is reused if the
+     * specializations are the same as in the previous call.
+     * 
+     * @param extProps {@code props} attribute specializations
+     * @return compiled specializations
+     */
+    private ExtProp[] getExtProps(final String[][] extProps) {
+        if (extProps == lastExtProps || Arrays.deepEquals(extProps, lastExtProps)) {
+            lastExtProps = extProps;
+            return lastCompiledExtProps;
+        }
+        final ExtProp[] compiled = new ExtProp[extProps.length];
+        for (int i = 0; i < extProps.length; i++) {
+            final String key = Arrays.toString(extProps[i]);
+            ExtProp extProp = extPropCache.get(key);
+            if (extProp == null) {
+                extProp = new ExtProp(extProps[i].clone());
+                extPropCache.put(key, extProp);
+            }
+            compiled[i] = extProp;
+        }
+        lastExtProps = extProps;
+        lastCompiledExtProps = compiled;
+        return compiled;
+    }
+
+    /**
+     * Check the given extended attribute to see if it was excluded. Results are cached by value.
+     * 
+     * @param extProp extended attribute
+     * @param attValue attribute value, may be {@code null}
+     * @return {@code true} if should be excluded, otherwise {@code false}
+     */
+    private boolean extCheckExclude(final ExtProp extProp, final String attValue) {
+        if (attValue == null) {
+            return false;
+        }
+        final Boolean cached = extProp.results.get(attValue);
+        if (cached != null) {
+            return cached;
+        }
+        final boolean res = extCheckExclude(extProp.propList, attValue);
+        if (extProp.results.size() < MAX_CACHE_SIZE) {
+            extProp.results.put(attValue, res);
+        }
+        return res;
+    }
+
     /**
      * Check the given extended attribute in propList to see if it was excluded.
      * 
@@ -180,13 +272,12 @@ public final class FilterUtils {
             final String attName = propList[propListIndex];
             while (tokenizer.hasMoreTokens()) {
                 final String attSubValue = tokenizer.nextToken();
-                final FilterKey filterKey = new FilterKey(attName, attSubValue);
-                final Action filterAction = filterMap.get(filterKey);
+                final Action filterAction = getAction(attName, attSubValue);
                 // no action will be considered as 'not exclude'
                 if (filterAction == null) {
                     // check Specified DefaultAction mapping this attribute's
                     // name
-                    final Action attDefaultAction = filterMap.get(new FilterKey(attName, null));
+                    final Action attDefaultAction = getAction(attName, null);
                     if (attDefaultAction != null) {
                         // filterAction=attDefaultAction;
                         if (Action.EXCLUDE != attDefaultAction) {
@@ -247,6 +338,33 @@ public final class FilterUtils {
         return false;
     }
 
+    /**
+     * Check the given attName to see if it was excluded. Results are cached by attribute value.
+     * 
+     * @param attName
+     * @param attValue
+     * @return {@code true} if should be excluded, otherwise {@code false}
+     */
+    private boolean checkExclude(final String attName, final String attValue) {
+        if (attValue == null) {
+            return false;
+        }
+        Map<String, Boolean> results = excludeCache.get(attName);
+        if (results == null) {
+            results = new HashMap<String, Boolean>();
+            excludeCache.put(attName, results);
+        }
+        final Boolean cached = results.get(attValue);
+        if (cached != null) {
+            return cached;
+        }
+        final boolean res = checkExcludeValue(attName, attValue);
+        if (results.size() < MAX_CACHE_SIZE) {
+            results.put(attValue, res);
+        }
+        return res;
+    }
+
     /**
      * Check the given attName to see if it was excluded.
      * 
@@ -256,11 +374,11 @@ public final class FilterUtils {
      * @param attValue
      * @return {@code true} if should be excluded, otherwise {@code false}
      */
-    private boolean checkExclude(final String attName, final String attValue) {
+    private boolean checkExcludeValue(final String attName, final String attValue) {
         StringTokenizer tokenizer;
 
         // for the special value :"" or " ",just ignore it
-        if (attValue == null || attValue.trim().length() == 0) {
+        if (attValue.trim().length() == 0) {
             return false;
         }
         checkRuleMapping(attName, attValue);
@@ -273,14 +391,13 @@ public final class FilterUtils {
         tokenizer = new StringTokenizer(attValue, STRING_BLANK);
         while (tokenizer.hasMoreTokens()) {
             final String attSubValue = tokenizer.nextToken();
-            final FilterKey filterKey = new FilterKey(attName, attSubValue);
-            Action filterAction = filterMap.get(filterKey);
+            Action filterAction = getAction(attName, attSubValue);
 
             // not mapping ,no action will be considered as default action,
             // if default action does not exists ,considered as "not exclude"
             if (filterAction == null) {
                 // check Specified DefaultAction mapping this attribute's name
-                final Action attDefaultAction = filterMap.get(new FilterKey(attName, null));
+                final Action attDefaultAction = getAction(attName, null);
                 if (attDefaultAction != null) {
                     filterAction = attDefaultAction;
                     if (Action.EXCLUDE != attDefaultAction) {
@@ -302,7 +419,7 @@ public final class FilterUtils {
     }
 
     private boolean checkExcludeOfGlobalDefaultAction() {
-        final Action defaultAction = filterMap.get(DEFAULT);
+        final Action defaultAction = getAction(DEFAULT.attribute, DEFAULT.value);
         if (defaultAction == null) {
             return false;
         } else {
@@ -321,10 +438,9 @@ public final class FilterUtils {
         final StringTokenizer tokenizer = new StringTokenizer(attValue, STRING_BLANK);
         while (tokenizer.hasMoreTokens()) {
             final String attSubValue = tokenizer.nextToken();
-            final FilterKey filterKey = new FilterKey(attName, attSubValue);
-            final Action filterAction = filterMap.get(filterKey);
+            final Action filterAction = getAction(attName, attSubValue);
             if (filterAction == null) {
-                noRuleMapping(filterKey);
+                noRuleMapping(new FilterKey(attName, attSubValue));
             }
         }
     }
@@ -347,6 +463,63 @@ public final class FilterUtils {
         return true;
     }
 
+    /**
+     * Compiled {@code props} attribute specialization path.
+     */
+    private static final class ExtProp {
+
+        /** Specialization path from {@code props} to the specialized attribute. */
+        final String[] propList;
+        /** Specialized attribute name. */
+        final String propName;
+        /** Generalized syntax start, e.g. {@code name(}. */
+        private final String start;
+        /** Generalized syntax start after a separator, e.g. <code>&nbsp;name(</code>. */
+        private final String separatedStart;
+        /** Exclusion results by attribute value. */
+        final Map<String, Boolean> results = new HashMap<String, Boolean>();
+        /** Values extracted from generalized syntax by ancestor attribute value, {@link #NO_VALUE} if not found. */
+        private final Map<String, String> generalized = new HashMap<String, String>();
+        private static final String NO_VALUE = new String();
+
+        ExtProp(final String[] propList) {
+            this.propList = propList;
+            propName = propList[propList.length - 1];
+            start = propName + "(";
+            separatedStart = STRING_BLANK + start;
+        }
+
+        /**
+         * Get specialized attribute value from generalized syntax in ancestor attribute value.
+         * 
+         * @param attrPropsValue ancestor attribute value
+         * @return specialized attribute value, {@code null} if not found
+         */
+        String getGeneralizedValue(final String attrPropsValue) {
+            final String cached = generalized.get(attrPropsValue);
+            if (cached != null) {
+                return cached == NO_VALUE ? null : cached;
+            }
+            String propValue = null;
+            int propStart = -1;
+            if (attrPropsValue.startsWith(start) || attrPropsValue.indexOf(separatedStart, 0) != -1) {
+                propStart = attrPropsValue.indexOf(start);
+            }
+            if (propStart != -1) {
+                propStart = propStart + propName.length() + 1;
+            }
+            final int propEnd = attrPropsValue.indexOf(")", propStart);
+            if (propStart != -1 && propEnd != -1) {
+                propValue = attrPropsValue.substring(propStart, propEnd).trim();
+            }
+            if (generalized.size() < MAX_CACHE_SIZE) {
+                generalized.put(attrPropsValue, propValue != null ? propValue : NO_VALUE);
+            }
+            return propValue;
+        }
+
+    }
+
     /**
      * Filter key object.
      * 
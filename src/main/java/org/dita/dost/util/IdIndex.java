@@ -0,0 +1,242 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.dita.dost.util.Constants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Process-wide index of topic and element IDs in DITA files.
+ *
+ * <p>A file is read with a streaming parser on first lookup and the IDs are cached for the rest of
+ * the build. Processing steps that already stream a file, e.g. gen-list, can register its IDs with a
+ * {@link Collector} to avoid the extra parse. Steps that rewrite a file must {@link #remove(File) remove}
+ * or re-register it. Cache entries are additionally validated against file modification time and size.
+ * Entries in a temporary directory are dropped with {@link #clear(File)} when the build that owns the
+ * directory finishes.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class IdIndex {
+
+    private static final IdIndex instance = new IdIndex();
+
+    private final ConcurrentMap<File, Ids> cache = new ConcurrentHashMap<File, Ids>();
+    /** Grammar pool for parsing indexed files. */
+    private final XMLGrammarPool grammarPool = new XMLGrammarPoolImplUtils(true);
+
+    private IdIndex() {
+    }
+
+    /**
+     * Get ID index instance.
+     *
+     * @return ID index
+     */
+    public static IdIndex getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get IDs in a file.
+     *
+     * @param file DITA file
+     * @return IDs in the file
+     * @throws IOException if reading the file failed
+     */
+    public Ids get(final File file) throws IOException {
+        final File f = file.getAbsoluteFile();
+        final long lastModified = f.lastModified();
+        final long length = f.length();
+        final Ids cached = cache.get(f);
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            return cached;
+        }
+        final Ids ids = new Ids(lastModified, length);
+        try {
+            final XMLReader reader = StringUtils.getXMLReader();
+            try {
+                reader.setProperty("http://apache.org/xml/properties/internal/grammar-pool", grammarPool);
+            } catch (final SAXException e) {
+                // not Xerces, parse without grammar caching
+            }
+            reader.setEntityResolver(CatalogUtils.getCatalogResolver());
+            reader.setContentHandler(new Collector(ids));
+            reader.parse(f.toURI().toString());
+        } catch (final SAXException e) {
+            throw new IOException("Failed to parse " + f.getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+        cache.put(f, ids);
+        return ids;
+    }
+
+    /**
+     * Register IDs collected while writing a file. Must be called after the file has been written.
+     *
+     * @param file written file
+     * @param collector collector that received the events of the written file, reset after registration
+     */
+    public void put(final File file, final Collector collector) {
+        final File f = file.getAbsoluteFile();
+        if (!f.exists()) {
+            collector.reset();
+            return;
+        }
+        final Ids ids = new Ids(f.lastModified(), f.length());
+        ids.firstId = collector.ids.firstId;
+        ids.topicIds.addAll(collector.ids.topicIds);
+        ids.elementIds.addAll(collector.ids.elementIds);
+        cache.put(f, ids);
+        collector.reset();
+    }
+
+    /**
+     * Remove cached entry of a file. Must be called when a file is rewritten without registering its IDs.
+     *
+     * @param file rewritten file
+     */
+    public void remove(final File file) {
+        cache.remove(file.getAbsoluteFile());
+    }
+
+    /**
+     * Remove cached entries of files in a directory.
+     *
+     * @param dir directory
+     */
+    public void clear(final File dir) {
+        final String prefix = dir.getAbsolutePath() + File.separator;
+        for (final Iterator<File> it = cache.keySet().iterator(); it.hasNext();) {
+            if (it.next().getPath().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached entries.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * IDs in a single file.
+     */
+    public static final class Ids {
+
+        final long lastModified;
+        final long length;
+        /** First ID in document order, regardless of element type. */
+        String firstId;
+        final Set<String> topicIds = new LinkedHashSet<String>();
+        final Set<String> elementIds = new HashSet<String>();
+
+        Ids(final long lastModified, final long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Get the first ID in the file.
+         *
+         * @return ID of the first element with an ID, {@code null} if the file has no IDs
+         */
+        public String getFirstId() {
+            return firstId;
+        }
+
+        /**
+         * Get topic IDs in document order.
+         *
+         * @return topic IDs
+         */
+        public Set<String> getTopicIds() {
+            return Collections.unmodifiableSet(topicIds);
+        }
+
+        /**
+         * Test if file contains a topic with the given ID.
+         *
+         * @param id topic ID
+         * @return {@code true} if topic was found, otherwise {@code false}
+         */
+        public boolean hasTopicId(final String id) {
+            return topicIds.contains(id);
+        }
+
+        /**
+         * Test if file contains a non-topic element with the given ID.
+         *
+         * @param id element ID
+         * @return {@code true} if element was found, otherwise {@code false}
+         */
+        public boolean hasElementId(final String id) {
+            return elementIds.contains(id);
+        }
+
+    }
+
+    /**
+     * Content handler that collects IDs from element events. Not thread-safe.
+     */
+    public static final class Collector extends DefaultHandler {
+
+        private Ids ids;
+
+        /**
+         * Create new collector.
+         */
+        public Collector() {
+            this(new Ids(0, 0));
+        }
+
+        Collector(final Ids ids) {
+            this.ids = ids;
+        }
+
+        /**
+         * Discard collected IDs.
+         */
+        public void reset() {
+            ids = new Ids(0, 0);
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+            final String id = atts.getValue(ATTRIBUTE_NAME_ID);
+            if (id != null) {
+                if (ids.firstId == null) {
+                    ids.firstId = id;
+                }
+                final String cls = atts.getValue(ATTRIBUTE_NAME_CLASS);
+                if (cls != null && TOPIC_TOPIC.matches(cls)) {
+                    ids.topicIds.add(id);
+                } else {
+                    ids.elementIds.add(id);
+                }
+            }
+        }
+
+    }
+
+}
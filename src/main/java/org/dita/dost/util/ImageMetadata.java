@@ -0,0 +1,283 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+
+import org.dita.dost.log.DITAOTJavaLogger;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Process-wide cache of image dimensions and resolution.
+ *
+ * <p>Only image headers and metadata are read, pixel data is not decoded. Entries are keyed by absolute
+ * path and validated against file size and modification time. If a cache directory has been set, entries
+ * are also appended to a cache file in that directory and reused by later builds. The cache file is
+ * compacted when it is loaded.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class ImageMetadata {
+
+    /** Cache file name in cache directory. */
+    static final String CACHE_FILE = "image-metadata.cache";
+    private static final float MM_TO_INCH = 25.4f;
+    private static final String SEPARATOR = "\t";
+
+    private static final ImageMetadata instance = new ImageMetadata();
+
+    private final DITAOTJavaLogger logger = new DITAOTJavaLogger();
+    private final ConcurrentMap<File, Info> cache = new ConcurrentHashMap<File, Info>();
+    /** Persistent cache directory, {@code null} if not used. */
+    private File cacheDir;
+    /** Persistent cache file writer, {@code null} if not used. */
+    private Writer out;
+
+    ImageMetadata() {
+    }
+
+    /**
+     * Get image metadata cache instance.
+     *
+     * @return image metadata cache
+     */
+    public static ImageMetadata getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set persistent cache directory. Entries in the cache file are loaded into memory.
+     *
+     * @param dir cache directory, {@code null} to not use a persistent cache
+     */
+    public synchronized void setCacheDir(final File dir) {
+        final File d = dir != null ? dir.getAbsoluteFile() : null;
+        if (d == null ? cacheDir == null : d.equals(cacheDir)) {
+            return;
+        }
+        close();
+        cacheDir = d;
+        if (d == null) {
+            return;
+        }
+        final File file = new File(d, CACHE_FILE);
+        try {
+            if (file.exists()) {
+                load(file);
+            } else if (!d.exists() && !d.mkdirs()) {
+                throw new IOException("Failed to create directory " + d.getAbsolutePath());
+            }
+            // compact: rewrite current entries and continue by appending
+            out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            for (final Map.Entry<File, Info> e: cache.entrySet()) {
+                write(e.getKey(), e.getValue());
+            }
+            out.flush();
+        } catch (final IOException e) {
+            logger.logWarn("Failed to use image metadata cache " + file.getAbsolutePath() + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Get image metadata.
+     *
+     * @param file image file
+     * @return image metadata, {@code null} if image format is not supported
+     * @throws IOException if reading the image failed
+     */
+    public Info get(final File file) throws IOException {
+        final File f = file.getAbsoluteFile();
+        final long lastModified = f.lastModified();
+        final long length = f.length();
+        final Info cached = cache.get(f);
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            return cached;
+        }
+        final Info info = read(f, lastModified, length);
+        if (info != null) {
+            cache.put(f, info);
+            append(f, info);
+        }
+        return info;
+    }
+
+    /**
+     * Remove all in-memory entries and stop using the persistent cache.
+     */
+    public synchronized void clear() {
+        close();
+        cacheDir = null;
+        cache.clear();
+    }
+
+    /**
+     * Read image header and metadata.
+     */
+    private static Info read(final File file, final long lastModified, final long length) throws IOException {
+        final ImageInputStream iis = ImageIO.createImageInputStream(file);
+        if (iis == null) {
+            throw new IOException("Failed to open " + file.getAbsolutePath());
+        }
+        try {
+            final Iterator<ImageReader> i = ImageIO.getImageReaders(iis);
+            if (!i.hasNext()) {
+                return null;
+            }
+            final ImageReader r = i.next();
+            try {
+                r.setInput(iis);
+                final int width = r.getWidth(0);
+                final int height = r.getHeight(0);
+                int horizontalDpi = -1;
+                int verticalDpi = -1;
+                final IIOMetadata metadata = r.getImageMetadata(0);
+                if (metadata != null && metadata.isStandardMetadataFormatSupported()) {
+                    final Element node = (Element) metadata.getAsTree("javax_imageio_1.0");
+                    horizontalDpi = getDpi(node.getElementsByTagName("HorizontalPixelSize"));
+                    verticalDpi = getDpi(node.getElementsByTagName("VerticalPixelSize"));
+                }
+                return new Info(lastModified, length, width, height, horizontalDpi, verticalDpi);
+            } finally {
+                r.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    private static int getDpi(final NodeList ns) {
+        if (ns != null && ns.getLength() == 1) {
+            final float v = Float.parseFloat(((Element) ns.item(0)).getAttribute("value"));
+            return Math.round(MM_TO_INCH / v);
+        }
+        return -1;
+    }
+
+    /**
+     * Read cache file. Malformed lines, e.g. a partially written last line, are ignored.
+     */
+    private void load(final File file) throws IOException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            for (String l = in.readLine(); l != null; l = in.readLine()) {
+                final String[] tokens = l.split(SEPARATOR, 7);
+                if (tokens.length != 7) {
+                    continue;
+                }
+                try {
+                    final Info info = new Info(Long.parseLong(tokens[1]), Long.parseLong(tokens[0]),
+                            Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]),
+                            Integer.parseInt(tokens[4]), Integer.parseInt(tokens[5]));
+                    final File f = new File(tokens[6]);
+                    if (f.lastModified() == info.lastModified && f.length() == info.length) {
+                        cache.put(f, info);
+                    }
+                } catch (final NumberFormatException e) {
+                    // ignore malformed line
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized void append(final File file, final Info info) {
+        if (out == null) {
+            return;
+        }
+        try {
+            write(file, info);
+            out.flush();
+        } catch (final IOException e) {
+            logger.logWarn("Failed to write image metadata cache: " + e.getMessage());
+            close();
+        }
+    }
+
+    private void write(final File file, final Info info) throws IOException {
+        final String path = file.getPath();
+        if (path.indexOf('\n') != -1 || path.indexOf('\r') != -1) {
+            return;
+        }
+        out.write(info.length + SEPARATOR + info.lastModified + SEPARATOR + info.width + SEPARATOR + info.height
+                + SEPARATOR + info.horizontalDpi + SEPARATOR + info.verticalDpi + SEPARATOR + path + "\n");
+    }
+
+    private void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Image dimensions and resolution.
+     */
+    public static final class Info {
+
+        final long lastModified;
+        final long length;
+        private final int width;
+        private final int height;
+        private final int horizontalDpi;
+        private final int verticalDpi;
+
+        Info(final long lastModified, final long length, final int width, final int height,
+                final int horizontalDpi, final int verticalDpi) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+            this.horizontalDpi = horizontalDpi;
+            this.verticalDpi = verticalDpi;
+        }
+
+        /** @return width in pixels */
+        public int getWidth() {
+            return width;
+        }
+
+        /** @return height in pixels */
+        public int getHeight() {
+            return height;
+        }
+
+        /** @return horizontal resolution in DPI, {@code -1} if not available */
+        public int getHorizontalDpi() {
+            return horizontalDpi;
+        }
+
+        /** @return vertical resolution in DPI, {@code -1} if not available */
+        public int getVerticalDpi() {
+            return verticalDpi;
+        }
+
+    }
+
+}
@@ -9,18 +9,17 @@
 package org.dita.dost.util;
 
 import static org.dita.dost.util.Constants.INT_1024;
-import static org.dita.dost.util.Constants.INT_16;
 
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Properties;
 
-import javax.imageio.ImageIO;
-
-import org.apache.commons.codec.binary.Base64;
 import org.dita.dost.log.DITAOTJavaLogger;
 import org.dita.dost.log.MessageUtils;
 
@@ -33,6 +32,22 @@ import org.dita.dost.log.MessageUtils;
  */
 public final class ImgUtils {
 	
+    /** Read buffer size for streaming encoders. */
+    private static final int BUFFER_SIZE = 8 * INT_1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /** Number of input bytes per 76 character Base64 line. */
+    private static final int BASE64_LINE_BYTES = 57;
+    /** Number of Base64 lines encoded per read. */
+    private static final int BASE64_CHUNK_LINES = 144;
+    private static final byte[] BASE64_DIGITS;
+    static {
+        final String digits = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        BASE64_DIGITS = new byte[digits.length()];
+        for (int i = 0; i < digits.length(); i++) {
+            BASE64_DIGITS[i] = (byte) digits.charAt(i);
+        }
+    }
+
     /**
      * Private default constructor to make class uninstantiable.
      */
@@ -80,6 +95,17 @@ public final class ImgUtils {
 		}
 		return false;
 	}
+    /**
+     * Read image dimensions without decoding pixel data.
+     */
+    private static ImageMetadata.Info getImageMetadata(final File imgInput) throws IOException {
+        final ImageMetadata.Info info = ImageMetadata.getInstance().get(imgInput);
+        if (info == null) {
+            throw new IOException("Image " + imgInput + " format not supported");
+        }
+        return info;
+    }
+
     /**
      * Get the image width.
      * @param dirName -
@@ -97,8 +123,7 @@ public final class ImgUtils {
             imgInput = new File(getImageOutPutPath(fileName));
         }    
         try {
-            final BufferedImage img = ImageIO.read(imgInput);
-            return img.getWidth();
+            return getImageMetadata(imgInput).getWidth();
         }catch (final Exception e){
             logger.logError(MessageUtils.getInstance().getMessage("DOTJ023E", dirName+File.separatorChar+fileName).toString(), e);
             return -1;
@@ -122,8 +147,7 @@ public final class ImgUtils {
             imgInput = new File(getImageOutPutPath(fileName));
         }      
         try {
-            final BufferedImage img = ImageIO.read(imgInput);
-            return img.getHeight();
+            return getImageMetadata(imgInput).getHeight();
         }catch (final Exception e){
             logger.logError(MessageUtils.getInstance().getMessage("DOTJ023E", dirName+File.separatorChar+fileName).toString(), e);
             return -1;
@@ -132,6 +156,11 @@ public final class ImgUtils {
 
     /**
      * Get the image binary data, with hexical output. For RTF transformation
+     * 
+     * <p>The image is read in chunks, but the hexadecimal data is built in a buffer
+     * and copied into the returned string, so memory use is about twice the size
+     * of the returned data.</p>
+     * 
      * @param dirName -
      * 				The directory name that will be added to the path
      * 				of the image file.
@@ -146,36 +175,51 @@ public final class ImgUtils {
         if (checkDirName(dirName)) {
             imgInput = new File(getImageOutPutPath(fileName));
         }      
-        FileInputStream binInput = null;
-        int bin;
         try{
-            String binStr = null;
-            final StringBuffer ret = new StringBuffer(INT_16*INT_1024);
-            binInput = new FileInputStream(imgInput);
-            bin = binInput.read();
-            while (bin != -1){
-                binStr = Integer.toHexString(bin);
-                if(binStr.length() < 2){
-                    ret.append("0");
-                }
-                ret.append(binStr);
-                bin = binInput.read();
-            }
+            final StringWriter ret = new StringWriter((int) Math.min(imgInput.length() * 2, Integer.MAX_VALUE));
+            writeBinData(imgInput, ret);
             return ret.toString();
         }catch (final Exception e){
             logger.logError(MessageUtils.getInstance().getMessage("DOTJ023E").toString());
             logger.logError(e.getMessage(), e) ;
             return null;
-        }finally{
-            try{
-                binInput.close();
-            }catch(final IOException ioe){
-                logger.logError(ioe.getMessage(), ioe) ;
+        }
+    }
+
+    /**
+     * Write the image binary data with hexical output. The image is read and encoded
+     * in fixed-size chunks.
+     * 
+     * @param imgInput image file
+     * @param out output to write lower case hexadecimal digits to, not closed
+     * @throws IOException if reading the image or writing the output failed
+     */
+    private static void writeBinData(final File imgInput, final Writer out) throws IOException {
+        final InputStream in = new FileInputStream(imgInput);
+        try {
+            final byte[] buf = new byte[BUFFER_SIZE];
+            final char[] chars = new char[BUFFER_SIZE * 2];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                for (int i = 0, j = 0; i < len; i++) {
+                    final int b = buf[i] & 0xFF;
+                    chars[j++] = HEX_DIGITS[b >>> 4];
+                    chars[j++] = HEX_DIGITS[b & 0x0F];
+                }
+                out.write(chars, 0, len * 2);
             }
+        } finally {
+            in.close();
         }
     }
+
     /**
      * Get Base64 encoding content. For ODT transformation
+     * 
+     * <p>The image is read in chunks, but the Base64 data is built in a buffer
+     * and copied into the returned string, so memory use is about twice the size
+     * of the returned data.</p>
+     * 
      * @param dirName -
      * 				The directory name that will be added to the path
      * 				of the image file.
@@ -189,32 +233,78 @@ public final class ImgUtils {
         if (checkDirName(dirName)) {
             imgInput = new File(getImageOutPutPath(fileName));
         }      
-        //BASE64Encoder encoder = new BASE64Encoder();
-        final Base64 encoder = new Base64();
-        final byte   buff[]=new   byte[(int)imgInput.length()];
-        FileInputStream file = null;
         try {
-            file = new FileInputStream(imgInput);
-            file.read(buff);
-            //String ret = encoder.encode(buff);
-            final String ret = encoder.encodeToString(buff);
-            return ret;
-        } catch (final FileNotFoundException e) {
-            logger.logError(MessageUtils.getInstance().getMessage("DOTJ023E").toString());
-            logger.logError(e.getMessage(), e) ;
-            return null;
+            final ByteArrayOutputStream ret = new ByteArrayOutputStream((int) Math.min(getBASE64Length(imgInput.length()), Integer.MAX_VALUE));
+            writeBASE64(imgInput, ret);
+            return ret.toString("US-ASCII");
         } catch (final IOException e) {
             logger.logError(MessageUtils.getInstance().getMessage("DOTJ023E").toString());
             logger.logError(e.getMessage(), e) ;
             return null;
-        }finally{
-            try{
-                file.close();
-            }catch(final IOException ioe){
-                logger.logError(ioe.getMessage(), ioe) ;
+        }
+    }
+
+    /**
+     * Get length of MIME formatted Base64 data.
+     * 
+     * @param length input length in bytes
+     * @return encoded length in characters, including line terminators
+     */
+    private static long getBASE64Length(final long length) {
+        final long lines = (length + BASE64_LINE_BYTES - 1) / BASE64_LINE_BYTES;
+        return (length + 2) / 3 * 4 + lines * 2;
+    }
+
+    /**
+     * Write Base64 encoding content. The image is read and encoded in fixed-size chunks.
+     * Output is MIME formatted with 76 character lines, each terminated by CRLF.
+     * 
+     * @param imgInput image file
+     * @param out output to write ASCII encoded Base64 data to, not closed
+     * @throws IOException if reading the image or writing the output failed
+     */
+    private static void writeBASE64(final File imgInput, final OutputStream out) throws IOException {
+        final InputStream in = new FileInputStream(imgInput);
+        try {
+            final byte[] buf = new byte[BASE64_LINE_BYTES * BASE64_CHUNK_LINES];
+            final byte[] chars = new byte[(BASE64_LINE_BYTES / 3 * 4 + 2) * BASE64_CHUNK_LINES];
+            int len;
+            while ((len = readFully(in, buf)) > 0) {
+                int j = 0;
+                for (int line = 0; line < len; line += BASE64_LINE_BYTES) {
+                    final int lineEnd = Math.min(line + BASE64_LINE_BYTES, len);
+                    for (int i = line; i < lineEnd; i += 3) {
+                        final int rest = lineEnd - i;
+                        final int b = (buf[i] & 0xFF) << 16
+                                | (rest > 1 ? (buf[i + 1] & 0xFF) << 8 : 0)
+                                | (rest > 2 ? buf[i + 2] & 0xFF : 0);
+                        chars[j++] = BASE64_DIGITS[b >>> 18];
+                        chars[j++] = BASE64_DIGITS[(b >>> 12) & 0x3F];
+                        chars[j++] = rest > 1 ? BASE64_DIGITS[(b >>> 6) & 0x3F] : (byte) '=';
+                        chars[j++] = rest > 2 ? BASE64_DIGITS[b & 0x3F] : (byte) '=';
+                    }
+                    chars[j++] = '\r';
+                    chars[j++] = '\n';
+                }
+                out.write(chars, 0, j);
             }
+        } finally {
+            in.close();
         }
+    }
 
+    /**
+     * Read until buffer is full or end of stream is reached.
+     * 
+     * @return number of bytes read
+     */
+    private static int readFully(final InputStream in, final byte[] buf) throws IOException {
+        int off = 0;
+        int len;
+        while (off < buf.length && (len = in.read(buf, off, buf.length - off)) != -1) {
+            off += len;
+        }
+        return off;
     }
 
 }
@@ -13,14 +13,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,6 +33,7 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
+import org.dita.dost.log.DITAOTJavaLogger;
 import org.dita.dost.util.Job.FileInfo.Filter;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
@@ -47,6 +51,8 @@ import org.xml.sax.helpers.DefaultHandler;
 public final class Job {
 
     private static final String JOB_FILE = ".job.xml";
+    private static final String BINARY_JOB_FILE = ".job.bin";
+    private static final DITAOTJavaLogger logger = new DITAOTJavaLogger();
     
     private static final String ELEMENT_JOB = "job";
     private static final String ATTRIBUTE_KEY = "key";
@@ -80,6 +86,9 @@ public final class Job {
     private static final String ATTRIBUTE_SUBSIDIARY_TARGET_LIST = "subtarget";
     private static final String ATTRIBUTE_CHUNK_TOPIC_LIST = "skip-chunk";
     private static final String ATTRIBUTE_ACTIVE = "active";
+    private static final String ATTRIBUTE_UNCHANGED = "unchanged";
+    private static final String ATTRIBUTE_DIGEST = "digest";
+    private static final String ELEMENT_DEPEND = "depend";
     
     /** File name for chuncked dita map list file */
     public static final String CHUNKED_DITAMAP_LIST_FILE = "chunkedditamap.list";
@@ -140,36 +149,35 @@ public final class Job {
     /** File name for temporary input file list file */
     public static final String USER_INPUT_FILE_LIST_FILE = "usr.input.file.list";
 
-    /** Map of serialization attributes to file info boolean fields. */
-    private static final Map<String, Field> attrToFieldMap= new HashMap<String, Field>();
+    /** Map of serialization attributes to file info flags. */
+    private static final Map<String, FileInfo.Flag> attrToFlagMap = new HashMap<String, FileInfo.Flag>();
     static {
-        try {
-            attrToFieldMap.put(ATTRIBUTE_CHUNKED, FileInfo.class.getField("isChunked"));
-            attrToFieldMap.put(ATTRIBUTE_HAS_LINK, FileInfo.class.getField("hasLink"));    
-            attrToFieldMap.put(ATTRIBUTE_HAS_CONREF, FileInfo.class.getField("hasConref"));    
-            attrToFieldMap.put(ATTRIBUTE_HAS_KEYREF, FileInfo.class.getField("hasKeyref"));    
-            attrToFieldMap.put(ATTRIBUTE_HAS_CODEREF, FileInfo.class.getField("hasCoderef"));    
-            attrToFieldMap.put(ATTRIBUTE_RESOURCE_ONLY, FileInfo.class.getField("isResourceOnly"));    
-            attrToFieldMap.put(ATTRIBUTE_TARGET, FileInfo.class.getField("isTarget"));    
-            attrToFieldMap.put(ATTRIBUTE_CONREF_TARGET, FileInfo.class.getField("isConrefTarget"));    
-            attrToFieldMap.put(ATTRIBUTE_NON_CONREF_TARGET, FileInfo.class.getField("isNonConrefTarget"));    
-            attrToFieldMap.put(ATTRIBUTE_CONREF_PUSH, FileInfo.class.getField("isConrefPush"));    
-            attrToFieldMap.put(ATTRIBUTE_SUBJECT_SCHEME, FileInfo.class.getField("isSubjectScheme"));
-            attrToFieldMap.put(ATTRIBUTE_COPYTO_SOURCE_LIST, FileInfo.class.getField("isCopyToSource"));
-            attrToFieldMap.put(ATTRIBUTE_OUT_DITA_FILES_LIST, FileInfo.class.getField("isOutDita"));
-            attrToFieldMap.put(ATTRIBUTE_CHUNKED_DITAMAP_LIST, FileInfo.class.getField("isChunkedDitaMap"));
-            attrToFieldMap.put(ATTRIBUTE_FLAG_IMAGE_LIST, FileInfo.class.getField("isFlagImage"));
-            attrToFieldMap.put(ATTRIBUTE_SUBSIDIARY_TARGET_LIST, FileInfo.class.getField("isSubtarget"));
-            attrToFieldMap.put(ATTRIBUTE_CHUNK_TOPIC_LIST, FileInfo.class.getField("isSkipChunk"));
-            attrToFieldMap.put(ATTRIBUTE_ACTIVE, FileInfo.class.getField("isActive"));
-        } catch (final NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        }
+        attrToFlagMap.put(ATTRIBUTE_CHUNKED, FileInfo.Flag.IS_CHUNKED);
+        attrToFlagMap.put(ATTRIBUTE_HAS_LINK, FileInfo.Flag.HAS_LINK);
+        attrToFlagMap.put(ATTRIBUTE_HAS_CONREF, FileInfo.Flag.HAS_CONREF);
+        attrToFlagMap.put(ATTRIBUTE_HAS_KEYREF, FileInfo.Flag.HAS_KEYREF);
+        attrToFlagMap.put(ATTRIBUTE_HAS_CODEREF, FileInfo.Flag.HAS_CODEREF);
+        attrToFlagMap.put(ATTRIBUTE_RESOURCE_ONLY, FileInfo.Flag.IS_RESOURCE_ONLY);
+        attrToFlagMap.put(ATTRIBUTE_TARGET, FileInfo.Flag.IS_TARGET);
+        attrToFlagMap.put(ATTRIBUTE_CONREF_TARGET, FileInfo.Flag.IS_CONREF_TARGET);
+        attrToFlagMap.put(ATTRIBUTE_NON_CONREF_TARGET, FileInfo.Flag.IS_NON_CONREF_TARGET);
+        attrToFlagMap.put(ATTRIBUTE_CONREF_PUSH, FileInfo.Flag.IS_CONREF_PUSH);
+        attrToFlagMap.put(ATTRIBUTE_SUBJECT_SCHEME, FileInfo.Flag.IS_SUBJECT_SCHEME);
+        attrToFlagMap.put(ATTRIBUTE_COPYTO_SOURCE_LIST, FileInfo.Flag.IS_COPY_TO_SOURCE);
+        attrToFlagMap.put(ATTRIBUTE_OUT_DITA_FILES_LIST, FileInfo.Flag.IS_OUT_DITA);
+        attrToFlagMap.put(ATTRIBUTE_CHUNKED_DITAMAP_LIST, FileInfo.Flag.IS_CHUNKED_DITAMAP);
+        attrToFlagMap.put(ATTRIBUTE_FLAG_IMAGE_LIST, FileInfo.Flag.IS_FLAG_IMAGE);
+        attrToFlagMap.put(ATTRIBUTE_SUBSIDIARY_TARGET_LIST, FileInfo.Flag.IS_SUBTARGET);
+        attrToFlagMap.put(ATTRIBUTE_CHUNK_TOPIC_LIST, FileInfo.Flag.IS_SKIP_CHUNK);
+        attrToFlagMap.put(ATTRIBUTE_ACTIVE, FileInfo.Flag.IS_ACTIVE);
+        attrToFlagMap.put(ATTRIBUTE_UNCHANGED, FileInfo.Flag.IS_UNCHANGED);
     }
     
     private final Map<String, Object> prop;
     private final File tempDir;
     private final ConcurrentMap<File, FileInfo> files = new ConcurrentHashMap<File, FileInfo>();
+    /** Flag storage and index of file info objects in this job. */
+    private final FlagIndex index = new FlagIndex();
 
     /**
      * Create new job configuration instance. Initialise by reading temporary configuration files.
@@ -182,6 +190,9 @@ public final class Job {
         this.tempDir = tempDir;
         prop = new HashMap<String, Object>();
         read();
+        for (final FileInfo f: files.values()) {
+            f.attach(this);
+        }
     }
 
     /**
@@ -194,6 +205,20 @@ public final class Job {
      */
     private void read() throws IOException {
         final File jobFile = new File(tempDir, JOB_FILE);
+        final File binaryFile = new File(tempDir, BINARY_JOB_FILE);
+        try {
+            if (BinaryJobFormat.read(binaryFile, jobFile, prop, files)) {
+                return;
+            }
+        } catch (final IOException e) {
+            logger.logWarn("Failed to read binary job file, using " + jobFile.getAbsolutePath() + ": " + e.getMessage());
+            prop.clear();
+            files.clear();
+        }
+        // binary file is corrupt or out of date and is rewritten by the next write
+        if (binaryFile.exists() && !binaryFile.delete()) {
+            logger.logWarn("Failed to delete stale binary job file " + binaryFile.getAbsolutePath());
+        }
         if (jobFile.exists()) {
         	InputStream in = null;
             try {
@@ -221,6 +246,7 @@ public final class Job {
         private String key;
         private Set<String> set;
         private Map<String, String> map;
+        private FileInfo fileInfo;
         
         JobHandler(final Map<String, Object> prop, final Map<File, FileInfo> files) {
             this.prop = prop;
@@ -264,14 +290,14 @@ public final class Job {
                 final String path = atts.getValue(ATTRIBUTE_PATH);
                 final FileInfo i = uri != null ? new FileInfo(uri) : new FileInfo(new File(path));
                 i.format = atts.getValue(ATTRIBUTE_FORMAT);
-                try {
-                    for (Map.Entry<String, Field> e: attrToFieldMap.entrySet()) {
-                        e.getValue().setBoolean(i, Boolean.parseBoolean(atts.getValue(e.getKey())));
-                    }
-                } catch (final IllegalAccessException ex) {
-                    throw new RuntimeException(ex);
+                i.setDigest(atts.getValue(ATTRIBUTE_DIGEST));
+                for (final Map.Entry<String, FileInfo.Flag> e: attrToFlagMap.entrySet()) {
+                    i.set(e.getValue(), Boolean.parseBoolean(atts.getValue(e.getKey())));
                 }
                 files.put(i.file, i);
+                fileInfo = i;
+            } else if (n.equals(ELEMENT_DEPEND)) {
+                fileInfo.addDependency(new File(atts.getValue(ATTRIBUTE_PATH)));
             }
         }
         
@@ -297,17 +323,41 @@ public final class Job {
                 map = null;
             } else if (n.equals(ELEMENT_ENTRY)) {
                 key = null;
+            } else if (n.equals(ELEMENT_FILE)) {
+                fileInfo = null;
             }
         }
         
     }
     
     /**
-     * Store job into temporary configuration files.
+     * Store job into temporary configuration files. If {@link Constants#JOB_FORMAT job format} is
+     * {@link Constants#JOB_FORMAT_BINARY binary}, a binary job file is written in addition to the XML job file.
      * 
      * @throws IOException if writing configuration files failed
      */
     public void write() throws IOException {
+        writeXML();
+        final File binaryFile = new File(tempDir, BINARY_JOB_FILE);
+        if (JOB_FORMAT_BINARY.equals(getProperty(JOB_FORMAT))) {
+            try {
+                BinaryJobFormat.write(binaryFile, new File(tempDir, JOB_FILE), prop, files.values());
+            } catch (final IOException e) {
+                logger.logWarn("Failed to write binary job file " + binaryFile.getAbsolutePath() + ": " + e.getMessage());
+                // binary file no longer matches the XML file and will be ignored on read
+                binaryFile.delete();
+            }
+        } else if (binaryFile.exists()) {
+            binaryFile.delete();
+        }
+    }
+    
+    /**
+     * Store job into XML job file.
+     * 
+     * @throws IOException if writing configuration file failed
+     */
+    private void writeXML() throws IOException {
     	OutputStream outStream = null;
         XMLStreamWriter out = null;
         try {
@@ -358,15 +408,17 @@ public final class Job {
                 if (i.format != null) {
                 	out.writeAttribute(ATTRIBUTE_FORMAT, i.format);
                 }
-                try {
-                    for (Map.Entry<String, Field> e: attrToFieldMap.entrySet()) {
-                        final boolean v = e.getValue().getBoolean(i);
-                        if (v) {
-                            out.writeAttribute(e.getKey(), Boolean.toString(v));
-                        }
+                if (i.getDigest() != null) {
+                    out.writeAttribute(ATTRIBUTE_DIGEST, i.getDigest());
+                }
+                for (final Map.Entry<String, FileInfo.Flag> e: attrToFlagMap.entrySet()) {
+                    if (i.get(e.getValue())) {
+                        out.writeAttribute(e.getKey(), Boolean.TRUE.toString());
                     }
-                } catch (final IllegalAccessException ex) {
-                    throw new RuntimeException(ex);
+                }
+                for (final File d: i.getDependencies()) {
+                    out.writeEmptyElement(ELEMENT_DEPEND);
+                    out.writeAttribute(ATTRIBUTE_PATH, d.getPath());
                 }
                 out.writeEndElement(); //file
             }
@@ -399,7 +451,7 @@ public final class Job {
      * Add file info. If file info with the same file already exists, it will be replaced.
      */
     public void add(final FileInfo fileInfo) {
-        files.put(fileInfo.file, fileInfo);
+        put(fileInfo);
     }
     
     /**
@@ -408,7 +460,11 @@ public final class Job {
      * @return removed file info, {@code null} if not found
      */
     public FileInfo remove(final FileInfo fileInfo) {
-        return files.remove(fileInfo.file);
+        final FileInfo removed = files.remove(fileInfo.file);
+        if (removed != null) {
+            removed.detach(this);
+        }
+        return removed;
     }
     
     /**
@@ -490,6 +546,41 @@ public final class Job {
         return getProperty(INPUT_DIR);
     }
 
+    /**
+     * Get temporary directory.
+     * 
+     * @return temporary directory
+     * @since 2.0
+     */
+    public File getTempDir() {
+        return tempDir;
+    }
+
+    /**
+     * Get job configuration file. The file is rewritten every time the job configuration is written.
+     * 
+     * @param tempDir temporary directory
+     * @return job configuration file
+     * @since 2.0
+     */
+    public static File getJobFile(final File tempDir) {
+        return new File(tempDir, JOB_FILE);
+    }
+
+    /**
+     * Get document store for temporary files. The store is write-through, temporary files are always written
+     * to disk. See {@link DocumentStore} for the reader features stored documents can be read with.
+     * 
+     * @return document store, {@code null} if job does not use a document store
+     * @since 2.0
+     */
+    public DocumentStore getStore() {
+        if (STORE_TYPE_MEMORY.equals(getProperty(STORE_TYPE))) {
+            return DocumentStore.getInstance(tempDir);
+        }
+        return null;
+    }
+
     /**
      * Get all file info objects as a map
      * 
@@ -529,7 +620,18 @@ public final class Job {
         }
         return Collections.unmodifiableCollection(ret);
     }
-
+    
+    /**
+     * Get file info objects that match the query. Queries are evaluated with bitwise operations over
+     * the columnar flag storage of all file info objects in this job.
+     * 
+     * @param query query file info objects must match
+     * @return collection of file info objects that match the query, may be empty
+     * @since 2.0
+     */
+    public Collection<FileInfo> getFileInfo(final Query query) {
+        return index.query(query);
+    }
     
     /**
      * Get file info object
@@ -552,6 +654,21 @@ public final class Job {
         return files.get(file);
     }
     
+    /**
+     * Test whether temporary file is unchanged since previous build and should not be processed again.
+     * 
+     * @param file absolute path or path relative to temporary directory
+     * @return {@code true} if file is unchanged, otherwise {@code false}
+     * @since 2.0
+     */
+    public boolean isUnchanged(final File file) {
+        final File f = file.isAbsolute()
+                       ? FileUtils.getRelativePath(new File(tempDir.getAbsoluteFile(), "dummy"), FileUtils.normalize(file))
+                       : FileUtils.normalize(file);
+        final FileInfo i = files.get(f);
+        return i != null && i.isUnchanged();
+    }
+    
     /**
      * Get or create FileInfo for given path.
      * @param file system path
@@ -562,7 +679,7 @@ public final class Job {
         FileInfo i = files.get(f); 
         if (i == null) {
             i = new FileInfo(f);
-            files.put(i.file, i);
+            put(i);
         }
         return i;
     }
@@ -576,7 +693,7 @@ public final class Job {
         FileInfo i = files.get(f); 
         if (i == null) {
             i = new FileInfo(f);
-            files.put(i.file, i);
+            put(i);
         }
         return i;
     }
@@ -590,11 +707,52 @@ public final class Job {
         FileInfo i = files.get(f); 
         if (i == null) {
             i = new FileInfo(f);
-            files.put(i.file, i);
+            put(i);
         }
         return i;
     }
     
+    /**
+     * Get files that have changed compared to a previous job. A file has changed if it is new,
+     * its digest or dependencies differ from the previous job, or if any of its transitive
+     * dependencies has changed.
+     * 
+     * @param previous previous job, may be {@code null}
+     * @return changed files, all files if previous job is {@code null}
+     * @since 2.0
+     */
+    public Set<File> getChangedFiles(final Job previous) {
+        final Set<File> changed = new HashSet<File>();
+        final Map<File, Set<File>> dependents = new HashMap<File, Set<File>>();
+        for (final FileInfo f: files.values()) {
+            final FileInfo p = previous != null ? previous.getFileInfo(f.file) : null;
+            final Set<File> deps = f.getDependencies();
+            if (p == null || f.getDigest() == null || !f.getDigest().equals(p.getDigest()) || !deps.equals(p.getDependencies())) {
+                changed.add(f.file);
+            }
+            for (final File d: deps) {
+                Set<File> s = dependents.get(d);
+                if (s == null) {
+                    s = new HashSet<File>();
+                    dependents.put(d, s);
+                }
+                s.add(f.file);
+            }
+        }
+        final List<File> queue = new LinkedList<File>(changed);
+        while (!queue.isEmpty()) {
+            final Set<File> s = dependents.get(queue.remove(0));
+            if (s != null) {
+                for (final File d: s) {
+                    if (changed.add(d)) {
+                        queue.add(d);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+    
     /**
      * Add a collection of file info objects
      * 
@@ -602,9 +760,210 @@ public final class Job {
      */
     public void addAll(final Collection<FileInfo> fs) {
     	for (final FileInfo f: fs) {
-    		files.put(f.file, f);
+    		put(f);
     	}
     }
+    
+    /**
+     * Add file info object and move its flags into the flag storage of this job.
+     * 
+     * @param f file info object
+     */
+    private void put(final FileInfo f) {
+        f.attach(this);
+        final FileInfo old = files.put(f.file, f);
+        if (old != null && old != f) {
+            old.detach(this);
+        }
+    }
+        
+    /**
+     * File info query. A file info object matches if it has at least one of the {@link #any(FileInfo.Flag...) any}
+     * flags, all of the {@link #all(FileInfo.Flag...) all} flags, none of the {@link #none(FileInfo.Flag...) none}
+     * flags, and one of the {@link #format(String...) formats}. Empty conditions always match.
+     * 
+     * @since 2.0
+     */
+    public static final class Query {
+        
+        private final Set<FileInfo.Flag> any = EnumSet.noneOf(FileInfo.Flag.class);
+        private final Set<FileInfo.Flag> all = EnumSet.noneOf(FileInfo.Flag.class);
+        private final Set<FileInfo.Flag> none = EnumSet.noneOf(FileInfo.Flag.class);
+        private final Set<String> formats = new HashSet<String>();
+        
+        /**
+         * Match file info objects that have at least one of the flags.
+         * 
+         * @param flags flags to match
+         * @return this query
+         */
+        public Query any(final FileInfo.Flag... flags) {
+            Collections.addAll(any, flags);
+            return this;
+        }
+        
+        /**
+         * Match file info objects that have all of the flags.
+         * 
+         * @param flags flags to match
+         * @return this query
+         */
+        public Query all(final FileInfo.Flag... flags) {
+            Collections.addAll(all, flags);
+            return this;
+        }
+        
+        /**
+         * Match file info objects that have none of the flags.
+         * 
+         * @param flags flags to match
+         * @return this query
+         */
+        public Query none(final FileInfo.Flag... flags) {
+            Collections.addAll(none, flags);
+            return this;
+        }
+        
+        /**
+         * Match file info objects that have one of the formats.
+         * 
+         * @param formats formats to match
+         * @return this query
+         */
+        public Query format(final String... formats) {
+            Collections.addAll(this.formats, formats);
+            return this;
+        }
+        
+    }
+    
+    /**
+     * Columnar storage of file info flags and formats over a dense file ordinal. Flags of file info objects
+     * that belong to a job are only stored here, so queries and flag updates work on the same bits.
+     * Ordinals of removed file info objects are reused.
+     */
+    private static final class FlagIndex {
+        
+        private final List<FileInfo> infos = new ArrayList<FileInfo>();
+        /** Ordinals not in use. */
+        private final BitSet free = new BitSet();
+        private final BitSet[] flags = new BitSet[FileInfo.Flag.values().length];
+        private final Map<String, BitSet> formats = new HashMap<String, BitSet>();
+        
+        FlagIndex() {
+            for (int j = 0; j < flags.length; j++) {
+                flags[j] = new BitSet();
+            }
+        }
+        
+        /**
+         * Add file info object.
+         * 
+         * @return ordinal of the file info object
+         */
+        synchronized int add(final FileInfo info, final int v, final String format) {
+            int i = free.nextSetBit(0);
+            if (i >= 0) {
+                free.clear(i);
+                infos.set(i, info);
+            } else {
+                i = infos.size();
+                infos.add(info);
+            }
+            setFlags(i, v);
+            setFormat(i, null, format);
+            return i;
+        }
+        
+        /**
+         * Remove file info object.
+         * 
+         * @return flags of the removed file info object
+         */
+        synchronized int remove(final int i, final String format) {
+            final int v = getFlags(i);
+            setFlags(i, 0);
+            setFormat(i, format, null);
+            infos.set(i, null);
+            free.set(i);
+            return v;
+        }
+        
+        synchronized boolean get(final int i, final FileInfo.Flag flag) {
+            return flags[flag.ordinal()].get(i);
+        }
+        
+        synchronized void set(final int i, final FileInfo.Flag flag, final boolean value) {
+            flags[flag.ordinal()].set(i, value);
+        }
+        
+        synchronized int getFlags(final int i) {
+            int v = 0;
+            for (int j = 0; j < flags.length; j++) {
+                if (flags[j].get(i)) {
+                    v |= 1 << j;
+                }
+            }
+            return v;
+        }
+        
+        synchronized void setFlags(final int i, final int v) {
+            for (int j = 0; j < flags.length; j++) {
+                flags[j].set(i, (v & (1 << j)) != 0);
+            }
+        }
+        
+        synchronized void setFormat(final int i, final String old, final String format) {
+            if (old != null) {
+                final BitSet b = formats.get(old);
+                if (b != null) {
+                    b.clear(i);
+                }
+            }
+            if (format != null) {
+                BitSet b = formats.get(format);
+                if (b == null) {
+                    b = new BitSet();
+                    formats.put(format, b);
+                }
+                b.set(i);
+            }
+        }
+        
+        synchronized Collection<FileInfo> query(final Query query) {
+            final BitSet res = new BitSet(infos.size());
+            if (query.any.isEmpty()) {
+                res.set(0, infos.size());
+                res.andNot(free);
+            } else {
+                for (final FileInfo.Flag f: query.any) {
+                    res.or(flags[f.ordinal()]);
+                }
+            }
+            for (final FileInfo.Flag f: query.all) {
+                res.and(flags[f.ordinal()]);
+            }
+            for (final FileInfo.Flag f: query.none) {
+                res.andNot(flags[f.ordinal()]);
+            }
+            if (!query.formats.isEmpty()) {
+                final BitSet fs = new BitSet(infos.size());
+                for (final String format: query.formats) {
+                    final BitSet b = formats.get(format);
+                    if (b != null) {
+                        fs.or(b);
+                    }
+                }
+                res.and(fs);
+            }
+            final List<FileInfo> ret = new ArrayList<FileInfo>(res.cardinality());
+            for (int i = res.nextSetBit(0); i >= 0; i = res.nextSetBit(i + 1)) {
+                ret.add(infos.get(i));
+            }
+            return Collections.unmodifiableList(ret);
+        }
+        
+    }
         
     /**
      * File info object.
@@ -616,42 +975,17 @@ public final class Job {
         /** File path. */
         public final File file;
         /** File format. */
-    	public String format;
-    	/** File has a conref. */
-        public boolean hasConref;
-        /** File is part of chunk. */
-        public boolean isChunked;
-        /** File has links. Only applies to topics. */
-        public boolean hasLink;
-        /** File is resource only. */
-        public boolean isResourceOnly;
-        /** File is a link target. */
-        public boolean isTarget;
-        /** File is a push conref target. */
-        public boolean isConrefTarget;
-        /** File is a target in non-conref link. Opposite of {@link #isSkipTarget}. */
-        public boolean isNonConrefTarget;
-        /** File is a push conref source. */
-        public boolean isConrefPush;
-        /** File has a keyref. */
-        public boolean hasKeyref;
-        /** File has coderef. */
-        public boolean hasCoderef;
-        /** File is a subject scheme. */
-        public boolean isSubjectScheme;
-        /** File is a target in conref link. Opposite of {@link #isNonConrefTarget}. */
-        public boolean isSkipChunk;
-        /** File is a coderef target. */
-        public boolean isSubtarget;
-        /** File is a flagging image. */
-        public boolean isFlagImage;
-        /** File is a chunked map. */
-        public boolean isChunkedDitaMap;
-        /** Source file is outside base directory. */
-        public boolean isOutDita;
-        /** File is used only as a source of a copy-to. */
-        public boolean isCopyToSource;
-        public boolean isActive;
+    	private String format;
+        /** Hex encoded digest of source file content. */
+        private String digest;
+        /** Files this file depends on, {@code null} if none. */
+        private Set<File> dependencies;
+        /** Flags while not added to a job, where each set flag has bit {@code 1 << flag.ordinal()} set. */
+        private int flags;
+        /** Job that stores the flags of this file info object, {@code null} if not added to a job. */
+        private Job owner;
+        /** Ordinal in the flag storage of the owning job. */
+        private int ordinal;
         
         FileInfo(final URI uri) {
             if (uri == null) throw new IllegalArgumentException(new NullPointerException());
@@ -663,6 +997,190 @@ public final class Job {
             this.uri =  toURI(file);
             this.file = file;
         }
+        FileInfo(final URI uri, final File file) {
+            if (uri == null || file == null) throw new IllegalArgumentException(new NullPointerException());
+            this.uri = uri;
+            this.file = file;
+        }
+        
+        public String getDigest() { return digest; }
+        public void setDigest(final String digest) { this.digest = digest; }
+        
+        /**
+         * Get files this file depends on.
+         * 
+         * @return unmodifiable set of dependencies, may be empty
+         * @since 2.0
+         */
+        public synchronized Set<File> getDependencies() {
+            return dependencies != null ? Collections.unmodifiableSet(dependencies) : Collections.<File>emptySet();
+        }
+        
+        /**
+         * Set files this file depends on.
+         * 
+         * @param dependencies dependencies, may be empty
+         * @since 2.0
+         */
+        public synchronized void setDependencies(final Collection<File> dependencies) {
+            this.dependencies = dependencies.isEmpty() ? null : new HashSet<File>(dependencies);
+        }
+        
+        /**
+         * Add a file this file depends on.
+         * 
+         * @param dependency dependency
+         * @since 2.0
+         */
+        public synchronized void addDependency(final File dependency) {
+            if (dependencies == null) {
+                dependencies = new HashSet<File>();
+            }
+            dependencies.add(dependency);
+        }
+        
+        public String getFormat() { return format; }
+        public synchronized void setFormat(final String format) {
+            final Job j = owner;
+            if (j != null) {
+                j.index.setFormat(ordinal, this.format, format);
+            }
+            this.format = format;
+        }
+        public boolean hasConref() { return get(Flag.HAS_CONREF); }
+        public void setHasConref(final boolean hasConref) { set(Flag.HAS_CONREF, hasConref); }
+        public boolean isChunked() { return get(Flag.IS_CHUNKED); }
+        public void setChunked(final boolean isChunked) { set(Flag.IS_CHUNKED, isChunked); }
+        public boolean hasLink() { return get(Flag.HAS_LINK); }
+        public void setHasLink(final boolean hasLink) { set(Flag.HAS_LINK, hasLink); }
+        public boolean isResourceOnly() { return get(Flag.IS_RESOURCE_ONLY); }
+        public void setResourceOnly(final boolean isResourceOnly) { set(Flag.IS_RESOURCE_ONLY, isResourceOnly); }
+        public boolean isTarget() { return get(Flag.IS_TARGET); }
+        public void setTarget(final boolean isTarget) { set(Flag.IS_TARGET, isTarget); }
+        public boolean isConrefTarget() { return get(Flag.IS_CONREF_TARGET); }
+        public void setConrefTarget(final boolean isConrefTarget) { set(Flag.IS_CONREF_TARGET, isConrefTarget); }
+        public boolean isNonConrefTarget() { return get(Flag.IS_NON_CONREF_TARGET); }
+        public void setNonConrefTarget(final boolean isNonConrefTarget) { set(Flag.IS_NON_CONREF_TARGET, isNonConrefTarget); }
+        public boolean isConrefPush() { return get(Flag.IS_CONREF_PUSH); }
+        public void setConrefPush(final boolean isConrefPush) { set(Flag.IS_CONREF_PUSH, isConrefPush); }
+        public boolean hasKeyref() { return get(Flag.HAS_KEYREF); }
+        public void setHasKeyref(final boolean hasKeyref) { set(Flag.HAS_KEYREF, hasKeyref); }
+        public boolean hasCoderef() { return get(Flag.HAS_CODEREF); }
+        public void setHasCoderef(final boolean hasCoderef) { set(Flag.HAS_CODEREF, hasCoderef); }
+        public boolean isSubjectScheme() { return get(Flag.IS_SUBJECT_SCHEME); }
+        public void setSubjectScheme(final boolean isSubjectScheme) { set(Flag.IS_SUBJECT_SCHEME, isSubjectScheme); }
+        public boolean isSkipChunk() { return get(Flag.IS_SKIP_CHUNK); }
+        public void setSkipChunk(final boolean isSkipChunk) { set(Flag.IS_SKIP_CHUNK, isSkipChunk); }
+        public boolean isSubtarget() { return get(Flag.IS_SUBTARGET); }
+        public void setSubtarget(final boolean isSubtarget) { set(Flag.IS_SUBTARGET, isSubtarget); }
+        public boolean isFlagImage() { return get(Flag.IS_FLAG_IMAGE); }
+        public void setFlagImage(final boolean isFlagImage) { set(Flag.IS_FLAG_IMAGE, isFlagImage); }
+        public boolean isChunkedDitaMap() { return get(Flag.IS_CHUNKED_DITAMAP); }
+        public void setChunkedDitaMap(final boolean isChunkedDitaMap) { set(Flag.IS_CHUNKED_DITAMAP, isChunkedDitaMap); }
+        public boolean isOutDita() { return get(Flag.IS_OUT_DITA); }
+        public void setOutDita(final boolean isOutDita) { set(Flag.IS_OUT_DITA, isOutDita); }
+        public boolean isCopyToSource() { return get(Flag.IS_COPY_TO_SOURCE); }
+        public void setCopyToSource(final boolean isCopyToSource) { set(Flag.IS_COPY_TO_SOURCE, isCopyToSource); }
+        public boolean isActive() { return get(Flag.IS_ACTIVE); }
+        public void setActive(final boolean isActive) { set(Flag.IS_ACTIVE, isActive); }
+        public boolean isUnchanged() { return get(Flag.IS_UNCHANGED); }
+        public void setUnchanged(final boolean isUnchanged) { set(Flag.IS_UNCHANGED, isUnchanged); }
+        
+        /**
+         * Get flag value.
+         * 
+         * @param flag flag to get
+         * @return flag value
+         * @since 2.0
+         */
+        public synchronized boolean get(final Flag flag) {
+            final Job j = owner;
+            return j != null ? j.index.get(ordinal, flag) : (flags & (1 << flag.ordinal())) != 0;
+        }
+        
+        /**
+         * Set flag value. The query index of the owning job is updated for this file info object only.
+         * 
+         * @param flag flag to set
+         * @param value flag value
+         * @since 2.0
+         */
+        public synchronized void set(final Flag flag, final boolean value) {
+            final Job j = owner;
+            if (j != null) {
+                j.index.set(ordinal, flag, value);
+            } else if (value) {
+                flags |= 1 << flag.ordinal();
+            } else {
+                flags &= ~(1 << flag.ordinal());
+            }
+        }
+        
+        /**
+         * Move flags into the flag storage of a job. A file info object belongs to at most one job,
+         * so it is removed from its previous job.
+         * 
+         * @param job job to add to
+         */
+        synchronized void attach(final Job job) {
+            final Job prev = owner;
+            if (prev == job) {
+                return;
+            }
+            if (prev != null) {
+                prev.files.remove(file, this);
+                detach(prev);
+            }
+            ordinal = job.index.add(this, flags, format);
+            owner = job;
+        }
+        
+        /**
+         * Move flags out of the flag storage of a job.
+         * 
+         * @param job job to remove from
+         */
+        synchronized void detach(final Job job) {
+            if (owner == job) {
+                flags = job.index.remove(ordinal, format);
+                owner = null;
+            }
+        }
+        
+        /**
+         * File info flags. The bit of each flag in {@link FileInfo#getFlags()} is {@code 1 << ordinal()}.
+         * 
+         * @since 2.0
+         */
+        public static enum Flag {
+            HAS_CONREF, IS_CHUNKED, HAS_LINK, IS_RESOURCE_ONLY, IS_TARGET, IS_CONREF_TARGET, IS_NON_CONREF_TARGET,
+            IS_CONREF_PUSH, HAS_KEYREF, HAS_CODEREF, IS_SUBJECT_SCHEME, IS_SKIP_CHUNK, IS_SUBTARGET, IS_FLAG_IMAGE,
+            IS_CHUNKED_DITAMAP, IS_OUT_DITA, IS_COPY_TO_SOURCE, IS_ACTIVE, IS_UNCHANGED
+        }
+        
+        /**
+         * Get flags as a bitset.
+         * 
+         * @return flags where each set flag has bit {@code 1 << flag.ordinal()} set
+         */
+        synchronized int getFlags() {
+            final Job j = owner;
+            return j != null ? j.index.getFlags(ordinal) : flags;
+        }
+        
+        /**
+         * Set flags from a bitset.
+         * 
+         * @param flags flags where each set flag has bit {@code 1 << flag.ordinal()} set
+         */
+        synchronized void setFlags(final int flags) {
+            final Job j = owner;
+            if (j != null) {
+                j.index.setFlags(ordinal, flags);
+            } else {
+                this.flags = flags;
+            }
+        }
         
         public static interface Filter {
             
@@ -693,30 +1211,36 @@ public final class Job {
             private boolean isOutDita;
             private boolean isCopyToSource;
             private boolean isActive;
+            private boolean isUnchanged;
+            private String digest;
+            private final Set<File> dependencies = new HashSet<File>();
         
             public Builder() {}
             public Builder(final FileInfo orig) {
                 uri = orig.uri;
                 file = orig.file;
                 format = orig.format;
-                hasConref = orig.hasConref;
-                isChunked = orig.isChunked;
-                hasLink = orig.hasLink;
-                isResourceOnly = orig.isResourceOnly;
-                isTarget = orig.isTarget;
-                isConrefTarget = orig.isConrefTarget;
-                isNonConrefTarget = orig.isNonConrefTarget;
-                isConrefPush = orig.isConrefPush;
-                hasKeyref = orig.hasKeyref;
-                hasCoderef = orig.hasCoderef;
-                isSubjectScheme = orig.isSubjectScheme;
-                isSkipChunk = orig.isSkipChunk;
-                isSubtarget = orig.isSubtarget;
-                isFlagImage = orig.isFlagImage;
-                isChunkedDitaMap = orig.isChunkedDitaMap;
-                isOutDita = orig.isOutDita;
-                isCopyToSource = orig.isCopyToSource;
-                isActive = orig.isActive;
+                hasConref = orig.hasConref();
+                isChunked = orig.isChunked();
+                hasLink = orig.hasLink();
+                isResourceOnly = orig.isResourceOnly();
+                isTarget = orig.isTarget();
+                isConrefTarget = orig.isConrefTarget();
+                isNonConrefTarget = orig.isNonConrefTarget();
+                isConrefPush = orig.isConrefPush();
+                hasKeyref = orig.hasKeyref();
+                hasCoderef = orig.hasCoderef();
+                isSubjectScheme = orig.isSubjectScheme();
+                isSkipChunk = orig.isSkipChunk();
+                isSubtarget = orig.isSubtarget();
+                isFlagImage = orig.isFlagImage();
+                isChunkedDitaMap = orig.isChunkedDitaMap();
+                isOutDita = orig.isOutDita();
+                isCopyToSource = orig.isCopyToSource();
+                isActive = orig.isActive();
+                isUnchanged = orig.isUnchanged();
+                digest = orig.getDigest();
+                dependencies.addAll(orig.getDependencies());
             }
             
             /**
@@ -726,24 +1250,27 @@ public final class Job {
                 if (orig.uri != null) uri = orig.uri;
                 if (orig.file != null) file = orig.file;
                 if (orig.format != null) format = orig.format;
-                if (orig.hasConref) hasConref = orig.hasConref;
-                if (orig.isChunked) isChunked = orig.isChunked;
-                if (orig.hasLink) hasLink = orig.hasLink;
-                if (orig.isResourceOnly) isResourceOnly = orig.isResourceOnly;
-                if (orig.isTarget) isTarget = orig.isTarget;
-                if (orig.isConrefTarget) isConrefTarget = orig.isConrefTarget;
-                if (orig.isNonConrefTarget) isNonConrefTarget = orig.isNonConrefTarget;
-                if (orig.isConrefPush) isConrefPush = orig.isConrefPush;
-                if (orig.hasKeyref) hasKeyref = orig.hasKeyref;
-                if (orig.hasCoderef) hasCoderef = orig.hasCoderef;
-                if (orig.isSubjectScheme) isSubjectScheme = orig.isSubjectScheme;
-                if (orig.isSkipChunk) isSkipChunk = orig.isSkipChunk;
-                if (orig.isSubtarget) isSubtarget = orig.isSubtarget;
-                if (orig.isFlagImage) isFlagImage = orig.isFlagImage;
-                if (orig.isChunkedDitaMap) isChunkedDitaMap = orig.isChunkedDitaMap;
-                if (orig.isOutDita) isOutDita = orig.isOutDita;
-                if (orig.isCopyToSource) isCopyToSource = orig.isCopyToSource;
-                if (orig.isActive) isActive = orig.isActive;
+                if (orig.hasConref()) hasConref = true;
+                if (orig.isChunked()) isChunked = true;
+                if (orig.hasLink()) hasLink = true;
+                if (orig.isResourceOnly()) isResourceOnly = true;
+                if (orig.isTarget()) isTarget = true;
+                if (orig.isConrefTarget()) isConrefTarget = true;
+                if (orig.isNonConrefTarget()) isNonConrefTarget = true;
+                if (orig.isConrefPush()) isConrefPush = true;
+                if (orig.hasKeyref()) hasKeyref = true;
+                if (orig.hasCoderef()) hasCoderef = true;
+                if (orig.isSubjectScheme()) isSubjectScheme = true;
+                if (orig.isSkipChunk()) isSkipChunk = true;
+                if (orig.isSubtarget()) isSubtarget = true;
+                if (orig.isFlagImage()) isFlagImage = true;
+                if (orig.isChunkedDitaMap()) isChunkedDitaMap = true;
+                if (orig.isOutDita()) isOutDita = true;
+                if (orig.isCopyToSource()) isCopyToSource = true;
+                if (orig.isActive()) isActive = true;
+                if (orig.isUnchanged()) isUnchanged = true;
+                if (orig.getDigest() != null) digest = orig.getDigest();
+                dependencies.addAll(orig.getDependencies());
                 return this;
             }
             
@@ -768,6 +1295,9 @@ public final class Job {
             public Builder isOutDita(final boolean isOutDita) { this.isOutDita = isOutDita; return this; }
             public Builder isCopyToSource(final boolean isCopyToSource) { this.isCopyToSource = isCopyToSource; return this; }
             public Builder isActive(final boolean isActive) { this.isActive = isActive; return this; }
+            public Builder isUnchanged(final boolean isUnchanged) { this.isUnchanged = isUnchanged; return this; }
+            public Builder digest(final String digest) { this.digest = digest; return this; }
+            public Builder dependency(final File dependency) { this.dependencies.add(dependency); return this; }
             
             public FileInfo build() {
                 if (uri == null && file == null) {
@@ -775,24 +1305,29 @@ public final class Job {
                 }
                 final FileInfo fi = uri != null ? new FileInfo(uri) : new FileInfo(file);
                 fi.format = format;
-                fi.hasConref = hasConref;
-                fi.isChunked = isChunked;
-                fi.hasLink = hasLink;
-                fi.isResourceOnly = isResourceOnly;
-                fi.isTarget = isTarget;
-                fi.isConrefTarget = isConrefTarget;
-                fi.isNonConrefTarget = isNonConrefTarget;
-                fi.isConrefPush = isConrefPush;
-                fi.hasKeyref = hasKeyref;
-                fi.hasCoderef = hasCoderef;
-                fi.isSubjectScheme = isSubjectScheme;
-                fi.isSkipChunk = isSkipChunk;
-                fi.isSubtarget = isSubtarget;
-                fi.isFlagImage = isFlagImage;
-                fi.isChunkedDitaMap = isChunkedDitaMap;
-                fi.isOutDita = isOutDita;
-                fi.isCopyToSource = isCopyToSource;
-                fi.isActive = isActive;
+                fi.set(Flag.HAS_CONREF, hasConref);
+                fi.set(Flag.IS_CHUNKED, isChunked);
+                fi.set(Flag.HAS_LINK, hasLink);
+                fi.set(Flag.IS_RESOURCE_ONLY, isResourceOnly);
+                fi.set(Flag.IS_TARGET, isTarget);
+                fi.set(Flag.IS_CONREF_TARGET, isConrefTarget);
+                fi.set(Flag.IS_NON_CONREF_TARGET, isNonConrefTarget);
+                fi.set(Flag.IS_CONREF_PUSH, isConrefPush);
+                fi.set(Flag.HAS_KEYREF, hasKeyref);
+                fi.set(Flag.HAS_CODEREF, hasCoderef);
+                fi.set(Flag.IS_SUBJECT_SCHEME, isSubjectScheme);
+                fi.set(Flag.IS_SKIP_CHUNK, isSkipChunk);
+                fi.set(Flag.IS_SUBTARGET, isSubtarget);
+                fi.set(Flag.IS_FLAG_IMAGE, isFlagImage);
+                fi.set(Flag.IS_CHUNKED_DITAMAP, isChunkedDitaMap);
+                fi.set(Flag.IS_OUT_DITA, isOutDita);
+                fi.set(Flag.IS_COPY_TO_SOURCE, isCopyToSource);
+                fi.set(Flag.IS_ACTIVE, isActive);
+                fi.set(Flag.IS_UNCHANGED, isUnchanged);
+                fi.digest = digest;
+                if (!dependencies.isEmpty()) {
+                    fi.dependencies = new HashSet<File>(dependencies);
+                }
                 return fi;
             }
             
@@ -0,0 +1,341 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static javax.xml.XMLConstants.NULL_NS_URI;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Immutable key definition element.
+ *
+ * <p>A key definition is a copy of the map element that defines the key, with its attributes, descendant
+ * elements and text. Comments and processing instructions are not kept, adjacent text is merged and
+ * attributes are sorted by name like in DOM attribute maps. Nested key definitions share the subtree of
+ * the enclosing definition.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class KeyDefinition {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final String name;
+    /** Attribute names and values in alternating order. */
+    private final String[] atts;
+    /** Child text as {@link String} and child elements as {@link KeyDefinition}. */
+    private final Object[] children;
+
+    private KeyDefinition(final String name, final String[] atts, final Object[] children) {
+        this.name = name;
+        this.atts = atts;
+        this.children = children;
+    }
+
+    /**
+     * Get element name.
+     *
+     * @return qualified element name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get attribute value.
+     *
+     * @param qName qualified attribute name
+     * @return attribute value, empty string if attribute is not set
+     */
+    public String getAttribute(final String qName) {
+        for (int i = 0; i < atts.length; i += 2) {
+            if (atts[i].equals(qName)) {
+                return atts[i + 1];
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Get attributes. Attributes are not namespace processed and have type {@code CDATA}.
+     *
+     * @return read-only attributes
+     */
+    public Attributes getAttributes() {
+        return new AttributesView(atts);
+    }
+
+    /**
+     * Get child nodes.
+     *
+     * @return read-only list of child text as {@link String} and child elements as {@link KeyDefinition}
+     */
+    public List<Object> getChildren() {
+        return Collections.unmodifiableList(Arrays.asList(children));
+    }
+
+    /**
+     * Get descendant elements with a given name in document order. The element itself is not included.
+     *
+     * @param qName qualified element name
+     * @return list of descendant elements, empty if none were found
+     */
+    public List<KeyDefinition> getElementsByTagName(final String qName) {
+        final List<KeyDefinition> res = new ArrayList<KeyDefinition>();
+        collectElements(qName, res);
+        return res;
+    }
+
+    private void collectElements(final String qName, final List<KeyDefinition> res) {
+        for (final Object c: children) {
+            if (c instanceof KeyDefinition) {
+                final KeyDefinition e = (KeyDefinition) c;
+                if (e.name.equals(qName)) {
+                    res.add(e);
+                }
+                e.collectElements(qName, res);
+            }
+        }
+    }
+
+    /**
+     * Write element as SAX events. Document events are not written.
+     *
+     * @param contentHandler content handler to write to
+     * @throws SAXException if the content handler failed
+     */
+    public void toSax(final ContentHandler contentHandler) throws SAXException {
+        contentHandler.startElement(NULL_NS_URI, name, name, getAttributes());
+        for (final Object c: children) {
+            if (c instanceof KeyDefinition) {
+                ((KeyDefinition) c).toSax(contentHandler);
+            } else {
+                final char[] ch = ((String) c).toCharArray();
+                contentHandler.characters(ch, 0, ch.length);
+            }
+        }
+        contentHandler.endElement(NULL_NS_URI, name, name);
+    }
+
+    /**
+     * Builder for key definition elements from element events. Names and class attribute values are
+     * shared between built elements. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private final Deque<Frame> stack = new ArrayDeque<Frame>();
+        private final Map<String, String> strings = new HashMap<String, String>();
+
+        /**
+         * Start element.
+         *
+         * @param qName qualified element name
+         * @param atts element attributes
+         */
+        public void startElement(final String qName, final Attributes atts) {
+            final Frame parent = stack.peek();
+            if (parent != null) {
+                parent.flushText();
+            }
+            final String[][] sorted = new String[atts.getLength()][];
+            for (int i = 0; i < sorted.length; i++) {
+                final String n = share(atts.getQName(i));
+                final String v = n.equals(Constants.ATTRIBUTE_NAME_CLASS) ? share(atts.getValue(i)) : atts.getValue(i);
+                sorted[i] = new String[] { n, v };
+            }
+            Arrays.sort(sorted, new Comparator<String[]>() {
+                @Override
+                public int compare(final String[] o1, final String[] o2) {
+                    return o1[0].compareTo(o2[0]);
+                }
+            });
+            final String[] a = new String[sorted.length * 2];
+            for (int i = 0; i < sorted.length; i++) {
+                a[i * 2] = sorted[i][0];
+                a[i * 2 + 1] = sorted[i][1];
+            }
+            stack.push(new Frame(share(qName), a));
+        }
+
+        /**
+         * Add text to current element.
+         *
+         * @param ch characters
+         * @param start start position in the character array
+         * @param length number of characters to use
+         */
+        public void characters(final char[] ch, final int start, final int length) {
+            final Frame f = stack.peek();
+            if (f == null) {
+                throw new IllegalStateException("No open element");
+            }
+            if (f.text == null) {
+                f.text = new StringBuilder(length);
+            }
+            f.text.append(ch, start, length);
+        }
+
+        /**
+         * End current element.
+         *
+         * @return completed element
+         */
+        public KeyDefinition endElement() {
+            final Frame f = stack.pop();
+            f.flushText();
+            final KeyDefinition e = new KeyDefinition(f.name, f.atts,
+                    f.children.isEmpty() ? EMPTY : f.children.toArray());
+            final Frame parent = stack.peek();
+            if (parent != null) {
+                parent.children.add(e);
+            }
+            return e;
+        }
+
+        /**
+         * Test if there is an open element.
+         *
+         * @return {@code true} if an element has been started and not ended, otherwise {@code false}
+         */
+        public boolean isOpen() {
+            return !stack.isEmpty();
+        }
+
+        private String share(final String s) {
+            final String p = strings.get(s);
+            if (p != null) {
+                return p;
+            }
+            strings.put(s, s);
+            return s;
+        }
+
+        private static final class Frame {
+            final String name;
+            final String[] atts;
+            final List<Object> children = new ArrayList<Object>();
+            StringBuilder text;
+
+            Frame(final String name, final String[] atts) {
+                this.name = name;
+                this.atts = atts;
+            }
+
+            void flushText() {
+                if (text != null) {
+                    children.add(text.toString());
+                    text = null;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Read-only attributes view over name and value pairs.
+     */
+    private static final class AttributesView implements Attributes {
+
+        private final String[] atts;
+
+        AttributesView(final String[] atts) {
+            this.atts = atts;
+        }
+
+        @Override
+        public int getLength() {
+            return atts.length / 2;
+        }
+
+        @Override
+        public String getURI(final int index) {
+            return index >= 0 && index < getLength() ? NULL_NS_URI : null;
+        }
+
+        @Override
+        public String getLocalName(final int index) {
+            final String qName = getQName(index);
+            if (qName == null) {
+                return null;
+            }
+            final int i = qName.indexOf(':');
+            return i != -1 ? qName.substring(i + 1) : qName;
+        }
+
+        @Override
+        public String getQName(final int index) {
+            return index >= 0 && index < getLength() ? atts[index * 2] : null;
+        }
+
+        @Override
+        public String getType(final int index) {
+            return index >= 0 && index < getLength() ? "CDATA" : null;
+        }
+
+        @Override
+        public String getValue(final int index) {
+            return index >= 0 && index < getLength() ? atts[index * 2 + 1] : null;
+        }
+
+        @Override
+        public int getIndex(final String uri, final String localName) {
+            if (!NULL_NS_URI.equals(uri)) {
+                return -1;
+            }
+            for (int i = 0; i < getLength(); i++) {
+                if (localName.equals(getLocalName(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getIndex(final String qName) {
+            for (int i = 0; i < atts.length; i += 2) {
+                if (atts[i].equals(qName)) {
+                    return i / 2;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String getType(final String uri, final String localName) {
+            return getType(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getType(final String qName) {
+            return getType(getIndex(qName));
+        }
+
+        @Override
+        public String getValue(final String uri, final String localName) {
+            return getValue(getIndex(uri, localName));
+        }
+
+        @Override
+        public String getValue(final String qName) {
+            return getValue(getIndex(qName));
+        }
+
+    }
+
+}
@@ -11,6 +11,8 @@ package org.dita.dost.util;
 import static org.dita.dost.util.Constants.*;
 import static org.dita.dost.log.MessageBean.*;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * LogUtils : To anylyse the information from dita & xslt ,supply
  * fatal , error , warn , info to the DITAOTBuildLogger,
@@ -18,14 +20,28 @@ import static org.dita.dost.log.MessageBean.*;
  * 
  * Only intended to be used with {@link org.dita.dost.log.DITAOTBuildLogger}.
  * 
+ * <p>Counters belong to the current build: they are bound to the build thread and
+ * shared with threads the build starts. {@link #clear()} starts new counters for
+ * the current thread.</p>
+ * 
  * @author wxzhang
  * @see org.dita.dost.log.DITAOTBuildLogger
  */
 public final class LogUtils {
-    private static int numOfFatals=0;
-    private static int numOfErrors=0;
-    private static int numOfWarnings=0;
-    private static int numOfInfo=0;
+    private static final InheritableThreadLocal<Counters> counters = new InheritableThreadLocal<Counters>() {
+        @Override
+        protected Counters initialValue() {
+            return new Counters();
+        }
+    };
+
+    /** Message counters of a build. */
+    private static final class Counters {
+        final AtomicInteger numOfFatals = new AtomicInteger();
+        final AtomicInteger numOfErrors = new AtomicInteger();
+        final AtomicInteger numOfWarnings = new AtomicInteger();
+        final AtomicInteger numOfInfo = new AtomicInteger();
+    }
 
     private LogUtils(){
     }
@@ -33,63 +49,60 @@ public final class LogUtils {
      * Increase fatal number by 1.
      */
     public static void increaseNumOfFatals(){
-        numOfFatals++;
+        counters.get().numOfFatals.incrementAndGet();
     }
     /**
      * Increase error number by 1.
      */
     public static void increaseNumOfErrors(){
-        numOfErrors++;
+        counters.get().numOfErrors.incrementAndGet();
     }
     /**
      * Increase warning number by 1.
      */
     public static void increaseNumOfWarnings(){
-        numOfWarnings++;
+        counters.get().numOfWarnings.incrementAndGet();
     }
     /**
      * Increase info number by 1.
      */
     public static void increaseNumOfInfo(){
-        numOfInfo++;
+        counters.get().numOfInfo.incrementAndGet();
     }
     /**
      * Get fatals number.
      * @return number of fatals
      */
     public static int getNumOfFatals(){
-        return numOfFatals;
+        return counters.get().numOfFatals.get();
     }
     /**
      * Get errors number.
      * @return number of errors
      */
     public static int getNumOfErrors(){
-        return numOfErrors;
+        return counters.get().numOfErrors.get();
     }
     /**
      * Get warnings number.
      * @return number of warnings
      */
     public static int getNumOfWarnings(){
-        return numOfWarnings;
+        return counters.get().numOfWarnings.get();
     }
     /**
      * Get info number.
      * @return number of info
      */
     public static int getNumOfInfo(){
-        return numOfInfo;
+        return counters.get().numOfInfo.get();
     }
 
     /**
      * Initial the class.
      */
     public static void clear(){
-        numOfFatals=0;
-        numOfErrors=0;
-        numOfWarnings=0;
-        numOfInfo=0;
+        counters.set(new Counters());
     }
 
     /**
@@ -97,7 +110,7 @@ public final class LogUtils {
      * @return boolean
      */
     public  static boolean haveFatalOrError(){
-        if(numOfFatals>0 || numOfErrors>0) {
+        if(getNumOfFatals()>0 || getNumOfErrors()>0) {
             return true;
         } else {
             return false;
@@ -108,10 +121,10 @@ public final class LogUtils {
      * print the statics message.
      */
     public static void print(){
-        System.out.println("Number of Fatals : " + numOfFatals );
-        System.out.println("Number of Errors : " + numOfErrors );
-        System.out.println("Number of Warnings : " + numOfWarnings );
-        System.out.println("Number of Info : " + numOfInfo );
+        System.out.println("Number of Fatals : " + getNumOfFatals() );
+        System.out.println("Number of Errors : " + getNumOfErrors() );
+        System.out.println("Number of Warnings : " + getNumOfWarnings() );
+        System.out.println("Number of Info : " + getNumOfInfo() );
     }
 
     /**
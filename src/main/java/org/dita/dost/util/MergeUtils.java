@@ -19,8 +19,6 @@ import java.util.Set;
 import org.dita.dost.log.DITAOTJavaLogger;
 import org.dita.dost.log.DITAOTLogger;
 
-import org.xml.sax.XMLReader;
-
 /**
  * Utility that topic merge utilize. An instance can be reused by calling
  * {@link #reset()} between uses.
@@ -124,43 +122,26 @@ public final class MergeUtils {
 
     /**
      * 
-     * Get the first topic id.
+     * Get the first topic id. IDs are read from the process-wide {@link IdIndex}, so files registered
+     * during gen-list or already read are not parsed again. Files are always read using the catalog.
+     * 
      * @param path file path
      * @param dir file dir
-     * @param useCatalog whether use catalog file for validation
-     * @return topic id
+     * @return topic id, empty string if the file has no IDs or reading failed
      */
-    public static String getFirstTopicId(final String path, final File dir, final boolean useCatalog){
-        final DITAOTLogger logger = new DITAOTJavaLogger();
-        String localPath = path;
-        File localDir = dir;
-        final StringBuffer firstTopicId = new StringBuffer();
-
-        if (path != null && dir != null) {
-            localPath = localPath.trim();
-            localDir = new File(localDir.toString().trim());
-        } else {
+    public static String getFirstTopicId(final String path, final File dir){
+        if (path == null || dir == null) {
             return null;
         }
-        final TopicIdParser parser = new TopicIdParser(firstTopicId);
+        final File file = new File(new File(dir.toString().trim()), path.trim());
         try {
-            final XMLReader reader = StringUtils.getXMLReader();
-            reader.setContentHandler(parser);
-
-            if (useCatalog) {
-                try {
-                    Class.forName(RESOLVER_CLASS);
-                    reader.setEntityResolver(CatalogUtils.getCatalogResolver());
-                } catch (final ClassNotFoundException e) {
-                    logger.logError(e.getMessage(), e) ;
-                }
-            }
-            reader.parse(new File(localDir, localPath).toURI().toString());
+            final String firstTopicId = IdIndex.getInstance().get(file).getFirstId();
+            return firstTopicId != null ? firstTopicId : "";
         } catch (final Exception e) {
+            final DITAOTLogger logger = new DITAOTJavaLogger();
             logger.logError(e.getMessage(), e) ;
+            return "";
         }
-        return firstTopicId.toString();
-
     }
 
 }
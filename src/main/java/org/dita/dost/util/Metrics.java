@@ -0,0 +1,430 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Pipeline metrics of a build.
+ *
+ * <p>Each build collects metrics into its own instance that is bound to the thread running the build with
+ * {@link #setInstance(Metrics)}. Threads created by the build thread inherit the binding. Module executions
+ * are recorded by the pipeline facade and files processed by modules are attributed to the module executing
+ * in the current thread or the thread that created it. If no instance is bound, {@link #getInstance()}
+ * returns a disabled instance whose recording methods are no-ops.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class Metrics {
+
+    /** Instance used when no metrics are bound to the current thread. */
+    private static final Metrics disabled = new Metrics(false);
+    /** Metrics of the build running in the current thread, inherited by worker threads. */
+    private static final InheritableThreadLocal<Metrics> bound = new InheritableThreadLocal<Metrics>();
+
+    private final boolean enabled;
+    private volatile long start = System.nanoTime();
+    private final ConcurrentLinkedQueue<ModuleRecord> modules = new ConcurrentLinkedQueue<ModuleRecord>();
+    private final ConcurrentLinkedQueue<FileRecord> files = new ConcurrentLinkedQueue<FileRecord>();
+    /** Module executing in current thread, inherited by worker threads. */
+    private final InheritableThreadLocal<ModuleRecord> current = new InheritableThreadLocal<ModuleRecord>();
+
+    /**
+     * Create new enabled metrics.
+     */
+    public Metrics() {
+        this(true);
+    }
+
+    private Metrics(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get metrics of the build running in the current thread.
+     *
+     * @return bound metrics, or a disabled instance if no metrics are bound
+     */
+    public static Metrics getInstance() {
+        final Metrics metrics = bound.get();
+        return metrics != null ? metrics : disabled;
+    }
+
+    /**
+     * Bind metrics to the current thread and threads it creates afterwards.
+     *
+     * @param metrics metrics to bind, {@code null} to remove binding
+     * @return previously bound metrics, {@code null} if none
+     */
+    public static Metrics setInstance(final Metrics metrics) {
+        final Metrics previous = bound.get();
+        if (metrics != null) {
+            bound.set(metrics);
+        } else {
+            bound.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Check if metrics collection is enabled.
+     *
+     * @return {@code true} if enabled, otherwise {@code false}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Remove all collected metrics and restart build wall time.
+     */
+    public void reset() {
+        modules.clear();
+        files.clear();
+        start = System.nanoTime();
+    }
+
+    /**
+     * Start recording module execution in the current thread.
+     *
+     * @param name module name
+     * @return module record, {@code null} if collection is disabled
+     */
+    public ModuleRecord startModule(final String name) {
+        if (!enabled) {
+            return null;
+        }
+        final ModuleRecord m = new ModuleRecord(name, current.get());
+        modules.add(m);
+        current.set(m);
+        return m;
+    }
+
+    /**
+     * Finish recording module execution in the current thread.
+     *
+     * @param module module record returned by {@link #startModule(String)}, may be {@code null}
+     */
+    public void endModule(final ModuleRecord module) {
+        if (module == null) {
+            return;
+        }
+        module.wallTime = System.nanoTime() - module.start;
+        current.set(module.parent);
+    }
+
+    /**
+     * Set label of the module executing in the current thread, e.g. stylesheet name.
+     *
+     * @param label module label
+     */
+    public void setLabel(final String label) {
+        final ModuleRecord m = current.get();
+        if (m != null) {
+            m.label = label;
+        }
+    }
+
+    /**
+     * Wrap XML reader to measure time spent in parsing. Time spent in content handlers downstream of
+     * the reader is excluded from parse time.
+     *
+     * @param reader XML reader to wrap
+     * @return timed reader, {@code null} if collection is disabled
+     */
+    public ParseTimer newParseTimer(final XMLReader reader) {
+        return enabled ? new ParseTimer(reader) : null;
+    }
+
+    /**
+     * Record processed file.
+     *
+     * @param file processed file
+     * @param bytesRead number of bytes read
+     * @param bytesWritten number of bytes written
+     * @param wallTime wall time in nanoseconds
+     * @param parseTime parse time in nanoseconds
+     */
+    public void addFile(final File file, final long bytesRead, final long bytesWritten,
+            final long wallTime, final long parseTime) {
+        if (!enabled) {
+            return;
+        }
+        final ModuleRecord m = current.get();
+        final FileRecord f = new FileRecord(m, file, bytesRead, bytesWritten, wallTime, parseTime);
+        files.add(f);
+        for (ModuleRecord r = m; r != null; r = r.parent) {
+            r.files.incrementAndGet();
+            r.bytesRead.addAndGet(bytesRead);
+            r.bytesWritten.addAndGet(bytesWritten);
+            r.parseTime.addAndGet(parseTime);
+            r.transformTime.addAndGet(wallTime - parseTime);
+        }
+    }
+
+    /**
+     * Get module records in start order.
+     *
+     * @return module records
+     */
+    public List<ModuleRecord> getModules() {
+        return new ArrayList<ModuleRecord>(modules);
+    }
+
+    /**
+     * Write collected metrics as JSON.
+     *
+     * @param file output file
+     * @throws IOException if writing failed
+     */
+    public void write(final File file) throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir.getAbsolutePath());
+        }
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\n  \"wallTime\": " + millis(System.nanoTime() - start) + ",\n  \"modules\": [");
+            String sep = "\n";
+            for (final ModuleRecord m: modules) {
+                out.write(sep + "    {\"name\": " + quote(m.name)
+                        + ", \"label\": " + (m.label != null ? quote(m.label) : "null")
+                        + ", \"wallTime\": " + millis(m.wallTime)
+                        + ", \"files\": " + m.files.get()
+                        + ", \"bytesRead\": " + m.bytesRead.get()
+                        + ", \"bytesWritten\": " + m.bytesWritten.get()
+                        + ", \"parseTime\": " + millis(m.parseTime.get())
+                        + ", \"transformTime\": " + millis(m.transformTime.get()) + "}");
+                sep = ",\n";
+            }
+            out.write("\n  ],\n  \"files\": [");
+            sep = "\n";
+            for (final FileRecord f: files) {
+                out.write(sep + "    {\"module\": " + (f.module != null ? quote(f.module.name) : "null")
+                        + ", \"file\": " + quote(f.file.getPath())
+                        + ", \"wallTime\": " + millis(f.wallTime)
+                        + ", \"bytesRead\": " + f.bytesRead
+                        + ", \"bytesWritten\": " + f.bytesWritten
+                        + ", \"parseTime\": " + millis(f.parseTime)
+                        + ", \"transformTime\": " + millis(f.wallTime - f.parseTime) + "}");
+                sep = ",\n";
+            }
+            out.write("\n  ]\n}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    private static String quote(final String s) {
+        final StringBuilder buf = new StringBuilder(s.length() + 2).append('"');
+        for (final char c: s.toCharArray()) {
+            switch (c) {
+            case '"':
+            case '\\':
+                buf.append('\\').append(c);
+                break;
+            default:
+                if (c < 0x20) {
+                    buf.append(String.format("\\u%04x", (int) c));
+                } else {
+                    buf.append(c);
+                }
+            }
+        }
+        return buf.append('"').toString();
+    }
+
+    /**
+     * Module execution record.
+     */
+    public static final class ModuleRecord {
+
+        final String name;
+        final ModuleRecord parent;
+        final long start = System.nanoTime();
+        volatile String label;
+        volatile long wallTime;
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong bytesRead = new AtomicLong();
+        final AtomicLong bytesWritten = new AtomicLong();
+        final AtomicLong parseTime = new AtomicLong();
+        final AtomicLong transformTime = new AtomicLong();
+
+        ModuleRecord(final String name, final ModuleRecord parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        /** @return module name */
+        public String getName() {
+            return name;
+        }
+
+        /** @return wall time in nanoseconds */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /** @return number of files processed */
+        public long getFiles() {
+            return files.get();
+        }
+
+        /** @return number of bytes read */
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        /** @return number of bytes written */
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+    }
+
+    private static final class FileRecord {
+
+        final ModuleRecord module;
+        final File file;
+        final long bytesRead;
+        final long bytesWritten;
+        final long wallTime;
+        final long parseTime;
+
+        FileRecord(final ModuleRecord module, final File file, final long bytesRead, final long bytesWritten,
+                final long wallTime, final long parseTime) {
+            this.module = module;
+            this.file = file;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.wallTime = wallTime;
+            this.parseTime = parseTime;
+        }
+
+    }
+
+    /**
+     * XML filter that measures time spent in the parent reader. Time spent in downstream content
+     * handler callbacks is subtracted, lexical events are not forwarded through the filter and are
+     * counted as parse time.
+     */
+    public static final class ParseTimer extends XMLFilterImpl {
+
+        private long parseTime;
+        private long handlerTime;
+
+        ParseTimer(final XMLReader parent) {
+            super(parent);
+        }
+
+        /**
+         * Get parse time of the last parse and reset timer.
+         *
+         * @return parse time in nanoseconds
+         */
+        public long getParseTime() {
+            final long t = parseTime - handlerTime;
+            parseTime = 0;
+            handlerTime = 0;
+            return t;
+        }
+
+        @Override
+        public void parse(final InputSource input) throws SAXException, IOException {
+            final long s = System.nanoTime();
+            try {
+                super.parse(input);
+            } finally {
+                parseTime += System.nanoTime() - s;
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            final long s = System.nanoTime();
+            super.startDocument();
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            final long s = System.nanoTime();
+            super.endDocument();
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+            final long s = System.nanoTime();
+            super.startPrefixMapping(prefix, uri);
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void endPrefixMapping(final String prefix) throws SAXException {
+            final long s = System.nanoTime();
+            super.endPrefixMapping(prefix);
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+            final long s = System.nanoTime();
+            super.startElement(uri, localName, qName, atts);
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            final long s = System.nanoTime();
+            super.endElement(uri, localName, qName);
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            final long s = System.nanoTime();
+            super.characters(ch, start, length);
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+            final long s = System.nanoTime();
+            super.ignorableWhitespace(ch, start, length);
+            handlerTime += System.nanoTime() - s;
+        }
+
+        @Override
+        public void processingInstruction(final String target, final String data) throws SAXException {
+            final long s = System.nanoTime();
+            super.processingInstruction(target, data);
+            handlerTime += System.nanoTime() - s;
+        }
+
+    }
+
+}
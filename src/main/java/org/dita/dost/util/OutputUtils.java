@@ -50,11 +50,17 @@ public final class OutputUtils {
         }
     }
 
-    private static Generate generatecopyouter = Generate.NOT_GENERATEOUTTER;//default:only generate&copy the non-overflowing files
+    /** Generate copy outer flag of the current build, inherited by threads started from the build thread. */
+    private static final InheritableThreadLocal<Generate> generatecopyouter = new InheritableThreadLocal<Generate>() {
+        @Override
+        protected Generate initialValue() {
+            return Generate.NOT_GENERATEOUTTER;//default:only generate&copy the non-overflowing files
+        }
+    };
     private boolean onlytopicinmap=false;//default:only the topic files will be resolved in the map
     private OutterControl outercontrol = OutterControl.WARN;
-    /**Output Dir.*/
-    private static File OutputDir=null;
+    /**Output Dir of the current build, inherited by threads started from the build thread.*/
+    private static final InheritableThreadLocal<File> OutputDir = new InheritableThreadLocal<File>();
     /**Input Map Dir.*/
     private File InputMapDir=null;
 
@@ -100,7 +106,7 @@ public final class OutputUtils {
      * @return int generatecopyouter flag
      */
     public static Generate getGeneratecopyouter(){
-        return generatecopyouter;
+        return generatecopyouter.get();
     }
 
     /**
@@ -108,7 +114,7 @@ public final class OutputUtils {
      * @param flag generatecopyouter flag
      */
     public void setGeneratecopyouter(final String flag){
-        generatecopyouter = Generate.get(Integer.parseInt(flag));
+        generatecopyouter.set(Generate.get(Integer.parseInt(flag)));
     }
 
     /**
@@ -116,14 +122,23 @@ public final class OutputUtils {
      * @return absolute output dir
      */
     public static File getOutputDir(){
-        return OutputDir;
+        return OutputDir.get();
     }
     /**
      * Set output dir.
      * @param outputDir absolute output dir
      */
     public void setOutputDir(final File outputDir){
-        OutputDir=outputDir;
+        OutputDir.set(outputDir);
+    }
+    /**
+     * Reset generate copy outer flag and output dir of the current thread to defaults.
+     * 
+     * @since 2.0
+     */
+    public static void reset(){
+        generatecopyouter.remove();
+        OutputDir.remove();
     }
     /**
      * Get input map path.
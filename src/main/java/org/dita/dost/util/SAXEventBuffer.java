@@ -0,0 +1,353 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Compact recording of SAX events. Events are stored as an array of operation codes and operands,
+ * names are stored in a string table and character data in a single character array.
+ *
+ * <p>Recording is not thread-safe, but a completed buffer can be replayed concurrently.</p>
+ *
+ * @since 2.0
+ */
+public final class SAXEventBuffer implements ContentHandler, LexicalHandler {
+
+    private static final int START_DOCUMENT = 1;
+    private static final int END_DOCUMENT = 2;
+    private static final int START_PREFIX_MAPPING = 3;
+    private static final int END_PREFIX_MAPPING = 4;
+    private static final int START_ELEMENT = 5;
+    private static final int END_ELEMENT = 6;
+    private static final int CHARACTERS = 7;
+    private static final int IGNORABLE_WHITESPACE = 8;
+    private static final int PROCESSING_INSTRUCTION = 9;
+    private static final int SKIPPED_ENTITY = 10;
+    private static final int START_DTD = 11;
+    private static final int END_DTD = 12;
+    private static final int START_CDATA = 13;
+    private static final int END_CDATA = 14;
+    private static final int COMMENT = 15;
+
+    /** String index for {@code null}. */
+    private static final int NULL = -1;
+
+    private int[] ops = new int[256];
+    private int opsLength;
+    private char[] chars = new char[1024];
+    private int charsLength;
+    private String[] strings = new String[64];
+    private int stringsLength;
+    private Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+    /** Element depth during recording. */
+    private int depth;
+    /** Flag whether recording is inside DTD. */
+    private boolean inDTD;
+
+    // Recording
+
+    /**
+     * Release memory used only during recording. Must be called before the buffer is shared.
+     */
+    public void trim() {
+        ops = Arrays.copyOf(ops, opsLength);
+        chars = Arrays.copyOf(chars, charsLength);
+        strings = Arrays.copyOf(strings, stringsLength);
+        stringIndex = null;
+    }
+
+    /**
+     * Get approximate memory footprint.
+     *
+     * @return approximate size in bytes
+     */
+    public long getSize() {
+        long size = ops.length * 4L + chars.length * 2L + strings.length * 4L;
+        for (int i = 0; i < stringsLength; i++) {
+            size += 40 + strings[i].length() * 2L;
+        }
+        return size;
+    }
+
+    private void op(final int op) {
+        if (opsLength == ops.length) {
+            ops = Arrays.copyOf(ops, ops.length * 2);
+        }
+        ops[opsLength++] = op;
+    }
+
+    private void string(final String s) {
+        if (s == null) {
+            op(NULL);
+            return;
+        }
+        Integer i = stringIndex.get(s);
+        if (i == null) {
+            if (stringsLength == strings.length) {
+                strings = Arrays.copyOf(strings, strings.length * 2);
+            }
+            i = stringsLength;
+            strings[stringsLength++] = s;
+            stringIndex.put(s, i);
+        }
+        op(i);
+    }
+
+    private void chars(final char[] ch, final int start, final int length) {
+        if (charsLength + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + length));
+        }
+        System.arraycopy(ch, start, chars, charsLength, length);
+        op(charsLength);
+        op(length);
+        charsLength += length;
+    }
+
+    private void chars(final String s) {
+        chars(s.toCharArray(), 0, s.length());
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        // NOOP
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        op(START_DOCUMENT);
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        op(END_DOCUMENT);
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        op(START_PREFIX_MAPPING);
+        string(prefix);
+        string(uri);
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        op(END_PREFIX_MAPPING);
+        string(prefix);
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+        depth++;
+        op(START_ELEMENT);
+        string(uri);
+        string(localName);
+        string(qName);
+        final int len = atts.getLength();
+        op(len);
+        for (int i = 0; i < len; i++) {
+            string(atts.getURI(i));
+            string(atts.getLocalName(i));
+            string(atts.getQName(i));
+            string(atts.getType(i));
+            chars(atts.getValue(i));
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        depth--;
+        op(END_ELEMENT);
+        string(uri);
+        string(localName);
+        string(qName);
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        // parsers do not report character data outside the document element
+        if (depth == 0) {
+            return;
+        }
+        op(CHARACTERS);
+        chars(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        if (depth == 0) {
+            return;
+        }
+        op(IGNORABLE_WHITESPACE);
+        chars(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        op(PROCESSING_INSTRUCTION);
+        string(target);
+        chars(data != null ? data : "");
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        op(SKIPPED_ENTITY);
+        string(name);
+    }
+
+    @Override
+    public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+        inDTD = true;
+        op(START_DTD);
+        string(name);
+        string(publicId);
+        string(systemId);
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        inDTD = false;
+        op(END_DTD);
+    }
+
+    @Override
+    public void startEntity(final String name) throws SAXException {
+        // entity boundaries are not recorded
+    }
+
+    @Override
+    public void endEntity(final String name) throws SAXException {
+        // entity boundaries are not recorded
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        op(START_CDATA);
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        op(END_CDATA);
+    }
+
+    @Override
+    public void comment(final char[] ch, final int start, final int length) throws SAXException {
+        // comments in DTD are not part of the document
+        if (inDTD) {
+            return;
+        }
+        op(COMMENT);
+        chars(ch, start, length);
+    }
+
+    // Replay
+
+    /**
+     * Replay recorded events.
+     *
+     * @param contentHandler content handler to send events to
+     * @param lexicalHandler lexical handler to send events to, may be {@code null}
+     * @throws SAXException if a handler threw an exception
+     */
+    public void replay(final ContentHandler contentHandler, final LexicalHandler lexicalHandler) throws SAXException {
+        final int[] ops = this.ops;
+        final int opsLength = this.opsLength;
+        final AttributesImpl atts = new AttributesImpl();
+        int i = 0;
+        while (i < opsLength) {
+            switch (ops[i++]) {
+            case START_DOCUMENT:
+                contentHandler.startDocument();
+                break;
+            case END_DOCUMENT:
+                contentHandler.endDocument();
+                break;
+            case START_PREFIX_MAPPING:
+                contentHandler.startPrefixMapping(string(ops[i]), string(ops[i + 1]));
+                i += 2;
+                break;
+            case END_PREFIX_MAPPING:
+                contentHandler.endPrefixMapping(string(ops[i++]));
+                break;
+            case START_ELEMENT: {
+                final String uri = string(ops[i++]);
+                final String localName = string(ops[i++]);
+                final String qName = string(ops[i++]);
+                final int len = ops[i++];
+                atts.clear();
+                for (int j = 0; j < len; j++) {
+                    atts.addAttribute(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]), string(ops[i + 3]),
+                                      new String(chars, ops[i + 4], ops[i + 5]));
+                    i += 6;
+                }
+                contentHandler.startElement(uri, localName, qName, atts);
+                break;
+            }
+            case END_ELEMENT:
+                contentHandler.endElement(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]));
+                i += 3;
+                break;
+            case CHARACTERS:
+                contentHandler.characters(chars, ops[i], ops[i + 1]);
+                i += 2;
+                break;
+            case IGNORABLE_WHITESPACE:
+                contentHandler.ignorableWhitespace(chars, ops[i], ops[i + 1]);
+                i += 2;
+                break;
+            case PROCESSING_INSTRUCTION:
+                contentHandler.processingInstruction(string(ops[i]), new String(chars, ops[i + 1], ops[i + 2]));
+                i += 3;
+                break;
+            case SKIPPED_ENTITY:
+                contentHandler.skippedEntity(string(ops[i++]));
+                break;
+            case START_DTD:
+                if (lexicalHandler != null) {
+                    lexicalHandler.startDTD(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]));
+                }
+                i += 3;
+                break;
+            case END_DTD:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endDTD();
+                }
+                break;
+            case START_CDATA:
+                if (lexicalHandler != null) {
+                    lexicalHandler.startCDATA();
+                }
+                break;
+            case END_CDATA:
+                if (lexicalHandler != null) {
+                    lexicalHandler.endCDATA();
+                }
+                break;
+            case COMMENT:
+                if (lexicalHandler != null) {
+                    lexicalHandler.comment(chars, ops[i], ops[i + 1]);
+                }
+                i += 2;
+                break;
+            default:
+                throw new IllegalStateException("Unsupported event " + ops[i - 1]);
+            }
+        }
+    }
+
+    private String string(final int i) {
+        return i == NULL ? null : strings[i];
+    }
+
+}
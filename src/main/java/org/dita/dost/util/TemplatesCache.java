@@ -0,0 +1,300 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Process-wide cache of compiled stylesheets.
+ *
+ * <p>Cache entries are keyed by transformer factory, URI resolver and stylesheet URI and validated against the last modification times of the
+ * stylesheet and all modules it imports or includes. Least recently used entries are evicted when the
+ * cache is full. Cache size is read from configuration property {@code xslt.cache-size}, {@code 0}
+ * disables caching.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @since 2.0
+ */
+public final class TemplatesCache {
+
+    /** Default maximum number of cached stylesheets. */
+    public static final int DEFAULT_SIZE = 32;
+
+    private static final TemplatesCache instance;
+    static {
+        int size = DEFAULT_SIZE;
+        final String value = Configuration.configuration.get("xslt.cache-size");
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value.trim());
+            } catch (final NumberFormatException e) {
+                // ignore and use default
+            }
+        }
+        instance = new TemplatesCache(size);
+    }
+
+    private final int maxSize;
+    private final Map<String, CacheEntry> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    /** Unique keys of resolvers without a configuration key, weak so that resolvers can be collected. */
+    private final Map<URIResolver, String> resolverKeys = new WeakHashMap<URIResolver, String>();
+    private long resolverCount;
+
+    /**
+     * Get process-wide cache instance.
+     *
+     * @return shared cache
+     */
+    public static TemplatesCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Create new cache.
+     *
+     * @param maxSize maximum number of cached stylesheets
+     */
+    public TemplatesCache(final int maxSize) {
+        this.maxSize = maxSize;
+        cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+                return size() > TemplatesCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get compiled stylesheet. If the stylesheet is not in cache or the stylesheet or any module it
+     * imports or includes has been modified after compilation, the stylesheet is compiled and cached.
+     * The URI resolver of the transformer factory is replaced for the duration of the compilation.
+     *
+     * Stylesheets compiled with different resolver instances are cached separately.
+     *
+     * @param tf transformer factory used for compilation
+     * @param style stylesheet file
+     * @param resolver URI resolver used for compilation, may be {@code null}
+     * @return compiled stylesheet
+     * @throws TransformerConfigurationException if compiling the stylesheet failed
+     */
+    public Templates getTemplates(final TransformerFactory tf, final File style, final URIResolver resolver)
+            throws TransformerConfigurationException {
+        return getTemplates(tf, style, resolver, null);
+    }
+
+    /**
+     * Get compiled stylesheet. If the stylesheet is not in cache or the stylesheet or any module it
+     * imports or includes has been modified after compilation, the stylesheet is compiled and cached.
+     * The URI resolver of the transformer factory is replaced for the duration of the compilation.
+     * Stylesheets compiled with resolvers with equal resolver keys are shared.
+     *
+     * @param tf transformer factory used for compilation
+     * @param style stylesheet file
+     * @param resolver URI resolver used for compilation, may be {@code null}
+     * @param resolverKey key that identifies how the resolver resolves URIs, e.g. its catalog files,
+     *                    {@code null} to use the identity of the resolver
+     * @return compiled stylesheet
+     * @throws TransformerConfigurationException if compiling the stylesheet failed
+     */
+    public Templates getTemplates(final TransformerFactory tf, final File style, final URIResolver resolver,
+                                  final String resolverKey) throws TransformerConfigurationException {
+        final URI uri = style.getAbsoluteFile().toURI();
+        final String key = tf.getClass().getName() + " "
+                + (resolverKey != null ? resolverKey : getResolverKey(resolver)) + " " + uri.toString();
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null && entry.isValid()) {
+            hits.incrementAndGet();
+            return entry.templates;
+        }
+        misses.incrementAndGet();
+
+        final RecordingURIResolver recorder = new RecordingURIResolver(resolver);
+        recorder.add(uri);
+        final URIResolver orig = tf.getURIResolver();
+        final Templates templates;
+        try {
+            tf.setURIResolver(recorder);
+            templates = tf.newTemplates(new StreamSource(uri.toString()));
+        } finally {
+            tf.setURIResolver(orig);
+        }
+        entry = new CacheEntry(templates, recorder.getModules());
+        if (maxSize > 0) {
+            synchronized (cache) {
+                cache.put(key, entry);
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Get unique key for resolver instance.
+     *
+     * @param resolver URI resolver, may be {@code null}
+     * @return key unique to the resolver instance while it is reachable
+     */
+    private String getResolverKey(final URIResolver resolver) {
+        if (resolver == null) {
+            return "";
+        }
+        synchronized (resolverKeys) {
+            String key = resolverKeys.get(resolver);
+            if (key == null) {
+                key = resolver.getClass().getName() + "#" + (++resolverCount);
+                resolverKeys.put(resolver, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Get number of cache hits.
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get number of cache misses.
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get number of cached stylesheets.
+     *
+     * @return number of cached stylesheets
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Remove all cached stylesheets and reset counters.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Compiled stylesheet and last modification times of its modules.
+     */
+    private static final class CacheEntry {
+
+        final Templates templates;
+        final List<File> modules;
+        final long[] lastModified;
+
+        CacheEntry(final Templates templates, final List<File> modules) {
+            this.templates = templates;
+            this.modules = modules;
+            lastModified = new long[modules.size()];
+            for (int i = 0; i < lastModified.length; i++) {
+                lastModified[i] = modules.get(i).lastModified();
+            }
+        }
+
+        /**
+         * Test whether no module has been modified after compilation.
+         *
+         * @return {@code true} if compiled stylesheet is up to date, otherwise {@code false}
+         */
+        boolean isValid() {
+            for (int i = 0; i < lastModified.length; i++) {
+                if (modules.get(i).lastModified() != lastModified[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * URI resolver that records local files resolved during stylesheet compilation.
+     */
+    private static final class RecordingURIResolver implements URIResolver {
+
+        private final URIResolver resolver;
+        private final List<File> modules = new ArrayList<File>();
+
+        RecordingURIResolver(final URIResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public Source resolve(final String href, final String base) throws TransformerException {
+            Source res = resolver != null ? resolver.resolve(href, base) : null;
+            String systemId = res != null ? res.getSystemId() : null;
+            if (systemId == null) {
+                try {
+                    final URI h = new URI(href);
+                    systemId = (base != null && !h.isAbsolute() ? new URI(base).resolve(h) : h).toString();
+                } catch (final URISyntaxException e) {
+                    systemId = null;
+                }
+            }
+            if (systemId != null) {
+                try {
+                    add(new URI(systemId));
+                } catch (final URISyntaxException e) {
+                    // not a local module
+                }
+            }
+            return res;
+        }
+
+        void add(final URI uri) {
+            if ("file".equals(uri.getScheme())) {
+                synchronized (modules) {
+                    modules.add(new File(uri));
+                }
+            }
+        }
+
+        List<File> getModules() {
+            synchronized (modules) {
+                return Collections.unmodifiableList(new ArrayList<File>(modules));
+            }
+        }
+
+    }
+
+}
@@ -8,19 +8,29 @@
  */
 package org.dita.dost.util;
 
+import java.io.File;
+
+import org.apache.xerces.impl.dtd.DTDGrammar;
+import org.apache.xerces.impl.dtd.XMLElementDecl;
 import org.apache.xerces.impl.xs.XSDDescription;
 import org.apache.xerces.util.XMLGrammarPoolImpl;
 import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLDTDDescription;
 import org.apache.xerces.xni.grammars.XMLGrammarDescription;
 
 /**
  * Self implemented XML Grammar pool for grammar(schema/dtd) caching.
+ * 
+ * <p>The pool is thread-safe and DTD grammars in the pool can be shared by concurrent parsers.</p>
+ * 
  * @author william
  * 
  */
 public final class XMLGrammarPoolImplUtils extends XMLGrammarPoolImpl {
 
     private boolean gramCache = true;
+    /** Persistent DTD grammar cache, {@code null} if not used. */
+    private DTDGrammarCache dtdCache;
     private static final Grammar[] INITIAL_GRAMMAR_SET = new Grammar[0];
 
 
@@ -35,6 +45,20 @@ public final class XMLGrammarPoolImplUtils extends XMLGrammarPoolImpl {
         this.gramCache = gramCache;
     }
 
+    /**
+     * Constructs a grammar pool with a default number of buckets and a persistent DTD grammar cache.
+     * 
+     * @param gramCache grammar caching flag
+     * @param cacheDir DTD grammar cache directory, {@code null} to not use a persistent cache
+     * @since 2.0
+     */
+    public XMLGrammarPoolImplUtils(final boolean gramCache, final File cacheDir) {
+        this(gramCache);
+        if (gramCache && cacheDir != null) {
+            dtdCache = new DTDGrammarCache(cacheDir);
+        }
+    }
+
     /** Constructs a grammar pool with a specified number of buckets. */
     public XMLGrammarPoolImplUtils(final int initialCapacity) {
         super(initialCapacity);
@@ -47,6 +71,47 @@ public final class XMLGrammarPoolImplUtils extends XMLGrammarPoolImpl {
         return INITIAL_GRAMMAR_SET;
     }
 
+    /**
+     * Retrieve grammar from pool. If the grammar is a DTD grammar not in the pool,
+     * it is retrieved from the persistent DTD grammar cache.
+     */
+    @Override
+    public Grammar retrieveGrammar(final XMLGrammarDescription desc) {
+        final Grammar grammar = super.retrieveGrammar(desc);
+        if (grammar == null && dtdCache != null && desc instanceof XMLDTDDescription) {
+            return dtdCache.getGrammar((XMLDTDDescription) desc);
+        }
+        return grammar;
+    }
+
+    /**
+     * Cache grammars. Content models of DTD grammars are built before the grammar
+     * is added to the pool, because building them lazily during validation is not thread-safe.
+     */
+    @Override
+    public void cacheGrammars(final String grammarType, final Grammar[] grammars) {
+        for (final Grammar grammar: grammars) {
+            initContentModels(grammar);
+        }
+        super.cacheGrammars(grammarType, grammars);
+    }
+
+    /**
+     * Build content model validators of all element declarations in a DTD grammar.
+     * 
+     * @param grammar grammar
+     * @since 2.0
+     */
+    static void initContentModels(final Grammar grammar) {
+        if (grammar instanceof DTDGrammar) {
+            final DTDGrammar dtd = (DTDGrammar) grammar;
+            final XMLElementDecl decl = new XMLElementDecl();
+            for (int i = dtd.getFirstElementDeclIndex(); i >= 0; i = dtd.getNextElementDeclIndex(i)) {
+                dtd.getElementDecl(i, decl);
+            }
+        }
+    }
+
     /**
      * Returns the hash code value for the given grammar description.
      * 
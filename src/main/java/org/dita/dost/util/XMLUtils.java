@@ -21,6 +21,7 @@ import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -149,12 +150,34 @@ public final class XMLUtils {
      * @param filters XML filters to transform file with
      */
     public static void transform(final File inputFile, final List<XMLFilter> filters) throws DITAOTException {
+        transform(inputFile, filters, null);
+    }
+    
+    /**
+     * Transform file with XML filters.
+     * 
+     * @param inputFile file to transform and replace
+     * @param filters XML filters to transform file with
+     * @param store document store to read and write the file through, may be {@code null}
+     * @since 2.0
+     */
+    public static void transform(final File inputFile, final List<XMLFilter> filters, final DocumentStore store) throws DITAOTException {
         final File outputFile = new File(inputFile.getAbsolutePath() + FILE_EXTENSION_TEMP);
         InputStream in = null;
         OutputStream out = null;
+        DocumentStore.Output storeOut = null;
+        final long start = System.nanoTime();
+        final long bytesRead = inputFile.length();
+        Metrics.ParseTimer timer = null;
         try {
-            final Transformer transformer = TransformerFactory.newInstance().newTransformer();
             XMLReader reader = StringUtils.getXMLReader();
+            if (store != null) {
+                reader = store.getXMLReader(reader);
+            }
+            timer = Metrics.getInstance().newParseTimer(reader);
+            if (timer != null) {
+                reader = timer;
+            }
             for (final XMLFilter filter: filters) {
                 // ContentHandler must be reset so e.g. Saxon 9.1 will reassign ContentHandler
                 // when reusing filter with multiple Transformers.
@@ -163,10 +186,21 @@ public final class XMLUtils {
                 reader = filter;
             }
             in = new BufferedInputStream(new FileInputStream(inputFile));
-            out = new BufferedOutputStream(new FileOutputStream(outputFile));
-            final Source source = new SAXSource(reader, new InputSource(in));
-            final Result result = new StreamResult(out);
-            transformer.transform(source, result);
+            if (store != null) {
+                final InputSource inputSource = new InputSource(in);
+                inputSource.setSystemId(inputFile.toURI().toString());
+                storeOut = store.newOutput(outputFile, null);
+                final SAXResult result = storeOut.getResult();
+                reader.setContentHandler(result.getHandler());
+                reader.setProperty(LEXICAL_HANDLER_PROPERTY, result.getLexicalHandler());
+                reader.parse(inputSource);
+            } else {
+                final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+                out = new BufferedOutputStream(new FileOutputStream(outputFile));
+                final Source source = new SAXSource(reader, new InputSource(in));
+                final Result result = new StreamResult(out);
+                transformer.transform(source, result);
+            }
         } catch (final Exception e) {
             throw new DITAOTException("Failed to transform " + inputFile + ": " + e.getMessage(), e);
         } finally {
@@ -184,6 +218,13 @@ public final class XMLUtils {
                     // ignore
                 }
             }
+            if (storeOut != null) {
+                try {
+                    storeOut.close();
+                } catch (final IOException e) {
+                    // ignore
+                }
+            }
         }
         // replace original file
         try {
@@ -196,6 +237,16 @@ public final class XMLUtils {
         } catch (final Exception e) {
             throw new DITAOTException("Failed to replace " + inputFile + ": " + e.getMessage());
         }
+        IdIndex.getInstance().remove(inputFile);
+        if (storeOut != null) {
+            store.put(inputFile, storeOut.getBuffer());
+        } else {
+            DocumentStore.invalidate(inputFile);
+        }
+        if (timer != null) {
+            Metrics.getInstance().addFile(inputFile, bytesRead, inputFile.length(), System.nanoTime() - start,
+                                          timer.getParseTime());
+        }
     }
     
     /**
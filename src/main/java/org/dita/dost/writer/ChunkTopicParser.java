@@ -36,10 +36,11 @@ import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.ChunkModule.ChunkFilenameGenerator;
 import org.dita.dost.module.Content;
 import org.dita.dost.util.DITAAttrUtils;
+import org.dita.dost.util.DocumentStore;
 import org.dita.dost.util.FileUtils;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.Job;
 import org.dita.dost.util.StringUtils;
-import org.dita.dost.util.TopicIdParser;
 import org.dita.dost.util.XMLUtils;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -121,6 +122,8 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
     private static final String ditaarchNSValue = "http://dita.oasis-open.org/architecture/2005/";
 
     private ChunkFilenameGenerator chunkFilenameGenerator;
+    /** Shared job configuration, {@code null} if job configuration is read from the map directory. */
+    private Job job;
 
     /**
      * Constructor.
@@ -314,6 +317,8 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
                         conflictTable.put(newFileName, t);
                     }
                     outputFile = newFileName;
+                    DocumentStore.invalidate(new File(newFileName));
+                    IdIndex.getInstance().remove(new File(newFileName));
                     output = new OutputStreamWriter(new FileOutputStream(newFileName), UTF8);
                     // write xml header and workdir PI to the new generated file
                     writeStartDocument(output);
@@ -570,18 +575,31 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
         }
     }
 
+    /**
+     * Set shared job configuration. Copy-to information is added to the shared job configuration and the
+     * caller is responsible for writing it. If not set, the job configuration in the map directory is
+     * read and written.
+     * 
+     * @param job job configuration for the map directory
+     */
+    public void setJob(final Job job) {
+        this.job = job;
+    }
+
     private void updateList() {
         try {
             // XXX: This may have to use new
             // File(FileUtils.resolveFile(filePath,FILE_NAME_DITA_LIST_XML)).getParent()
-            final Job job = new Job(filePath);
+            final Job job = this.job != null ? this.job : new Job(filePath);
             final Map<File, File> copytotarget2sourcemaplist = job.getCopytoMap();
             copytotarget2source.putAll(copytotarget2sourcemaplist);
             for (final String file : copytoSource) {
-                job.getOrCreateFileInfo(file).isCopyToSource = true;
+                job.getOrCreateFileInfo(file).setCopyToSource(true);
             }
             job.setCopytoMap(copytotarget2source);
-            job.write();
+            if (this.job == null) {
+                job.write();
+            }
         } catch (final Exception e) {
             /* logger.logWarn(e.toString()); */
             logger.logError(e.getMessage(), e);
@@ -696,6 +714,8 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
                     dotchunk = false;
                 }
                 tempOutput = output;
+                DocumentStore.invalidate(new File(outputFileName));
+                IdIndex.getInstance().remove(new File(outputFileName));
                 output = new OutputStreamWriter(new FileOutputStream(outputFileName), UTF8);
                 outputFile = outputFileName;
                 if (!dotchunk) {
@@ -775,6 +795,10 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
                         logger.logError(MessageUtils.getInstance()
                                 .getMessage("DOTJ009E", currentParsingFile, outputFile).toString());
                     }
+                    if (dotchunk) {
+                        DocumentStore.invalidate(new File(currentParsingFile));
+                        IdIndex.getInstance().remove(new File(currentParsingFile));
+                    }
                 }
                 output = tempOutput;
             } catch (final Exception ex) {
@@ -1115,6 +1139,8 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
                     // flush the buffer to file after processing is finished
                     // and restore back original output
 
+                    DocumentStore.invalidate(new File(outputFileName));
+                    IdIndex.getInstance().remove(new File(outputFileName));
                     final FileOutputStream fileOutput = new FileOutputStream(outputFileName);
                     OutputStreamWriter ditaFileOutput = null;
                     try {
@@ -1219,22 +1245,16 @@ public final class ChunkTopicParser extends AbstractXMLWriter {
      *         an empty string is returned.
      */
     private String getFirstTopicId(final String absolutePathToFile) {
-        final StringBuffer firstTopicId = new StringBuffer();
-
         if (absolutePathToFile == null || !FileUtils.isAbsolutePath(absolutePathToFile)) {
-            return firstTopicId.toString();
+            return "";
         }
-
-        final TopicIdParser parser = new TopicIdParser(firstTopicId);
         try {
-            final XMLReader reader = StringUtils.getXMLReader();
-            reader.setContentHandler(parser);
-            reader.parse(new File(absolutePathToFile).toURI().toString());
+            final String firstTopicId = IdIndex.getInstance().get(new File(absolutePathToFile)).getFirstId();
+            return firstTopicId != null ? firstTopicId : "";
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e);
+            return "";
         }
-        return firstTopicId.toString();
-
     }
 
     /**
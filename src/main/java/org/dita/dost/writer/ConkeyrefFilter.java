@@ -44,6 +44,15 @@ public final class ConkeyrefFilter extends AbstractXMLFilter {
         }
     }
 
+    /**
+     * Set key definitions. The map is used as is and must not be modified while the filter is in use.
+     * 
+     * @param keydefs key definitions by key name
+     */
+    public void setKeyDefinitions(final Map<String, KeyDef> keydefs) {
+        keys = keydefs;
+    }
+
     public void setTempDir(final File tempDir) {
         this.tempDir = tempDir;
     }
@@ -9,47 +9,44 @@
 package org.dita.dost.writer;
 
 import static org.dita.dost.util.Constants.*;
-import static org.dita.dost.util.Job.*;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.Properties;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
-import org.dita.dost.util.FileUtils;
-import org.dita.dost.util.Job;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
+import org.dita.dost.util.SAXEventBuffer;
 import org.dita.dost.util.StringUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 /**
  * This class is for writing conref push contents into
  * specific files.
- *
+ * 
+ * <p>The writer does not update the job configuration. If pushed content contains conref attributes,
+ * {@link #hasConref()} returns {@code true} after {@link #write(File)} and the caller has to add the
+ * file to the conref list. Separate instances can write different files concurrently.</p>
  */
 public final class ConrefPushParser extends AbstractXMLWriter {
 
     /**table containing conref push contents.*/
-    private Hashtable<String, String> movetable = null;
+    private Map<String, SAXEventBuffer> movetable = null;
 
     /**topicId keep the current topic id value.*/
     private String topicId = null;
@@ -125,8 +122,6 @@ public final class ConrefPushParser extends AbstractXMLWriter {
 	while it may contain @conref after pushing. So the dita.list file should be updated, if
 	the pushcontent has @conref.*/
     private boolean hasConref = false;
-    /**tempDir.*/
-    private File tempDir;
     /**
      * Constructor.
      */
@@ -149,23 +144,28 @@ public final class ConrefPushParser extends AbstractXMLWriter {
     }
     
     /**
-     * @param content value {@code Hashtable<String, String>}
+     * Set push content. The table is copied and not modified by the writer.
+     * 
+     * @param content value {@code Map<String, SAXEventBuffer>}
      */
     @SuppressWarnings("unchecked")
     @Override
     public void setContent(final Content content) {
-        movetable = (Hashtable<String, String>)content.getValue();
-        if (movetable == null) {
-            throw new IllegalArgumentException("Content value must be non-null Hashtable<String, String>");
+        final Map<String, SAXEventBuffer> value = (Map<String, SAXEventBuffer>)content.getValue();
+        if (value == null) {
+            throw new IllegalArgumentException("Content value must be non-null Map<String, SAXEventBuffer>");
         }
+        movetable = new Hashtable<String, SAXEventBuffer>(value);
     }
     
     /**
+     * Test if content pushed by the last {@link #write(File)} call contains conref attributes.
+     * If so, the file has to be added to the conref list.
      * 
-     * @param tempDir tempDir
+     * @return {@code true} if pushed content contains conref attributes, otherwise {@code false}
      */
-    public void setTempDir(final File tempDir){
-        this.tempDir = tempDir;
+    public boolean hasConref() {
+        return hasConref;
     }
     /**
      * @param filename filename
@@ -188,7 +188,6 @@ public final class ConrefPushParser extends AbstractXMLWriter {
             output = new OutputStreamWriter(new FileOutputStream(outputFile),UTF8);
             parser.parse(filename.toURI().toString());
             if(!movetable.isEmpty()){
-                final Properties prop = new Properties();
                 String key = null;
                 final Iterator<String> iterator = movetable.keySet().iterator();
                 while(iterator.hasNext()){
@@ -196,9 +195,6 @@ public final class ConrefPushParser extends AbstractXMLWriter {
                     logger.logWarn(MessageUtils.getInstance().getMessage("DOTJ043W", key.substring(0, key.indexOf(STICK)), filename.getPath()).toString());
                 }
             }
-            if(hasConref){
-                updateList(filename);
-            }
             output.close();
             if(!inputFile.delete()){
                 logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
@@ -206,6 +202,8 @@ public final class ConrefPushParser extends AbstractXMLWriter {
             if(!outputFile.renameTo(inputFile)){
                 logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
             }
+            DocumentStore.invalidate(inputFile);
+            IdIndex.getInstance().remove(inputFile);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }finally{
@@ -218,51 +216,6 @@ public final class ConrefPushParser extends AbstractXMLWriter {
 
 
     }
-    /**
-     * Update conref list in job configuration and in conref list file.
-     * 
-     * @param filename filename
-     */
-    private void updateList(final File filename){
-        // this is used to update the conref.list file.
-        BufferedWriter bufferedWriter =null;
-        try{
-            final Job job = new Job(tempDir);
-
-            // get the reletivePath from tempDir
-            final String reletivePath = filename.getAbsolutePath().substring(FileUtils.normalize(tempDir.toString()).getPath().length() + 1);
-            for (final FileInfo f: job.getFileInfo()) {
-                final String str = f.file.getPath();
-                if (f.hasConref) {
-                    if(str.equals(reletivePath)){
-                        return;
-                    }
-                }
-            }
-            job.getOrCreateFileInfo(reletivePath).hasConref = true;
-            
-            job.write();
-
-            try {
-                bufferedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(tempDir, CONREF_LIST_FILE))));
-                for (final FileInfo f: job.getFileInfo()) {
-                    final String str = f.file.getPath();
-                    if (f.hasConref) {
-                        bufferedWriter.append(str).append("\n");
-                    }
-                }
-                bufferedWriter.append(reletivePath);
-            } finally {
-                if (bufferedWriter != null) {
-                    bufferedWriter.close();
-                }
-            }
-        }catch (final Exception e){
-            logger.logError(e.getMessage(), e) ;
-        }
-
-    }
-
     @Override
     public void characters(final char[] ch, final int start, final int length)
             throws SAXException {
@@ -340,176 +293,158 @@ public final class ConrefPushParser extends AbstractXMLWriter {
     /**
      * The function is to judge if the pushed content type march the type of content being pushed/replaced
      * @param targetClassAttribute the class attribute of target element which is being pushed
-     * @param string pushedContent
+     * @param content pushedContent
      * @return boolean: if type match, return true, else return false
      */
-    private boolean isPushedTypeMatch(final String targetClassAttribute, String string) {
-        String clazz = "";
-        InputSource inputSource = null;
-        Document document = null;
-        //add stub to serve as the root element
-        string = "<stub>" + string + "</stub>";
-        inputSource = new InputSource(new StringReader(string));
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        Element element = null;
-        NodeList nodeList = null;
-
-        new StringBuffer();
-        try {
-            final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-            document = documentBuilder.parse(inputSource);
-            element = document.getDocumentElement();
-            if(element.hasChildNodes()){
-                nodeList = element.getChildNodes();
-                for(int i =0;i<nodeList.getLength();i++){
-                    final Node node = nodeList.item(i);
-                    if (node.getNodeType() == Node.ELEMENT_NODE){
-                        final Element elem = (Element) node;
-                        clazz = elem.getAttribute(ATTRIBUTE_NAME_CLASS);
-                        break;
-                        // get type of the target element
-                    }
-                }
-            }
-        } catch (final Exception e) {
-            e.printStackTrace();
+    private boolean isPushedTypeMatch(final String targetClassAttribute, final SAXEventBuffer content)
+            throws SAXException {
+        if (targetClassAttribute == null) {
             return false;
         }
+        final String[] clazz = { "" };
+        content.replay(new DefaultHandler() {
+            private boolean first = true;
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                    final Attributes atts) {
+                if (first) {
+                    // get type of the first pushed element
+                    final String classValue = atts.getValue(ATTRIBUTE_NAME_CLASS);
+                    clazz[0] = classValue != null ? classValue : "";
+                    first = false;
+                }
+            }
+        }, null);
 
-        if(clazz.equalsIgnoreCase(targetClassAttribute) || clazz.contains(targetClassAttribute)) {
+        if(clazz[0].equalsIgnoreCase(targetClassAttribute) || clazz[0].contains(targetClassAttribute)) {
             return true;
         }else{
             return false;
         }
-
-
     }
 
     /**
+     * Serialize pushed content. If pushed elements are specializations of the target element,
+     * they are generalized to the type of the target element.
      * 
      * @param targetClassAttribute targetClassAttribute
-     * @param string string
-     * @return string
+     * @param content pushed content
+     * @return serialized content
      */
-    private String replaceElementName(final String targetClassAttribute, String string){
-        InputSource inputSource = null;
-        Document document = null;
-        //add stub to serve as the root element
-        string = "<stub>" + string + "</stub>";
-        inputSource = new InputSource(new StringReader(string));
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        Element element = null;
-        NodeList nodeList = null;
-        String targetElementName ;
-        String type;
-        final StringBuffer stringBuffer = new StringBuffer();
-        try {
-            final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-            document = documentBuilder.parse(inputSource);
-            element = document.getDocumentElement();
-            if(element.hasChildNodes()){
-                nodeList = element.getChildNodes();
-                for(int i =0;i<nodeList.getLength();i++){
-                    final Node node = nodeList.item(i);
-                    if (node.getNodeType() == Node.ELEMENT_NODE){
-                        final Element elem = (Element) node;
-                        NodeList nList = null;
-                        final String clazz = elem.getAttribute(ATTRIBUTE_NAME_CLASS);
-                        // get type of the target element
-                        type = targetClassAttribute.substring(INT_1, targetClassAttribute.indexOf("/")).trim();
-                        if(!clazz.equalsIgnoreCase(targetClassAttribute) && clazz.contains(targetClassAttribute)){
-                            // Specializing the pushing content is not handled here
-                            // but we can catch such a situation to emit a warning by comparing the class values.
-                            targetElementName = targetClassAttribute.substring(targetClassAttribute.indexOf("/") +1 ).trim();
-                            stringBuffer.append(LESS_THAN).append(targetElementName);
-                            final NamedNodeMap namedNodeMap = elem.getAttributes();
-                            for(int t=0; t<namedNodeMap.getLength(); t++){
-                                //write the attributes to new generated element
-                                if(namedNodeMap.item(t).getNodeName().equals("conref") && namedNodeMap.item(t).getNodeValue().length()!=0){
-                                    hasConref = true;
-                                }
-                                stringBuffer.append(STRING_BLANK).append(namedNodeMap.item(t).getNodeName()).
-                                append(EQUAL).append(QUOTATION+
-                                        StringUtils.escapeXML(namedNodeMap.item(t).getNodeValue())
-                                        +QUOTATION);
-                            }
-                            stringBuffer.append(GREATER_THAN);
-                            // process the child nodes of the current node
-                            nList = elem.getChildNodes();
-                            for(int j=0; j<nList.getLength(); j++){
-                                final Node subNode = nList.item(j);
-                                if(subNode.getNodeType() == Node.ELEMENT_NODE){
-                                    //replace the subElement Name
-                                    stringBuffer.append(replaceSubElementName(type, (Element)subNode));
-                                }
-                                if(subNode.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE){
-                                    stringBuffer.append("<?").append(subNode.getNodeName()).append("?>");
-                                }
-                                if(subNode.getNodeType() == Node.TEXT_NODE){
-                                    //stringBuffer.append(subNode.getNodeValue());
-                                    stringBuffer.append(StringUtils.escapeXML(subNode.getNodeValue()));
-                                }
-                            }
-                            stringBuffer.append("</").append(targetElementName).append(GREATER_THAN);
-                        }else{
-                            stringBuffer.append(replaceSubElementName(STRING_BLANK, elem));
-                        }
-                    }
-                }
-                return stringBuffer.toString();
-            }
-            else {
-                return string;
-            }
-        } catch (final Exception e) {
-            e.printStackTrace();
-            return string;
-        }
+    private String replaceElementName(final String targetClassAttribute, final SAXEventBuffer content)
+            throws SAXException {
+        final PushContentSerializer serializer = new PushContentSerializer(targetClassAttribute);
+        content.replay(serializer, null);
+        return serializer.toString();
     }
+
     /**
+     * Get element name from class attribute value.
      * 
-     * @param type pushtype
-     * @param elem element
-     * @return string
+     * @param classValue class attribute value
+     * @return first element name in class value
      */
-    private String replaceSubElementName(final String type, final Element elem){
-        final StringBuffer stringBuffer = new StringBuffer();
-        final String classValue = elem.getAttribute(ATTRIBUTE_NAME_CLASS);
-        String generalizedElemName = elem.getNodeName();
-        if(classValue != null){
-            if(classValue.contains(type) && !type.equals(STRING_BLANK)){
-                generalizedElemName = classValue.substring(classValue.indexOf("/") +1 , classValue.indexOf(STRING_BLANK, classValue.indexOf("/"))).trim();
-            }
+    private static String getGeneralizedName(final String classValue) {
+        final int start = classValue.indexOf(SLASH) + 1;
+        final int end = classValue.indexOf(STRING_BLANK, start);
+        return (end != -1 ? classValue.substring(start, end) : classValue.substring(start)).trim();
+    }
+
+    /**
+     * Serializer for pushed content. Only elements and their content are written, attributes are
+     * written in name order.
+     */
+    private final class PushContentSerializer extends DefaultHandler {
+
+        private final String targetClassAttribute;
+        private final StringBuilder buf = new StringBuilder(INT_256);
+        /** Names of open elements. */
+        private final Deque<String> names = new ArrayDeque<String>();
+        /** Type of the target element, {@code null} if element names are not generalized. */
+        private String type;
+
+        PushContentSerializer(final String targetClassAttribute) {
+            this.targetClassAttribute = targetClassAttribute;
         }
-        stringBuffer.append(LESS_THAN).append(generalizedElemName);
-        final NamedNodeMap namedNodeMap = elem.getAttributes();
-        for(int i=0; i<namedNodeMap.getLength(); i++){
-            if(namedNodeMap.item(i).getNodeName().equals("conref") && namedNodeMap.item(i).getNodeValue().length()!=0){
-                hasConref = true;
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                final Attributes atts) {
+            final String classValue = atts.getValue(ATTRIBUTE_NAME_CLASS);
+            String elemName = qName;
+            if (names.isEmpty()) {
+                type = null;
+                final String clazz = classValue != null ? classValue : "";
+                final int typeEnd = targetClassAttribute.indexOf(SLASH);
+                if(typeEnd != -1 && !clazz.equalsIgnoreCase(targetClassAttribute) && clazz.contains(targetClassAttribute)){
+                    // Specializing the pushing content is not handled here
+                    // but we can catch such a situation to emit a warning by comparing the class values.
+                    type = targetClassAttribute.substring(INT_1, typeEnd).trim();
+                    elemName = getGeneralizedName(targetClassAttribute);
+                }
+            } else if (type != null && classValue != null && classValue.contains(type)) {
+                elemName = getGeneralizedName(classValue);
+            }
+            names.push(elemName);
+            buf.append(LESS_THAN).append(elemName);
+            final Integer[] order = new Integer[atts.getLength()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer o1, final Integer o2) {
+                    return atts.getQName(o1).compareTo(atts.getQName(o2));
+                }
+            });
+            for (final int i: order) {
+                final String value = atts.getValue(i);
+                if (ATTRIBUTE_NAME_CONREF.equals(atts.getQName(i)) && value.length() != 0) {
+                    hasConref = true;
+                }
+                buf.append(STRING_BLANK).append(atts.getQName(i)).append(EQUAL)
+                   .append(QUOTATION).append(StringUtils.escapeXML(value)).append(QUOTATION);
             }
-            stringBuffer.append(STRING_BLANK).append(namedNodeMap.item(i).getNodeName()).
-            append(EQUAL).append(QUOTATION+
-                    StringUtils.escapeXML(namedNodeMap.item(i).getNodeValue())
-                    +QUOTATION);
+            buf.append(GREATER_THAN);
         }
-        stringBuffer.append(GREATER_THAN);
-        final NodeList nodeList = elem.getChildNodes();
-        for(int i=0; i<nodeList.getLength(); i++){
-            final Node node = nodeList.item(i);
-            if(node.getNodeType() == Node.ELEMENT_NODE){
-                // If the type of current node is ELEMENT_NODE, process current node.
-                stringBuffer.append(replaceSubElementName(type, (Element)node));
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            buf.append(LESS_THAN).append(SLASH).append(names.pop()).append(GREATER_THAN);
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            if (!names.isEmpty()) {
+                buf.append(StringUtils.escapeXML(ch, start, length));
             }
-            if(node.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE){
-                stringBuffer.append("<?").append(node.getNodeName()).append("?>");
+        }
+
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(final String target, final String data) {
+            if (!names.isEmpty()) {
+                final String pi = (data != null && data.length() != 0) ? target + STRING_BLANK + data : target;
+                buf.append(LESS_THAN).append(QUESTION).append(pi).append(QUESTION).append(GREATER_THAN);
             }
-            if(node.getNodeType() == Node.TEXT_NODE){
-                //stringBuffer.append(node.getNodeValue());
-                stringBuffer.append(StringUtils.escapeXML(node.getNodeValue()));
+        }
+
+        @Override
+        public void skippedEntity(final String name) {
+            if (!names.isEmpty()) {
+                buf.append(StringUtils.getEntity(name));
             }
         }
-        stringBuffer.append("</").append(generalizedElemName).append(GREATER_THAN);
-        return stringBuffer.toString();
+
+        @Override
+        public String toString() {
+            return buf.toString();
+        }
+
     }
 
 
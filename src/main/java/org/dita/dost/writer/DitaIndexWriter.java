@@ -20,6 +20,8 @@ import java.util.Properties;
 import org.dita.dost.exception.DITAOTXMLErrorHandler;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -431,6 +433,8 @@ public final class DitaIndexWriter extends AbstractXMLWriter {
             if(!outputFile.renameTo(inputFile)){
                 logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
             }
+            DocumentStore.invalidate(inputFile);
+            IdIndex.getInstance().remove(inputFile);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }
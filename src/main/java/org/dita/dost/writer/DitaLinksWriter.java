@@ -22,6 +22,8 @@ import java.util.Set;
 import org.dita.dost.exception.DITAOTXMLErrorHandler;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -115,6 +117,8 @@ public final class DitaLinksWriter extends AbstractXMLWriter {
         if (!outputFile.renameTo(inputFile)) {
             logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
         }
+        DocumentStore.invalidate(inputFile);
+        IdIndex.getInstance().remove(inputFile);
     }
 
     // SAX methods
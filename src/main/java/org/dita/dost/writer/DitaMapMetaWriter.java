@@ -35,6 +35,8 @@ import org.dita.dost.exception.DITAOTXMLErrorHandler;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
 import org.dita.dost.reader.MapMetaReader;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.StringUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -646,6 +648,8 @@ public final class DitaMapMetaWriter extends AbstractXMLWriter {
             if(!outputFile.renameTo(inputFile)){
                 logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
             }
+            DocumentStore.invalidate(inputFile);
+            IdIndex.getInstance().remove(inputFile);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }
@@ -15,28 +15,23 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.util.Map.Entry;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.dita.dost.exception.DITAOTXMLErrorHandler;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
 import org.dita.dost.reader.MapMetaReader;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.StringUtils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -44,30 +39,33 @@ import org.w3c.dom.NodeList;
 import org.w3c.dom.ProcessingInstruction;
 import org.w3c.dom.Text;
 import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
 /**
  * DitaMetaWriter reads dita topic file and insert the metadata information into it.
- * 
+ *
+ * <p>The topic is streamed to the output. Only the head of the matched topic, i.e. elements from the first
+ * {@code titlealts}, {@code abstract}, {@code shortdesc} or {@code prolog} up to the topic body, is
+ * collected into a small element tree where the pre-compiled {@link Metadata metadata} is merged in.</p>
+ *
  * @author Zhang, Yuan Peng
  */
 public final class DitaMetaWriter extends AbstractXMLWriter {
     private String firstMatchTopic;
     private String lastMatchTopic;
-    private Hashtable<String, Node> metaTable;
+    private Metadata metadata;
     /** topic path that topicIdList need to match */
     private List<String> matchList;
     private boolean needResolveEntity;
     private Writer output;
-    private OutputStreamWriter ditaFileOutput;
-    private StringWriter strOutput;
     private final XMLReader reader;
     /** whether to insert links at this topic */
     private boolean startTopic;
-    /** Whether to cache the current stream into a buffer for building DOM tree */
+    /** Whether to collect the current stream into the topic head tree */
     private boolean startDOM;
+    /** Open elements of the topic head tree, synthetic head root at the bottom */
+    private final Deque<MetaElement> headStack;
     /** whether metadata has been written */
     private boolean hasWritten;
     /** array list that is used to keep the hierarchy of topic id */
@@ -137,8 +135,9 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
         super();
         topicIdList = new ArrayList<String>(INT_16);
         topicSpecList = new ArrayList<String>(INT_16);
+        headStack = new ArrayDeque<MetaElement>();
 
-        metaTable = null;
+        metadata = null;
         matchList = null;
         needResolveEntity = false;
         output = null;
@@ -158,6 +157,18 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
 
     }
 
+    /**
+     * Write serialized markup either to the topic head tree or to the output.
+     *
+     * @param markup serialized markup
+     */
+    private void write(final String markup) throws IOException {
+        if (startDOM) {
+            headStack.peek().children.add(markup);
+        } else {
+            output.write(markup);
+        }
+    }
 
     @Override
     public void characters(final char[] ch, final int start, final int length)
@@ -165,9 +176,9 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
         if(needResolveEntity){
             try {
                 if(insideCDATA) {
-                    output.write(ch, start, length);
+                    write(new String(ch, start, length));
                 } else {
-                    output.write(StringUtils.escapeXML(ch, start, length));
+                    write(StringUtils.escapeXML(ch, start, length));
                 }
             } catch (final Exception e) {
                 logger.logError(e.getMessage(), e) ;
@@ -192,7 +203,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
     public void endCDATA() throws SAXException {
         insideCDATA = false;
         try{
-            output.write(CDATA_END);
+            write(CDATA_END);
         }catch(final Exception e){
             logger.logError(e.getMessage(), e) ;
         }
@@ -218,18 +229,18 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
         try {
             if (startTopic && topicSpecList.contains(qName)){
                 if (startDOM){
-                    startDOM = false;
-                    output.write("</topic>");
-                    output = ditaFileOutput;
-                    processDOM();
+                    processMeta(endHead());
                 }else if (!hasWritten){
-                    output = ditaFileOutput;
-                    processDOM();
+                    processMeta(new MetaElement());
                 }
             }
 
-            output.write(LESS_THAN + SLASH + qName
-                    + GREATER_THAN);
+            if (startDOM) {
+                headStack.pop();
+            } else {
+                output.write(LESS_THAN + SLASH + qName
+                        + GREATER_THAN);
+            }
 
 
         } catch (final Exception e) {
@@ -237,192 +248,141 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
         }
     }
 
-    private void processDOM() {
-        try{
-            final DocumentBuilderFactory factory = DocumentBuilderFactory
-                    .newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc;
-
-            if (strOutput.getBuffer().length() > 0){
-                builder.setErrorHandler(new DITAOTXMLErrorHandler(strOutput.toString(), logger));
-                doc = builder.parse(new InputSource(new StringReader(strOutput.toString())));
-            }else {
-                doc = builder.newDocument();
-                doc.appendChild(doc.createElement("topic"));
-            }
-
-            final Node root = doc.getDocumentElement();
-
-            final Iterator<Map.Entry<String, Node>> iter = metaTable.entrySet().iterator();
-
-            while (iter.hasNext()){
-                final Map.Entry<String, Node> entry = iter.next();
-                moveMeta(entry,root);
-            }
-
-            outputMeta(root);
-
-        } catch (final Exception e){
-            logger.logError(e.getMessage(), e) ;
-        }
-        hasWritten = true;
+    /**
+     * Stop collecting the topic head.
+     *
+     * @return topic head root
+     */
+    private MetaElement endHead() {
+        startDOM = false;
+        final MetaElement root = headStack.getLast();
+        headStack.clear();
+        return root;
     }
 
-
-    private void outputMeta(final Node root) throws IOException {
-        final NodeList children = root.getChildNodes();
-        Node child = null;
-        for (int i = 0; i<children.getLength(); i++){
-            child = children.item(i);
-            switch (child.getNodeType()){
-            case Node.TEXT_NODE:
-                output((Text) child); break;
-            case Node.PROCESSING_INSTRUCTION_NODE:
-                output((ProcessingInstruction) child); break;
-            case Node.ELEMENT_NODE:
-                output((Element) child); break;
-            }
+    /**
+     * Merge metadata into topic head and write the head to output.
+     *
+     * @param root topic head root
+     */
+    private void processMeta(final MetaElement root) throws IOException {
+        hasWritten = true;
+        for (final MetaEntry entry: metadata.entries){
+            moveMeta(entry, root);
+        }
+        for (final Object child: root.children){
+            output(child);
         }
-
-    }
-
-    private void output(final ProcessingInstruction instruction) throws IOException{
-        output.write("<?"+instruction.getTarget()+" "+instruction.getData()+"?>");
-    }
-
-
-    private void output(final Text text) throws IOException{
-        output.write(StringUtils.escapeXML(text.getData()));
     }
 
-
-    private void output(final Element elem) throws IOException{
-        output.write("<"+elem.getNodeName());
-        final NamedNodeMap attrMap = elem.getAttributes();
-        for (int i = 0; i<attrMap.getLength(); i++){
-            //edited on 2010-08-04 for bug:3038941 start
-            //get node name
-            final String nodeName = attrMap.item(i).getNodeName();
-            //escape entity to avoid entity resolving
-            final String nodeValue = StringUtils.escapeXML(attrMap.item(i).getNodeValue());
-            //write into target file
-            output.write(" "+ nodeName
-                    +"=\""+ nodeValue
-                    +"\"");
-            //edited on 2010-08-04 for bug:3038941 end
-        }
-        output.write(">");
-        final NodeList children = elem.getChildNodes();
-        Node child;
-        for (int j = 0; j<children.getLength(); j++){
-            child = children.item(j);
-            switch (child.getNodeType()){
-            case Node.TEXT_NODE:
-                output((Text) child); break;
-            case Node.PROCESSING_INSTRUCTION_NODE:
-                output((ProcessingInstruction) child); break;
-            case Node.ELEMENT_NODE:
-                output((Element) child); break;
+    private void output(final Object node) throws IOException{
+        if (node instanceof MetaElement) {
+            final MetaElement elem = (MetaElement) node;
+            output.write(LESS_THAN + elem.name);
+            for (int i = 0; i < elem.atts.length; i += 2){
+                //escape entity to avoid entity resolving
+                output.write(STRING_BLANK + elem.atts[i]
+                        + EQUAL + QUOTATION + StringUtils.escapeXML(elem.atts[i + 1])
+                        + QUOTATION);
+            }
+            output.write(GREATER_THAN);
+            for (final Object child: elem.children){
+                output(child);
             }
+            output.write(LESS_THAN + SLASH + elem.name + GREATER_THAN);
+        } else {
+            output.write((String) node);
         }
-
-        output.write("</"+elem.getNodeName()+">");
     }
 
-    private void moveMeta(final Entry<String, Node> entry, final Node root) {
-        final List<String> metaPath = moveTable.get(entry.getKey());
-        if (metaPath == null){
-            // for the elements which doesn't need to be moved to topic
-            // the processor need to neglect them.
-            return;
-        }
-        final Iterator<String> token = metaPath.iterator();
-        Node parent = null;
-        Node child = root;
-        Node current = null;
-        NodeList childElements;
+    private void moveMeta(final MetaEntry entry, final MetaElement root) {
+        MetaElement parent = null;
+        MetaElement child = root;
         boolean createChild = false;
 
-        while (token.hasNext()){// find the element, if cannot find create one.
-            final String next = token.next();
+        for (final String next: entry.path){// find the element, if cannot find create one.
             parent = child;
             final Integer nextIndex = compareTable.get(next);
-            Integer currentIndex = null;
-            childElements = parent.getChildNodes();
-            for (int i = 0; i < childElements.getLength(); i++){
-                String name = null;
-                current = childElements.item(i);
-                if (current.getNodeType() == Node.ELEMENT_NODE){
-                    name = current.getNodeName();
+            // position of the first following element, -1 to append
+            int position = -1;
+            for (int i = 0; i < parent.children.size(); i++){
+                if (!(parent.children.get(i) instanceof MetaElement)) {
+                    continue;
                 }
-
-                if (name != null && current.getNodeName().equals(next)){
-                    child = current;
-                    break;
-                } else if (name != null){
-                    currentIndex = compareTable.get(name);
-                    if (currentIndex == null){
-                        // if compareTable doesn't contains the number for current name
-                        // change to generalized element name to search again
-                        final String classValue = ((Element)current).getAttribute(ATTRIBUTE_NAME_CLASS);
-                        String generalizedName = classValue.substring(classValue.indexOf(SLASH)+1);
-                        generalizedName = generalizedName.substring(0, generalizedName.indexOf(STRING_BLANK));
-                        currentIndex = compareTable.get(generalizedName);
-                    }
-                    if(currentIndex==null){
-                        // if there is no generalized tag corresponding this tag
-                        logger.logError(MessageUtils.getInstance().getMessage("DOTJ038E", name).toString());
-                        break;
-                    }
-                    if(currentIndex.compareTo(nextIndex) > 0){
-                        // if currentIndex > nextIndex
-                        // it means we have passed to location to insert
-                        // and we don't need to go to following child nodes
-                        break;
+                final MetaElement current = (MetaElement) parent.children.get(i);
+                if (current.name.equals(next)){
+                    if (current.fragment) {
+                        // copy inserted metadata before changing it
+                        child = new MetaElement(current.name, current.atts, new ArrayList<Object>(current.children), false);
+                        parent.children.set(i, child);
+                    } else {
+                        child = current;
                     }
+                    break;
+                }
+                Integer currentIndex = compareTable.get(current.name);
+                if (currentIndex == null){
+                    // if compareTable doesn't contains the number for current name
+                    // change to generalized element name to search again
+                    final String generalizedName = getGeneralizedName(current.getAttribute(ATTRIBUTE_NAME_CLASS));
+                    currentIndex = generalizedName != null ? compareTable.get(generalizedName) : null;
+                }
+                if(currentIndex==null){
+                    // if there is no generalized tag corresponding this tag
+                    logger.logError(MessageUtils.getInstance().getMessage("DOTJ038E", current.name).toString());
+                    break;
+                }
+                if(currentIndex.compareTo(nextIndex) > 0){
+                    // if currentIndex > nextIndex
+                    // it means we have passed to location to insert
+                    // and we don't need to go to following child nodes
+                    position = i;
+                    break;
                 }
             }
 
             if (child==parent){
                 // if there is no such child under current element,
                 // create one
-                child = parent.getOwnerDocument().createElement(next);
-                ((Element)child).setAttribute(ATTRIBUTE_NAME_CLASS,"- topic/"+next+" ");
-
-                if (current == null ||
-                        currentIndex == null ||
-                        nextIndex.compareTo(currentIndex)>= 0){
-                    parent.appendChild(child);
-                    current = null;
+                child = new MetaElement(next, new String[] { ATTRIBUTE_NAME_CLASS, "- topic/" + next + " " },
+                                        new ArrayList<Object>(), false);
+                if (position == -1){
+                    parent.children.add(child);
                 }else {
-                    parent.insertBefore(child, current);
-                    current = null;
+                    parent.children.add(position, child);
                 }
-
                 createChild = true;
             }
         }
 
-        // the root element of entry value is "stub"
-        // there isn't any types of node other than Element under "stub"
-        // when it is created. Therefore, the item here doesn't need node
-        // type check.
-        final NodeList list = entry.getValue().getChildNodes();
-        for (int i = 0; i < list.getLength(); i++){
-            Node item = list.item(i);
-            if ((i == 0 && createChild) || MapMetaReader.uniqueSet.contains(entry.getKey()) ){
-                item = parent.getOwnerDocument().importNode(item,true);
-                parent.replaceChild(item, child);
+        for (int i = 0; i < entry.items.size(); i++){
+            final MetaElement item = entry.items.get(i);
+            final int position = parent.children.indexOf(child);
+            if ((i == 0 && createChild) || entry.unique){
+                parent.children.set(position, item);
                 child = item; // prevent insert action still want to operate child after it is removed.
             } else {
-                item = parent.getOwnerDocument().importNode(item,true);
-                ((Element) parent).insertBefore(item, child);
+                parent.children.add(position, item);
             }
         }
 
     }
 
+    /**
+     * Get generalized element name from class attribute value.
+     *
+     * @param classValue class attribute value
+     * @return generalized element name, {@code null} if class value is not valid
+     */
+    private static String getGeneralizedName(final String classValue) {
+        final int start = classValue.indexOf(SLASH);
+        if (start == -1) {
+            return null;
+        }
+        final int end = classValue.indexOf(STRING_BLANK, start);
+        return end != -1 ? classValue.substring(start + 1, end) : null;
+    }
+
 
     @Override
     public void endEntity(final String name) throws SAXException {
@@ -435,7 +395,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
     public void ignorableWhitespace(final char[] ch, final int start, final int length)
             throws SAXException {
         try {
-            output.write(ch, start, length);
+            write(new String(ch, start, length));
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }
@@ -447,7 +407,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
         String pi;
         try {
             pi = (data != null) ? target + STRING_BLANK + data : target;
-            output.write(LESS_THAN + QUESTION
+            write(LESS_THAN + QUESTION
                     + pi + QUESTION + GREATER_THAN);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
@@ -455,17 +415,21 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
     }
 
     /**
-     * @param content value {@code Hashtable<String, Node>}
+     * @param content value {@link Metadata} or {@code Hashtable<String, Node>}
      */
     @SuppressWarnings("unchecked")
     @Override
     public void setContent(final Content content) {
-        metaTable = (Hashtable<String, Node>) content.getValue();
-        if (metaTable == null) {
-            throw new IllegalArgumentException("Content value must be non-null Hashtable<String, Node>");
+        final Object value = content.getValue();
+        if (value instanceof Metadata) {
+            metadata = (Metadata) value;
+        } else if (value instanceof Map) {
+            metadata = new Metadata((Map<String, ? extends Node>) value);
+        } else {
+            throw new IllegalArgumentException("Content value must be non-null Metadata or Hashtable<String, Node>");
         }
     }
-    
+
     private void setMatch(final String match) {
         int index = 0;
         matchList = new ArrayList<String>(INT_16);
@@ -488,7 +452,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
     @Override
     public void skippedEntity(final String name) throws SAXException {
         try {
-            output.write(StringUtils.getEntity(name));
+            write(StringUtils.getEntity(name));
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }
@@ -498,7 +462,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
     public void startCDATA() throws SAXException {
         insideCDATA = true;
         try{
-            output.write(CDATA_HEAD);
+            write(CDATA_HEAD);
         }catch(final Exception e){
             logger.logError(e.getMessage(), e) ;
         }
@@ -525,8 +489,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
                             TOPIC_TITLEALTS.matches(classAttrValue)
                             )){
                 startDOM = true;
-                output = strOutput;
-                output.write("<topic>");
+                headStack.push(new MetaElement());
             }
 
             if ( startTopic && classAttrValue != null && !hasWritten &&(
@@ -535,12 +498,9 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
                     TOPIC_BODY.matches(classAttrValue)
                     )){
                 if (startDOM){
-                    startDOM = false;
-                    output.write("</topic>");
-                    output = ditaFileOutput;
-                    processDOM();
+                    processMeta(endHead());
                 }else{
-                    processDOM();
+                    processMeta(new MetaElement());
                 }
 
             }
@@ -559,7 +519,13 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
                 }
             }
 
-            outputElement(qName, atts);
+            if (startDOM) {
+                final MetaElement elem = new MetaElement(qName, atts);
+                headStack.peek().children.add(elem);
+                headStack.push(elem);
+            } else {
+                outputElement(qName, atts);
+            }
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }
@@ -591,7 +557,7 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
         try {
             needResolveEntity = StringUtils.checkEntity(name);
             if(!needResolveEntity){
-                output.write(StringUtils.getEntity(name));
+                write(StringUtils.getEntity(name));
             }
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
@@ -626,12 +592,11 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
             needResolveEntity = true;
             hasWritten = false;
             startDOM = false;
+            headStack.clear();
             inputFile = new File(file);
             outputFile = new File(file + FILE_EXTENSION_TEMP);
             fileOutput = new FileOutputStream(outputFile);
-            ditaFileOutput = new OutputStreamWriter(fileOutput, UTF8);
-            strOutput = new StringWriter();
-            output = ditaFileOutput;
+            output = new OutputStreamWriter(fileOutput, UTF8);
 
             topicIdList.clear();
             reader.parse(inputFile.toURI().toString());
@@ -643,6 +608,8 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
             if(!outputFile.renameTo(inputFile)){
                 logger.logError(MessageUtils.getInstance().getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
             }
+            DocumentStore.invalidate(inputFile);
+            IdIndex.getInstance().remove(inputFile);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e) ;
         }finally {
@@ -653,4 +620,159 @@ public final class DitaMetaWriter extends AbstractXMLWriter {
             }
         }
     }
+
+    /**
+     * Pre-compiled topic metadata. Metadata elements are converted from DOM once and merged into
+     * topic heads without building a DOM for the topic. Comments and CDATA sections in metadata
+     * elements are not kept.
+     *
+     * <p>Instances are immutable and thread-safe.</p>
+     *
+     * @since 2.0
+     */
+    public static final class Metadata {
+
+        private final List<MetaEntry> entries;
+
+        /**
+         * Compile metadata.
+         *
+         * @param metaTable metadata stub elements by metadata class matcher
+         */
+        public Metadata(final Map<String, ? extends Node> metaTable) {
+            final List<MetaEntry> es = new ArrayList<MetaEntry>(metaTable.size());
+            for (final Map.Entry<String, ? extends Node> entry: metaTable.entrySet()) {
+                final List<String> path = moveTable.get(entry.getKey());
+                if (path == null){
+                    // for the elements which doesn't need to be moved to topic
+                    // the processor need to neglect them.
+                    continue;
+                }
+                // the root element of entry value is "stub" and
+                // there isn't any types of node other than Element under it
+                final List<MetaElement> items = new ArrayList<MetaElement>();
+                final NodeList list = entry.getValue().getChildNodes();
+                for (int i = 0; i < list.getLength(); i++){
+                    if (list.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                        items.add(new MetaElement((Element) list.item(i)));
+                    }
+                }
+                es.add(new MetaEntry(path, MapMetaReader.uniqueSet.contains(entry.getKey()), items));
+            }
+            entries = Collections.unmodifiableList(es);
+        }
+
+    }
+
+    /**
+     * Metadata elements of a single type and their location in topic head.
+     */
+    private static final class MetaEntry {
+        /** Element names from topic head to metadata element */
+        final List<String> path;
+        /** Whether metadata replaces existing topic metadata */
+        final boolean unique;
+        final List<MetaElement> items;
+
+        MetaEntry(final List<String> path, final boolean unique, final List<MetaElement> items) {
+            this.path = path;
+            this.unique = unique;
+            this.items = Collections.unmodifiableList(items);
+        }
+    }
+
+    /**
+     * Element in topic head or in metadata. Attributes are sorted by name like in DOM attribute maps.
+     */
+    private static final class MetaElement {
+        final String name;
+        /** Attribute names and unescaped values in alternating order. */
+        final String[] atts;
+        /** Child markup as serialized {@link String} and child elements as {@link MetaElement}. */
+        final List<Object> children;
+        /** Whether element is shared metadata and must not be changed */
+        final boolean fragment;
+
+        MetaElement(final String name, final String[] atts, final List<Object> children, final boolean fragment) {
+            this.name = name;
+            this.atts = atts;
+            this.children = children;
+            this.fragment = fragment;
+        }
+
+        /** Create topic head root. */
+        MetaElement() {
+            this(TOPIC_TOPIC.localName, new String[0], new ArrayList<Object>(), false);
+        }
+
+        /** Create topic head element. */
+        MetaElement(final String qName, final Attributes atts) {
+            this(qName, sortAttributes(atts), new ArrayList<Object>(), false);
+        }
+
+        /** Create metadata element. */
+        MetaElement(final Element elem) {
+            this(elem.getNodeName(), getAttributes(elem), getChildren(elem), true);
+        }
+
+        String getAttribute(final String qName) {
+            for (int i = 0; i < atts.length; i += 2) {
+                if (atts[i].equals(qName)) {
+                    return atts[i + 1];
+                }
+            }
+            return "";
+        }
+
+        private static String[] sortAttributes(final Attributes atts) {
+            final String[][] sorted = new String[atts.getLength()][];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = new String[] { atts.getQName(i), atts.getValue(i) };
+            }
+            Arrays.sort(sorted, new Comparator<String[]>() {
+                @Override
+                public int compare(final String[] o1, final String[] o2) {
+                    return o1[0].compareTo(o2[0]);
+                }
+            });
+            final String[] a = new String[sorted.length * 2];
+            for (int i = 0; i < sorted.length; i++) {
+                a[i * 2] = sorted[i][0];
+                a[i * 2 + 1] = sorted[i][1];
+            }
+            return a;
+        }
+
+        private static String[] getAttributes(final Element elem) {
+            final NamedNodeMap attrMap = elem.getAttributes();
+            final String[] a = new String[attrMap.getLength() * 2];
+            for (int i = 0; i < attrMap.getLength(); i++) {
+                a[i * 2] = attrMap.item(i).getNodeName();
+                a[i * 2 + 1] = attrMap.item(i).getNodeValue();
+            }
+            return a;
+        }
+
+        private static List<Object> getChildren(final Element elem) {
+            final List<Object> res = new ArrayList<Object>();
+            final NodeList children = elem.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                final Node child = children.item(i);
+                switch (child.getNodeType()) {
+                case Node.TEXT_NODE:
+                    res.add(StringUtils.escapeXML(((Text) child).getData()));
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    final ProcessingInstruction pi = (ProcessingInstruction) child;
+                    res.add(LESS_THAN + QUESTION + pi.getTarget() + STRING_BLANK + pi.getData() + QUESTION + GREATER_THAN);
+                    break;
+                case Node.ELEMENT_NODE:
+                    res.add(new MetaElement((Element) child));
+                    break;
+                }
+            }
+            return Collections.unmodifiableList(res);
+        }
+    }
+
 }
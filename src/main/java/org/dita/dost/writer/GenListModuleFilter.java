@@ -31,6 +31,7 @@ import org.dita.dost.module.Content;
 import org.dita.dost.util.Configuration.Mode;
 import org.dita.dost.util.DitaClass;
 import org.dita.dost.util.FileUtils;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.Job.FileInfo;
 import org.dita.dost.util.Job.FileInfo.Builder;
 import org.dita.dost.util.KeyDef;
@@ -135,6 +136,8 @@ public final class GenListModuleFilter extends AbstractXMLFilter {
     private boolean isRootElement = true;
     private DitaClass rootClass = null;
     private boolean isStartDocument = false;
+    /** IDs in the current document. */
+    private final IdIndex.Collector idCollector = new IdIndex.Collector();
 
     /**
      * Constructor.
@@ -188,6 +191,7 @@ public final class GenListModuleFilter extends AbstractXMLFilter {
         isRootElement = true;
         rootClass = null;
         isStartDocument = false;
+        idCollector.reset();
         // Don't clean:
         // resourceOnlySet
         // normalProcessingSet
@@ -234,6 +238,15 @@ public final class GenListModuleFilter extends AbstractXMLFilter {
         this.outputUtils = outputUtils;
     }
 
+    /**
+     * Get IDs collected from the current document.
+     * 
+     * @return ID collector
+     */
+    public IdIndex.Collector getIdCollector() {
+        return idCollector;
+    }
+
     /**
      * Get out file set.
      * 
@@ -254,6 +267,33 @@ public final class GenListModuleFilter extends AbstractXMLFilter {
         return res;
     }
 
+    /**
+     * List of files with "@processing-role=resource-only" collected since the last
+     * {@link #resetProcessingRole()}, including files also referenced with normal processing role.
+     *
+     * @return resource-only references
+     */
+    public Set<File> getProcessingRoleResourceOnlySet() {
+        return new HashSet<File>(resourceOnlySet);
+    }
+
+    /**
+     * List of files with "@processing-role=normal" collected since the last {@link #resetProcessingRole()}.
+     *
+     * @return normal processing references
+     */
+    public Set<File> getProcessingRoleNormalSet() {
+        return new HashSet<File>(normalProcessingSet);
+    }
+
+    /**
+     * Reset processing role information that is not cleared by {@link #reset()}.
+     */
+    public void resetProcessingRole() {
+        resourceOnlySet.clear();
+        normalProcessingSet.clear();
+    }
+
     /**
      * Get all targets except copy-to.
      * 
@@ -265,15 +305,15 @@ public final class GenListModuleFilter extends AbstractXMLFilter {
         nonCopytoSet.addAll(nonConrefCopytoTargets);
         for (final Builder b: fileInfoMap.values()) {
             final FileInfo f = b.build();
-            if (f.isConrefTarget) {
-                nonCopytoSet.add(new Reference(f.file.getPath(), f.format));
+            if (f.isConrefTarget()) {
+                nonCopytoSet.add(new Reference(f.file.getPath(), f.getFormat()));
             }
         }
         for (final File f : copytoMap.values()) {
-            nonCopytoSet.add(new Reference(f.getPath(), fileInfoMap.get(f.getPath()).build().format));
+            nonCopytoSet.add(new Reference(f.getPath(), fileInfoMap.get(f.getPath()).build().getFormat()));
         }
         for (final File f : ignoredCopytoSourceSet) {
-            nonCopytoSet.add(new Reference(f.getPath(), fileInfoMap.get(f.getPath()).build().format));
+            nonCopytoSet.add(new Reference(f.getPath(), fileInfoMap.get(f.getPath()).build().getFormat()));
         }
 //        for (final String filename : subsidiarySet) {
 //            // only activated on /generateout:3 & is out file.
@@ -481,6 +521,7 @@ public final class GenListModuleFilter extends AbstractXMLFilter {
         final String classValue = atts.getValue(ATTRIBUTE_NAME_CLASS);
 
         handleRootElement(localName, atts);
+        idCollector.startElement(uri, localName, qName, atts);
 
 //        // when meets topic tag
 //        if (TOPIC_TOPIC.matches(classValue)) {
@@ -6,23 +6,16 @@ package org.dita.dost.writer;
 
 import static org.dita.dost.util.Constants.*;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.net.URI;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
-
 import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.module.Content;
+import org.dita.dost.util.ImageMetadata;
 import org.dita.dost.util.OutputUtils;
 import org.dita.dost.util.XMLUtils;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
@@ -35,7 +28,6 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
     private static final String ATTR_HORIZONTAL_DPI = "horizontal-dpi";
     private static final String ATTR_IMAGE_HEIGHT = "image-height";
     private static final String ATTR_IMAGE_WIDTH = "image-width";
-    private static final float MM_TO_INCH = 25.4f;
     public static final String DITA_OT_PREFIX = "dita-ot";
     public static final String DITA_OT_NS = "http://dita-ot.sourceforge.net/ns/201007/dita-ot";
     
@@ -121,28 +113,17 @@ public final class ImageMetadataFilter extends AbstractXMLFilter {
         logger.logInfo("Reading " + imgInput);
         final XMLUtils.AttributesBuilder a = new XMLUtils.AttributesBuilder();
         try {
-            final ImageInputStream iis = ImageIO.createImageInputStream(imgInput);
-            final Iterator<ImageReader> i = ImageIO.getImageReaders(iis);
-            if (!i.hasNext()) {
+            final ImageMetadata.Info info = ImageMetadata.getInstance().get(imgInput);
+            if (info == null) {
                 logger.logInfo("Image " + imgInput + " format not supported");
             } else {
-                final ImageReader r = i.next();
-                r.setInput(iis);
-                final BufferedImage img = r.read(0);
-                a.add(DITA_OT_NS, ATTR_IMAGE_WIDTH, DITA_OT_PREFIX + ":" + ATTR_IMAGE_WIDTH, "CDATA", Integer.toString(img.getWidth()));
-                a.add(DITA_OT_NS, ATTR_IMAGE_HEIGHT, DITA_OT_PREFIX + ":" + ATTR_IMAGE_HEIGHT, "CDATA", Integer.toString(img.getHeight()));
-                final Element node = (Element) r.getImageMetadata(0).getAsTree("javax_imageio_1.0");
-                final NodeList hs = node.getElementsByTagName("HorizontalPixelSize");
-                if(hs != null && hs.getLength() == 1) {
-                    final float v =  Float.parseFloat(((Element) hs.item(0)).getAttribute("value"));
-                    final int dpi = Math.round(MM_TO_INCH / v);
-                    a.add(DITA_OT_NS, ATTR_HORIZONTAL_DPI, DITA_OT_PREFIX + ":" + ATTR_HORIZONTAL_DPI, "CDATA", Integer.toString(dpi));
+                a.add(DITA_OT_NS, ATTR_IMAGE_WIDTH, DITA_OT_PREFIX + ":" + ATTR_IMAGE_WIDTH, "CDATA", Integer.toString(info.getWidth()));
+                a.add(DITA_OT_NS, ATTR_IMAGE_HEIGHT, DITA_OT_PREFIX + ":" + ATTR_IMAGE_HEIGHT, "CDATA", Integer.toString(info.getHeight()));
+                if (info.getHorizontalDpi() != -1) {
+                    a.add(DITA_OT_NS, ATTR_HORIZONTAL_DPI, DITA_OT_PREFIX + ":" + ATTR_HORIZONTAL_DPI, "CDATA", Integer.toString(info.getHorizontalDpi()));
                 }
-                final NodeList vs = node.getElementsByTagName("VerticalPixelSize");
-                if(vs != null && vs.getLength() == 1) {
-                    final float v =  Float.parseFloat(((Element) vs.item(0)).getAttribute("value"));
-                    final int dpi = Math.round(MM_TO_INCH / v);
-                    a.add(DITA_OT_NS, ATTR_VERTICAL_DPI, DITA_OT_PREFIX + ":" + ATTR_VERTICAL_DPI, "CDATA", Integer.toString(dpi));
+                if (info.getVerticalDpi() != -1) {
+                    a.add(DITA_OT_NS, ATTR_VERTICAL_DPI, DITA_OT_PREFIX + ":" + ATTR_VERTICAL_DPI, "CDATA", Integer.toString(info.getVerticalDpi()));
                 }
             }
         } catch (final Exception e) {
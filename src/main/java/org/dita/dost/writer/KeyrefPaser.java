@@ -28,15 +28,11 @@ import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
 import org.dita.dost.util.DitaClass;
 import org.dita.dost.util.FileUtils;
+import org.dita.dost.util.KeyDefinition;
 import org.dita.dost.util.MergeUtils;
 import org.dita.dost.util.StringUtils;
 import org.dita.dost.util.URLUtils;
 import org.dita.dost.util.XMLUtils;
-import org.w3c.dom.Attr;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
@@ -111,7 +107,7 @@ public final class KeyrefPaser extends AbstractXMLFilter {
         keyrefInfos = Collections.unmodifiableList(ki);
     }
         
-    private Map<String, Element> definitionMap;
+    private Map<String, KeyDefinition> definitionMap;
     private File tempDir;
     /** File name with relative path to the temporary directory of input file. */
     private File inputFile;
@@ -161,7 +157,7 @@ public final class KeyrefPaser extends AbstractXMLFilter {
     private final Stack<Boolean> hasSubElem;
 
     /** Current key definition. */
-    private Element elem;
+    private KeyDefinition elem;
 
     /** Set of link targets which are not resource-only */
     private Set<String> normalProcessingRoleTargets;
@@ -183,7 +179,7 @@ public final class KeyrefPaser extends AbstractXMLFilter {
         throw new UnsupportedOperationException();
     }
     
-    public void setKeyDefinition(final Map<String, Element> definitionMap) {
+    public void setKeyDefinition(final Map<String, KeyDefinition> definitionMap) {
         this.definitionMap = definitionMap;
     }
     
@@ -257,19 +253,15 @@ public final class KeyrefPaser extends AbstractXMLFilter {
             if (!validKeyref.isEmpty() && validKeyref.peek()) {
                 // Key reference is valid,
                 // need to pull matching content from the key definition
-                NodeList nodeList = null;
+                List<KeyDefinition> nodeList = null;
                 // If current element name doesn't equal the key reference element
                 // just grab the content from the matching element of key definition
                 if(!name.equals(elemName.peek())){
                     nodeList = elem.getElementsByTagName(name);
-                    if(nodeList.getLength() > 0){
-                        final Node node = nodeList.item(0);
-                        final NodeList nList = node.getChildNodes();
-                        int index = 0;
-                        while(index < nList.getLength()){
-                            final Node n = nList.item(index++);
-                            if(n.getNodeType() == Node.TEXT_NODE){
-                                final char[] ch = n.getNodeValue().toCharArray();
+                    if(!nodeList.isEmpty()){
+                        for (final Object n: nodeList.get(0).getChildren()) {
+                            if(n instanceof String){
+                                final char[] ch = ((String) n).toCharArray();
                                 getContentHandler().characters(ch, 0, ch.length);
                                 break;
                             }
@@ -279,14 +271,14 @@ public final class KeyrefPaser extends AbstractXMLFilter {
                     // Current element name equals the key reference element
                     // grab keyword or term from key definition
                     nodeList = elem.getElementsByTagName(TOPIC_KEYWORD.localName);
-                    if(nodeList.getLength() == 0 ){
+                    if(nodeList.isEmpty()){
                         nodeList = elem.getElementsByTagName(TOPIC_TERM.localName);
                     }
                     if(!hasSubElem.peek()){
-                        if(nodeList.getLength() > 0){
+                        if(!nodeList.isEmpty()){
                             if(currentElement != null && !currentElement.isRefType){
                                 // only one keyword or term is used.
-                                domToSax((Element)nodeList.item(0), false);
+                                domToSax(nodeList.get(0), false);
                             } else if(currentElement != null){
                                 // If the key reference element carries href attribute
                                 // all keyword or term are used.
@@ -296,11 +288,8 @@ public final class KeyrefPaser extends AbstractXMLFilter {
                                     getContentHandler().startElement(NULL_NS_URI, TOPIC_LINKTEXT.localName, TOPIC_LINKTEXT.localName, atts);
                                 }
                                 if (!currentElement.isEmpty) {
-                                    for(int index =0; index<nodeList.getLength(); index++){
-                                        final Node node = nodeList.item(index);
-                                        if(node.getNodeType() == Node.ELEMENT_NODE){
-                                            domToSax((Element)node, true);
-                                        }
+                                    for(final KeyDefinition node: nodeList){
+                                        domToSax(node, true);
                                     }
                                 }
                                 if(TOPIC_LINK.matches(currentElement.type)){
@@ -311,9 +300,9 @@ public final class KeyrefPaser extends AbstractXMLFilter {
                             if(currentElement != null && TOPIC_LINK.matches(currentElement.type)){
                                 // If the key reference element is link or its specification,
                                 // should pull in the linktext
-                                final NodeList linktext = elem.getElementsByTagName(TOPIC_LINKTEXT.localName);
-                                if(linktext.getLength()>0){
-                                    domToSax((Element)linktext.item(0), true);
+                                final List<KeyDefinition> linktext = elem.getElementsByTagName(TOPIC_LINKTEXT.localName);
+                                if(!linktext.isEmpty()){
+                                    domToSax(linktext.get(0), true);
                                 }else if (!StringUtils.isEmptyString(elem.getAttribute(ATTRIBUTE_NAME_NAVTITLE))){
                                     final AttributesImpl atts = new AttributesImpl();
                                     XMLUtils.addOrSetAttribute(atts, ATTRIBUTE_NAME_CLASS, TOPIC_LINKTEXT.toString());
@@ -325,9 +314,9 @@ public final class KeyrefPaser extends AbstractXMLFilter {
                                     getContentHandler().endElement(NULL_NS_URI, TOPIC_LINKTEXT.localName, TOPIC_LINKTEXT.localName);
                                 }
                             }else if(currentElement != null && currentElement.isRefType){
-                                final NodeList linktext = elem.getElementsByTagName(TOPIC_LINKTEXT.localName);
-                                if(linktext.getLength()>0){
-                                    domToSax((Element)linktext.item(0), false);
+                                final List<KeyDefinition> linktext = elem.getElementsByTagName(TOPIC_LINKTEXT.localName);
+                                if(!linktext.isEmpty()){
+                                    domToSax(linktext.get(0), false);
                                 }else{
                                     if (elem.getAttribute(ATTRIBUTE_NAME_NAVTITLE) != null) {
                                         final char[] ch = elem.getAttribute(ATTRIBUTE_NAME_NAVTITLE).toCharArray();
@@ -411,7 +400,7 @@ public final class KeyrefPaser extends AbstractXMLFilter {
 
             // If definition is not null
             if(elem!=null){
-                final NamedNodeMap namedNodeMap = elem.getAttributes();
+                final Attributes namedNodeMap = elem.getAttributes();
                 // first resolve the keyref attribute
                 if (currentElement != null && currentElement.refAttr != null) {
                     final URI target = keyMap.get(keyName);
@@ -494,11 +483,10 @@ public final class KeyrefPaser extends AbstractXMLFilter {
                     if (currentElement != null && MAP_TOPICREF.matches(currentElement.type)) {
                         // @keyref in topicref
                         for (int index = 0; index < namedNodeMap.getLength(); index++) {
-                            final Node node = namedNodeMap.item(index);
-                            if (node.getNodeType() == Node.ATTRIBUTE_NODE
-                                    && !no_copy.contains(node.getNodeName())) {
-                                XMLUtils.removeAttribute(resAtts, node.getNodeName());
-                                XMLUtils.addOrSetAttribute(resAtts, node);
+                            final String attName = namedNodeMap.getQName(index);
+                            if (!no_copy.contains(attName)) {
+                                XMLUtils.removeAttribute(resAtts, attName);
+                                copyAttribute(resAtts, namedNodeMap, index);
                             }
                         }
                     } else {
@@ -507,26 +495,24 @@ public final class KeyrefPaser extends AbstractXMLFilter {
                         if (currentElement != null && currentElement.isRefType) {
                             // current element with href attribute
                             for (int index = 0; index < namedNodeMap.getLength(); index++) {
-                                final Node node = namedNodeMap.item(index);
-                                if (node.getNodeType() == Node.ATTRIBUTE_NODE
-                                        && !no_copy_topic.contains(node.getNodeName())
-                                        && (node.getNodeName().equals(currentElement.refAttr) || resAtts.getIndex(node.getNodeName()) == -1)) {
-                                    XMLUtils.removeAttribute(resAtts, node.getNodeName());
-                                    XMLUtils.addOrSetAttribute(resAtts, node);
+                                final String attName = namedNodeMap.getQName(index);
+                                if (!no_copy_topic.contains(attName)
+                                        && (attName.equals(currentElement.refAttr) || resAtts.getIndex(attName) == -1)) {
+                                    XMLUtils.removeAttribute(resAtts, attName);
+                                    copyAttribute(resAtts, namedNodeMap, index);
                                 }
                             }
                         } else if (currentElement != null && !currentElement.isRefType) {
                             // current element without href attribute
                             // so attributes about href should not be copied.
                             for (int index = 0; index < namedNodeMap.getLength(); index++) {
-                                final Node node = namedNodeMap.item(index);
-                                if (node.getNodeType() == Node.ATTRIBUTE_NODE
-                                        && !no_copy_topic.contains(node.getNodeName())
-                                        && !(node.getNodeName().equals(ATTRIBUTE_NAME_SCOPE)
-                                                || node.getNodeName().equals(ATTRIBUTE_NAME_FORMAT)
-                                                || node.getNodeName().equals(ATTRIBUTE_NAME_TYPE))) {
-                                    XMLUtils.removeAttribute(resAtts, node.getNodeName());
-                                    XMLUtils.addOrSetAttribute(resAtts, node);
+                                final String attName = namedNodeMap.getQName(index);
+                                if (!no_copy_topic.contains(attName)
+                                        && !(attName.equals(ATTRIBUTE_NAME_SCOPE)
+                                                || attName.equals(ATTRIBUTE_NAME_FORMAT)
+                                                || attName.equals(ATTRIBUTE_NAME_TYPE))) {
+                                    XMLUtils.removeAttribute(resAtts, attName);
+                                    copyAttribute(resAtts, namedNodeMap, index);
                                 }
                             }
                         }
@@ -551,47 +537,54 @@ public final class KeyrefPaser extends AbstractXMLFilter {
     // Private methods ---------------------------------------------------------
 
     /**
-     * Serialize DOM node into a SAX stream.
+     * Copy attribute from key definition.
+     * 
+     * @param atts attributes to add to
+     * @param src key definition attributes
+     * @param index attribute index in key definition attributes
+     */
+    private static void copyAttribute(final AttributesImpl atts, final Attributes src, final int index) {
+        XMLUtils.addOrSetAttribute(atts, src.getURI(index), src.getLocalName(index), src.getQName(index),
+                src.getType(index), src.getValue(index));
+    }
+
+    /**
+     * Serialize key definition element into a SAX stream.
      * 
      * @param elem element to serialize
      * @param retainElements {@code true} to serialize elements, {@code false} to only serialize text nodes.
      */
-    private void domToSax(final Element elem, final boolean retainElements) throws SAXException{
+    private void domToSax(final KeyDefinition elem, final boolean retainElements) throws SAXException{
         // use retainElements to indicate that whether there is need to copy the element name
         if(retainElements){
             final AttributesImpl atts = new AttributesImpl();
-            final NamedNodeMap namedNodeMap = elem.getAttributes();
+            final Attributes namedNodeMap = elem.getAttributes();
             for(int i=0; i<namedNodeMap.getLength(); i++){
-                final Attr a = (Attr) namedNodeMap.item(i);
-                if(a.getNodeName().equals(ATTRIBUTE_NAME_CLASS)) {
-                    XMLUtils.addOrSetAttribute(atts, ATTRIBUTE_NAME_CLASS, changeclassValue(a.getNodeValue()));
+                if(namedNodeMap.getQName(i).equals(ATTRIBUTE_NAME_CLASS)) {
+                    XMLUtils.addOrSetAttribute(atts, ATTRIBUTE_NAME_CLASS, changeclassValue(namedNodeMap.getValue(i)));
                 } else {
-                    XMLUtils.addOrSetAttribute(atts, a);
+                    copyAttribute(atts, namedNodeMap, i);
                 }
             }
-            getContentHandler().startElement(NULL_NS_URI, elem.getNodeName(), elem.getNodeName(), atts);
+            getContentHandler().startElement(NULL_NS_URI, elem.getName(), elem.getName(), atts);
         }
-        final NodeList nodeList = elem.getChildNodes();
-        for(int i=0; i<nodeList.getLength(); i++){
-            final Node node = nodeList.item(i);
-            if(node.getNodeType() == Node.ELEMENT_NODE){
-                final Element e = (Element) node;
+        for(final Object node: elem.getChildren()){
+            if(node instanceof KeyDefinition){
+                final KeyDefinition e = (KeyDefinition) node;
                 //special process for tm tag.
-                if(TOPIC_TM.matches(e)){
+                if(TOPIC_TM.matches(e.getAttribute(ATTRIBUTE_NAME_CLASS))){
                     domToSax(e, true);
                 }else{
                     // If the type of current node is ELEMENT_NODE, process current node.
                     domToSax(e, retainElements);
                 }
-                // If the type of current node is ELEMENT_NODE, process current node.
-                //stringBuffer.append(nodeToString((Element)node, retainElements));
-            } else if(node.getNodeType() == Node.TEXT_NODE){
-                final char[] ch = node.getNodeValue().toCharArray();
+            } else {
+                final char[] ch = ((String) node).toCharArray();
                 getContentHandler().characters(ch, 0, ch.length);
             }
         }
         if(retainElements) {
-            getContentHandler().endElement(NULL_NS_URI, elem.getNodeName(), elem.getNodeName());
+            getContentHandler().endElement(NULL_NS_URI, elem.getName(), elem.getName());
         }
     }
 
@@ -628,7 +621,7 @@ public final class KeyrefPaser extends AbstractXMLFilter {
     private String getFirstTopicId(final File topicFile) {
         final File path = topicFile.getParentFile();
         final String name = topicFile.getName();
-        final String topicId = MergeUtils.getFirstTopicId(name, path, false);
+        final String topicId = MergeUtils.getFirstTopicId(name, path);
         return topicId;
     }
     
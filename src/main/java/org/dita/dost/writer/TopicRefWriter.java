@@ -23,6 +23,8 @@ import org.dita.dost.exception.DITAOTException;
 import org.dita.dost.exception.DITAOTXMLErrorHandler;
 import org.dita.dost.log.MessageUtils;
 import org.dita.dost.module.Content;
+import org.dita.dost.util.DocumentStore;
+import org.dita.dost.util.IdIndex;
 import org.dita.dost.util.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -501,6 +503,8 @@ public final class TopicRefWriter extends AbstractXMLWriter {
                 logger.logError(MessageUtils.getInstance()
                         .getMessage("DOTJ009E", inputFile.getPath(), outputFile.getPath()).toString());
             }
+            DocumentStore.invalidate(inputFile);
+            IdIndex.getInstance().remove(inputFile);
         } catch (final Exception e) {
             logger.logError(e.getMessage(), e);
         } finally {
@@ -69,6 +69,9 @@
       <xsl:when test="$property = 'subtargetslist'">
         <xsl:apply-templates select="job/files/file[@subtarget = 'true']"/>
       </xsl:when>
+      <xsl:when test="$property = 'unchangedlist'">
+        <xsl:apply-templates select="job/files/file[@unchanged = 'true']"/>
+      </xsl:when>
       <xsl:otherwise>
         <xsl:message terminate="yes">ERROR: Unrecognized property '<xsl:value-of select="$property"/>'</xsl:message>
       </xsl:otherwise>
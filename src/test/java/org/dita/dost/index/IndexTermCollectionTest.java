@@ -25,23 +25,16 @@ import org.junit.Test;
 public class IndexTermCollectionTest {
 
     private File tempDir;
+    private IndexTermCollection i;
 
     @Before
     public void setUp() throws Exception {
         tempDir = TestUtils.createTempDir(getClass());
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
-        i.clear();
-    }
-
-    @Test
-    public void testGetInstantce() {
-        assertSame(IndexTermCollection.getInstantce(),
-                IndexTermCollection.getInstantce());
+        i = new IndexTermCollection();
     }
 
     @Test
     public void testClear() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         assertEquals(0, i.getTermList().size());
         i.addTerm(new IndexTerm());
         assertEquals(1, i.getTermList().size());
@@ -51,7 +44,6 @@ public class IndexTermCollectionTest {
 
     @Test
     public void testGetIndexType() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         assertNull(i.getIndexType());
         i.setIndexType("");
         assertEquals("", i.getIndexType());
@@ -61,14 +53,12 @@ public class IndexTermCollectionTest {
 
     @Test
     public void testSetIndexType() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         i.setIndexType(null);
         i.setIndexType("");
     }
 
     @Test
     public void testGetIndexClass() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         i.setIndexClass(null);
         assertNull(i.getIndexClass());
         i.setIndexClass("");
@@ -79,14 +69,12 @@ public class IndexTermCollectionTest {
 
     @Test
     public void testSetIndexClass() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         i.setIndexClass(null);
         i.setIndexClass("");
     }
 
     @Test
     public void testAddTerm() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         assertEquals(0, i.getTermList().size());
         i.addTerm(new IndexTerm());
         i.addTerm(new IndexTerm());
@@ -98,9 +86,60 @@ public class IndexTermCollectionTest {
         }
     }
 
+    @Test
+    public void testAddTermMerge() {
+        final IndexTerm first = term("term", "a.html");
+        first.addSubTerm(term("sub", "a.html"));
+        i.addTerm(first);
+        final IndexTerm second = term("term", "b.html");
+        second.addSubTerm(term("sub", "b.html"));
+        second.addSubTerm(term("other", "b.html"));
+        i.addTerm(second);
+        assertEquals(1, i.getTermList().size());
+        final IndexTerm merged = i.getTermList().get(0);
+        assertEquals(2, merged.getTargetList().size());
+        assertEquals(2, merged.getSubTerms().size());
+        assertEquals(2, merged.getSubTerms().get(0).getTargetList().size());
+    }
+
+    @Test
+    public void testAddTermConcurrent() throws Exception {
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int n = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        i.addTerm(term("term" + j % 100, "t" + n + ".html"));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread t: threads) {
+            t.join();
+        }
+        assertEquals(100, i.getTermList().size());
+        for (final IndexTerm term: i.getTermList()) {
+            assertEquals(threads.length, term.getTargetList().size());
+        }
+    }
+
+    @Test
+    public void testSortDeterministic() {
+        final IndexTerm b = term("b", "a.html");
+        b.setTermKey("key");
+        final IndexTerm a = term("a", "a.html");
+        a.setTermKey("key");
+        i.addTerm(b);
+        i.addTerm(a);
+        i.sort();
+        assertEquals(Arrays.asList(a, b), i.getTermList());
+    }
+
     @Test
     public void testGetTermList() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         i.clear();
         assertEquals(Collections.emptyList(), i.getTermList());
         final IndexTerm first = new IndexTerm();
@@ -117,7 +156,6 @@ public class IndexTermCollectionTest {
 
     @Test
     public void testSort() {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         i.clear();
         final IndexTerm first = new IndexTerm();
         first.setTermName("first");
@@ -134,7 +172,6 @@ public class IndexTermCollectionTest {
 
     @Test
     public void testOutputTerms() throws DITAOTException {
-        final IndexTermCollection i = IndexTermCollection.getInstantce();
         i.clear();
         i.setIndexClass(EclipseIndexWriter.class.getCanonicalName());
         i.setOutputFileRoot(new File(tempDir, "foo").getAbsolutePath());
@@ -149,6 +186,17 @@ public class IndexTermCollectionTest {
         i.outputTerms();
     }
 
+    private static IndexTerm term(final String name, final String target) {
+        final IndexTerm term = new IndexTerm();
+        term.setTermName(name);
+        term.setTermKey(name);
+        final IndexTermTarget t = new IndexTermTarget();
+        t.setTargetName(target);
+        t.setTargetURI(target);
+        term.addTarget(t);
+        return term;
+    }
+
     @Test @Ignore
     public void testSetOutputFileRoot() {
         fail("Not yet implemented");
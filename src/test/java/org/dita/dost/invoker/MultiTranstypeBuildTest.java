@@ -0,0 +1,61 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiTranstypeBuildTest {
+
+    private static final File resourceDir = TestUtils.getResourceDir(MultiTranstypeBuildTest.class);
+    private static final String[] TRANSTYPES = { "a", "b", "c", "d" };
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(getClass());
+    }
+
+    @Test
+    public void testRun() throws IOException {
+        final File sharedDir = new File(tempDir, "shared");
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertEquals(0, build("a,b,c,d", sharedDir, log));
+        assertTrue(log.toString().contains("Preprocessing [a, b]"));
+        assertTrue(log.toString().contains("Preprocessing [c, d]"));
+
+        for (final String transtype: TRANSTYPES) {
+            final File singleDir = new File(tempDir, "single" + File.separator + transtype);
+            assertEquals(0, build(transtype, singleDir, new ByteArrayOutputStream()));
+            assertEquals(TestUtils.readFileToString(new File(singleDir, "topic.txt")),
+                         TestUtils.readFileToString(new File(sharedDir, transtype + File.separator + "topic.txt")));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private int build(final String transtype, final File outputDir, final ByteArrayOutputStream log) {
+        final String[] args = { "-buildfile", new File(resourceDir, "build.xml").getAbsolutePath(),
+                                "-i", "test.ditamap",
+                                "-t", transtype,
+                                "-o", outputDir.getAbsolutePath() };
+        return new Main().runShared(args, tempDir, new File(tempDir, "temp"), new PrintStream(log, true));
+    }
+
+}
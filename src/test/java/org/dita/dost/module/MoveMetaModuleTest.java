@@ -0,0 +1,65 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.dita.dost.TestUtils;
+import org.dita.dost.pipeline.PipelineHashIO;
+import org.dita.dost.util.Job;
+
+public class MoveMetaModuleTest {
+
+    private static final File resourceDir = TestUtils.getResourceDir(MoveMetaModuleTest.class);
+    private static final File srcDir = new File(resourceDir, "src");
+    private static final String[] TOPICS = { "a.dita", "b.dita", "c.dita", "d.dita" };
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(MoveMetaModuleTest.class);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        final File serial = run("serial", 1);
+        final File parallel = run("parallel", 4);
+        assertTrue(TestUtils.readFileToString(new File(serial, "b.dita")).contains("B source"));
+        for (final String topic: TOPICS) {
+            assertEquals(TestUtils.readFileToString(new File(serial, topic)),
+                         TestUtils.readFileToString(new File(parallel, topic)));
+        }
+    }
+
+    private File run(final String name, final int threads) throws Exception {
+        final File dir = new File(tempDir, name);
+        TestUtils.copy(srcDir, dir);
+        final Job job = new Job(dir);
+        job.add(new Job.FileInfo.Builder().file(new File("test.ditamap")).format("ditamap").isActive(true).build());
+        job.write();
+
+        final PipelineHashIO input = new PipelineHashIO();
+        input.setAttribute("tempDir", dir.getAbsolutePath());
+        input.setAttribute("threads", Integer.toString(threads));
+        final MoveMetaModule module = new MoveMetaModule();
+        module.setLogger(new TestUtils.TestLogger());
+        module.execute(input);
+        return dir;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+}
@@ -44,7 +44,7 @@ public class IndexTermReaderTest {
 
     @Test
     public void testExtractIndexTerm() throws SAXException {
-        final IndexTermCollection indexTermCollection = IndexTermCollection.getInstantce();
+        final IndexTermCollection indexTermCollection = new IndexTermCollection();
         indexTermCollection.clear();
         final File target = new File(tempDir, "concept.html");
         final IndexTermReader handler = new IndexTermReader(indexTermCollection);
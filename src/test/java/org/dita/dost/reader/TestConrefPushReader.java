@@ -20,9 +20,13 @@ import org.junit.AfterClass;
 import org.dita.dost.TestUtils;
 import org.dita.dost.module.Content;
 import org.dita.dost.reader.ConrefPushReader;
+import org.dita.dost.util.SAXEventBuffer;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
@@ -39,7 +43,7 @@ public class TestConrefPushReader {
     }
 
     @Test
-    public void testRead(){
+    public void testRead() throws SAXException {
         /*
          * the part of content of conrefpush_stup.xml is
          *  <steps>
@@ -54,20 +58,43 @@ public class TestConrefPushReader {
         final ConrefPushReader pushReader = new ConrefPushReader();
         pushReader.read(filename.getAbsoluteFile());
         final Content content = pushReader.getContent();
-        final Map<String, Hashtable<String,String>> pushSet = pushReader.getPushMap();
-        final Iterator<Map.Entry<String, Hashtable<String,String>>> it= pushSet.entrySet().iterator();
+        final Map<String, Hashtable<String, SAXEventBuffer>> pushSet = pushReader.getPushMap();
+        final Iterator<Map.Entry<String, Hashtable<String, SAXEventBuffer>>> it= pushSet.entrySet().iterator();
         if (it.hasNext()){
             // pushSet has only one entry, so there is no need to iterate it.
-            final Hashtable<String, String> table = it.next().getValue();
+            final Hashtable<String, SAXEventBuffer> table = it.next().getValue();
             assertTrue(table.containsKey("#X/A|pushbefore"));
-            assertEquals(table.get("#X/A|pushbefore"), "<step class=\"- topic/li task/step \"><cmd class=\"- topic/ph task/cmd \">before</cmd></step>");
+            assertEquals(toString(table.get("#X/A|pushbefore")), "<step class=\"- topic/li task/step \"><cmd class=\"- topic/ph task/cmd \">before</cmd></step>");
             assertTrue(table.containsKey("#X/B|pushafter"));
-            assertEquals(table.get("#X/B|pushafter"), "<step class=\"- topic/li task/step \"><cmd class=\"- topic/ph task/cmd \">after</cmd></step>");
+            assertEquals(toString(table.get("#X/B|pushafter")), "<step class=\"- topic/li task/step \"><cmd class=\"- topic/ph task/cmd \">after</cmd></step>");
             assertTrue(table.containsKey("#X/C|pushreplace"));
-            assertEquals( "<step class=\"- topic/li task/step \" id=\"C\"><cmd class=\"- topic/ph task/cmd \">replace</cmd></step>",table.get("#X/C|pushreplace"));
+            assertEquals( "<step class=\"- topic/li task/step \" id=\"C\"><cmd class=\"- topic/ph task/cmd \">replace</cmd></step>",toString(table.get("#X/C|pushreplace")));
         }
     }
 
+    private static String toString(final SAXEventBuffer content) throws SAXException {
+        final StringBuilder buf = new StringBuilder();
+        content.replay(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+                buf.append('<').append(qName);
+                for (int i = 0; i < atts.getLength(); i++) {
+                    buf.append(' ').append(atts.getQName(i)).append("=\"").append(atts.getValue(i)).append('"');
+                }
+                buf.append('>');
+            }
+            @Override
+            public void endElement(final String uri, final String localName, final String qName) {
+                buf.append("</").append(qName).append('>');
+            }
+            @Override
+            public void characters(final char[] ch, final int start, final int length) {
+                buf.append(ch, start, length);
+            }
+        }, null);
+        return buf.toString();
+    }
+
     @AfterClass
     public static void teardown() throws IOException {
         TestUtils.forceDelete(tempDir);
@@ -21,9 +21,11 @@ import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import org.custommonkey.xmlunit.XMLUnit;
 import org.xml.sax.InputSource;
@@ -31,6 +33,7 @@ import org.xml.sax.InputSource;
 import org.dita.dost.TestUtils;
 import org.dita.dost.reader.KeyrefReader;
 import org.dita.dost.resolver.DitaURIResolverFactory;
+import org.dita.dost.util.KeyDefinition;
 import org.junit.Test;
 
 public class TestKeyrefReader {
@@ -53,7 +56,7 @@ public class TestKeyrefReader {
         final KeyrefReader keyrefreader = new KeyrefReader();
         keyrefreader.setKeys(set);
         keyrefreader.read(toURI(filename.getAbsolutePath()));
-        final Map<String, Element> act= keyrefreader.getKeyDefinition();
+        final Map<String, KeyDefinition> act= keyrefreader.getKeyDefinition();
 
         final Map<String, String> exp = new HashMap<String, String>();
         exp.put("blatfeference", "<topicref keys='blatview blatfeference blatintro' href='blatview.dita' navtitle='blatview' locktitle='yes' class='- map/topicref '/>");
@@ -67,7 +70,7 @@ public class TestKeyrefReader {
         assertEquals(exp.keySet(), act.keySet());
         for (Map.Entry<String, String> e: exp.entrySet()) {
             final Document ev = keyDefToDoc(e.getValue());
-            final Document av = act.get(e.getKey()).getOwnerDocument();
+            final Document av = keyDefToDoc(act.get(e.getKey()));
             assertXMLEqual(ev, av);
         }
     }
@@ -78,4 +81,14 @@ public class TestKeyrefReader {
         return documentBuilder.parse(inputSource);
     }
 
+    private static Document keyDefToDoc(final KeyDefinition key) throws Exception {
+        final TransformerHandler h = ((SAXTransformerFactory) SAXTransformerFactory.newInstance()).newTransformerHandler();
+        final DOMResult result = new DOMResult();
+        h.setResult(result);
+        h.startDocument();
+        key.toSax(h);
+        h.endDocument();
+        return (Document) result.getNode();
+    }
+
 }
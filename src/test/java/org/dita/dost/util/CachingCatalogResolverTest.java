@@ -0,0 +1,114 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+
+import org.apache.xml.resolver.CatalogManager;
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+public class CachingCatalogResolverTest {
+
+    private File tempDir;
+    private CachingCatalogResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = TestUtils.createTempDir(CachingCatalogResolverTest.class);
+        write(new File(tempDir, "catalog.xml"),
+              "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog'>" +
+              "<public publicId='-//TEST//DTD Test//EN' uri='test.dtd'/>" +
+              "<uri name='plugin:test:test.xsl' uri='test.xsl'/>" +
+              "</catalog>");
+        write(new File(tempDir, "test.dtd"), "<!ELEMENT test EMPTY>");
+        final CatalogManager manager = new CatalogManager();
+        manager.setIgnoreMissingProperties(true);
+        manager.setUseStaticCatalog(false);
+        manager.setPreferPublic(true);
+        resolver = new CachingCatalogResolver(manager);
+        resolver.getCatalog().parseCatalog(new File(tempDir, "catalog.xml").toURI().toURL());
+    }
+
+    @Test
+    public void testResolveEntity() throws Exception {
+        final String exp = new File(tempDir, "test.dtd").toURI().toString();
+        for (int i = 0; i < 2; i++) {
+            final InputSource in = resolver.resolveEntity("-//TEST//DTD Test//EN", "test.dtd");
+            assertEquals(exp, new File(new URI(in.getSystemId())).toURI().toString());
+            assertEquals("<!ELEMENT test EMPTY>", read(in.getByteStream()));
+        }
+        assertNull(resolver.resolveEntity("-//TEST//DTD Missing//EN", "missing.dtd"));
+        assertNull(resolver.resolveEntity("-//TEST//DTD Missing//EN", "missing.dtd"));
+        assertEquals(4, resolver.getLookups());
+        assertEquals(2, resolver.getHits());
+        assertEquals(0.5, resolver.getHitRate(), 0.0);
+        assertEquals(1, resolver.getContentHits());
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+        final String first = resolver.resolve("plugin:test:test.xsl", null).getSystemId();
+        assertTrue(first.endsWith("test.xsl"));
+        assertEquals(first, resolver.resolve("plugin:test:test.xsl", null).getSystemId());
+        assertEquals(1, resolver.getHits());
+    }
+
+    @Test
+    public void testResolveAbsoluteWithBase() throws Exception {
+        final String first = resolver.resolve("plugin:test:test.xsl", "file:/a/b.xsl").getSystemId();
+        assertEquals(first, resolver.resolve("plugin:test:test.xsl", "file:/c/d.xsl").getSystemId());
+        assertEquals(1, resolver.getHits());
+    }
+
+    @Test
+    public void testCacheLimit() throws Exception {
+        for (int i = 0; i < 5000; i++) {
+            assertNull(resolver.resolveEntity(null, "missing" + i + ".dtd"));
+        }
+        assertNull(resolver.resolveEntity(null, "missing0.dtd"));
+        assertNull(resolver.resolveEntity(null, "missing4999.dtd"));
+        assertEquals(1, resolver.getHits());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        try {
+            final StringBuilder buf = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                buf.append((char) c);
+            }
+            return buf.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.dita.dost.util.Constants.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DelayConrefUtilsTest {
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(DelayConrefUtilsTest.class);
+    }
+
+    @Test
+    public void testCheckExport() throws IOException {
+        write(new File(tempDir, FILE_NAME_EXPORT_XML),
+              "<stub><file name='a.dita'><topicid name='topic'/><id name='p1'/><keyref name='key'/></file>" +
+              "<file name='b.dita'><keyref name='other'/></file></stub>");
+        final DelayConrefUtils utils = new DelayConrefUtils();
+        assertEquals(Arrays.asList(true, true), utils.checkExport("a.xml", "topic", "key", tempDir));
+        assertEquals(Arrays.asList(true, false), utils.checkExport("a.dita", "p1", "other", tempDir));
+        assertEquals(Arrays.asList(false, true), utils.checkExport("b.dita", null, "other", tempDir));
+        assertEquals(Arrays.asList(false, false), utils.checkExport("c.dita", "topic", "key", tempDir));
+    }
+
+    @Test
+    public void testCheckExportNested() throws IOException {
+        write(new File(tempDir, FILE_NAME_EXPORT_XML),
+              "<stub><group><file name='a.dita'><keyref name='deep'/></file>" +
+              "<file name='b.dita'><topicid name='topic'/><group><id name='nested'/></group></file></group>" +
+              "<file name='a.dita'><keyref name='key'/></file></stub>");
+        final DelayConrefUtils utils = new DelayConrefUtils();
+        assertEquals(Arrays.asList(true, false), utils.checkExport("b.dita", "topic", "key", tempDir));
+        assertEquals(Arrays.asList(false, false), utils.checkExport("b.dita", "nested", "key", tempDir));
+        assertEquals(Arrays.asList(false, true), utils.checkExport("a.dita", "topic", "key", tempDir));
+        assertEquals(Arrays.asList(false, false), utils.checkExport("a.dita", "topic", "deep", tempDir));
+    }
+
+    @Test
+    public void testCheckExportMissing() {
+        assertEquals(Arrays.asList(false, false), new DelayConrefUtils().checkExport("a.dita", "topic", "key", tempDir));
+    }
+
+    @Test
+    public void testFindTopicId() throws IOException {
+        final File file = new File(tempDir, "topic.dita");
+        write(file, "<topic class='- topic/topic ' id='a'><p class='- topic/p ' id='p'/></topic>");
+        final DelayConrefUtils utils = new DelayConrefUtils();
+        assertTrue(utils.findTopicId(file.getAbsolutePath(), "a"));
+        assertFalse(utils.findTopicId(file.getAbsolutePath(), "p"));
+        assertFalse(utils.findTopicId(new File(tempDir, "missing.dita").getAbsolutePath(), "a"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        IdIndex.getInstance().clear();
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
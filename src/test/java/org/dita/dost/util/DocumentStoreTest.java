@@ -0,0 +1,204 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+import static org.dita.dost.util.Constants.FEATURE_NAMESPACE_PREFIX;
+import static org.dita.dost.util.Constants.LEXICAL_HANDLER_PROPERTY;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class DocumentStoreTest {
+
+    private static final String DOC = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<topic id=\"a\"><!-- c --><title>Title</title><?pi data?><p>x &lt; y</p></topic>";
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(DocumentStoreTest.class);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final DocumentStore store = new DocumentStore(tempDir, Long.MAX_VALUE);
+        final File src = new File(tempDir, "src.xml");
+        write(src, DOC);
+        final File dst = new File(tempDir, "dst.xml");
+
+        final DocumentStore.Output out = store.newOutput(dst, null);
+        try {
+            final XMLReader parser = StringUtils.getXMLReader();
+            final SAXResult result = out.getResult();
+            parser.setContentHandler(result.getHandler());
+            parser.setProperty(LEXICAL_HANDLER_PROPERTY, result.getLexicalHandler());
+            parser.parse(new InputSource(src.toURI().toString()));
+        } finally {
+            out.close();
+        }
+        store.put(dst, out.getBuffer());
+        assertTrue(dst.exists());
+        assertNotNull(store.get(dst));
+
+        final String fromFile = serialize(StringUtils.getXMLReader(), dst);
+        final String fromStore = serialize(store.getXMLReader(StringUtils.getXMLReader()), dst);
+        assertEquals(fromFile, fromStore);
+        assertEquals(2, store.getHits());
+    }
+
+    @Test
+    public void testReadRecords() throws Exception {
+        final DocumentStore store = new DocumentStore(tempDir, Long.MAX_VALUE);
+        final File src = new File(tempDir, "src.xml");
+        write(src, DOC);
+
+        final String first = serialize(store.getXMLReader(StringUtils.getXMLReader()), src);
+        assertEquals(0, store.getHits());
+        assertEquals(1, store.getMisses());
+        final String second = serialize(store.getXMLReader(StringUtils.getXMLReader()), src);
+        assertEquals(1, store.getHits());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testReadFeatures() throws Exception {
+        final DocumentStore store = new DocumentStore(tempDir, Long.MAX_VALUE);
+        final File src = new File(tempDir, "src.xml");
+        write(src, "<topic xmlns:x=\"urn:x\" id=\"a\"><x:p/></topic>");
+
+        final XMLReader prefixes = store.getXMLReader(StringUtils.getXMLReader());
+        prefixes.setFeature(FEATURE_NAMESPACE_PREFIX, true);
+        assertEquals(Arrays.asList("xmlns:x", "id"), readAttributes(prefixes, src));
+        assertNotNull(store.get(src));
+        assertEquals(Arrays.asList("id"), readAttributes(store.getXMLReader(StringUtils.getXMLReader()), src));
+        assertEquals(Arrays.asList("xmlns:x", "id"), readAttributes(prefixes, src));
+        assertEquals(3, store.getHits());
+
+        final XMLReader charRefs = store.getXMLReader(StringUtils.getXMLReader());
+        charRefs.setFeature("http://apache.org/xml/features/scanner/notify-char-refs", true);
+        readAttributes(charRefs, src);
+        assertEquals(3, store.getHits());
+    }
+
+    @Test
+    public void testWriteNamespacePrefixes() throws Exception {
+        final DocumentStore store = new DocumentStore(tempDir, Long.MAX_VALUE);
+        final File src = new File(tempDir, "src.xml");
+        write(src, "<topic xmlns:x=\"urn:x\" id=\"a\"><x:p/></topic>");
+        final File dst = new File(tempDir, "dst.xml");
+
+        final DocumentStore.Output out = store.newOutput(dst, null);
+        try {
+            final XMLReader parser = StringUtils.getXMLReader();
+            parser.setFeature(FEATURE_NAMESPACE_PREFIX, true);
+            final SAXResult result = out.getResult();
+            parser.setContentHandler(result.getHandler());
+            parser.setProperty(LEXICAL_HANDLER_PROPERTY, result.getLexicalHandler());
+            parser.parse(new InputSource(src.toURI().toString()));
+        } finally {
+            out.close();
+        }
+        store.put(dst, out.getBuffer());
+        assertEquals(readAttributes(StringUtils.getXMLReader(), dst),
+                     readAttributes(store.getXMLReader(StringUtils.getXMLReader()), dst));
+        assertEquals(1, store.getHits());
+    }
+
+    @Test
+    public void testModified() throws Exception {
+        final DocumentStore store = new DocumentStore(tempDir, Long.MAX_VALUE);
+        final File src = new File(tempDir, "src.xml");
+        write(src, DOC);
+        serialize(store.getXMLReader(StringUtils.getXMLReader()), src);
+        assertNotNull(store.get(src));
+
+        write(src, "<topic id=\"b\"/>");
+        assertTrue(src.setLastModified(src.lastModified() - 10000));
+        assertNull(store.get(src));
+        assertTrue(serialize(store.getXMLReader(StringUtils.getXMLReader()), src).contains("id=\"b\""));
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        final DocumentStore store = new DocumentStore(tempDir, 1);
+        final File src = new File(tempDir, "src.xml");
+        write(src, DOC);
+        serialize(store.getXMLReader(StringUtils.getXMLReader()), src);
+        assertNull(store.get(src));
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void testOutsideTempDir() throws Exception {
+        final DocumentStore store = new DocumentStore(new File(tempDir, "sub"), Long.MAX_VALUE);
+        final File src = new File(tempDir, "src.xml");
+        write(src, DOC);
+        serialize(store.getXMLReader(StringUtils.getXMLReader()), src);
+        assertNull(store.get(src));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private static String serialize(final XMLReader reader, final File file) throws Exception {
+        final Transformer t = TransformerFactory.newInstance().newTransformer();
+        final StringWriter buf = new StringWriter();
+        t.transform(new SAXSource(reader, new InputSource(file.toURI().toString())), new StreamResult(buf));
+        return buf.toString();
+    }
+
+    /**
+     * Read attribute names of all elements in document order.
+     */
+    private static List<String> readAttributes(final XMLReader reader, final File file) throws Exception {
+        final List<String> res = new ArrayList<String>();
+        reader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+                for (int i = 0; i < atts.getLength(); i++) {
+                    res.add(atts.getQName(i));
+                }
+            }
+        });
+        reader.parse(new InputSource(file.toURI().toString()));
+        return res;
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
@@ -146,5 +146,55 @@ public class FilterUtilsTest {
         XMLUtils.addOrSetAttribute(windows, "os", "windows");
         assertTrue(f.needExclude(windows, new String[][] {{"props", "os"}}));
     }
-    
+
+    @Test
+    public void testNeedExcludeGeneralizedDomainAttribute() {
+        final FilterUtils f = new FilterUtils();
+        f.setLogger(new TestUtils.TestLogger());
+        final Map<FilterKey, Action> fm = new HashMap<FilterKey, Action>();
+        fm.put(new FilterKey("os", "windows"), Action.EXCLUDE);
+        f.setFilterMap(fm);
+        final String[][] props = new String[][] {{"props", "os"}};
+
+        final AttributesImpl windows = new AttributesImpl();
+        XMLUtils.addOrSetAttribute(windows, "props", "os(windows)");
+        assertTrue(f.needExclude(windows, props));
+        assertTrue(f.needExclude(windows, new String[][] {{"props", "os"}}));
+
+        final AttributesImpl other = new AttributesImpl();
+        XMLUtils.addOrSetAttribute(other, "props", "cpu(x86) os(windows unix)");
+        assertFalse(f.needExclude(other, props));
+
+        final AttributesImpl none = new AttributesImpl();
+        XMLUtils.addOrSetAttribute(none, "props", "cpu(windows)");
+        assertFalse(f.needExclude(none, props));
+    }
+
+    @Test
+    public void testNeedExcludeRepeated() {
+        final FilterUtils f = new FilterUtils();
+        f.setLogger(new TestUtils.TestLogger());
+        f.setFilterMap(filterMap);
+
+        final AttributesImpl windows = new AttributesImpl();
+        XMLUtils.addOrSetAttribute(windows, "platform", "windows");
+        final AttributesImpl unix = new AttributesImpl();
+        XMLUtils.addOrSetAttribute(unix, "platform", "unix");
+        for (int i = 0; i < 3; i++) {
+            assertTrue(f.needExclude(windows, new String[0][0]));
+            assertFalse(f.needExclude(unix, new String[0][0]));
+        }
+
+        // cached results are discarded when filter map changes
+        final Map<FilterKey, Action> fm = new HashMap<FilterKey, Action>(filterMap);
+        fm.put(new FilterKey("platform", "windows"), Action.INCLUDE);
+        fm.put(new FilterKey("platform", "unix"), Action.EXCLUDE);
+        f.setFilterMap(fm);
+        assertFalse(f.needExclude(windows, new String[0][0]));
+        assertTrue(f.needExclude(unix, new String[0][0]));
+
+        f.setFilterMap(null);
+        assertFalse(f.needExclude(unix, new String[0][0]));
+    }
+
 }
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class IdIndexTest {
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(IdIndexTest.class);
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        final File file = new File(tempDir, "topic.dita");
+        write(file, "<topic class='- topic/topic ' id='a'><title class='- topic/title ' id='t'/>" +
+                    "<concept class='- topic/topic concept/concept ' id='b'/></topic>");
+        final IdIndex.Ids ids = IdIndex.getInstance().get(file);
+        assertTrue(ids.hasTopicId("a"));
+        assertTrue(ids.hasTopicId("b"));
+        assertFalse(ids.hasTopicId("t"));
+        assertTrue(ids.hasElementId("t"));
+        assertFalse(ids.hasElementId("a"));
+        assertEquals("a", ids.getFirstId());
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(ids.getTopicIds()));
+        assertSame(ids, IdIndex.getInstance().get(file));
+
+        // modified file is read again
+        write(file, "<topic class='- topic/topic ' id='changed'/>");
+        file.setLastModified(file.lastModified() + 2000);
+        final IdIndex.Ids changed = IdIndex.getInstance().get(file);
+        assertTrue(changed.hasTopicId("changed"));
+        assertFalse(changed.hasTopicId("a"));
+    }
+
+    @Test
+    public void testPut() throws Exception {
+        final File file = new File(tempDir, "written.dita");
+        write(file, "<topic class='- topic/topic ' id='a'/>");
+        final IdIndex.Collector collector = new IdIndex.Collector();
+        collector.startElement(null, "p", "p", atts("- topic/p ", "first"));
+        collector.startElement(null, "topic", "topic", atts("- topic/topic ", "a"));
+        IdIndex.getInstance().put(file, collector);
+        final IdIndex.Ids ids = IdIndex.getInstance().get(file);
+        assertEquals("first", ids.getFirstId());
+        assertTrue(ids.hasTopicId("a"));
+        assertTrue(ids.hasElementId("first"));
+
+        // collector is reset after registration
+        IdIndex.getInstance().put(file, collector);
+        assertNull(IdIndex.getInstance().get(file).getFirstId());
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetInvalid() throws IOException {
+        final File file = new File(tempDir, "invalid.dita");
+        write(file, "<topic");
+        IdIndex.getInstance().get(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        IdIndex.getInstance().clear();
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private static Attributes atts(final String cls, final String id) {
+        final AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "class", "class", "CDATA", cls);
+        atts.addAttribute("", "id", "id", "CDATA", id);
+        return atts;
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
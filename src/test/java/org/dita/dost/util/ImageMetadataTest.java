@@ -0,0 +1,83 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import javax.imageio.ImageIO;
+
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageMetadataTest {
+
+    private File tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(ImageMetadataTest.class);
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        final File png = new File(tempDir, "img.png");
+        ImageIO.write(new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB), "png", png);
+        final ImageMetadata m = new ImageMetadata();
+        final ImageMetadata.Info info = m.get(png);
+        assertEquals(120, info.getWidth());
+        assertEquals(80, info.getHeight());
+        assertSame(info, m.get(png));
+
+        final File txt = new File(tempDir, "img.txt");
+        new RandomAccessFile(txt, "rw").close();
+        assertNull(m.get(txt));
+    }
+
+    @Test
+    public void testPersistentCache() throws IOException {
+        final File cacheDir = new File(tempDir, "cache");
+        final File png = new File(tempDir, "img.png");
+        ImageIO.write(new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB), "png", png);
+        final ImageMetadata first = new ImageMetadata();
+        first.setCacheDir(cacheDir);
+        assertEquals(120, first.get(png).getWidth());
+        first.clear();
+        assertTrue(new File(cacheDir, ImageMetadata.CACHE_FILE).exists());
+
+        // corrupt image without changing size or modification time, entry must come from cache file
+        final long lastModified = png.lastModified();
+        final RandomAccessFile raf = new RandomAccessFile(png, "rw");
+        try {
+            raf.write(new byte[(int) raf.length()]);
+        } finally {
+            raf.close();
+        }
+        png.setLastModified(lastModified);
+        final ImageMetadata second = new ImageMetadata();
+        second.setCacheDir(cacheDir);
+        assertEquals(80, second.get(png).getHeight());
+        second.clear();
+
+        // modified file is not read from cache
+        png.setLastModified(lastModified + 2000);
+        final ImageMetadata third = new ImageMetadata();
+        third.setCacheDir(cacheDir);
+        assertNull(third.get(png));
+        third.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+}
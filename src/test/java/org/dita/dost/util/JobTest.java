@@ -6,12 +6,18 @@ package org.dita.dost.util;
 
 import static org.dita.dost.util.Constants.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -22,6 +28,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.dita.dost.TestUtils;
+import org.dita.dost.util.Job.FileInfo.Flag;
+import org.dita.dost.util.Job.Query;
 
 public final class JobTest {
 
@@ -66,6 +74,170 @@ public final class JobTest {
         assertEquals("/foo/bar", job.getInputDir());
     }
 
+    @Test
+    public void testGetChangedFiles() throws IOException {
+        final File dir = new File(tempDir, "changed");
+        dir.mkdirs();
+        final Job previous = new Job(dir);
+        previous.add(new Job.FileInfo.Builder().file(new File("a.dita")).digest("1").build());
+        previous.add(new Job.FileInfo.Builder().file(new File("b.dita")).digest("2").dependency(new File("a.dita")).build());
+        previous.add(new Job.FileInfo.Builder().file(new File("c.dita")).digest("3").dependency(new File("b.dita")).build());
+        previous.add(new Job.FileInfo.Builder().file(new File("d.dita")).digest("4").build());
+        previous.write();
+
+        final Job job = new Job(dir);
+        assertEquals(Collections.singleton(new File("a.dita")), job.getFileInfo(new File("b.dita")).getDependencies());
+        assertEquals("2", job.getFileInfo(new File("b.dita")).getDigest());
+        assertEquals(Collections.emptySet(), job.getChangedFiles(previous));
+        job.getFileInfo(new File("a.dita")).setDigest("5");
+        final Set<File> exp = new HashSet<File>();
+        exp.add(new File("a.dita"));
+        exp.add(new File("b.dita"));
+        exp.add(new File("c.dita"));
+        assertEquals(exp, job.getChangedFiles(previous));
+        assertEquals(4, job.getChangedFiles(null).size());
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        final File dir = new File(tempDir, "binary");
+        dir.mkdirs();
+        final Job orig = new Job(dir);
+        orig.setProperty(JOB_FORMAT, JOB_FORMAT_BINARY);
+        orig.setProperty("foo", "bar");
+        final Map<File, File> copyto = new HashMap<File, File>();
+        copyto.put(new File("baz"), new File("qux"));
+        orig.setCopytoMap(copyto);
+        orig.add(new Job.FileInfo.Builder().file(new File("a.dita")).format("dita").isActive(true).hasConref(true)
+                .isUnchanged(true).digest("1").dependency(new File("b.dita")).build());
+        orig.write();
+        assertTrue(new File(dir, ".job.bin").exists());
+
+        final Job job = new Job(dir);
+        assertEquals("bar", job.getProperty("foo"));
+        assertEquals(copyto, job.getCopytoMap());
+        final Job.FileInfo f = job.getFileInfo(new File("a.dita"));
+        assertEquals("dita", f.getFormat());
+        assertTrue(f.isActive() && f.hasConref() && f.isUnchanged());
+        assertFalse(f.hasKeyref());
+        assertEquals("1", f.getDigest());
+        assertEquals(Collections.singleton(new File("b.dita")), f.getDependencies());
+
+        // modified XML file is used instead of out of date binary file
+        job.setProperty(JOB_FORMAT, JOB_FORMAT_XML);
+        job.setProperty("foo", "baz");
+        job.write();
+        assertFalse(new File(dir, ".job.bin").exists());
+        assertEquals("baz", new Job(dir).getProperty("foo"));
+    }
+
+    @Test
+    public void testCorruptBinaryFormat() throws IOException {
+        final File dir = new File(tempDir, "corrupt");
+        dir.mkdirs();
+        final Job orig = new Job(dir);
+        orig.setProperty(JOB_FORMAT, JOB_FORMAT_BINARY);
+        orig.setProperty("foo", "bar");
+        orig.add(new Job.FileInfo.Builder().file(new File("a.dita")).format("dita")
+                .dependency(new File("b.dita")).build());
+        orig.write();
+        final File bin = new File(dir, ".job.bin");
+        final byte[] data = readBytes(bin);
+
+        // negative string table size
+        writeBytes(bin, data);
+        corrupt(bin, 24, -5);
+        assertEquals("bar", new Job(dir).getProperty("foo"));
+
+        // string table index out of range
+        writeBytes(bin, data);
+        corrupt(bin, data.length - 4, 1000);
+        assertEquals(Collections.singleton(new File("b.dita")), new Job(dir).getFileInfo(new File("a.dita")).getDependencies());
+    }
+
+    private static byte[] readBytes(final File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] b = new byte[(int) in.length()];
+            in.readFully(b);
+            return b;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeBytes(final File file, final byte[] data) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void corrupt(final File file, final long pos, final int value) throws IOException {
+        final RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.seek(pos);
+            out.writeInt(value);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testQuery() throws IOException {
+        final File dir = new File(tempDir, "query");
+        dir.mkdirs();
+        final Job job = new Job(dir);
+        job.add(new Job.FileInfo.Builder().file(new File("q1.dita")).format("dita").isActive(true).hasConref(true).build());
+        job.add(new Job.FileInfo.Builder().file(new File("q2.dita")).format("dita").isActive(true).hasKeyref(true).isUnchanged(true).build());
+        job.add(new Job.FileInfo.Builder().file(new File("q3.ditamap")).format("ditamap").isActive(true).build());
+        job.add(new Job.FileInfo.Builder().file(new File("q4.dita")).format("dita").isResourceOnly(true).build());
+
+        assertEquals(files("q1.dita", "q2.dita"), files(job.getFileInfo(new Query().any(Flag.HAS_CONREF, Flag.HAS_KEYREF))));
+        assertEquals(files("q1.dita"), files(job.getFileInfo(new Query().any(Flag.HAS_CONREF, Flag.HAS_KEYREF).none(Flag.IS_UNCHANGED))));
+        assertEquals(files("q3.ditamap"), files(job.getFileInfo(new Query().all(Flag.IS_ACTIVE).format("ditamap"))));
+        assertEquals(files("q1.dita", "q2.dita", "q3.ditamap"), files(job.getFileInfo(new Query().all(Flag.IS_ACTIVE).format("dita", "ditamap"))));
+        assertEquals(files(), files(job.getFileInfo(new Query().format("image"))));
+
+        // flag and format setters update the index
+        job.getFileInfo(new File("q4.dita")).setHasConref(true);
+        assertEquals(files("q1.dita", "q2.dita", "q4.dita"), files(job.getFileInfo(new Query().any(Flag.HAS_CONREF, Flag.HAS_KEYREF))));
+        job.getFileInfo(new File("q3.ditamap")).setFormat("dita");
+        assertEquals(files("q1.dita", "q2.dita", "q3.ditamap"), files(job.getFileInfo(new Query().all(Flag.IS_ACTIVE).format("dita"))));
+        final Job.FileInfo removed = job.remove(job.getFileInfo(new File("q1.dita")));
+        assertEquals(files("q2.dita", "q4.dita"), files(job.getFileInfo(new Query().any(Flag.HAS_CONREF, Flag.HAS_KEYREF))));
+        // removed file info keeps its flags and its ordinal is reused
+        assertTrue(removed.hasConref() && removed.isActive());
+        job.add(new Job.FileInfo.Builder().file(new File("q5.dita")).format("dita").build());
+        assertEquals(files("q2.dita", "q4.dita"), files(job.getFileInfo(new Query().any(Flag.HAS_CONREF, Flag.HAS_KEYREF))));
+        assertEquals(files("q2.dita", "q3.ditamap", "q4.dita", "q5.dita"), files(job.getFileInfo(new Query().format("dita"))));
+        // replaced file info is removed from the index
+        job.add(new Job.FileInfo.Builder().file(new File("q2.dita")).format("dita").build());
+        assertEquals(files("q4.dita"), files(job.getFileInfo(new Query().any(Flag.HAS_CONREF, Flag.HAS_KEYREF))));
+        try {
+            job.getFileInfo(new Query()).clear();
+            fail();
+        } catch (final UnsupportedOperationException e) {}
+    }
+
+    private static Set<File> files(final String... files) {
+        final Set<File> res = new HashSet<File>();
+        for (final String f: files) {
+            res.add(new File(f));
+        }
+        return res;
+    }
+
+    private static Set<File> files(final Collection<Job.FileInfo> fs) {
+        final Set<File> res = new HashSet<File>();
+        for (final Job.FileInfo f: fs) {
+            res.add(f.file);
+        }
+        return res;
+    }
+
     @AfterClass
     public static void tearDown() throws IOException {
         TestUtils.forceDelete(tempDir);
@@ -0,0 +1,101 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class KeyDefinitionTest {
+
+    @Test
+    public void testBuilder() {
+        final KeyDefinition.Builder b = new KeyDefinition.Builder();
+        b.startElement("topicref", atts("keys", "a", "class", "- map/topicref ", "xml:lang", "en"));
+        b.characters("x".toCharArray(), 0, 1);
+        b.startElement("topicmeta", atts("class", "- map/topicmeta "));
+        b.startElement("keyword", atts("class", "- topic/keyword "));
+        b.characters("foo bar".toCharArray(), 0, 3);
+        b.characters("foo bar".toCharArray(), 3, 4);
+        final KeyDefinition keyword = b.endElement();
+        b.startElement("keyword", atts("class", "- topic/keyword "));
+        b.endElement();
+        b.endElement();
+        assertTrue(b.isOpen());
+        final KeyDefinition topicref = b.endElement();
+        assertFalse(b.isOpen());
+
+        assertEquals("topicref", topicref.getName());
+        assertEquals("a", topicref.getAttribute("keys"));
+        assertEquals("", topicref.getAttribute("href"));
+        final Attributes atts = topicref.getAttributes();
+        assertEquals(3, atts.getLength());
+        assertEquals("class", atts.getQName(0));
+        assertEquals("keys", atts.getQName(1));
+        assertEquals("xml:lang", atts.getQName(2));
+        assertEquals("lang", atts.getLocalName(2));
+        assertEquals("", atts.getURI(2));
+        assertEquals("CDATA", atts.getType(2));
+        assertEquals("en", atts.getValue("xml:lang"));
+        assertNull(atts.getValue("href"));
+
+        assertEquals("foo bar", keyword.getChildren().get(0));
+        assertEquals(2, topicref.getChildren().size());
+        assertEquals("x", topicref.getChildren().get(0));
+        final List<KeyDefinition> keywords = topicref.getElementsByTagName("keyword");
+        assertEquals(2, keywords.size());
+        assertSame(keyword, keywords.get(0));
+        assertTrue(topicref.getElementsByTagName("topicref").isEmpty());
+        // class values are shared
+        assertSame(keywords.get(0).getAttribute("class"), keywords.get(1).getAttribute("class"));
+    }
+
+    @Test
+    public void testToSax() throws Exception {
+        final KeyDefinition.Builder b = new KeyDefinition.Builder();
+        b.startElement("topicref", atts("keys", "a"));
+        b.startElement("linktext", atts());
+        b.characters("text".toCharArray(), 0, 4);
+        b.endElement();
+        final KeyDefinition def = b.endElement();
+
+        final StringBuilder buf = new StringBuilder();
+        def.toSax(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+                buf.append('<').append(qName);
+                for (int i = 0; i < atts.getLength(); i++) {
+                    buf.append(' ').append(atts.getQName(i)).append("='").append(atts.getValue(i)).append('\'');
+                }
+                buf.append('>');
+            }
+            @Override
+            public void endElement(final String uri, final String localName, final String qName) {
+                buf.append("</").append(qName).append('>');
+            }
+            @Override
+            public void characters(final char[] ch, final int start, final int length) {
+                buf.append(ch, start, length);
+            }
+        });
+        assertEquals("<topicref keys='a'><linktext>text</linktext></topicref>", buf.toString());
+        assertEquals(Arrays.<Object>asList(def.getChildren().get(0)), def.getChildren());
+    }
+
+    private static Attributes atts(final String... nameValues) {
+        final AttributesImpl atts = new AttributesImpl();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            atts.addAttribute("", nameValues[i], nameValues[i], "CDATA", nameValues[i + 1]);
+        }
+        return atts;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.XMLFilter;
+
+public class MetricsTest {
+
+    private File tempDir;
+    private final Metrics metrics = new Metrics();
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(MetricsTest.class);
+        Metrics.setInstance(metrics);
+    }
+
+    @Test
+    public void testTransform() throws Exception {
+        final File file = new File(tempDir, "test.xml");
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write("<topic id=\"a\"><title>x</title></topic>");
+        } finally {
+            w.close();
+        }
+        final Metrics.ModuleRecord outer = metrics.startModule("Outer");
+        final Metrics.ModuleRecord inner = metrics.startModule("Inner");
+        XMLUtils.transform(file, Collections.<XMLFilter>emptyList());
+        metrics.endModule(inner);
+        XMLUtils.transform(file, Collections.<XMLFilter>emptyList());
+        metrics.endModule(outer);
+
+        final List<Metrics.ModuleRecord> modules = metrics.getModules();
+        assertEquals(2, modules.size());
+        assertEquals("Outer", modules.get(0).getName());
+        assertEquals(2, modules.get(0).getFiles());
+        assertEquals("Inner", modules.get(1).getName());
+        assertEquals(1, modules.get(1).getFiles());
+        assertTrue(modules.get(1).getBytesRead() > 0);
+        assertTrue(modules.get(1).getBytesWritten() > 0);
+        assertTrue(modules.get(0).getWallTime() >= modules.get(1).getWallTime());
+
+        final File out = new File(tempDir, "metrics" + File.separator + "metrics.json");
+        metrics.write(out);
+        final String json = read(out);
+        assertTrue(json.contains("\"name\": \"Outer\""));
+        assertTrue(json.contains("\"module\": \"Inner\""));
+        assertTrue(json.contains("\"file\": " + "\"" + file.getPath().replace("\\", "\\\\") + "\""));
+    }
+
+    @Test
+    public void testInherited() throws InterruptedException {
+        final Metrics[] inherited = new Metrics[1];
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                inherited[0] = Metrics.getInstance();
+            }
+        });
+        t.start();
+        t.join();
+        assertSame(metrics, inherited[0]);
+    }
+
+    @Test
+    public void testDisabled() {
+        assertSame(metrics, Metrics.setInstance(null));
+        final Metrics disabled = Metrics.getInstance();
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.startModule("Disabled"));
+        assertNull(disabled.newParseTimer(null));
+        assertTrue(disabled.getModules().isEmpty());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Metrics.setInstance(null);
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private static String read(final File file) throws IOException {
+        final BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            final StringBuilder buf = new StringBuilder();
+            String l;
+            while ((l = r.readLine()) != null) {
+                buf.append(l).append('\n');
+            }
+            return buf.toString();
+        } finally {
+            r.close();
+        }
+    }
+
+}
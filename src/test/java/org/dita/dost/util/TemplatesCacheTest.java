@@ -0,0 +1,130 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+
+import org.dita.dost.TestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TemplatesCacheTest {
+
+    private static File tempDir;
+    private static File style;
+    private static File module;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(TemplatesCacheTest.class);
+        style = new File(tempDir, "style.xsl");
+        module = new File(tempDir, "module.xsl");
+        write(style, "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='1.0'>" +
+                     "<xsl:import href='module.xsl'/>" +
+                     "</xsl:stylesheet>");
+        write(module, "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='1.0'/>");
+    }
+
+    @Test
+    public void testGetTemplates() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(2);
+        final TransformerFactory tf = TransformerFactory.newInstance();
+
+        final Templates first = cache.getTemplates(tf, style, null);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertSame(first, cache.getTemplates(tf, style, null));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertTrue(module.setLastModified(module.lastModified() - 10000));
+        final Templates second = cache.getTemplates(tf, style, null);
+        assertNotSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testResolverKey() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(8);
+        final TransformerFactory tf = TransformerFactory.newInstance();
+        final URIResolver first = new URIResolver() {
+            @Override
+            public Source resolve(final String href, final String base) {
+                return null;
+            }
+        };
+        final URIResolver second = new URIResolver() {
+            @Override
+            public Source resolve(final String href, final String base) {
+                return null;
+            }
+        };
+
+        final Templates templates = cache.getTemplates(tf, style, first);
+        assertSame(templates, cache.getTemplates(tf, style, first));
+        assertNotSame(templates, cache.getTemplates(tf, style, second));
+        assertNotSame(templates, cache.getTemplates(tf, style, null));
+
+        final Templates catalog = cache.getTemplates(tf, style, first, "catalog:a.xml");
+        assertSame(catalog, cache.getTemplates(tf, style, second, "catalog:a.xml"));
+        assertNotSame(catalog, cache.getTemplates(tf, style, first, "catalog:b.xml"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(1);
+        final TransformerFactory tf = TransformerFactory.newInstance();
+
+        final Templates first = cache.getTemplates(tf, style, null);
+        cache.getTemplates(tf, module, null);
+        assertEquals(1, cache.size());
+        assertNotSame(first, cache.getTemplates(tf, style, null));
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final TemplatesCache cache = new TemplatesCache(0);
+        final TransformerFactory tf = TransformerFactory.newInstance();
+
+        final Templates first = cache.getTemplates(tf, style, null);
+        assertNotSame(first, cache.getTemplates(tf, style, null));
+        assertEquals(0, cache.size());
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
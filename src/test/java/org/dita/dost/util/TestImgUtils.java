@@ -12,13 +12,16 @@ import static org.junit.Assert.assertEquals;
 
 import static org.dita.dost.util.Constants.*;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.util.Properties;
 
+import org.apache.commons.codec.binary.Base64;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 
@@ -65,6 +68,38 @@ public class TestImgUtils {
                 ImgUtils.getBinData(srcDir.getAbsolutePath(), "img.jpg"));
     }
 
+    @Test
+    public void testgetbase64() throws IOException {
+        final File img = new File(srcDir, "img.jpg");
+        final byte[] data = new byte[(int) img.length()];
+        final DataInputStream in = new DataInputStream(new FileInputStream(img));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        assertEquals(new Base64().encodeToString(data), ImgUtils.getBASE64(srcDir.getAbsolutePath(), "img.jpg"));
+    }
+
+    @Test
+    public void testgetbase64lines() throws IOException {
+        final File f = new File(tempDir, "data.bin");
+        for (final int size: new int[] { 0, 1, 2, 3, 56, 57, 58, 114, 115, 8207, 8208, 8209, 20000 }) {
+            final byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) (i * 31);
+            }
+            final OutputStream o = new FileOutputStream(f);
+            try {
+                o.write(data);
+            } finally {
+                o.close();
+            }
+            assertEquals(Integer.toString(size), new Base64().encodeToString(data),
+                    ImgUtils.getBASE64(tempDir.getAbsolutePath(), f.getName()));
+        }
+    }
+
     @AfterClass
     public static void tearDown() throws IOException {
         TestUtils.forceDelete(tempDir);
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.dita.dost.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class XMLGrammarPoolImplUtilsTest {
+
+    private static final String PUBLIC_ID = "-//TEST//DTD Test//EN";
+
+    private File tempDir;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = TestUtils.createTempDir(XMLGrammarPoolImplUtilsTest.class);
+        cacheDir = new File(tempDir, "cache");
+        write(new File(tempDir, "catalog-dita.xml"),
+              "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog'>" +
+              "<public publicId='" + PUBLIC_ID + "' uri='dtd/test.dtd'/>" +
+              "</catalog>");
+        new File(tempDir, "dtd").mkdirs();
+        write(new File(tempDir, "dtd/test.mod"),
+              "<!ELEMENT topic (title, p*)><!ELEMENT title (#PCDATA)><!ELEMENT p (#PCDATA)>" +
+              "<!ATTLIST topic class CDATA '- topic/topic '>");
+        writeDTD("- topic/title ");
+        write(new File(tempDir, "test.xml"),
+              "<!DOCTYPE topic PUBLIC '" + PUBLIC_ID + "' 'test.dtd'><topic><title>x</title></topic>");
+        CatalogUtils.setDitaDir(tempDir);
+    }
+
+    @Test
+    public void testPersistentCache() throws Exception {
+        assertEquals("- topic/title ", parse(new XMLGrammarPoolImplUtils(true, cacheDir)));
+        assertEquals(1, cacheDir.list().length);
+        // new pool reads grammar from cache directory
+        assertEquals("- topic/title ", parse(new XMLGrammarPoolImplUtils(true, cacheDir)));
+
+        // modified DTD invalidates cache
+        writeDTD("- topic/title changed ");
+        assertEquals("- topic/title changed ", parse(new XMLGrammarPoolImplUtils(true, cacheDir)));
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        final XMLGrammarPool pool = new XMLGrammarPoolImplUtils(true);
+        assertEquals("- topic/title ", parse(pool));
+        final String[] res = new String[1];
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    res[0] = parse(pool);
+                } catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertEquals("- topic/title ", res[0]);
+        assertFalse(cacheDir.exists());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        CatalogUtils.setDitaDir(null);
+        TestUtils.forceDelete(tempDir);
+    }
+
+    private void writeDTD(final String titleClass) throws IOException {
+        write(new File(tempDir, "dtd/test.dtd"),
+              "<!ENTITY % mod SYSTEM 'test.mod'>%mod;" +
+              "<!ATTLIST title class CDATA '" + titleClass + "'>");
+    }
+
+    /**
+     * Parse test document and return default class attribute value of title.
+     */
+    private String parse(final XMLGrammarPool pool) throws Exception {
+        final XMLReader reader = StringUtils.getXMLReader();
+        reader.setProperty("http://apache.org/xml/properties/internal/grammar-pool", pool);
+        reader.setEntityResolver(CatalogUtils.getCatalogResolver());
+        final String[] res = new String[1];
+        reader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+                if (qName.equals("title")) {
+                    res[0] = atts.getValue("class");
+                }
+            }
+        });
+        reader.parse(new InputSource(new File(tempDir, "test.xml").toURI().toString()));
+        return res[0];
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        final Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+}
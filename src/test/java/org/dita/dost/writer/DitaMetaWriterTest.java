@@ -0,0 +1,111 @@
+/*
+ * This file is part of the DITA Open Toolkit project.
+ * See the accompanying license.txt file for applicable licenses.
+ */
+package org.dita.dost.writer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Hashtable;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import org.dita.dost.TestUtils;
+import org.dita.dost.module.ContentImpl;
+import org.dita.dost.util.FileUtils;
+
+/**
+ * Expected files are the output of the DOM based metadata merge.
+ */
+public class DitaMetaWriterTest {
+
+    private static final File resourceDir = TestUtils.getResourceDir(DitaMetaWriterTest.class);
+    private static final File srcDir = new File(resourceDir, "src");
+    private static final File expDir = new File(resourceDir, "exp");
+    private static File tempDir;
+    private static Document meta;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        tempDir = TestUtils.createTempDir(DitaMetaWriterTest.class);
+        meta = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(srcDir, "meta.xml"));
+    }
+
+    @Test
+    public void testWriteProlog() throws Exception {
+        // critdates and searchtitle are unique and replace topic metadata, author and keywords are added
+        write("prolog.dita", "prolog.dita#prolog", getMeta());
+        assertOutput("prolog.dita");
+    }
+
+    @Test
+    public void testWriteNoHead() throws Exception {
+        write("nohead.dita", "nohead.dita", getMeta());
+        assertOutput("nohead.dita");
+    }
+
+    @Test
+    public void testWriteSpecialized() throws Exception {
+        write("specialized.dita", "specialized.dita#specialized", getMeta());
+        assertOutput("specialized.dita");
+    }
+
+    @Test
+    public void testWriteMultiple() throws Exception {
+        write("multiple.dita", "multiple.dita#first", getMeta());
+        write(null, "multiple.dita#first/nested", getMeta(" topic/author ", " topic/source "));
+        write(null, "multiple.dita#second", new DitaMetaWriter.Metadata(getMeta(" topic/critdates ", " topic/keywords ")));
+        assertOutput("multiple.dita");
+    }
+
+    /**
+     * Get metadata table from metadata stubs.
+     * 
+     * @param keys metadata class matchers to include, empty to include all
+     */
+    private static Hashtable<String, Element> getMeta(final String... keys) {
+        final Hashtable<String, Element> res = new Hashtable<String, Element>();
+        final NodeList stubs = meta.getDocumentElement().getElementsByTagName("stub");
+        for (int i = 0; i < stubs.getLength(); i++) {
+            final Element stub = (Element) stubs.item(i);
+            final String key = stub.getAttribute("key");
+            if (keys.length == 0 || Arrays.asList(keys).contains(key)) {
+                res.put(key, stub);
+            }
+        }
+        return res;
+    }
+
+    private static void write(final String src, final String target, final Object metadata) throws IOException {
+        if (src != null) {
+            FileUtils.copyFile(new File(srcDir, src), new File(tempDir, src));
+        }
+        final DitaMetaWriter writer = new DitaMetaWriter();
+        writer.setLogger(new TestUtils.TestLogger());
+        final ContentImpl content = new ContentImpl();
+        content.setValue(metadata);
+        writer.setContent(content);
+        writer.write(new File(tempDir, target));
+    }
+
+    private static void assertOutput(final String file) throws IOException {
+        assertEquals(TestUtils.readFileToString(new File(expDir, file)),
+                     TestUtils.readFileToString(new File(tempDir, file)));
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        TestUtils.forceDelete(tempDir);
+    }
+
+}
@@ -152,25 +152,25 @@ public class GenListModuleFilterTest {
         for (final FileInfo actFileInfo: actFileInfos) {
             final FileInfo expFileInfo = findFileInfo(actFileInfo.file);
             assertNotNull(expFileInfo);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.format, actFileInfo.format);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.hasConref, actFileInfo.hasConref);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isChunked, actFileInfo.isChunked);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.hasLink, actFileInfo.hasLink);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isResourceOnly, resourceOnly.contains(actFileInfo.file));
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isTarget, actFileInfo.isTarget);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isConrefTarget, actFileInfo.isConrefTarget);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isNonConrefTarget, actFileInfo.isNonConrefTarget);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isConrefPush, actFileInfo.isConrefPush);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.hasKeyref, actFileInfo.hasKeyref);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.hasCoderef, actFileInfo.hasCoderef);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isSubjectScheme, actFileInfo.isSubjectScheme);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isSkipChunk, actFileInfo.isSkipChunk);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isSubtarget, actFileInfo.isSubtarget);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isFlagImage, actFileInfo.isFlagImage);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isChunkedDitaMap, actFileInfo.isChunkedDitaMap);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isOutDita, actFileInfo.isOutDita);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isCopyToSource, actFileInfo.isCopyToSource);
-            assertEquals(actFileInfo.file + ": ", expFileInfo.isActive, actFileInfo.isActive);
+            assertEquals(actFileInfo.file + ": ", expFileInfo.getFormat(), actFileInfo.getFormat());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.hasConref(), actFileInfo.hasConref());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isChunked(), actFileInfo.isChunked());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.hasLink(), actFileInfo.hasLink());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isResourceOnly(), resourceOnly.contains(actFileInfo.file));
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isTarget(), actFileInfo.isTarget());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isConrefTarget(), actFileInfo.isConrefTarget());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isNonConrefTarget(), actFileInfo.isNonConrefTarget());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isConrefPush(), actFileInfo.isConrefPush());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.hasKeyref(), actFileInfo.hasKeyref());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.hasCoderef(), actFileInfo.hasCoderef());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isSubjectScheme(), actFileInfo.isSubjectScheme());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isSkipChunk(), actFileInfo.isSkipChunk());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isSubtarget(), actFileInfo.isSubtarget());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isFlagImage(), actFileInfo.isFlagImage());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isChunkedDitaMap(), actFileInfo.isChunkedDitaMap());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isOutDita(), actFileInfo.isOutDita());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isCopyToSource(), actFileInfo.isCopyToSource());
+            assertEquals(actFileInfo.file + ": ", expFileInfo.isActive(), actFileInfo.isActive());
         }
         
         final DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
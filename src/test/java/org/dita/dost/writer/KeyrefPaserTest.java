@@ -21,12 +21,17 @@ import org.custommonkey.xmlunit.XMLUnit;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
+import org.xml.sax.helpers.AttributesImpl;
 
 import org.dita.dost.TestUtils;
+import org.dita.dost.util.KeyDefinition;
 
 public class KeyrefPaserTest {
 
@@ -36,7 +41,7 @@ public class KeyrefPaserTest {
     private static final File expDir = new File(resourceDir, "exp");
     private static CatalogResolver resolver;
 
-    private static Map<String, Element> keyDefinition;
+    private static Map<String, KeyDefinition> keyDefinition;
     private final static Map<String, URI> keymap = new HashMap<String, URI>();
 
     @BeforeClass
@@ -97,16 +102,36 @@ public class KeyrefPaserTest {
         documentBuilder.setEntityResolver(resolver);
         final Document document = documentBuilder.parse(inputSource);
 
-        final Map<String, Element> keys = new HashMap<String, Element>();
+        final Map<String, KeyDefinition> keys = new HashMap<String, KeyDefinition>();
         final NodeList keydefs = document.getElementsByTagName("keydef");
         for (int i = 0; i < keydefs.getLength(); i++) {
             final Element keydef = (Element) keydefs.item(i);
             keymap.put(keydef.getAttribute("keys"), new URI(keydef.getAttribute("href")));
-            final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            doc.appendChild(doc.importNode(keydef, true));
-            keys.put(keydef.getAttribute("keys"), keydef);
+            final KeyDefinition.Builder builder = new KeyDefinition.Builder();
+            keys.put(keydef.getAttribute("keys"), toKeyDefinition(keydef, builder));
         }
         keyDefinition = Collections.unmodifiableMap(keys);
     }
+
+    private static KeyDefinition toKeyDefinition(final Element elem, final KeyDefinition.Builder builder) {
+        final AttributesImpl atts = new AttributesImpl();
+        final NamedNodeMap attrs = elem.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            final Attr a = (Attr) attrs.item(i);
+            atts.addAttribute("", a.getName(), a.getName(), "CDATA", a.getValue());
+        }
+        builder.startElement(elem.getNodeName(), atts);
+        final NodeList children = elem.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            final Node n = children.item(i);
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                toKeyDefinition((Element) n, builder);
+            } else if (n.getNodeType() == Node.TEXT_NODE) {
+                final char[] ch = n.getNodeValue().toCharArray();
+                builder.characters(ch, 0, ch.length);
+            }
+        }
+        return builder.endElement();
+    }
     
 }
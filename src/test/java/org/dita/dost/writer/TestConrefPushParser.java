@@ -32,6 +32,7 @@ import org.dita.dost.module.ContentImpl;
 import org.dita.dost.reader.ConrefPushReader;
 import org.dita.dost.util.Constants;
 import org.dita.dost.util.FileUtils;
+import org.dita.dost.util.SAXEventBuffer;
 import org.dita.dost.writer.ConrefPushParser;
 import org.junit.Test;
 import org.w3c.dom.Document;
@@ -104,10 +105,10 @@ public class TestConrefPushParser {
         final ConrefPushReader reader = new ConrefPushReader();
 
         reader.read(inputFile.getAbsoluteFile());
-        final Map<String, Hashtable<String, String>> pushSet = reader.getPushMap();
-        final Iterator<Map.Entry<String, Hashtable<String,String>>> iter = pushSet.entrySet().iterator();
+        final Map<String, Hashtable<String, SAXEventBuffer>> pushSet = reader.getPushMap();
+        final Iterator<Map.Entry<String, Hashtable<String, SAXEventBuffer>>> iter = pushSet.entrySet().iterator();
         if(iter.hasNext()){
-            final Map.Entry<String, Hashtable<String,String>> entry = iter.next();
+            final Map.Entry<String, Hashtable<String, SAXEventBuffer>> entry = iter.next();
             // initialize the parsed file
             FileUtils.copyFile(new File(srcDir, "conrefpush_stub2_backup.xml"),
                     new File(entry.getKey()));